@@ -0,0 +1,179 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.apiimpl.rendercontext;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-rebuild cost of material resolution for every quad: the prior finder path
+ * versus the lookup table in {@link AbstractRenderContext}.
+ *
+ * <p>Materials can't be created outside the game, so both paths are reproduced with
+ * synthetic material bits. The finder path copies bits, applies the blend mode
+ * adjustment and looks up the result in a synchronized map, as
+ * {@code MaterialFinderImpl.findInner()} does. The table path is the same as
+ * {@code AbstractRenderContext.resolveMaterial()} once warm.
+ *
+ * <p>Each invocation resolves materials for the quads of one region with
+ * {@code materialCount} materials in a skewed mix, like terrain where a few
+ * blocks dominate. Contended variants run four rebuild threads, as on a
+ * typical worker pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaterialResolveBenchmark {
+	private static final int QUAD_COUNT = 8192;
+	private static final int BLEND_SHIFT = 8;
+	private static final long BLEND_MASK = 7L << BLEND_SHIFT;
+	private static final long ADJUSTED_MASK = 0xFFL << 16;
+	private static final Long2ObjectOpenHashMap<Object> MAP = new Long2ObjectOpenHashMap<>();
+
+	@Param({"16", "256"})
+	public int materialCount;
+
+	private long[] materialBits;
+	private int[] quadMaterials;
+	private final Object[][] table = new Object[AbstractRenderContext.MATERIAL_MODE_COUNT][];
+	private final int mode = 3;
+
+	@Setup
+	public void setup() {
+		final Random rand = new Random(42);
+		materialBits = new long[materialCount];
+
+		for (int i = 0; i < materialCount; ++i) {
+			materialBits[i] = (rand.nextLong() & ~(BLEND_MASK | ADJUSTED_MASK)) | ((long) rand.nextInt(5) << BLEND_SHIFT);
+		}
+
+		quadMaterials = new int[QUAD_COUNT];
+
+		for (int i = 0; i < QUAD_COUNT; ++i) {
+			// squaring skews toward low indices
+			final float f = rand.nextFloat();
+			quadMaterials[i] = (int) (f * f * materialCount);
+		}
+
+		Arrays.fill(table, null);
+	}
+
+	@Benchmark
+	public int finder() {
+		int result = 0;
+
+		for (int i = 0; i < QUAD_COUNT; ++i) {
+			result += System.identityHashCode(find(adjust(materialBits[quadMaterials[i]])));
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public int table() {
+		int result = 0;
+
+		for (int i = 0; i < QUAD_COUNT; ++i) {
+			result += System.identityHashCode(resolve(quadMaterials[i]));
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	@Threads(4)
+	public int finderContended() {
+		return finder();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public int tableContended() {
+		return table();
+	}
+
+	/** Stands in for the blend mode switch in adjustMaterial(). */
+	private long adjust(long bits) {
+		long blend = (bits & BLEND_MASK) >>> BLEND_SHIFT;
+
+		if (blend == 0) {
+			blend = mode;
+			bits &= ~BLEND_MASK;
+		}
+
+		switch ((int) blend) {
+			case 1:
+				return (bits & ~ADJUSTED_MASK) | (0x11L << 16);
+			case 2:
+				return (bits & ~ADJUSTED_MASK) | (0x21L << 16);
+			case 3:
+				return (bits & ~ADJUSTED_MASK) | (0x23L << 16);
+			default:
+				return (bits & ~ADJUSTED_MASK) | (0x4CL << 16);
+		}
+	}
+
+	private static Object find(long bits) {
+		synchronized (MAP) {
+			Object result = MAP.get(bits);
+
+			if (result == null) {
+				result = new Object();
+				MAP.put(bits, result);
+			}
+
+			return result;
+		}
+	}
+
+	private Object resolve(int index) {
+		Object[] t = table[mode];
+
+		if (t == null || index >= t.length) {
+			final int newLength = Math.max(64, Integer.highestOneBit(index) << 1);
+			t = t == null ? new Object[newLength] : Arrays.copyOf(t, newLength);
+			table[mode] = t;
+		}
+
+		Object result = t[index];
+
+		if (result == null) {
+			result = find(adjust(materialBits[index]));
+			t[index] = result;
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.input;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Translucent quad sort with the prior mergesort and swapper versus
+ * {@link QuadSorter}. Each invocation restores the unsorted input so
+ * both variants pay the same copy cost.
+ *
+ * <p>The {@code shuffled} input is fully random. The {@code nearlySorted} input
+ * is sorted for a slightly different camera position, as in re-sorts while moving.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuadSortBenchmark {
+	/** Terrain format is six ints per vertex. */
+	private static final int QUAD_STRIDE = 24;
+
+	@Param({"1024", "4096", "16384", "65536"})
+	public int quadCount;
+
+	@Param({"shuffled", "nearlySorted"})
+	public String input;
+
+	private int[] sourceData;
+	private float[] sourceDistance;
+
+	private int[] vertexData;
+	private int[] scratchData;
+	private float[] perQuadDistance;
+	private final int[] swapData = new int[QUAD_STRIDE * 2];
+	private final QuadSorter quadSorter = new QuadSorter();
+
+	@Setup
+	public void setup() {
+		final Random rand = new Random(42);
+		sourceData = new int[quadCount * QUAD_STRIDE];
+		sourceDistance = new float[quadCount];
+
+		for (int i = 0; i < sourceData.length; ++i) {
+			sourceData[i] = rand.nextInt();
+		}
+
+		for (int i = 0; i < quadCount; ++i) {
+			// squared distances within a region padded for the camera a few blocks outside
+			final float dx = rand.nextFloat() * 20f;
+			final float dy = rand.nextFloat() * 20f;
+			final float dz = rand.nextFloat() * 20f;
+			sourceDistance[i] = dx * dx + dy * dy + dz * dz;
+		}
+
+		if (input.equals("nearlySorted")) {
+			final float[] sorted = sourceDistance.clone();
+			Arrays.sort(sorted);
+
+			for (int i = 0; i < quadCount; ++i) {
+				// farthest first with a small perturbation
+				sourceDistance[i] = sorted[quadCount - 1 - i] + rand.nextFloat() * 0.5f;
+			}
+		}
+
+		vertexData = new int[sourceData.length];
+		scratchData = new int[sourceData.length];
+		perQuadDistance = new float[quadCount];
+	}
+
+	@Setup(Level.Invocation)
+	public void restore() {
+		System.arraycopy(sourceData, 0, vertexData, 0, sourceData.length);
+		System.arraycopy(sourceDistance, 0, perQuadDistance, 0, quadCount);
+	}
+
+	@Benchmark
+	public int[] mergeSort() {
+		it.unimi.dsi.fastutil.Arrays.mergeSort(0, quadCount, comparator, swapper);
+		return vertexData;
+	}
+
+	@Benchmark
+	public int[] radixSort() {
+		if (quadSorter.sort(perQuadDistance, quadCount)) {
+			quadSorter.gather(vertexData, scratchData, QUAD_STRIDE);
+			final int[] swap = vertexData;
+			vertexData = scratchData;
+			scratchData = swap;
+		}
+
+		return vertexData;
+	}
+
+	private final IntComparator comparator = new IntComparator() {
+		@Override
+		public int compare(int a, int b) {
+			return Float.compare(perQuadDistance[b], perQuadDistance[a]);
+		}
+	};
+
+	private final Swapper swapper = new Swapper() {
+		@Override
+		public void swap(int a, int b) {
+			final float distSwap = perQuadDistance[a];
+			perQuadDistance[a] = perQuadDistance[b];
+			perQuadDistance[b] = distSwap;
+
+			final int aIndex = a * QUAD_STRIDE;
+			final int bIndex = b * QUAD_STRIDE;
+
+			System.arraycopy(vertexData, aIndex, swapData, 0, QUAD_STRIDE);
+			System.arraycopy(vertexData, bIndex, swapData, QUAD_STRIDE, QUAD_STRIDE);
+			System.arraycopy(swapData, 0, vertexData, bIndex, QUAD_STRIDE);
+			System.arraycopy(swapData, QUAD_STRIDE, vertexData, aIndex, QUAD_STRIDE);
+		}
+	};
+}
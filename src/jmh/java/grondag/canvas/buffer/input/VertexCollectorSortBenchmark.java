@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.input;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import grondag.canvas.render.terrain.TerrainFormat;
+
+/**
+ * Terrain collector sorts as run for each region: {@link ArrayVertexCollector#sortQuads}
+ * for translucent quads, including distance computation, and {@link VertexBucket.Sorter}
+ * for solid quads.
+ *
+ * <p>Quads are axis-aligned unit faces at random positions in a region with random
+ * cull faces. The camera alternates between two positions a block apart so that
+ * every translucent sort changes the order, as when moving through water.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VertexCollectorSortBenchmark {
+	private static final int QUAD_STRIDE = TerrainFormat.TERRAIN_MATERIAL.quadStrideInts;
+	private static final int VERTEX_STRIDE = TerrainFormat.TERRAIN_MATERIAL.vertexStrideInts;
+
+	@Param({"1024", "4096", "16384"})
+	public int quadCount;
+
+	private ArrayVertexCollector translucent;
+	private final VertexBucket.Sorter bucketSorter = new VertexBucket.Sorter();
+	private int[] solidData;
+	private boolean flip;
+
+	@Setup
+	public void setup() {
+		final Random rand = new Random(42);
+		translucent = new ArrayVertexCollector(true, true);
+		solidData = new int[quadCount * QUAD_STRIDE];
+
+		for (int q = 0; q < quadCount; ++q) {
+			final int cullFace = rand.nextInt(7);
+			final int k = translucent.allocate(QUAD_STRIDE, cullFace);
+			final int[] target = translucent.data();
+			final int x = rand.nextInt(16);
+			final int y = rand.nextInt(16);
+			final int z = rand.nextInt(16);
+
+			for (int v = 0; v < 4; ++v) {
+				final int i = k + v * VERTEX_STRIDE;
+				// integer positions around the block, fractional parts at zero
+				target[i] = 0;
+				target[i + 1] = 0;
+				target[i + 2] = (x + (v & 1)) | ((y + (v >> 1)) << 8) | (z << 16);
+
+				for (int j = 3; j < VERTEX_STRIDE; ++j) {
+					target[i + j] = rand.nextInt();
+				}
+			}
+
+			System.arraycopy(target, k, solidData, q * QUAD_STRIDE, QUAD_STRIDE);
+			bucketSorter.add(cullFace, q * QUAD_STRIDE);
+		}
+	}
+
+	@Benchmark
+	public boolean sortQuads() {
+		flip = !flip;
+		return translucent.sortQuads(flip ? 7.5f : 8.5f, 20f, 8f);
+	}
+
+	@Benchmark
+	public VertexBucket[] bucketSort() {
+		// reorders the same data each time, which costs the same as sorting new data
+		return bucketSorter.sort(solidData, solidData.length);
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.light;
+
+import static grondag.canvas.light.LightSmoother.OPAQUE;
+import static grondag.canvas.light.LightSmoother.POS_COUNT;
+import static grondag.canvas.light.LightSmoother.POS_DIAMETER;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-region cost of the blur in {@link LightSmoother#computeSmoothedBrightness}.
+ *
+ * <p>Sampling reads world state and isn't included. Samples are generated instead:
+ * {@code surface} is ground lit by the sky with a few torches, and {@code caves} is
+ * solid with winding tunnels lit only by torches. Each invocation restores the
+ * samples before smoothing, which is a small part of the total.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LightSmootherBenchmark {
+	@Param({"surface", "caves"})
+	public String scene;
+
+	private final int[] blockSamples = new int[POS_COUNT];
+	private final int[] skySamples = new int[POS_COUNT];
+	private final int[] block = new int[POS_COUNT];
+	private final int[] sky = new int[POS_COUNT];
+	private final int[] work = new int[POS_COUNT];
+
+	@Setup
+	public void setup() {
+		final Random rand = new Random(42);
+		final boolean caves = scene.equals("caves");
+		final boolean[] opaque = new boolean[POS_COUNT];
+
+		if (caves) {
+			Arrays.fill(opaque, true);
+			int x = POS_DIAMETER / 2;
+			int y = POS_DIAMETER / 2;
+			int z = 0;
+
+			for (int i = 0; i < 1500; ++i) {
+				opaque[index(x, y, z)] = false;
+				final int axis = rand.nextInt(3);
+				final int step = rand.nextBoolean() ? 1 : -1;
+
+				if (axis == 0) {
+					x = Math.max(0, Math.min(POS_DIAMETER - 1, x + step));
+				} else if (axis == 1) {
+					y = Math.max(0, Math.min(POS_DIAMETER - 1, y + step));
+				} else {
+					z = Math.max(0, Math.min(POS_DIAMETER - 1, z + step));
+				}
+			}
+		} else {
+			for (int x = 0; x < POS_DIAMETER; ++x) {
+				for (int z = 0; z < POS_DIAMETER; ++z) {
+					final int height = POS_DIAMETER / 2 + rand.nextInt(3);
+
+					for (int y = 0; y < height; ++y) {
+						opaque[index(x, y, z)] = true;
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < POS_COUNT; ++i) {
+			if (opaque[i]) {
+				blockSamples[i] = OPAQUE;
+				skySamples[i] = OPAQUE;
+			} else {
+				// torches in about one percent of open positions
+				blockSamples[i] = rand.nextInt(100) == 0 ? 14 << 4 : rand.nextInt(8) << 4;
+				skySamples[i] = caves ? 0 : 15 << 4;
+			}
+		}
+	}
+
+	@Benchmark
+	public int smooth() {
+		System.arraycopy(blockSamples, 0, block, 0, POS_COUNT);
+		System.arraycopy(skySamples, 0, sky, 0, POS_COUNT);
+		LightSmoother.smoothSamples(block, sky, work);
+		return block[POS_COUNT / 2] + sky[POS_COUNT / 2];
+	}
+
+	private static int index(int x, int y, int z) {
+		return x + (y + z * POS_DIAMETER) * POS_DIAMETER;
+	}
+}
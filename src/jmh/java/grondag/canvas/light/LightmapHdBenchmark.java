@@ -0,0 +1,122 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.light;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of computing HD lightmap pixels with {@link LightmapHdCalc} for a batch of faces.
+ *
+ * <p>Face data are generated to resemble terrain: most faces are fully open with
+ * uniform AO, and the rest have a mix of occluded neighbors and light gradients.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LightmapHdBenchmark {
+	private static final int FACE_COUNT = 1024;
+
+	private final AoFaceData[] faces = new AoFaceData[FACE_COUNT];
+	private final int[] pixels = new int[LightmapSizer.lightmapPixels];
+
+	@Setup
+	public void setup() {
+		final Random rand = new Random(42);
+
+		for (int i = 0; i < FACE_COUNT; ++i) {
+			final AoFaceData fd = new AoFaceData();
+			final boolean open = rand.nextInt(4) != 0;
+			final int base = rand.nextInt(16) << 4;
+
+			fd.center = light(rand, base, false);
+			fd.top = light(rand, base, !open);
+			fd.bottom = light(rand, base, !open);
+			fd.left = light(rand, base, !open);
+			fd.right = light(rand, base, !open);
+			fd.topLeft = light(rand, base, !open);
+			fd.topRight = light(rand, base, !open);
+			fd.bottomLeft = light(rand, base, !open);
+			fd.bottomRight = light(rand, base, !open);
+
+			fd.aoCenter = 255;
+			fd.aoTop = ao(rand, open);
+			fd.aoBottom = ao(rand, open);
+			fd.aoLeft = ao(rand, open);
+			fd.aoRight = ao(rand, open);
+			fd.aoTopLeft = ao(rand, open);
+			fd.aoTopRight = ao(rand, open);
+			fd.aoBottomLeft = ao(rand, open);
+			fd.aoBottomRight = ao(rand, open);
+			faces[i] = fd;
+		}
+	}
+
+	private static int light(Random rand, int base, boolean mayBeOpaque) {
+		if (mayBeOpaque && rand.nextInt(3) == 0) {
+			return AoFaceData.OPAQUE;
+		}
+
+		final int block = Math.max(0, Math.min(240, base + (rand.nextInt(3) - 1) * 16));
+		return block | (240 << 16);
+	}
+
+	private static int ao(Random rand, boolean open) {
+		return open || rand.nextBoolean() ? 255 : 51;
+	}
+
+	@Benchmark
+	public int computeAo() {
+		final int[] pixels = this.pixels;
+		int result = 0;
+
+		for (final AoFaceData fd : faces) {
+			LightmapHdCalc.computeAo(pixels, fd);
+			result += pixels[0];
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public int computeLight() {
+		final int[] pixels = this.pixels;
+		int result = 0;
+
+		for (final AoFaceData fd : faces) {
+			LightmapHdCalc.computeLight(pixels, fd, false);
+			LightmapHdCalc.computeLight(pixels, fd, true);
+			result += pixels[0];
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.occlusion.camera;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of adding regions to {@link CameraPotentiallyVisibleRegionSet} and iterating them
+ * for one frame of terrain iteration.
+ *
+ * <p>Regions need a world, so region states have no region and are added by distance.
+ * All regions within {@code radius} chunks of the camera are included, with the vertical
+ * range of a typical world. {@code addThenIterate} adds all of them in random order before
+ * iterating. {@code interleaved} adds them near to far while iterating, as the camera
+ * iteration does when it adds neighbors of each visited region.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CameraRegionSetBenchmark {
+	/** Regions added per region visited in the interleaved case. */
+	private static final int NEIGHBORS_PER_VISIT = 3;
+
+	@Param({"12", "32"})
+	public int radius;
+
+	private final CameraPotentiallyVisibleRegionSet set = new CameraPotentiallyVisibleRegionSet();
+	private CameraRegionVisibility[] states;
+	private int[] shuffledDistances;
+	private int[] sortedDistances;
+
+	@Setup
+	public void setup() {
+		final Random rand = new Random(42);
+		int count = 0;
+		final int[] distances = new int[(radius * 2 + 1) * (radius * 2 + 1) * 24];
+
+		for (int x = -radius; x <= radius; ++x) {
+			for (int z = -radius; z <= radius; ++z) {
+				for (int y = -8; y < 16; ++y) {
+					final int d = x * x + y * y + z * z;
+
+					if (d <= radius * radius) {
+						distances[count++] = d;
+					}
+				}
+			}
+		}
+
+		states = new CameraRegionVisibility[count];
+
+		for (int i = 0; i < count; ++i) {
+			states[i] = new CameraRegionVisibility(null, null);
+		}
+
+		sortedDistances = Arrays.copyOf(distances, count);
+		Arrays.sort(sortedDistances);
+		shuffledDistances = IntArrays.shuffle(sortedDistances.clone(), rand);
+	}
+
+	@Benchmark
+	public int addThenIterate() {
+		final CameraPotentiallyVisibleRegionSet set = this.set;
+		final CameraRegionVisibility[] states = this.states;
+		final int[] distances = shuffledDistances;
+		set.clear();
+
+		for (int i = 0; i < states.length; ++i) {
+			set.add(states[i], distances[i]);
+		}
+
+		int result = 0;
+
+		while (set.next() != null) {
+			++result;
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public int interleaved() {
+		final CameraPotentiallyVisibleRegionSet set = this.set;
+		final CameraRegionVisibility[] states = this.states;
+		final int[] distances = sortedDistances;
+		final int limit = states.length;
+		set.clear();
+		set.add(states[0], distances[0]);
+		int added = 1;
+		int result = 0;
+
+		while (set.next() != null) {
+			++result;
+
+			for (int i = 0; i < NEIGHBORS_PER_VISIT && added < limit; ++i, ++added) {
+				set.add(states[added], distances[added]);
+			}
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.ints.IntConsumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-region cost of exterior visibility with the prior voxel queue fill versus
+ * {@link BitFloodFill}, and of box and area finding on the same regions.
+ *
+ * <p>Captures need a running world, so regions are generated to resemble common cases:
+ * {@code surface} is ground with air above, {@code caves} is solid with winding tunnels,
+ * and {@code sparse} is mostly air with scattered blocks, like foliage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegionOcclusionBenchmark {
+	@Param({"surface", "caves", "sparse"})
+	public String scene;
+
+	private final long[] closed = new long[64];
+	private final long[] seeds = new long[64];
+	private final long[] visited = new long[64];
+	private final long[] hidden = new long[64];
+	private final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+	private final BitFloodFill floodFill = new BitFloodFill();
+	private final BoxFinder boxFinder = new BoxFinder(new AreaFinder());
+	private final AreaFinder areaFinder = new AreaFinder();
+	private int areaCount;
+	private final IntConsumer areaCounter = i -> ++areaCount;
+
+	@Setup
+	public void setup() {
+		final Random rand = new Random(42);
+
+		switch (scene) {
+			case "surface": {
+				for (int x = 0; x < 16; ++x) {
+					for (int z = 0; z < 16; ++z) {
+						final int height = 6 + rand.nextInt(3);
+
+						for (int y = 0; y < height; ++y) {
+							set(closed, x, y, z);
+						}
+					}
+				}
+
+				break;
+			}
+
+			case "caves": {
+				Arrays.fill(closed, -1L);
+				int x = 8;
+				int y = 8;
+				int z = 0;
+
+				for (int i = 0; i < 600; ++i) {
+					clear(closed, x, y, z);
+					final int axis = rand.nextInt(3);
+					final int step = rand.nextBoolean() ? 1 : -1;
+
+					if (axis == 0) {
+						x = Math.max(0, Math.min(15, x + step));
+					} else if (axis == 1) {
+						y = Math.max(0, Math.min(15, y + step));
+					} else {
+						z = Math.max(0, Math.min(15, z + step));
+					}
+				}
+
+				break;
+			}
+
+			case "sparse":
+			default: {
+				for (int i = 0; i < 4096; ++i) {
+					if (rand.nextInt(20) == 0) {
+						closed[i >> 6] |= 1L << (i & 63);
+					}
+				}
+
+				break;
+			}
+		}
+
+		final long[] surface = new long[64];
+
+		// seed surface positions as if most neighbors were open
+		for (int x = 0; x < 16; ++x) {
+			for (int y = 0; y < 16; ++y) {
+				for (int z = 0; z < 16; ++z) {
+					if (x == 0 || x == 15 || y == 0 || y == 15 || z == 0 || z == 15) {
+						set(surface, x, y, z);
+
+						if (rand.nextInt(4) != 0) {
+							set(seeds, x, y, z);
+						}
+					}
+				}
+			}
+		}
+
+		floodFill.fill(closed, 0, copySeeds(), 0);
+
+		// closed positions after interior positions not visible from outside are hidden
+		for (int i = 0; i < 64; ++i) {
+			hidden[i] = closed[i] | (~visited[i] & ~surface[i]);
+		}
+	}
+
+	@Benchmark
+	public long[] queueFill() {
+		final long[] visited = copySeeds();
+
+		for (int i = 0; i < 4096; ++i) {
+			if (isSet(seeds, i) && !isSet(closed, i)) {
+				queue.enqueue(i);
+			}
+		}
+
+		while (!queue.isEmpty()) {
+			final int i = queue.dequeueInt();
+			final int x = i & 0xF;
+			final int y = i & 0xF0;
+			final int z = i & 0xF00;
+
+			if (x != 0) visit(i - 1);
+			if (x != 0xF) visit(i + 1);
+			if (y != 0) visit(i - 0x10);
+			if (y != 0xF0) visit(i + 0x10);
+			if (z != 0) visit(i - 0x100);
+			if (z != 0xF00) visit(i + 0x100);
+		}
+
+		return visited;
+	}
+
+	@Benchmark
+	public long[] wordFill() {
+		final long[] visited = copySeeds();
+		floodFill.fill(closed, 0, visited, 0);
+		return visited;
+	}
+
+	@Benchmark
+	public int findBoxes() {
+		boxFinder.findBoxes(hidden, 0);
+		return boxFinder.boxes.size();
+	}
+
+	/** Area finding alone, for each z slice of the same bits given to the box finder. */
+	@Benchmark
+	public int findAreas() {
+		areaCount = 0;
+
+		for (int z = 0; z < 16; ++z) {
+			areaFinder.find(hidden, z * 4, areaCounter);
+		}
+
+		return areaCount;
+	}
+
+	private long[] copySeeds() {
+		System.arraycopy(seeds, 0, visited, 0, 64);
+		return visited;
+	}
+
+	private void visit(int i) {
+		final long mask = 1L << (i & 63);
+		final int word = i >> 6;
+
+		if ((visited[word] & mask) == 0) {
+			visited[word] |= mask;
+
+			if ((closed[word] & mask) == 0) {
+				queue.enqueue(i);
+			}
+		}
+	}
+
+	private static boolean isSet(long[] bits, int i) {
+		return (bits[i >> 6] & (1L << (i & 63))) != 0;
+	}
+
+	private static void set(long[] bits, int x, int y, int z) {
+		final int i = x | (y << 4) | (z << 8);
+		bits[i >> 6] |= 1L << (i & 63);
+	}
+
+	private static void clear(long[] bits, int x, int y, int z) {
+		final int i = x | (y << 4) | (z << 8);
+		bits[i >> 6] &= ~(1L << (i & 63));
+	}
+}
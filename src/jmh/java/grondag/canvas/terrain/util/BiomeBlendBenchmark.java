@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of blending biome colors for one chunk with {@link BiomeColorBlender}
+ * compared to blending each column separately, as {@link ChunkColorCache} did before.
+ *
+ * <p>Base colors are generated. Biome lookup isn't included and costs the same
+ * for both, except that the per-column blend looked up base colors through the
+ * cache once per sample instead of once per position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BiomeBlendBenchmark {
+	/** Vanilla default is 2 and the maximum is 7. */
+	@Param({"2", "5", "7"})
+	public int radius;
+
+	private int padded;
+	private int[] base;
+	private final int[] blended = new int[256];
+	private int[] work;
+
+	@Setup
+	public void setup() {
+		final Random rand = new Random(42);
+		padded = BiomeColorBlender.paddedSize(radius);
+		base = new int[padded * padded];
+		work = new int[BiomeColorBlender.workSize(radius)];
+		final int[] palette = new int[6];
+
+		for (int i = 0; i < palette.length; ++i) {
+			palette[i] = rand.nextInt(0x1000000);
+		}
+
+		// irregular biome patches
+		for (int z = 0; z < padded; ++z) {
+			for (int x = 0; x < padded; ++x) {
+				base[x + z * padded] = palette[((x + rand.nextInt(3)) / 6 + (z + rand.nextInt(3)) / 4) % palette.length];
+			}
+		}
+	}
+
+	@Benchmark
+	public int separable() {
+		BiomeColorBlender.blend(base, radius, blended, work);
+		return blended[0] + blended[255];
+	}
+
+	@Benchmark
+	public int perColumn() {
+		final int sampleCount = (radius * 2 + 1) * (radius * 2 + 1);
+
+		for (int xIn = 0; xIn < 16; ++xIn) {
+			for (int zIn = 0; zIn < 16; ++zIn) {
+				int r = 0;
+				int g = 0;
+				int b = 0;
+
+				for (int x = xIn; x <= xIn + radius * 2; x++) {
+					for (int z = zIn; z <= zIn + radius * 2; z++) {
+						final int color = base[x + z * padded];
+						g += (color >> 8) & 255;
+						r += (color >> 16) & 255;
+						b += color & 255;
+					}
+				}
+
+				blended[xIn | (zIn << 4)] = (r / sampleCount & 255) << 16 | (g / sampleCount & 255) << 8 | b / sampleCount & 255;
+			}
+		}
+
+		return blended[0] + blended[255];
+	}
+}
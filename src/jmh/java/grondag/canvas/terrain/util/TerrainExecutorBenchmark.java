@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.util;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
+
+/**
+ * Throughput of each terrain executor mode using synthetic tasks that
+ * burn a fixed amount of CPU with randomized distance priorities,
+ * roughly the shape of a burst of region rebuilds after a teleport.
+ *
+ * <p>Executor threads are never stopped, so each parameter combination
+ * must run in its own fork.  SHARED mode needs at least four processors:
+ * with fewer it runs a single mixed worker that can leave the last task of a
+ * burst waiting for the next submission, and the benchmark will not finish.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TerrainExecutorBenchmark {
+	private static final int TASK_COUNT = 4096;
+
+	@Param({"SHARED", "DEDICATED", "WORK_STEALING"})
+	public String mode;
+
+	/** Blackhole CPU tokens consumed by each task. Real rebuilds vary from tens of microseconds to milliseconds. */
+	@Param({"1000", "20000"})
+	public int work;
+
+	private TerrainExecutor executor;
+	private SyntheticTask[] tasks;
+	private volatile CountDownLatch latch;
+
+	@Setup
+	public void setup() {
+		// tasks never use the context and creating a real one requires the game
+		switch (mode) {
+			case "SHARED":
+				executor = new SharedTerrainExecutor(() -> null);
+				break;
+			case "DEDICATED":
+				executor = new DedicatedTerrainExecutor(() -> null);
+				break;
+			case "WORK_STEALING":
+			default:
+				executor = new WorkStealingTerrainExecutor(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), () -> null);
+				break;
+		}
+
+		final Random rand = new Random(42);
+		tasks = new SyntheticTask[TASK_COUNT];
+
+		for (int i = 0; i < TASK_COUNT; ++i) {
+			// squared chunk distance for a 32-chunk render distance
+			final int dx = rand.nextInt(33);
+			final int dy = rand.nextInt(17);
+			final int dz = rand.nextInt(33);
+			tasks[i] = new SyntheticTask(dx * dx + dy * dy + dz * dz);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TASK_COUNT)
+	public void rebuildBurst() throws InterruptedException {
+		latch = new CountDownLatch(TASK_COUNT);
+
+		for (final SyntheticTask task : tasks) {
+			executor.execute(task);
+		}
+
+		latch.await();
+	}
+
+	private class SyntheticTask implements TerrainExecutorTask {
+		private final int priority;
+
+		SyntheticTask(int priority) {
+			this.priority = priority;
+		}
+
+		@Override
+		public void run(TerrainRenderContext context) {
+			Blackhole.consumeCPU(work);
+			latch.countDown();
+		}
+
+		@Override
+		public int priority() {
+			return priority;
+		}
+	}
+}
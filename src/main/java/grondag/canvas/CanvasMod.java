@@ -21,6 +21,7 @@ import org.apache.logging.log4j.Logger;
 import org.lwjgl.system.Configuration;
 
 import net.minecraft.client.option.KeyBinding;
+import net.minecraft.client.util.InputUtil;
 import net.minecraft.client.render.RenderLayer;
 import net.minecraft.resource.ResourceType;
 import net.minecraft.util.Identifier;
@@ -60,6 +61,8 @@ public class CanvasMod implements ClientModInitializer {
 	public static KeyBinding DEBUG_PREV = new KeyBinding("key.canvas.debug_prev", Character.valueOf('['), "key.canvas.category");
 	public static KeyBinding DEBUG_NEXT = new KeyBinding("key.canvas.debug_next", Character.valueOf(']'), "key.canvas.category");
 	public static KeyBinding RECOMPILE = new KeyBinding("key.canvas.recompile", Character.valueOf('='), "key.canvas.category");
+	public static KeyBinding EXPORT_METRICS = new KeyBinding("key.canvas.export_metrics", InputUtil.UNKNOWN_KEY.getCode(), "key.canvas.category");
+	public static KeyBinding BENCHMARK_REGION_BUILDS = new KeyBinding("key.canvas.benchmark_region_builds", InputUtil.UNKNOWN_KEY.getCode(), "key.canvas.category");
 	public static String versionString = "unknown";
 
 	@Override
@@ -87,6 +90,8 @@ public class CanvasMod implements ClientModInitializer {
 		KeyBindingHelper.registerKeyBinding(DEBUG_PREV);
 		KeyBindingHelper.registerKeyBinding(DEBUG_NEXT);
 		KeyBindingHelper.registerKeyBinding(RECOMPILE);
+		KeyBindingHelper.registerKeyBinding(EXPORT_METRICS);
+		KeyBindingHelper.registerKeyBinding(BENCHMARK_REGION_BUILDS);
 
 		Compat.init();
 
@@ -25,6 +25,7 @@ import static grondag.canvas.apiimpl.mesh.MeshEncodingHelper.HEADER_MATERIAL;
 import static grondag.canvas.apiimpl.mesh.MeshEncodingHelper.HEADER_SPRITE;
 import static grondag.canvas.apiimpl.mesh.MeshEncodingHelper.HEADER_STRIDE;
 import static grondag.canvas.apiimpl.mesh.MeshEncodingHelper.HEADER_TAG;
+import static grondag.canvas.apiimpl.mesh.MeshEncodingHelper.MIN_QUAD_STRIDE;
 import static grondag.canvas.apiimpl.mesh.MeshEncodingHelper.UV_PRECISE_UNIT_VALUE;
 import static grondag.canvas.apiimpl.mesh.MeshEncodingHelper.VERTEX_LIGHTMAP;
 import static grondag.canvas.apiimpl.mesh.MeshEncodingHelper.VERTEX_NORMAL;
@@ -192,6 +193,40 @@ public abstract class MutableQuadViewImpl extends QuadViewImpl implements QuadEm
 		return this;
 	}
 
+	/**
+	 * Encodes this quad and derived geometry for {@link VanillaQuadCache}.
+	 * Computes geometry if it isn't already.
+	 */
+	final int[] toPrebaked() {
+		// forces geometry compute
+		final int packedNormal = packedFaceNormal();
+		final int[] result = new int[VanillaQuadCache.STRIDE];
+		System.arraycopy(data, baseIndex, result, 0, MIN_QUAD_STRIDE);
+		result[VanillaQuadCache.NOMINAL_FACE] = nominalFaceId;
+		result[VanillaQuadCache.PACKED_FACE_NORMAL] = packedNormal;
+		result[VanillaQuadCache.FACE_NORMAL_X] = Float.floatToRawIntBits(faceNormal.getX());
+		result[VanillaQuadCache.FACE_NORMAL_Y] = Float.floatToRawIntBits(faceNormal.getY());
+		result[VanillaQuadCache.FACE_NORMAL_Z] = Float.floatToRawIntBits(faceNormal.getZ());
+		result[VanillaQuadCache.TEXTURE] = material().texture.index;
+		return result;
+	}
+
+	/**
+	 * Same result as {@link #fromVanilla(BakedQuad, RenderMaterial, int)} from data
+	 * saved by {@link #toPrebaked()}, but geometry is already computed.
+	 */
+	final MutableQuadViewImpl fromPrebaked(int[] prebaked, RenderMaterial material, int cullFaceId) {
+		System.arraycopy(prebaked, 0, data, baseIndex, MIN_QUAD_STRIDE);
+		material(material);
+		data[baseIndex + HEADER_BITS] = MeshEncodingHelper.cullFace(prebaked[HEADER_BITS], cullFaceId);
+		nominalFaceId = prebaked[VanillaQuadCache.NOMINAL_FACE];
+		faceNormal.set(Float.intBitsToFloat(prebaked[VanillaQuadCache.FACE_NORMAL_X]), Float.intBitsToFloat(prebaked[VanillaQuadCache.FACE_NORMAL_Y]), Float.intBitsToFloat(prebaked[VanillaQuadCache.FACE_NORMAL_Z]));
+		packedFaceNormal = prebaked[VanillaQuadCache.PACKED_FACE_NORMAL];
+		isSpriteInterpolated = false;
+		isGeometryInvalid = false;
+		return this;
+	}
+
 	@Override
 	public MutableQuadViewImpl pos(int vertexIndex, float x, float y, float z) {
 		final int index = baseIndex + vertexIndex * BASE_VERTEX_STRIDE + VERTEX_X;
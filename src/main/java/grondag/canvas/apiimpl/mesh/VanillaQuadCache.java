@@ -0,0 +1,81 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.apiimpl.mesh;
+
+import static grondag.canvas.apiimpl.mesh.MeshEncodingHelper.MIN_QUAD_STRIDE;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.MapMaker;
+
+import net.minecraft.client.render.model.BakedQuad;
+
+import grondag.canvas.material.state.RenderMaterialImpl;
+
+/**
+ * Vanilla baked quads already converted to Canvas encoding, with UV precision converted,
+ * sprites normalized and geometry computed. Lets the fallback consumer load a quad with
+ * a single copy after the first time it is seen.
+ *
+ * <p>Baked quads are immutable and never compared by value, so they are keyed by identity.
+ * Keys are weak so entries for discarded models go away without a reload.
+ *
+ * <p>Thread-safe.
+ */
+public final class VanillaQuadCache {
+	static final int NOMINAL_FACE = MIN_QUAD_STRIDE;
+	static final int PACKED_FACE_NORMAL = NOMINAL_FACE + 1;
+	static final int FACE_NORMAL_X = PACKED_FACE_NORMAL + 1;
+	static final int FACE_NORMAL_Y = FACE_NORMAL_X + 1;
+	static final int FACE_NORMAL_Z = FACE_NORMAL_Y + 1;
+	/** Sprite normalization depends on the material texture. */
+	static final int TEXTURE = FACE_NORMAL_Z + 1;
+	static final int STRIDE = TEXTURE + 1;
+
+	private static final ConcurrentMap<BakedQuad, int[]> MAP = new MapMaker().weakKeys().makeMap();
+
+	private VanillaQuadCache() { }
+
+	/**
+	 * Loads the given quad into target as {@code MutableQuadViewImpl.fromVanilla()}
+	 * would if it was seen before with a material of the same texture, and returns true.
+	 * Otherwise returns false and target is unchanged.
+	 */
+	public static boolean load(BakedQuad quad, MutableQuadViewImpl target, RenderMaterialImpl material, int cullFaceId) {
+		final int[] prebaked = MAP.get(quad);
+
+		if (prebaked == null || prebaked[TEXTURE] != material.texture.index) {
+			return false;
+		}
+
+		target.fromPrebaked(prebaked, material, cullFaceId);
+		return true;
+	}
+
+	/**
+	 * Saves the given quad as converted in source, which must have just been
+	 * loaded with {@code MutableQuadViewImpl.fromVanilla()}.
+	 */
+	public static void save(BakedQuad quad, MutableQuadViewImpl source) {
+		MAP.put(quad, source.toPrebaked());
+	}
+
+	/** Call when models are reloaded. */
+	public static void clear() {
+		MAP.clear();
+	}
+}
@@ -16,6 +16,7 @@
 
 package grondag.canvas.apiimpl.rendercontext;
 
+import java.util.Arrays;
 import java.util.Random;
 import java.util.function.Consumer;
 
@@ -39,6 +40,7 @@ import grondag.canvas.apiimpl.util.ColorHelper;
 import grondag.canvas.buffer.input.VertexCollectorList;
 import grondag.canvas.config.Configurator;
 import grondag.canvas.material.state.MaterialFinderImpl;
+import grondag.canvas.material.state.RenderMaterialImpl;
 import grondag.canvas.mixinterface.Matrix3fExt;
 import grondag.frex.api.material.MaterialFinder;
 import grondag.frex.api.material.MaterialMap;
@@ -47,7 +49,14 @@ import grondag.frex.api.material.MaterialMap;
 public abstract class AbstractRenderContext implements RenderContext {
 	private static final QuadTransform NO_TRANSFORM = (q) -> true;
 	private static final MaterialMap defaultMap = MaterialMap.defaultMaterialMap();
+	/** Upper bound of {@link #materialMode()}, exclusive. */
+	protected static final int MATERIAL_MODE_COUNT = 256;
+	/** Incremented on reload to discard resolved materials in every context. */
+	private static volatile int resolvedMaterialEpoch;
 	final MaterialFinderImpl finder = new MaterialFinderImpl();
+	/** Output of {@link #adjustMaterial()} by material mode and source material index. */
+	private final RenderMaterialImpl[][] resolvedMaterials = new RenderMaterialImpl[MATERIAL_MODE_COUNT][];
+	private int materialEpoch = resolvedMaterialEpoch;
 	public final float[] vecData = new float[3];
 
 	/** Used by some terrain render configs to pass a region ID into vertex encoding. */
@@ -220,15 +229,65 @@ public abstract class AbstractRenderContext implements RenderContext {
 		}
 
 		if (cullTest(quad)) {
-			finder.copyFrom(quad.material());
-			adjustMaterial();
-			quad.material(finder.find());
+			quad.material(resolveMaterial(quad.material()));
 			encodeQuad(quad);
 		}
 	}
 
 	protected abstract void encodeQuad(MutableQuadViewImpl quad);
 
+	/**
+	 * Discards resolved materials in all contexts. Materials themselves survive
+	 * reloads, but contexts and the config they depend on may not.
+	 */
+	public static void invalidateResolvedMaterials() {
+		++resolvedMaterialEpoch;
+	}
+
+	/**
+	 * Identifies all context state read by {@link #adjustMaterial()}. Subclasses that
+	 * read more state must override and fold it into the result. Must be less than
+	 * {@link #MATERIAL_MODE_COUNT}.
+	 */
+	protected int materialMode() {
+		return defaultBlendMode == null ? 0 : defaultBlendMode.ordinal() + 1;
+	}
+
+	/**
+	 * Result of {@link #adjustMaterial()} for the given material in the current context mode.
+	 * Avoids finder lookups, which are synchronized, after the first quad with each
+	 * material and mode. Not thread-safe, same as the context itself.
+	 */
+	final RenderMaterialImpl resolveMaterial(RenderMaterialImpl source) {
+		final RenderMaterialImpl[][] resolvedMaterials = this.resolvedMaterials;
+
+		if (materialEpoch != resolvedMaterialEpoch) {
+			materialEpoch = resolvedMaterialEpoch;
+			Arrays.fill(resolvedMaterials, null);
+		}
+
+		final int mode = materialMode();
+		final int index = source.index;
+		RenderMaterialImpl[] table = resolvedMaterials[mode];
+
+		if (table == null || index >= table.length) {
+			final int newLength = Math.max(64, Integer.highestOneBit(index) << 1);
+			table = table == null ? new RenderMaterialImpl[newLength] : Arrays.copyOf(table, newLength);
+			resolvedMaterials[mode] = table;
+		}
+
+		RenderMaterialImpl result = table[index];
+
+		if (result == null) {
+			finder.copyFrom(source);
+			adjustMaterial();
+			result = finder.find();
+			table[index] = result;
+		}
+
+		return result;
+	}
+
 	protected void adjustMaterial() {
 		final MaterialFinderImpl finder = this.finder;
 
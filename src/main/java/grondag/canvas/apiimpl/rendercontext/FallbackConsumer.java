@@ -30,9 +30,9 @@ import net.fabricmc.fabric.api.renderer.v1.model.ModelHelper;
 import grondag.canvas.apiimpl.Canvas;
 import grondag.canvas.apiimpl.mesh.MeshEncodingHelper;
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
+import grondag.canvas.apiimpl.mesh.VanillaQuadCache;
 import grondag.canvas.apiimpl.util.FaceConstants;
 import grondag.canvas.material.state.RenderMaterialImpl;
-import grondag.frex.api.material.MaterialFinder;
 import grondag.frex.api.mesh.QuadEmitter;
 
 /**
@@ -50,6 +50,9 @@ import grondag.frex.api.mesh.QuadEmitter;
  * as a way to access vertex data without magical numbers. It also allows a consistent interface
  * for downstream tesselation routines.
  *
+ * <p>Converted quads are cached in {@link VanillaQuadCache} so each vanilla quad is only
+ * decoded once between reloads.
+ *
  * <p>Another difference from vanilla render is that all transformation happens before the
  * vertex data is sent to the byte buffer.  Generally POJO array access will be faster than
  * manipulating the data via NIO.
@@ -170,7 +173,12 @@ public class FallbackConsumer implements Consumer<BakedModel> {
 
 	private void renderQuad(BakedQuad quad, int cullFaceId, RenderMaterialImpl mat) {
 		final MutableQuadViewImpl editorQuad = this.editorQuad;
-		editorQuad.fromVanilla(quad, mat, cullFaceId);
+
+		if (!VanillaQuadCache.load(quad, editorQuad, mat, cullFaceId)) {
+			editorQuad.fromVanilla(quad, mat, cullFaceId);
+			VanillaQuadCache.save(quad, editorQuad);
+		}
+
 		context.mapMaterials(editorQuad);
 
 		if (context.hasTransform()) {
@@ -183,10 +191,7 @@ public class FallbackConsumer implements Consumer<BakedModel> {
 			editorQuad.normalizeSpritesIfNeeded();
 		}
 
-		final MaterialFinder finder = context.finder;
-		finder.copyFrom(editorQuad.material());
-		context.adjustMaterial();
-		editorQuad.material(finder.find());
+		editorQuad.material(context.resolveMaterial(editorQuad.material()));
 		context.encodeQuad(editorQuad);
 	}
 }
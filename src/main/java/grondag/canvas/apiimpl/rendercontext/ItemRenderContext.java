@@ -212,6 +212,19 @@ public class ItemRenderContext extends AbstractRenderContext implements RenderCo
 		matrices.pop();
 	}
 
+	@Override
+	protected int materialMode() {
+		int result = super.materialMode();
+
+		if (hasGlint) result |= 8;
+		if (isBlockItem) result |= 16;
+		if (drawTranslucencyDirectToMainTarget) result |= 32;
+		if (isGui) result |= 64;
+		if (isFrontLit) result |= 128;
+
+		return result;
+	}
+
 	@Override
 	protected void adjustMaterial() {
 		final MaterialFinderImpl finder = this.finder;
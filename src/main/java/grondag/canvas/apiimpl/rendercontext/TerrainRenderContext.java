@@ -30,20 +30,26 @@ import net.minecraft.util.crash.CrashReport;
 import net.minecraft.util.crash.CrashReportSection;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
+import net.minecraft.world.World;
 
 import net.fabricmc.fabric.api.renderer.v1.model.FabricBakedModel;
 import net.fabricmc.fabric.api.renderer.v1.model.ModelHelper;
 import net.fabricmc.fabric.api.renderer.v1.render.RenderContext;
 
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
+import grondag.canvas.buffer.input.ArrayVertexCollector;
 import grondag.canvas.buffer.input.VertexCollectorList;
 import grondag.canvas.config.Configurator;
 import grondag.canvas.light.AoCalculator;
+import grondag.canvas.light.LightmapHdRegistry.Refs;
 import grondag.canvas.light.LightSmoother;
 import grondag.canvas.mixinterface.Matrix3fExt;
+import grondag.canvas.perf.ChunkRebuildCounters.Phase;
+import grondag.canvas.perf.ChunkRebuildCounters.Shard;
 import grondag.canvas.render.terrain.TerrainFormat;
 import grondag.canvas.terrain.region.input.InputRegion;
 import grondag.canvas.terrain.region.input.PackedInputRegion;
+import grondag.canvas.terrain.region.input.RegionCapture;
 import grondag.canvas.terrain.util.RenderRegionStateIndexer;
 
 /**
@@ -74,6 +80,12 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<InputRegion
 		}
 	};
 
+	/** Counters of the building thread when rebuild counters are enabled, null otherwise. */
+	public Shard counters;
+
+	/** HD lightmaps used by the region being built when HD lightmaps are enabled, null otherwise. */
+	public Refs lightmapRefs;
+
 	private int cullCompletionFlags;
 	private int cullResultFlags;
 
@@ -83,11 +95,19 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<InputRegion
 		collectors = new VertexCollectorList(true);
 	}
 
+	@Override
+	public void close() {
+		// releases off-heap collector storage, if any
+		collectors.close();
+		super.close();
+	}
+
 	public TerrainRenderContext prepareForRegion(PackedInputRegion protoRegion) {
 		nonCullBlockEntities.clear();
 		addedBlockEntities.clear();
 		removedBlockEntities.clear();
 		region.prepare(protoRegion);
+		RegionCapture.captureIfEnabled(region);
 
 		if (Configurator.lightSmoothing) {
 			//            final long start = counter.startRun();
@@ -97,14 +117,40 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<InputRegion
 		return this;
 	}
 
+	/**
+	 * Prepares to build a captured region. Light smoothing is skipped because it
+	 * samples light outside the captured positions.
+	 */
+	public TerrainRenderContext prepareForCapture(RegionCapture capture, World world) {
+		nonCullBlockEntities.clear();
+		addedBlockEntities.clear();
+		removedBlockEntities.clear();
+		region.prepare(capture, world);
+		return this;
+	}
+
 	public void renderFluid(BlockState blockState, BlockPos blockPos, boolean defaultAo, final FabricBakedModel model, MatrixStack matrixStack) {
 		isFluidModel = true;
-		renderInner(blockState, blockPos, defaultAo, model, matrixStack);
+
+		if (counters == null) {
+			renderInner(blockState, blockPos, defaultAo, model, matrixStack);
+		} else {
+			counters.start(Phase.FLUID);
+			renderInner(blockState, blockPos, defaultAo, model, matrixStack);
+			counters.complete(Phase.FLUID);
+		}
 	}
 
 	public void renderBlock(BlockState blockState, BlockPos blockPos, boolean defaultAo, final FabricBakedModel model, MatrixStack matrixStack) {
 		isFluidModel = false;
-		renderInner(blockState, blockPos, defaultAo, model, matrixStack);
+
+		if (counters == null) {
+			renderInner(blockState, blockPos, defaultAo, model, matrixStack);
+		} else {
+			counters.start(Phase.BLOCK);
+			renderInner(blockState, blockPos, defaultAo, model, matrixStack);
+			counters.complete(Phase.BLOCK);
+		}
 	}
 
 	// PERF: don't pass in matrixStack each time, just change model matrix directly
@@ -135,11 +181,27 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<InputRegion
 
 	@Override
 	public void computeAo(MutableQuadViewImpl quad) {
-		aoCalc.compute(quad);
+		if (counters == null) {
+			aoCalc.compute(quad);
+		} else {
+			counters.start(Phase.LIGHT);
+			aoCalc.compute(quad);
+			counters.complete(Phase.LIGHT, 1, 4);
+		}
 	}
 
 	@Override
 	public void computeFlat(MutableQuadViewImpl quad) {
+		if (counters == null) {
+			computeFlatInner(quad);
+		} else {
+			counters.start(Phase.LIGHT);
+			computeFlatInner(quad);
+			counters.complete(Phase.LIGHT, 1, 4);
+		}
+	}
+
+	private void computeFlatInner(MutableQuadViewImpl quad) {
 		if (Configurator.semiFlatLighting) {
 			aoCalc.computeFlat(quad);
 		} else if (Configurator.hdLightmaps()) {
@@ -181,9 +243,21 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<InputRegion
 
 	@Override
 	protected void encodeQuad(MutableQuadViewImpl quad) {
+		if (counters == null) {
+			encodeQuadInner(quad, collectors.get(quad.material()));
+		} else {
+			counters.start(Phase.TRANSCODE);
+			final ArrayVertexCollector collector = collectors.get(quad.material());
+			final int startSize = collector.integerSize();
+			encodeQuadInner(quad, collector);
+			counters.complete(Phase.TRANSCODE, 1, (collector.integerSize() - startSize) / TerrainFormat.TERRAIN_MATERIAL.vertexStrideInts);
+		}
+	}
+
+	private void encodeQuadInner(MutableQuadViewImpl quad, ArrayVertexCollector collector) {
 		// needs to happen before offsets are applied
 		applyBlockLighting(quad, this);
 		colorizeQuad(quad, this);
-		TerrainFormat.TERRAIN_TRANSCODER.encode(quad, this, collectors.get(quad.material()));
+		TerrainFormat.TERRAIN_TRANSCODER.encode(quad, this, collector);
 	}
 }
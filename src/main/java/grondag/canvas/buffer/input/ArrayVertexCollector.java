@@ -19,8 +19,6 @@ package grondag.canvas.buffer.input;
 import java.nio.IntBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import it.unimi.dsi.fastutil.Swapper;
-import it.unimi.dsi.fastutil.ints.IntComparator;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import net.minecraft.util.math.MathHelper;
@@ -28,7 +26,10 @@ import net.minecraft.util.math.Vec3d;
 
 import grondag.canvas.buffer.format.CanvasVertexFormats;
 import grondag.canvas.buffer.render.TransferBuffer;
+import grondag.canvas.buffer.render.TransferBuffers;
+import grondag.canvas.buffer.render.VertexTransferBuffer;
 import grondag.canvas.buffer.util.DrawableStream;
+import grondag.canvas.config.Configurator;
 import grondag.canvas.material.state.RenderState;
 import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
 import grondag.canvas.render.terrain.TerrainFormat;
@@ -37,10 +38,23 @@ public class ArrayVertexCollector implements VertexCollector {
 	private final int quadStrideInts;
 	public final boolean isTerrain;
 	private int capacity = 1024;
-	private int[] vertexData = new int[capacity];
+	private int[] vertexData;
 	private float[] perQuadDistance = new float[512];
-	private final int[] swapData;
-	private boolean didSwap = false;
+
+	/**
+	 * Non-null if vertex data are kept off-heap. Only used for terrain,
+	 * because terrain output is always handed off for upload.
+	 */
+	private final OffHeapVertexStorage offHeap;
+
+	/** For computing distance of off-heap quads. */
+	private int[] quadData;
+
+	/** Created on first sort. Most collectors are never sorted. */
+	private QuadSorter quadSorter;
+
+	/** Target of sort gather, then swapped with vertex data. Same length as vertex data when non-null. */
+	private int[] sortData;
 
 	/** also the index of the first vertex when used in VertexConsumer mode. */
 	private int integerSize = 0;
@@ -53,9 +67,15 @@ public class ArrayVertexCollector implements VertexCollector {
 		this.isTerrain = isTerrain;
 		bucketSorter = isTerrain && !renderState.sorted ? new VertexBucket.Sorter() : null;
 		quadStrideInts = isTerrain ? TerrainFormat.TERRAIN_MATERIAL.quadStrideInts : CanvasVertexFormats.STANDARD_MATERIAL_FORMAT.quadStrideInts;
-		swapData = new int[quadStrideInts * 2];
 		arrayCount.incrementAndGet();
-		arryBytes.addAndGet(capacity);
+
+		if (isTerrain && Configurator.offHeapTerrainCollectors) {
+			offHeap = new OffHeapVertexStorage();
+		} else {
+			offHeap = null;
+			vertexData = new int[capacity];
+			arryBytes.addAndGet(capacity);
+		}
 	}
 
 	protected void grow(int newSize) {
@@ -96,16 +116,23 @@ public class ArrayVertexCollector implements VertexCollector {
 
 	@Override
 	public int[] data() {
-		return vertexData;
+		return offHeap == null ? vertexData : offHeap.data();
 	}
 
 	@Override
 	public int allocate(int size) {
 		final int result = integerSize;
 		final int newSize = result + size;
-		grow(newSize);
 		integerSize = newSize;
-		return result;
+
+		if (offHeap == null) {
+			grow(newSize);
+			return result;
+		} else {
+			// written to a staging array that always starts at zero
+			offHeap.allocate(result, size);
+			return 0;
+		}
 	}
 
 	@Override
@@ -120,23 +147,74 @@ public class ArrayVertexCollector implements VertexCollector {
 	}
 
 	public void toBuffer(IntBuffer intBuffer, int startingIndex) {
-		intBuffer.put(vertexData, startingIndex, integerSize);
+		if (offHeap == null) {
+			intBuffer.put(vertexData, startingIndex, integerSize);
+		} else {
+			intBuffer.put(offHeap.intBuffer(integerSize).slice(startingIndex, integerSize));
+		}
 	}
 
 	public void toBuffer(int collectorSourceIndex, TransferBuffer targetBuffer, int bufferTargetIndex) {
-		targetBuffer.put(vertexData, collectorSourceIndex, bufferTargetIndex, integerSize);
+		if (offHeap == null) {
+			targetBuffer.put(vertexData, collectorSourceIndex, bufferTargetIndex, integerSize);
+		} else {
+			targetBuffer.byteBuffer().asIntBuffer().put(bufferTargetIndex, offHeap.intBuffer(integerSize), collectorSourceIndex, integerSize);
+		}
+	}
+
+	/**
+	 * Claims a transfer buffer with the content of this collector. Off-heap collectors
+	 * hand off their storage without a copy and are left empty. Caller must release the result.
+	 */
+	public TransferBuffer toTransferBuffer() {
+		assert !isEmpty();
+
+		if (offHeap == null) {
+			final TransferBuffer result = TransferBuffers.claim(byteSize());
+			toBuffer(0, result, 0);
+			return result;
+		} else {
+			final TransferBuffer result = offHeap.handoff(integerSize);
+			clear();
+			return result;
+		}
 	}
 
 	public void clear() {
 		integerSize = 0;
 
+		if (offHeap != null) {
+			offHeap.clear();
+		}
+
 		if (bucketSorter != null) {
 			bucketSorter.clear();
 		}
 	}
 
+	/**
+	 * Releases off-heap storage, if any. Collector remains usable
+	 * and will claim new storage if needed.
+	 */
+	public void close() {
+		clear();
+
+		if (offHeap != null) {
+			offHeap.close();
+		}
+	}
+
 	public VertexBucket[] sortVertexBuckets() {
-		return bucketSorter == null ? null : bucketSorter.sort(vertexData, integerSize);
+		if (bucketSorter == null) {
+			return null;
+		} else if (offHeap == null) {
+			return bucketSorter.sort(vertexData, integerSize);
+		} else {
+			final VertexTransferBuffer target = offHeap.claimSortTarget(integerSize);
+			final VertexBucket[] result = bucketSorter.sort(offHeap.intBuffer(integerSize), target.intBuffer(), integerSize);
+			offHeap.swap(target);
+			return result;
+		}
 	}
 
 	public boolean sortTerrainQuads(Vec3d sortPos, RegionRenderSector sector) {
@@ -149,9 +227,13 @@ public class ArrayVertexCollector implements VertexCollector {
 		);
 	}
 
-	private boolean sortQuads(float x, float y, float z) {
+	/**
+	 * Sorts quads farthest first from the given position, which is relative to
+	 * the sector origin for terrain. Returns false if the order did not change.
+	 */
+	public boolean sortQuads(float x, float y, float z) {
 		final int quadCount = quadCount();
-		final QuadDistanceFunc distanceFunc = isTerrain ? quadDistanceTerrain : quadDistanceStandard;
+		final QuadDistanceFunc distanceFunc = offHeap != null ? quadDistanceOffHeap : isTerrain ? quadDistanceTerrain : quadDistanceStandard;
 
 		if (perQuadDistance.length < quadCount) {
 			perQuadDistance = new float[MathHelper.smallestEncompassingPowerOfTwo(quadCount)];
@@ -161,46 +243,44 @@ public class ArrayVertexCollector implements VertexCollector {
 			perQuadDistance[j] = distanceFunc.compute(x, y, z, j);
 		}
 
-		didSwap = false;
+		QuadSorter quadSorter = this.quadSorter;
+
+		if (quadSorter == null) {
+			quadSorter = new QuadSorter();
+			this.quadSorter = quadSorter;
+		}
+
+		// sort the indexes by distance - farthest first - and then move
+		// vertex data once if the order changed
+		if (!quadSorter.sort(perQuadDistance, quadCount)) {
+			return false;
+		}
+
+		if (offHeap != null) {
+			final VertexTransferBuffer target = offHeap.claimSortTarget(integerSize);
+			quadSorter.gather(offHeap.intBuffer(integerSize), target.intBuffer(), quadStrideInts);
+			offHeap.swap(target);
+			return true;
+		}
+
+		int[] sortData = this.sortData;
+
+		if (sortData == null || sortData.length != capacity) {
+			arryBytes.addAndGet(capacity - (sortData == null ? 0 : sortData.length));
+			sortData = new int[capacity];
+		}
 
-		// sort the indexes by distance - farthest first
-		// mergesort is important here - quicksort causes problems
-		// PERF: consider sorting primitive packed long array with distance in high bits
-		// and then use result to reorder the array. Will need to copy vertex data.
-		it.unimi.dsi.fastutil.Arrays.mergeSort(0, quadCount, comparator, swapper);
+		quadSorter.gather(vertexData, sortData, quadStrideInts);
+		this.sortData = vertexData;
+		vertexData = sortData;
 
-		return didSwap;
+		return true;
 	}
 
 	private interface QuadDistanceFunc {
 		float compute(float x, float y, float z, int quadIndex);
 	}
 
-	private final IntComparator comparator = new IntComparator() {
-		@Override
-		public int compare(int a, int b) {
-			return Float.compare(perQuadDistance[b], perQuadDistance[a]);
-		}
-	};
-
-	private final Swapper swapper = new Swapper() {
-		@Override
-		public void swap(int a, int b) {
-			didSwap = true;
-			final float distSwap = perQuadDistance[a];
-			perQuadDistance[a] = perQuadDistance[b];
-			perQuadDistance[b] = distSwap;
-
-			final int aIndex = a * quadStrideInts;
-			final int bIndex = b * quadStrideInts;
-
-			System.arraycopy(vertexData, aIndex, swapData, 0, quadStrideInts);
-			System.arraycopy(vertexData, bIndex, swapData, quadStrideInts, quadStrideInts);
-			System.arraycopy(swapData, 0, vertexData, bIndex, quadStrideInts);
-			System.arraycopy(swapData, quadStrideInts, vertexData, aIndex, quadStrideInts);
-		}
-	};
-
 	private final QuadDistanceFunc quadDistanceStandard = this::getDistanceSq;
 
 	private float getDistanceSq(float x, float y, float z, int quadIndex) {
@@ -235,14 +315,29 @@ public class ArrayVertexCollector implements VertexCollector {
 		return dx * dx + dy * dy + dz * dz;
 	}
 
-	private final QuadDistanceFunc quadDistanceTerrain = this::getDistanceSqTerrain;
+	private final QuadDistanceFunc quadDistanceTerrain = (x, y, z, quadIndex) -> getDistanceSqTerrain(vertexData, quadIndex * quadStrideInts, x, y, z);
+
+	private final QuadDistanceFunc quadDistanceOffHeap = this::getDistanceSqOffHeap;
+
+	private float getDistanceSqOffHeap(float x, float y, float z, int quadIndex) {
+		int[] quadData = this.quadData;
+
+		if (quadData == null) {
+			quadData = new int[quadStrideInts];
+			this.quadData = quadData;
+		}
+
+		offHeap.intBuffer(integerSize).get(quadIndex * quadStrideInts, quadData, 0, quadStrideInts);
+		return getDistanceSqTerrain(quadData, 0, x, y, z);
+	}
+
 	private static final float POS_CONVERSION = 1f / 0xFFFF;
 
-	private float getDistanceSqTerrain(float x, float y, float z, int quadIndex) {
+	private float getDistanceSqTerrain(int[] vertexData, int quadStartIndex, float x, float y, float z) {
 		final int integerStride = quadStrideInts / 4;
 
 		// unpack vertex coordinates
-		int i = quadIndex * quadStrideInts;
+		int i = quadStartIndex;
 		final int pos0 = vertexData[i + 2];
 		final float x0 = (pos0 & 0xFF) + (vertexData[i] >>> 16) * POS_CONVERSION;
 		final float y0 = ((pos0 >> 8) & 0xFF) + (vertexData[i + 1] & 0xFFFF) * POS_CONVERSION;
@@ -287,8 +382,10 @@ public class ArrayVertexCollector implements VertexCollector {
 			result = new int[integerSize];
 		}
 
-		if (integerSize > 0) {
+		if (offHeap == null) {
 			System.arraycopy(vertexData, 0, result, 0, integerSize);
+		} else {
+			offHeap.intBuffer(integerSize).get(0, result, 0, integerSize);
 		}
 
 		return result;
@@ -299,8 +396,14 @@ public class ArrayVertexCollector implements VertexCollector {
 
 		if (stateData != null) {
 			final int size = stateData.length;
-			allocate(size);
-			System.arraycopy(stateData, 0, vertexData, 0, size);
+
+			if (offHeap == null) {
+				allocate(size);
+				System.arraycopy(stateData, 0, vertexData, 0, size);
+			} else {
+				offHeap.load(stateData, size);
+				integerSize = size;
+			}
 		}
 	}
 
@@ -0,0 +1,157 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.input;
+
+import java.nio.IntBuffer;
+
+import grondag.canvas.buffer.render.TransferBuffers;
+import grondag.canvas.buffer.render.VertexTransferBuffer;
+
+/**
+ * Vertex storage for {@link ArrayVertexCollector} in a pooled off-heap transfer
+ * buffer. The buffer is handed off for upload as-is, which avoids a copy from
+ * heap and the garbage of growing heap arrays.
+ *
+ * <p>Encoders write to the int array given by {@link #data()} so each allocation
+ * is written to a small heap array first and copied to the buffer when the next
+ * allocation happens or content is read. That copy is cache-local and much smaller
+ * than the full-region copy it replaces.
+ *
+ * <p>NOT THREAD SAFE.
+ */
+class OffHeapVertexStorage {
+	private static final int MIN_CAPACITY_BYTES = 0x10000;
+
+	private VertexTransferBuffer buffer;
+	private IntBuffer intBuffer;
+	private int capacityInts;
+
+	private int[] staging = new int[64];
+
+	/** Integer index where staged content will be written, or -1 if nothing is staged. */
+	private int stagedIndex = -1;
+	private int stagedSize;
+
+	/**
+	 * Prepares a region of the given size at the given integer index to be written via
+	 * {@link #data()}, starting at index zero. Commits any prior allocation.
+	 */
+	void allocate(int integerIndex, int size) {
+		commit();
+		ensureCapacity(integerIndex, integerIndex + size);
+
+		if (staging.length < size) {
+			staging = new int[Integer.highestOneBit(size - 1) << 1];
+		}
+
+		stagedIndex = integerIndex;
+		stagedSize = size;
+	}
+
+	int[] data() {
+		return staging;
+	}
+
+	/** Writes staged content, if any. Call before reading or handing off buffer content. */
+	void commit() {
+		if (stagedIndex >= 0) {
+			intBuffer.put(stagedIndex, staging, 0, stagedSize);
+			stagedIndex = -1;
+		}
+	}
+
+	/** Current content, committed. Absolute access only. */
+	IntBuffer intBuffer(int integerSize) {
+		commit();
+		assert integerSize == 0 || intBuffer != null;
+		return intBuffer;
+	}
+
+	private void ensureCapacity(int contentSize, int integerSize) {
+		if (integerSize > capacityInts) {
+			// pooled buffers come in power-of-two bins so growth is geometric
+			final VertexTransferBuffer newBuffer = TransferBuffers.claimVertexBuffer(Math.max(MIN_CAPACITY_BYTES, integerSize * 4));
+			final IntBuffer newIntBuffer = newBuffer.intBuffer();
+
+			if (buffer != null) {
+				if (contentSize > 0) {
+					newIntBuffer.put(0, intBuffer, 0, contentSize);
+				}
+
+				buffer.release();
+			}
+
+			buffer = newBuffer;
+			intBuffer = newIntBuffer;
+			capacityInts = newBuffer.capacityBytes() / 4;
+		}
+	}
+
+	/**
+	 * Second buffer large enough for current content, for reordering.
+	 * Call {@link #swap(VertexTransferBuffer)} with the result after
+	 * content has been written to it.
+	 */
+	VertexTransferBuffer claimSortTarget(int integerSize) {
+		commit();
+		return TransferBuffers.claimVertexBuffer(Math.max(MIN_CAPACITY_BYTES, integerSize * 4));
+	}
+
+	/** Replaces storage with a buffer from {@link #claimSortTarget(int)} and releases the prior buffer. */
+	void swap(VertexTransferBuffer sortTarget) {
+		buffer.release();
+		buffer = sortTarget;
+		intBuffer = sortTarget.intBuffer();
+		capacityInts = sortTarget.capacityBytes() / 4;
+	}
+
+	void load(int[] source, int size) {
+		stagedIndex = -1;
+		ensureCapacity(0, size);
+		intBuffer.put(0, source, 0, size);
+	}
+
+	/**
+	 * Transfers ownership of the buffer with content of the given size.
+	 * Caller becomes responsible for release. New storage is claimed on next allocation.
+	 */
+	VertexTransferBuffer handoff(int integerSize) {
+		assert integerSize > 0;
+		commit();
+		final VertexTransferBuffer result = buffer;
+		result.resize(integerSize * 4);
+		buffer = null;
+		intBuffer = null;
+		capacityInts = 0;
+		return result;
+	}
+
+	void clear() {
+		stagedIndex = -1;
+	}
+
+	void close() {
+		stagedIndex = -1;
+
+		if (buffer != null) {
+			buffer.release();
+			buffer = null;
+			intBuffer = null;
+			capacityInts = 0;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.input;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Orders quads farthest-first for translucency without moving vertex data
+ * during the sort.
+ *
+ * <p>Each quad gets a long key with inverted distance in the high 32 bits and
+ * quad index in the low 32 bits. Keys are put in order with a LSD radix sort on
+ * the distance bits. The sort is stable and input is in index order, so equal
+ * distances keep their prior order, same as the mergesort this replaces.
+ * Vertex data are then moved with a single gather.
+ *
+ * <p>Squared distances are never negative, and the bits of non-negative floats
+ * order the same as the values they represent, so no precision is lost in the key.
+ *
+ * <p>Not thread-safe. Retains scratch arrays between calls to avoid allocation.
+ */
+public class QuadSorter {
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX_SIZE = 1 << RADIX_BITS;
+	private static final int RADIX_MASK = RADIX_SIZE - 1;
+	private static final int PASS_COUNT = 32 / RADIX_BITS;
+
+	private long[] keys = new long[512];
+	private long[] swapKeys = new long[512];
+	private final int[] counts = new int[RADIX_SIZE * PASS_COUNT];
+	private int quadCount;
+
+	/**
+	 * Sorts quad indices by the given distances, farthest first.
+	 * Returns true if the result differs from the current quad order.
+	 * When false, no call to {@link #gather(int[], int[], int)} is needed.
+	 */
+	public boolean sort(float[] perQuadDistance, int quadCount) {
+		this.quadCount = quadCount;
+
+		if (keys.length < quadCount) {
+			final int newLength = Integer.highestOneBit(quadCount - 1) << 1;
+			keys = new long[newLength];
+			swapKeys = new long[newLength];
+		}
+
+		long[] keys = this.keys;
+		long[] swapKeys = this.swapKeys;
+		final int[] counts = this.counts;
+		Arrays.fill(counts, 0);
+
+		for (int i = 0; i < quadCount; ++i) {
+			// invert so that ascending key order is farthest first
+			final int k = Integer.MAX_VALUE - (Float.floatToRawIntBits(perQuadDistance[i]) & Integer.MAX_VALUE);
+			keys[i] = ((long) k << 32) | i;
+
+			++counts[k & RADIX_MASK];
+			++counts[RADIX_SIZE + ((k >>> 8) & RADIX_MASK)];
+			++counts[RADIX_SIZE * 2 + ((k >>> 16) & RADIX_MASK)];
+			++counts[RADIX_SIZE * 3 + (k >>> 24)];
+		}
+
+		for (int pass = 0; pass < PASS_COUNT; ++pass) {
+			final int shift = 32 + pass * RADIX_BITS;
+			final int base = pass * RADIX_SIZE;
+
+			// skip passes where every key has the same digit - common for the high bits
+			if (quadCount == 0 || counts[base + (int) ((keys[0] >>> shift) & RADIX_MASK)] == quadCount) {
+				continue;
+			}
+
+			int offset = 0;
+
+			for (int d = 0; d < RADIX_SIZE; ++d) {
+				final int c = counts[base + d];
+				counts[base + d] = offset;
+				offset += c;
+			}
+
+			for (int i = 0; i < quadCount; ++i) {
+				final long key = keys[i];
+				swapKeys[counts[base + (int) ((key >>> shift) & RADIX_MASK)]++] = key;
+			}
+
+			final long[] swap = keys;
+			keys = swapKeys;
+			swapKeys = swap;
+		}
+
+		this.keys = keys;
+		this.swapKeys = swapKeys;
+
+		for (int i = 0; i < quadCount; ++i) {
+			if ((int) keys[i] != i) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/** Index of the quad that should be at the given position after sorting. */
+	public int sortedQuadIndex(int position) {
+		return (int) keys[position];
+	}
+
+	/**
+	 * Copies quads from source to target in the order found by the
+	 * last call to {@link #sort(float[], int)}. Arrays must be distinct.
+	 */
+	public void gather(int[] source, int[] target, int quadStrideInts) {
+		final long[] keys = this.keys;
+		final int quadCount = this.quadCount;
+
+		for (int i = 0; i < quadCount; ++i) {
+			System.arraycopy(source, (int) keys[i] * quadStrideInts, target, i * quadStrideInts, quadStrideInts);
+		}
+	}
+
+	/** Same as {@link #gather(int[], int[], int)} for buffers. Buffers must be distinct. */
+	public void gather(IntBuffer source, IntBuffer target, int quadStrideInts) {
+		final long[] keys = this.keys;
+		final int quadCount = this.quadCount;
+
+		for (int i = 0; i < quadCount; ++i) {
+			target.put(i * quadStrideInts, source, (int) keys[i] * quadStrideInts, quadStrideInts);
+		}
+	}
+}
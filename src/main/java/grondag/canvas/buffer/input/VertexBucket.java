@@ -16,6 +16,8 @@
 
 package grondag.canvas.buffer.input;
 
+import java.nio.IntBuffer;
+
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import net.minecraft.util.math.MathHelper;
@@ -72,6 +74,30 @@ public record VertexBucket(int firstVertexIndex, int vertexCount) {
 			return result;
 		}
 
+		/** Same as {@link #sort(int[], int)} but gathers from source to a distinct target buffer. */
+		VertexBucket[] sort(IntBuffer source, IntBuffer target, int integerSize) {
+			final VertexBucket[] result = new VertexBucket[7];
+			int baseVertexIndex = 0;
+			int targetIndex = 0;
+
+			for (int i = 0; i < 7; ++i) {
+				final var bucket = buckets[i];
+
+				for (int sourceIndex : bucket) {
+					target.put(targetIndex, source, sourceIndex, TerrainFormat.TERRAIN_MATERIAL.quadStrideInts);
+					targetIndex += TerrainFormat.TERRAIN_MATERIAL.quadStrideInts;
+				}
+
+				final int vertexCount = bucket.size() * 4;
+				result[i] = new VertexBucket(baseVertexIndex, vertexCount);
+				baseVertexIndex += vertexCount;
+			}
+
+			assert targetIndex == integerSize;
+
+			return result;
+		}
+
 		void add(int bucketIndex, int integerIndex) {
 			buckets[bucketIndex].add(integerIndex);
 		}
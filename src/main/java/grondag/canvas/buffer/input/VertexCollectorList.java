@@ -89,6 +89,17 @@ public class VertexCollectorList {
 		}
 	}
 
+	/**
+	 * Clears all storage arrays and releases off-heap storage.
+	 */
+	public void close() {
+		final int limit = active.size();
+
+		for (int i = 0; i < limit; i++) {
+			active.get(i).close();
+		}
+	}
+
 	public final ArrayVertexCollector getIfExists(RenderMaterialImpl materialState) {
 		return materialState == RenderMaterialImpl.MISSING ? null : collectors[materialState.collectorIndex];
 	}
@@ -35,13 +35,23 @@ import grondag.canvas.buffer.util.BinIndex;
 public class BufferAllocator<T extends AllocatableBuffer> {
 	private final Function<BinIndex, T> allocator;
 	private final String traceName;
+	private final boolean allowOffThreadRelease;
 
 	@SuppressWarnings("unchecked")
 	protected final Queue<T>[] BINS = new Queue[BIN_COUNT];
 
 	BufferAllocator(String traceName, Function<BinIndex, T> allocator, Supplier<Queue<T>> queueFactory) {
+		this(traceName, allocator, queueFactory, false);
+	}
+
+	/**
+	 * Set allowOffThreadRelease true only if queueFactory gives thread-safe
+	 * queues and buffers need no render thread cleanup on release.
+	 */
+	BufferAllocator(String traceName, Function<BinIndex, T> allocator, Supplier<Queue<T>> queueFactory, boolean allowOffThreadRelease) {
 		this.allocator = allocator;
 		this.traceName = traceName;
+		this.allowOffThreadRelease = allowOffThreadRelease;
 
 		for (int i = 0; i < BIN_COUNT; ++i) {
 			BINS[i] = queueFactory.get();
@@ -106,7 +116,7 @@ public class BufferAllocator<T extends AllocatableBuffer> {
 	}
 
 	public void release (T buffer) {
-		assert RenderSystem.isOnRenderThread();
+		assert allowOffThreadRelease || RenderSystem.isOnRenderThread();
 		buffer.trace().trace(traceName + " RELEASE");
 		BINS[buffer.binIndex().binIndex()].offer(buffer);
 	}
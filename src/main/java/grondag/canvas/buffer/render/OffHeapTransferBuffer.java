@@ -17,6 +17,7 @@
 package grondag.canvas.buffer.render;
 
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -28,10 +29,11 @@ import grondag.canvas.buffer.util.DirectBufferAllocator;
 import grondag.canvas.buffer.util.DirectBufferAllocator.DirectBufferReference;
 import grondag.canvas.varia.GFX;
 
-class OffHeapTransferBuffer implements TransferBuffer, AllocatableBuffer {
+class OffHeapTransferBuffer implements VertexTransferBuffer, AllocatableBuffer {
 	final BinIndex bin;
 	final int capacityBytes;
 	DirectBufferReference data;
+	private IntBuffer intBuffer;
 	volatile int claimedBytes;
 	private final BufferTrace trace = BufferTrace.create();
 
@@ -39,6 +41,7 @@ class OffHeapTransferBuffer implements TransferBuffer, AllocatableBuffer {
 		this.bin = bin;
 		capacityBytes = bin.capacityBytes();
 		data = DirectBufferAllocator.claim(capacityBytes);
+		intBuffer = data.buffer().asIntBuffer();
 	}
 
 	@Override
@@ -51,11 +54,29 @@ class OffHeapTransferBuffer implements TransferBuffer, AllocatableBuffer {
 		return data.buffer();
 	}
 
+	@Override
+	public IntBuffer intBuffer() {
+		assert claimedBytes > 0 : "Buffer accessed while unclaimed";
+		return intBuffer;
+	}
+
 	@Override
 	public void put(int[] source, int sourceStartInts, int targetStartInts, int lengthInts) {
 		assert claimedBytes > 0 : "Buffer accessed while unclaimed";
 		assert sourceStartInts + lengthInts <= claimedBytes * 4;
-		data.buffer().asIntBuffer().put(targetStartInts, source, sourceStartInts, lengthInts);
+		intBuffer.put(targetStartInts, source, sourceStartInts, lengthInts);
+	}
+
+	@Override
+	public int capacityBytes() {
+		return capacityBytes;
+	}
+
+	@Override
+	public void resize(int sizeBytes) {
+		assert claimedBytes > 0 : "Buffer accessed while unclaimed";
+		assert sizeBytes > 0 && sizeBytes <= capacityBytes;
+		claimedBytes = sizeBytes;
 	}
 
 	@Override
@@ -91,6 +112,7 @@ class OffHeapTransferBuffer implements TransferBuffer, AllocatableBuffer {
 	public void shutdown() {
 		data.release();
 		data = null;
+		intBuffer = null;
 	}
 
 	@Override
@@ -106,5 +128,5 @@ class OffHeapTransferBuffer implements TransferBuffer, AllocatableBuffer {
 		return trace;
 	}
 
-	static final BufferAllocator<OffHeapTransferBuffer> THREAD_SAFE_ALLOCATOR = new BufferAllocator<>("OFF HEAP", OffHeapTransferBuffer::new, ConcurrentLinkedQueue::new);
+	static final BufferAllocator<OffHeapTransferBuffer> THREAD_SAFE_ALLOCATOR = new BufferAllocator<>("OFF HEAP", OffHeapTransferBuffer::new, ConcurrentLinkedQueue::new, true);
 }
@@ -89,6 +89,14 @@ public class TransferBuffers {
 		return effectiveConfig.claim(byteSize);
 	}
 
+	/**
+	 * Off-heap buffer that any thread can write, resize and release, regardless of
+	 * configuration. For vertex collectors that hand off their storage for upload.
+	 */
+	public static VertexTransferBuffer claimVertexBuffer(int byteSize) {
+		return OffHeapTransferBuffer.THREAD_SAFE_ALLOCATOR.claim(byteSize);
+	}
+
 	public static void update() {
 		effectiveConfig.update();
 	}
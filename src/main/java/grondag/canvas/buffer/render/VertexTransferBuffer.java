@@ -0,0 +1,33 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.render;
+
+import java.nio.IntBuffer;
+
+/**
+ * Transfer buffer that can be filled incrementally and sized to its content
+ * after the fact. Can be written, resized and released from any thread.
+ */
+public interface VertexTransferBuffer extends TransferBuffer {
+	/** View of the full capacity. Absolute access only - position and limit are not maintained. */
+	IntBuffer intBuffer();
+
+	int capacityBytes();
+
+	/** Changes the size reported by {@link #sizeBytes()}. Must be positive and no more than capacity. */
+	void resize(int sizeBytes);
+}
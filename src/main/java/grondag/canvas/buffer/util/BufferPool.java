@@ -0,0 +1,41 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.util;
+
+/**
+ * Pooling policy for buffers that are expensive to create and destroy.
+ * Buffers are created and destroyed through a {@link PooledBufferBackend}
+ * so that policies can be tested without a GL context.
+ */
+public interface BufferPool<T> {
+	/** Returns a pooled buffer with at least the given capacity, or a new buffer if none is pooled. */
+	T claim(int minCapacityBytes);
+
+	/**
+	 * Accepts a buffer that is no longer in use, including by the GPU.
+	 * The buffer is pooled for reuse or destroyed.
+	 */
+	void recycle(T buffer);
+
+	/** Destroys pooled buffers per policy. Call once per frame. */
+	void trim();
+
+	/** Destroys all pooled buffers. */
+	void clear();
+
+	String debugSummary();
+}
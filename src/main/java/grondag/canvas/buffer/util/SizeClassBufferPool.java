@@ -0,0 +1,208 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.util;
+
+import java.util.ArrayDeque;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * Pools buffers by size class. Capacities are whole multiples of a unit size, rounded up
+ * to at most three significant bits, so buffers of similar size are interchangeable at
+ * the cost of no more than 25% unused capacity.
+ *
+ * <p>Pooled bytes are limited to a high-water mark, beyond which the least recently used
+ * buffers are destroyed. Buffers that stay pooled longer than an idle limit are also destroyed,
+ * so memory is returned after churn settles down. Within a size class the most recently
+ * recycled buffer is reused first.
+ *
+ * <p>Not thread-safe.
+ */
+public class SizeClassBufferPool<T> implements BufferPool<T> {
+	private final PooledBufferBackend<T> backend;
+	private final int unitBytes;
+	private final long maxPooledBytes;
+	private final int maxIdleFrames;
+	private final Int2ObjectOpenHashMap<ArrayDeque<Entry<T>>> classes = new Int2ObjectOpenHashMap<>();
+
+	private int frame = 0;
+	private int pooledCount = 0;
+	private long pooledBytes = 0;
+	private long claimCount = 0;
+	private long hitCount = 0;
+	private long destroyCount = 0;
+
+	/**
+	 * @param unitBytes Capacity granularity. Claimed capacities are multiples of this.
+	 * @param maxPooledBytes High-water mark for bytes held in the pool.
+	 * @param maxIdleFrames Pooled buffers not reused within this many calls to {@link #trim()} are destroyed.
+	 */
+	public SizeClassBufferPool(PooledBufferBackend<T> backend, int unitBytes, long maxPooledBytes, int maxIdleFrames) {
+		this.backend = backend;
+		this.unitBytes = unitBytes;
+		this.maxPooledBytes = maxPooledBytes;
+		this.maxIdleFrames = maxIdleFrames;
+	}
+
+	/** Rounds up to a count of units with at most three significant bits. */
+	static int classUnits(int units) {
+		if (units <= 8) {
+			return units;
+		}
+
+		final int shift = 29 - Integer.numberOfLeadingZeros(units);
+		final int mask = (1 << shift) - 1;
+		return ((units + mask) >> shift) << shift;
+	}
+
+	/** Capacity of buffers claimed for the given minimum capacity. */
+	public int classCapacityBytes(int minCapacityBytes) {
+		final int units = Math.max(1, (minCapacityBytes + unitBytes - 1) / unitBytes);
+		return classUnits(units) * unitBytes;
+	}
+
+	@Override
+	public T claim(int minCapacityBytes) {
+		final int capacityBytes = classCapacityBytes(minCapacityBytes);
+		final ArrayDeque<Entry<T>> deque = classes.get(capacityBytes / unitBytes);
+		++claimCount;
+
+		if (deque == null || deque.isEmpty()) {
+			return backend.create(capacityBytes);
+		}
+
+		++hitCount;
+		--pooledCount;
+		pooledBytes -= capacityBytes;
+		return deque.pollLast().buffer;
+	}
+
+	@Override
+	public void recycle(T buffer) {
+		final int capacityBytes = backend.capacityBytes(buffer);
+		final int units = capacityBytes / unitBytes;
+
+		if (capacityBytes > maxPooledBytes || units * unitBytes != capacityBytes || classUnits(units) != units) {
+			// can't be reused
+			destroy(buffer);
+			return;
+		}
+
+		while (pooledBytes + capacityBytes > maxPooledBytes) {
+			destroyLeastRecentlyUsed();
+		}
+
+		classes.computeIfAbsent(units, u -> new ArrayDeque<>()).addLast(new Entry<>(buffer, frame));
+		++pooledCount;
+		pooledBytes += capacityBytes;
+	}
+
+	@Override
+	public void trim() {
+		final int oldestFrame = ++frame - maxIdleFrames;
+
+		for (final var entry : classes.int2ObjectEntrySet()) {
+			final ArrayDeque<Entry<T>> deque = entry.getValue();
+			final int capacityBytes = entry.getIntKey() * unitBytes;
+
+			// oldest are first
+			while (!deque.isEmpty() && deque.peekFirst().frame < oldestFrame) {
+				destroyPooled(deque.pollFirst(), capacityBytes);
+			}
+		}
+	}
+
+	private void destroyLeastRecentlyUsed() {
+		ArrayDeque<Entry<T>> oldestDeque = null;
+		int oldestUnits = 0;
+		int oldestFrame = Integer.MAX_VALUE;
+
+		for (final var entry : classes.int2ObjectEntrySet()) {
+			final Entry<T> head = entry.getValue().peekFirst();
+
+			if (head != null && head.frame < oldestFrame) {
+				oldestFrame = head.frame;
+				oldestDeque = entry.getValue();
+				oldestUnits = entry.getIntKey();
+			}
+		}
+
+		assert oldestDeque != null : "Pooled bytes exceed limit with nothing pooled";
+		destroyPooled(oldestDeque.pollFirst(), oldestUnits * unitBytes);
+	}
+
+	private void destroyPooled(Entry<T> entry, int capacityBytes) {
+		--pooledCount;
+		pooledBytes -= capacityBytes;
+		destroy(entry.buffer);
+	}
+
+	private void destroy(T buffer) {
+		++destroyCount;
+		backend.destroy(buffer);
+	}
+
+	@Override
+	public void clear() {
+		for (final var entry : classes.int2ObjectEntrySet()) {
+			final int capacityBytes = entry.getIntKey() * unitBytes;
+			final ArrayDeque<Entry<T>> deque = entry.getValue();
+
+			while (!deque.isEmpty()) {
+				destroyPooled(deque.pollFirst(), capacityBytes);
+			}
+		}
+
+		classes.clear();
+	}
+
+	public int pooledCount() {
+		return pooledCount;
+	}
+
+	public long pooledBytes() {
+		return pooledBytes;
+	}
+
+	public long hitCount() {
+		return hitCount;
+	}
+
+	public long destroyCount() {
+		return destroyCount;
+	}
+
+	@Override
+	public String debugSummary() {
+		return String.format("pool:%d %dMb hit:%d%% del:%d",
+				pooledCount,
+				pooledBytes / 0x100000L,
+				claimCount > 0 ? hitCount * 100L / claimCount : 0,
+				destroyCount);
+	}
+
+	private static class Entry<T> {
+		private final T buffer;
+		/** Frame when recycled. */
+		private final int frame;
+
+		private Entry(T buffer, int frame) {
+			this.buffer = buffer;
+			this.frame = frame;
+		}
+	}
+}
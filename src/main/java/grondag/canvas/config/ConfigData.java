@@ -38,6 +38,8 @@ class ConfigData {
 	//boolean lightmapNoise = false;
 	@Comment("Makes light sources less cross-shaped. Chunk loading a little slower. Overall light levels remain similar.")
 	boolean lightSmoothing = false;
+	@Comment("Light samples for smoothing are shared between neighboring regions. Makes light smoothing much less expensive when many regions load at once. Uses about 8MB of memory.")
+	boolean sharedLightSamples = false;
 	//@Comment("Setting > 0 may give slightly better FPS at cost of potential flickering when lighting changes.")
 	//int maxLightmapDelayFrames = 0;
 	//@Comment("Extra lightmap capacity. Ensure enabled if you are getting `unable to create HD lightmap(s) - out of space' messages.")
@@ -54,6 +56,16 @@ class ConfigData {
 	boolean fixLuminousBlockShading = true;
 	@Comment("Terrain setup done off the main render thread. Increases FPS when moving. May see occasional flashes of blank chunks")
 	boolean terrainSetupOffThread = true;
+	@Comment("Shadow visibility is computed on a second thread at the same time as camera visibility. Reduces visibility latency with shadow-enabled pipelines. Shadows of newly visible terrain may lag by a frame.")
+	boolean concurrentShadowIteration = false;
+	@Comment("When a region's occlusion data changes, only regions at or beyond its distance are re-tested and the occlusion raster is redrawn from nearer results. Reduces stutter from block edits.")
+	boolean incrementalOcclusion = false;
+	@Comment("Block states for off-thread region rebuilds are captured by the worker thread instead of the main thread. Reduces main thread time when many regions load at once.")
+	boolean offThreadWorldCapture = false;
+	@Comment("Off-thread rebuilds of regions in the same chunk column run as one task with one upload. Improves rebuild throughput when many regions load at once, such as after teleport.")
+	boolean batchRegionRebuilds = false;
+	@Comment("Region occlusion is saved to disk and reused when the same content is seen again, so regions seen before can occlude right after login. Uses up to 16MB of disk per world and dimension. Files unused for 30 days are deleted.")
+	boolean persistentOcclusionCache = false;
 	@Comment("Use more efficient entity culling. Improves framerate in most scenes.")
 	boolean cullEntityRender = true;
 	@Comment("When true, render thread does not yield to other threads every frame. Vanilla behavior is false (yields).")
@@ -70,6 +82,8 @@ class ConfigData {
 	boolean cullParticles = true;
 	@Comment("Use Canvas thread pool for rendering and local server tasks. May reduce lag spikes caused by thread contention.")
 	boolean useCombinedThreadPool = false;
+	@Comment("Terrain workers keep separate task queues and steal work from each other. May improve chunk loading on CPUs with many cores. Requires restart.")
+	boolean useWorkStealingExecutor = false;
 	@Comment("When enabled, F3 debug screen output is refreshed 20X per second instead of every frame. Improves accuracy and reduces variability of FPS measurement.")
 	boolean steadyDebugScreen = true;
 
@@ -90,6 +104,10 @@ class ConfigData {
 	boolean safeNativeMemoryAllocation = false;
 	@Comment("Output performance trace data to log. Will have significant performance impact. Requires restart.")
 	boolean enablePerformanceTrace = false;
+	@Comment("Collects frame step, region rebuild and queue depth histograms that can be exported with the export metrics key. Some performance impact. Requires restart.")
+	boolean enableMetrics = false;
+	@Comment("Saves input of the first region rebuilds to canvas_cache/captures for the Benchmark Region Builds key. Will have performance impact.")
+	boolean captureRegionsForBenchmark = false;
 	@Comment("Output periodic snapshots of terrain occlusion raster. Will have performance impact.")
 	boolean debugOcclusionRaster = false;
 	@Comment("Render active occlusion boxes of targeted render region. Will have performance impact and looks strange.")
@@ -116,4 +134,6 @@ class ConfigData {
 	boolean enableNearOccluders = false;
 	@Comment("Method used to transfer data to GPU. AUTO is recommended but performance can be specific to your system. Other options are DIRECT, HYBRID, and MAPPED")
 	public TransferBuffers.Config transferBufferMode = TransferBuffers.Config.AUTO;
+	@Comment("Terrain vertex data is collected in off-heap buffers that are uploaded as-is instead of being copied from a heap array for each region. Quads are still staged in a small heap array while encoded. Reduces garbage collection during heavy chunk loading.")
+	boolean offHeapTerrainCollectors = false;
 }
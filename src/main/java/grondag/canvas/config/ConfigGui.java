@@ -18,9 +18,11 @@ package grondag.canvas.config;
 
 import static grondag.canvas.config.ConfigManager.DEFAULTS;
 import static grondag.canvas.config.ConfigManager.parse;
+import static grondag.canvas.config.Configurator.batchRegionRebuilds;
 import static grondag.canvas.config.Configurator.blendFluidColors;
 import static grondag.canvas.config.Configurator.clampExteriorVertices;
 import static grondag.canvas.config.Configurator.conciseErrors;
+import static grondag.canvas.config.Configurator.concurrentShadowIteration;
 import static grondag.canvas.config.Configurator.cullEntityRender;
 import static grondag.canvas.config.Configurator.cullParticles;
 import static grondag.canvas.config.Configurator.debugNativeMemoryAllocation;
@@ -34,12 +36,16 @@ import static grondag.canvas.config.Configurator.enableNearOccluders;
 import static grondag.canvas.config.Configurator.fixLuminousBlockShading;
 import static grondag.canvas.config.Configurator.forceJmxModelLoading;
 import static grondag.canvas.config.Configurator.greedyRenderThread;
+import static grondag.canvas.config.Configurator.incrementalOcclusion;
 import static grondag.canvas.config.Configurator.lightSmoothing;
 import static grondag.canvas.config.Configurator.logGlStateChanges;
 import static grondag.canvas.config.Configurator.logMachineInfo;
 import static grondag.canvas.config.Configurator.logMaterials;
 import static grondag.canvas.config.Configurator.logMissingUniforms;
 import static grondag.canvas.config.Configurator.logRenderLagSpikes;
+import static grondag.canvas.config.Configurator.offHeapTerrainCollectors;
+import static grondag.canvas.config.Configurator.offThreadWorldCapture;
+import static grondag.canvas.config.Configurator.persistentOcclusionCache;
 import static grondag.canvas.config.Configurator.pipelineId;
 import static grondag.canvas.config.Configurator.preventDepthFighting;
 import static grondag.canvas.config.Configurator.profilerDetailLevel;
@@ -51,12 +57,14 @@ import static grondag.canvas.config.Configurator.renderWhiteGlassAsOccluder;
 import static grondag.canvas.config.Configurator.safeNativeMemoryAllocation;
 import static grondag.canvas.config.Configurator.semiFlatLighting;
 import static grondag.canvas.config.Configurator.shaderDebug;
+import static grondag.canvas.config.Configurator.sharedLightSamples;
 import static grondag.canvas.config.Configurator.staticFrustumPadding;
 import static grondag.canvas.config.Configurator.steadyDebugScreen;
 import static grondag.canvas.config.Configurator.terrainSetupOffThread;
 import static grondag.canvas.config.Configurator.traceOcclusionEdgeCases;
 import static grondag.canvas.config.Configurator.transferBufferMode;
 import static grondag.canvas.config.Configurator.useCombinedThreadPool;
+import static grondag.canvas.config.Configurator.useWorkStealingExecutor;
 import static grondag.canvas.config.Configurator.wavyGrass;
 
 import java.lang.ref.WeakReference;
@@ -164,6 +172,15 @@ public class ConfigGui {
 				})
 				.build());
 
+		lighting.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.shared_light_samples"), sharedLightSamples)
+				.setDefaultValue(DEFAULTS.sharedLightSamples)
+				.setTooltip(parse("config.canvas.help.shared_light_samples"))
+				.setSaveConsumer(b -> {
+					sharedLightSamples = b;
+				})
+				.build());
+
 		//		lighting.addEntry(ENTRY_BUILDER
 		//				.startBooleanToggle(new TranslatableText("config.canvas.value.hd_lightmaps"), hdLightmaps)
 		//				.setDefaultValue(DEFAULTS.hdLightmaps)
@@ -255,6 +272,52 @@ public class ConfigGui {
 				})
 				.build());
 
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.concurrent_shadow_iteration"), concurrentShadowIteration)
+				.setDefaultValue(DEFAULTS.concurrentShadowIteration)
+				.setTooltip(parse("config.canvas.help.concurrent_shadow_iteration"))
+				.setSaveConsumer(b -> {
+					reload |= concurrentShadowIteration != b;
+					concurrentShadowIteration = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.incremental_occlusion"), incrementalOcclusion)
+				.setDefaultValue(DEFAULTS.incrementalOcclusion)
+				.setTooltip(parse("config.canvas.help.incremental_occlusion"))
+				.setSaveConsumer(b -> {
+					incrementalOcclusion = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.off_thread_world_capture"), offThreadWorldCapture)
+				.setDefaultValue(DEFAULTS.offThreadWorldCapture)
+				.setTooltip(parse("config.canvas.help.off_thread_world_capture"))
+				.setSaveConsumer(b -> {
+					offThreadWorldCapture = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.batch_region_rebuilds"), batchRegionRebuilds)
+				.setDefaultValue(DEFAULTS.batchRegionRebuilds)
+				.setTooltip(parse("config.canvas.help.batch_region_rebuilds"))
+				.setSaveConsumer(b -> {
+					batchRegionRebuilds = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.persistent_occlusion_cache"), persistentOcclusionCache)
+				.setDefaultValue(DEFAULTS.persistentOcclusionCache)
+				.setTooltip(parse("config.canvas.help.persistent_occlusion_cache"))
+				.setSaveConsumer(b -> {
+					persistentOcclusionCache = b;
+				})
+				.build());
+
 		tweaks.addEntry(ENTRY_BUILDER
 				.startBooleanToggle(new TranslatableText("config.canvas.value.safe_native_allocation"), safeNativeMemoryAllocation)
 				.setDefaultValue(DEFAULTS.safeNativeMemoryAllocation)
@@ -344,6 +407,16 @@ public class ConfigGui {
 				})
 				.build());
 
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.use_work_stealing_executor"), useWorkStealingExecutor)
+				.setDefaultValue(DEFAULTS.useWorkStealingExecutor)
+				.setTooltip(parse("config.canvas.help.use_work_stealing_executor"))
+				.requireRestart()
+				.setSaveConsumer(b -> {
+					useWorkStealingExecutor = b;
+				})
+				.build());
+
 		tweaks.addEntry(ENTRY_BUILDER.startEnumSelector(new TranslatableText("config.canvas.value.transfer_buffer_mode"),
 				TransferBuffers.Config.class,
 				transferBufferMode)
@@ -356,6 +429,16 @@ public class ConfigGui {
 				.setTooltip(parse("config.canvas.help.transfer_buffer_mode"))
 				.build());
 
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.off_heap_terrain_collectors"), offHeapTerrainCollectors)
+				.setDefaultValue(DEFAULTS.offHeapTerrainCollectors)
+				.setTooltip(parse("config.canvas.help.off_heap_terrain_collectors"))
+				.requireRestart()
+				.setSaveConsumer(b -> {
+					offHeapTerrainCollectors = b;
+				})
+				.build());
+
 		tweaks.addEntry(ENTRY_BUILDER
 				.startBooleanToggle(new TranslatableText("config.canvas.value.steady_debug_screen"), steadyDebugScreen)
 				.setDefaultValue(DEFAULTS.steadyDebugScreen)
@@ -33,6 +33,7 @@ public class Configurator {
 	public static boolean wavyGrass = DEFAULTS.wavyGrass;
 	// public static boolean lightmapNoise = DEFAULTS.lightmapNoise;
 	public static boolean lightSmoothing = DEFAULTS.lightSmoothing;
+	public static boolean sharedLightSamples = DEFAULTS.sharedLightSamples;
 	//public static boolean moreLightmap = DEFAULTS.moreLightmap;
 	//public static int maxLightmapDelayFrames = DEFAULTS.maxLightmapDelayFrames;
 	public static boolean semiFlatLighting = DEFAULTS.semiFlatLighting;
@@ -40,6 +41,11 @@ public class Configurator {
 	public static boolean clampExteriorVertices = DEFAULTS.clampExteriorVertices;
 	public static boolean fixLuminousBlockShading = DEFAULTS.fixLuminousBlockShading;
 	public static boolean terrainSetupOffThread = DEFAULTS.terrainSetupOffThread;
+	public static boolean concurrentShadowIteration = DEFAULTS.concurrentShadowIteration;
+	public static boolean incrementalOcclusion = DEFAULTS.incrementalOcclusion;
+	public static boolean offThreadWorldCapture = DEFAULTS.offThreadWorldCapture;
+	public static boolean batchRegionRebuilds = DEFAULTS.batchRegionRebuilds;
+	public static boolean persistentOcclusionCache = DEFAULTS.persistentOcclusionCache;
 	public static boolean cullEntityRender = DEFAULTS.cullEntityRender;
 	public static boolean greedyRenderThread = DEFAULTS.greedyRenderThread;
 	public static boolean forceJmxModelLoading = DEFAULTS.forceJmxModelLoading;
@@ -48,6 +54,7 @@ public class Configurator {
 	public static int dynamicFrustumPadding = DEFAULTS.dynamicFrustumPadding;
 	public static boolean cullParticles = DEFAULTS.cullParticles;
 	public static boolean useCombinedThreadPool = DEFAULTS.useCombinedThreadPool;
+	public static boolean useWorkStealingExecutor = DEFAULTS.useWorkStealingExecutor;
 	public static boolean shaderDebug = DEFAULTS.shaderDebug;
 	// public static boolean lightmapDebug = DEFAULTS.lightmapDebug;
 	public static boolean conciseErrors = DEFAULTS.conciseErrors;
@@ -56,6 +63,8 @@ public class Configurator {
 	public static boolean debugNativeMemoryAllocation = DEFAULTS.debugNativeMemoryAllocation;
 	public static boolean safeNativeMemoryAllocation = DEFAULTS.safeNativeMemoryAllocation;
 	public static boolean enablePerformanceTrace = DEFAULTS.enablePerformanceTrace;
+	public static boolean enableMetrics = DEFAULTS.enableMetrics;
+	public static boolean captureRegionsForBenchmark = DEFAULTS.captureRegionsForBenchmark;
 	public static boolean debugOcclusionRaster = DEFAULTS.debugOcclusionRaster;
 	public static boolean debugOcclusionBoxes = DEFAULTS.debugOcclusionBoxes;
 	public static boolean renderWhiteGlassAsOccluder = DEFAULTS.renderWhiteGlassAsOccluder;
@@ -71,6 +80,7 @@ public class Configurator {
 	public static float profilerOverlayScale = DEFAULTS.profilerOverlayScale;
 	public static boolean enableNearOccluders = DEFAULTS.enableNearOccluders;
 	public static TransferBuffers.Config transferBufferMode = DEFAULTS.transferBufferMode;
+	public static boolean offHeapTerrainCollectors = DEFAULTS.offHeapTerrainCollectors;
 	public static boolean steadyDebugScreen = DEFAULTS.steadyDebugScreen;
 
 	//    @LangKey("config.acuity_fancy_fluids")
@@ -105,6 +115,7 @@ public class Configurator {
 		// hdLightmaps = config.hdLightmaps;
 		// lightmapNoise = config.lightmapNoise;
 		lightSmoothing = config.lightSmoothing;
+		sharedLightSamples = config.sharedLightSamples;
 		semiFlatLighting = config.semiFlatLighting;
 
 		//        disableVanillaChunkMatrix = config.disableVanillaChunkMatrix;
@@ -112,6 +123,11 @@ public class Configurator {
 		clampExteriorVertices = config.clampExteriorVertices;
 		fixLuminousBlockShading = config.fixLuminousBlockShading;
 		terrainSetupOffThread = config.terrainSetupOffThread;
+		concurrentShadowIteration = config.concurrentShadowIteration;
+		incrementalOcclusion = config.incrementalOcclusion;
+		offThreadWorldCapture = config.offThreadWorldCapture;
+		batchRegionRebuilds = config.batchRegionRebuilds;
+		persistentOcclusionCache = config.persistentOcclusionCache;
 		safeNativeMemoryAllocation = config.safeNativeMemoryAllocation;
 		cullEntityRender = config.cullEntityRender;
 		greedyRenderThread = config.greedyRenderThread;
@@ -121,7 +137,9 @@ public class Configurator {
 		staticFrustumPadding = MathHelper.clamp(config.staticFrustumPadding, 0, 30);
 		cullParticles = config.cullParticles;
 		useCombinedThreadPool = config.useCombinedThreadPool;
+		useWorkStealingExecutor = config.useWorkStealingExecutor;
 		transferBufferMode = config.transferBufferMode;
+		offHeapTerrainCollectors = config.offHeapTerrainCollectors;
 		steadyDebugScreen = config.steadyDebugScreen;
 
 		// lightmapDebug = config.lightmapDebug;
@@ -130,6 +148,8 @@ public class Configurator {
 		logGlStateChanges = config.logGlStateChanges;
 		debugNativeMemoryAllocation = config.debugNativeMemoryAllocation;
 		enablePerformanceTrace = config.enablePerformanceTrace;
+		enableMetrics = config.enableMetrics;
+		captureRegionsForBenchmark = config.captureRegionsForBenchmark;
 		debugOcclusionBoxes = config.debugOcclusionBoxes;
 		debugOcclusionRaster = config.debugOcclusionRaster;
 		renderWhiteGlassAsOccluder = config.renderWhiteGlassAsOccluder;
@@ -157,6 +177,7 @@ public class Configurator {
 		// config.hdLightmaps = hdLightmaps;
 		// config.lightmapNoise = lightmapNoise;
 		config.lightSmoothing = lightSmoothing;
+		config.sharedLightSamples = sharedLightSamples;
 		//config.moreLightmap = moreLightmap;
 		config.semiFlatLighting = semiFlatLighting;
 
@@ -164,6 +185,11 @@ public class Configurator {
 		config.clampExteriorVertices = clampExteriorVertices;
 		config.fixLuminousBlockShading = fixLuminousBlockShading;
 		config.terrainSetupOffThread = terrainSetupOffThread;
+		config.concurrentShadowIteration = concurrentShadowIteration;
+		config.incrementalOcclusion = incrementalOcclusion;
+		config.offThreadWorldCapture = offThreadWorldCapture;
+		config.batchRegionRebuilds = batchRegionRebuilds;
+		config.persistentOcclusionCache = persistentOcclusionCache;
 		config.safeNativeMemoryAllocation = safeNativeMemoryAllocation;
 		config.cullEntityRender = cullEntityRender;
 		config.greedyRenderThread = greedyRenderThread;
@@ -173,7 +199,9 @@ public class Configurator {
 		config.dynamicFrustumPadding = dynamicFrustumPadding;
 		config.cullParticles = cullParticles;
 		config.useCombinedThreadPool = useCombinedThreadPool;
+		config.useWorkStealingExecutor = useWorkStealingExecutor;
 		config.transferBufferMode = transferBufferMode;
+		config.offHeapTerrainCollectors = offHeapTerrainCollectors;
 		config.steadyDebugScreen = steadyDebugScreen;
 
 		// config.lightmapDebug = lightmapDebug;
@@ -182,6 +210,8 @@ public class Configurator {
 		config.logGlStateChanges = logGlStateChanges;
 		config.debugNativeMemoryAllocation = debugNativeMemoryAllocation;
 		config.enablePerformanceTrace = enablePerformanceTrace;
+		config.enableMetrics = enableMetrics;
+		config.captureRegionsForBenchmark = captureRegionsForBenchmark;
 		config.debugOcclusionBoxes = debugOcclusionBoxes;
 		config.debugOcclusionRaster = debugOcclusionRaster;
 		config.renderWhiteGlassAsOccluder = renderWhiteGlassAsOccluder;
@@ -0,0 +1,215 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.light;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Light samples shared by all regions for {@link LightSmoother}.
+ *
+ * <p>The smoothing window of a region extends four blocks past each face, so most samples
+ * are also needed by neighbors. Samples are cached in 4x4x4 bricks aligned to world
+ * coordinates, which makes every smoothing window exactly 6x6x6 bricks.
+ *
+ * <p>Bricks are direct-mapped by low bits of brick coordinates, so bricks within eight
+ * sections of each other on every axis never evict each other. All bricks of a section are
+ * invalidated whenever the section is scheduled for rebuild, which vanilla does for every
+ * block and light change. Each slot records the stamp of its last invalidation, which serves
+ * as the light data version: samples are only saved if taken from world state captured after
+ * that stamp, so an invalidation that races with a rebuild can't leave stale samples behind.
+ *
+ * <p>Thread-safe. Slots are accessed under striped locks.
+ */
+public class LightSampleCache {
+	public static final int BRICK_SAMPLES = 64;
+
+	private static final int SLOT_BITS = 5;
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+	private static final int SLOT_COUNT = 1 << (SLOT_BITS * 3);
+	private static final int STRIPE_COUNT = 256;
+	private static final int STRIPE_MASK = STRIPE_COUNT - 1;
+
+	/** Marks empty slots. Would only match a brick far outside the world border. */
+	private static final long NO_KEY = Long.MIN_VALUE;
+
+	private static final AtomicLong STAMP = new AtomicLong();
+	private static final Object[] LOCKS = new Object[STRIPE_COUNT];
+
+	/** Written last during allocation so that other arrays are visible once this is. */
+	private static volatile long[] keys;
+	private static long[] invalidated;
+	private static int[] samples;
+
+	static {
+		for (int i = 0; i < STRIPE_COUNT; ++i) {
+			LOCKS[i] = new Object();
+		}
+	}
+
+	/**
+	 * Current invalidation stamp. Read before world state is captured for a rebuild
+	 * and pass to {@link #save(int, int, int, int[], long)}.
+	 */
+	public static long stamp() {
+		return STAMP.get();
+	}
+
+	private static long key(int brickX, int brickY, int brickZ) {
+		return ((long) (brickX & 0xFFFFFF) << 40) | ((long) (brickZ & 0xFFFFFF) << 16) | (brickY & 0xFFFF);
+	}
+
+	private static int slot(int brickX, int brickY, int brickZ) {
+		return (brickX & SLOT_MASK) | ((brickY & SLOT_MASK) << SLOT_BITS) | ((brickZ & SLOT_MASK) << (SLOT_BITS * 2));
+	}
+
+	/** Allocates storage on first use so that nothing is retained unless light smoothing is used. */
+	private static void ensureAllocated() {
+		if (keys == null) {
+			synchronized (LOCKS) {
+				if (keys == null) {
+					final long[] k = new long[SLOT_COUNT];
+					Arrays.fill(k, NO_KEY);
+					// invalidations before allocation weren't recorded per slot
+					final long[] inv = new long[SLOT_COUNT];
+					Arrays.fill(inv, STAMP.get());
+					invalidated = inv;
+					samples = new int[SLOT_COUNT * BRICK_SAMPLES];
+					keys = k;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Advances the stamp for an invalidation. Returns null if storage
+	 * is not allocated, in which case there is nothing more to do.
+	 */
+	private static long[] advance() {
+		long[] keys = LightSampleCache.keys;
+
+		if (keys == null) {
+			// synchronized with allocation so the new stamp is seen by it or storage is seen here
+			synchronized (LOCKS) {
+				keys = LightSampleCache.keys;
+
+				if (keys == null) {
+					STAMP.incrementAndGet();
+					return null;
+				}
+			}
+		}
+
+		return keys;
+	}
+
+	/**
+	 * Copies cached samples for the given brick into target and returns true, or returns false
+	 * if the brick is not cached. Samples are ordered x, then y, then z.
+	 */
+	public static boolean load(int brickX, int brickY, int brickZ, int[] target) {
+		final long[] keys = LightSampleCache.keys;
+
+		if (keys == null) {
+			return false;
+		}
+
+		final int slot = slot(brickX, brickY, brickZ);
+		final long key = key(brickX, brickY, brickZ);
+
+		synchronized (LOCKS[slot & STRIPE_MASK]) {
+			if (keys[slot] != key) {
+				return false;
+			}
+
+			System.arraycopy(samples, slot * BRICK_SAMPLES, target, 0, BRICK_SAMPLES);
+			return true;
+		}
+	}
+
+	/**
+	 * Saves samples for the given brick unless the brick was invalidated after
+	 * the given stamp, as obtained by {@link #stamp()}.
+	 */
+	public static void save(int brickX, int brickY, int brickZ, int[] source, long stamp) {
+		ensureAllocated();
+
+		final int slot = slot(brickX, brickY, brickZ);
+
+		synchronized (LOCKS[slot & STRIPE_MASK]) {
+			if (invalidated[slot] > stamp) {
+				return;
+			}
+
+			keys[slot] = key(brickX, brickY, brickZ);
+			System.arraycopy(source, 0, samples, slot * BRICK_SAMPLES, BRICK_SAMPLES);
+		}
+	}
+
+	/**
+	 * Discards bricks of the given section. Section coordinates are block coordinates >> 4.
+	 * Called when the section is scheduled for rebuild.
+	 */
+	public static void invalidateSection(int sectionX, int sectionY, int sectionZ) {
+		final long[] keys = advance();
+
+		if (keys == null) {
+			return;
+		}
+
+		final long stamp = STAMP.incrementAndGet();
+		final long[] invalidated = LightSampleCache.invalidated;
+		final int baseX = sectionX << 2;
+		final int baseY = sectionY << 2;
+		final int baseZ = sectionZ << 2;
+
+		for (int z = 0; z < 4; ++z) {
+			for (int y = 0; y < 4; ++y) {
+				for (int x = 0; x < 4; ++x) {
+					final int slot = slot(baseX + x, baseY + y, baseZ + z);
+
+					// slot is marked even if it holds another brick - harmless and keeps ordering simple
+					synchronized (LOCKS[slot & STRIPE_MASK]) {
+						keys[slot] = NO_KEY;
+						invalidated[slot] = stamp;
+					}
+				}
+			}
+		}
+	}
+
+	/** Discards all bricks. Call when the world changes. */
+	public static void clear() {
+		final long[] keys = advance();
+
+		if (keys == null) {
+			return;
+		}
+
+		final long stamp = STAMP.incrementAndGet();
+		final long[] invalidated = LightSampleCache.invalidated;
+
+		for (int stripe = 0; stripe < STRIPE_COUNT; ++stripe) {
+			synchronized (LOCKS[stripe]) {
+				for (int slot = stripe; slot < SLOT_COUNT; slot += STRIPE_COUNT) {
+					keys[slot] = NO_KEY;
+					invalidated[slot] = stamp;
+				}
+			}
+		}
+	}
+}
@@ -20,6 +20,7 @@ import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
 
+import grondag.canvas.config.Configurator;
 import grondag.canvas.terrain.region.input.InputRegion;
 
 // TODO: look at VoxelShapes.method_1080 as a way to not propagate thru slabs
@@ -28,57 +29,113 @@ import grondag.canvas.terrain.region.input.InputRegion;
 public class LightSmoother {
 	public static final int OPAQUE = -1;
 	private static final int BLUR_RADIUS = 2;
-	private static final int MARGIN = BLUR_RADIUS + 2;
-	private static final int POS_DIAMETER = 16 + MARGIN * 2;
-	private static final int POS_COUNT = POS_DIAMETER * POS_DIAMETER * POS_DIAMETER;
+	static final int MARGIN = BLUR_RADIUS + 2;
+	static final int POS_DIAMETER = 16 + MARGIN * 2;
+	static final int POS_COUNT = POS_DIAMETER * POS_DIAMETER * POS_DIAMETER;
 	private static final int Y_INC = POS_DIAMETER;
 	private static final int Z_INC = POS_DIAMETER * POS_DIAMETER;
+	/** Sampling window in bricks of {@link LightSampleCache}. Depends on MARGIN being a multiple of 4. */
+	private static final int BRICK_DIAMETER = POS_DIAMETER / 4;
 	private static final ThreadLocal<Helper> helpers = ThreadLocal.withInitial(Helper::new);
 	private static final int INNER_DIST = 28966; // fractional part of 0xFFFF
 	private static final int OUTER_DIST = (0xFFFF - INNER_DIST) / 2;
-	private static final int INNER_PLUS = INNER_DIST + OUTER_DIST;
 
 	public static void computeSmoothedBrightness(InputRegion region) {
 		final Helper help = helpers.get();
 		final BlockPos.Mutable smoothPos = help.smoothPos;
 		final int[] sky = help.a;
 		final int[] block = help.b;
+		final int[] brick = help.brick;
+		final boolean useCache = Configurator.sharedLightSamples;
+		final long stamp = region.lightSampleStamp();
 
 		final int minX = region.originX() - MARGIN;
 		final int minY = region.originY() - MARGIN;
 		final int minZ = region.originZ() - MARGIN;
 
-		for (int x = 0; x < POS_DIAMETER; x++) {
-			for (int y = 0; y < POS_DIAMETER; y++) {
-				for (int z = 0; z < POS_DIAMETER; z++) {
-					final int bx = x + minX;
-					final int by = y + minY;
-					final int bz = z + minZ;
-					smoothPos.set(bx, by, bz);
+		for (int bz = 0; bz < BRICK_DIAMETER; bz++) {
+			for (int by = 0; by < BRICK_DIAMETER; by++) {
+				for (int bx = 0; bx < BRICK_DIAMETER; bx++) {
+					final int brickX = (minX >> 2) + bx;
+					final int brickY = (minY >> 2) + by;
+					final int brickZ = (minZ >> 2) + bz;
 
-					final BlockState state = region.getBlockState(bx, by, bz);
+					if (!useCache || !LightSampleCache.load(brickX, brickY, brickZ, brick)) {
+						sampleBrick(region, smoothPos, brickX << 2, brickY << 2, brickZ << 2, brick);
+
+						if (useCache) {
+							LightSampleCache.save(brickX, brickY, brickZ, brick, stamp);
+						}
+					}
+
+					int s = 0;
+
+					for (int z = 0; z < 4; z++) {
+						for (int y = 0; y < 4; y++) {
+							final int row = index(bx << 2, (by << 2) + y, (bz << 2) + z);
+
+							for (int x = 0; x < 4; x++) {
+								final int sample = brick[s++];
+
+								if (sample == OPAQUE) {
+									block[row + x] = OPAQUE;
+									sky[row + x] = OPAQUE;
+								} else {
+									block[row + x] = sample & 0xFF;
+									sky[row + x] = sample >>> 16;
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+
+		smoothSamples(block, sky, help.c);
+
+		final int limit = 16 + MARGIN + 1;
+
+		for (int z = MARGIN - 1; z < limit; z++) {
+			for (int y = MARGIN - 1; y < limit; y++) {
+				for (int x = MARGIN - 1; x < limit; x++) {
+					final int i = index(x, y, z);
+					final int b = MathHelper.clamp(((block[i]) * 104 + 51) / 100, 0, 240);
+					final int k = MathHelper.clamp(((sky[i]) * 104 + 51) / 100, 0, 240);
+					region.setLightCache(x + minX, y + minY, z + minZ, ((b + 2) & 0b11111100) | (((k + 2) & 0b11111100) << 16));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Samples a 4x4x4 brick at the given world coordinates. Samples are
+	 * {@link #OPAQUE} or block light in the low 8 bits and sky light in bits 16-23.
+	 */
+	private static void sampleBrick(InputRegion region, BlockPos.Mutable smoothPos, int minX, int minY, int minZ, int[] brick) {
+		int s = 0;
+
+		for (int z = minZ; z < minZ + 4; z++) {
+			for (int y = minY; y < minY + 4; y++) {
+				for (int x = minX; x < minX + 4; x++) {
+					smoothPos.set(x, y, z);
+
+					final BlockState state = region.getBlockState(x, y, z);
 					// don't use cache here because we are populating the cache
 					final int packedLight = region.directBrightness(smoothPos);
 
 					final boolean opaque = state.isOpaqueFullCube(region, smoothPos);
 
-					final int i = index(x, y, z);
-
-					if (opaque) {
-						block[i] = OPAQUE;
-						sky[i] = OPAQUE;
-					} else if (packedLight == 0) {
-						block[i] = 0;
-						sky[i] = 0;
-					} else {
-						block[i] = (packedLight & 0xFF);
-						sky[i] = ((packedLight >>> 16) & 0xFF);
-					}
+					brick[s++] = opaque ? OPAQUE : packedLight & 0xFF00FF;
 				}
 			}
 		}
+	}
 
-		final int[] work = help.c;
+	/**
+	 * Blurs block and sky samples in place. Arrays are {@link #POS_COUNT} long and
+	 * hold samples for the region with a margin of {@link #MARGIN} on every side.
+	 */
+	static void smoothSamples(int[] block, int[] sky, int[] work) {
 		smooth(BLUR_RADIUS + 1, block, work);
 		smooth(BLUR_RADIUS, work, block);
 		//        smooth(1, block, work);
@@ -92,19 +149,6 @@ public class LightSmoother {
 		//        swap = sky;
 		//        sky = work;
 		//        work = swap;
-
-		final int limit = 16 + MARGIN + 1;
-
-		for (int x = MARGIN - 1; x < limit; x++) {
-			for (int y = MARGIN - 1; y < limit; y++) {
-				for (int z = MARGIN - 1; z < limit; z++) {
-					final int i = index(x, y, z);
-					final int b = MathHelper.clamp(((block[i]) * 104 + 51) / 100, 0, 240);
-					final int k = MathHelper.clamp(((sky[i]) * 104 + 51) / 100, 0, 240);
-					region.setLightCache(x + minX, y + minY, z + minZ, ((b + 2) & 0b11111100) | (((k + 2) & 0b11111100) << 16));
-				}
-			}
-		}
 	}
 
 	private static int index(int x, int y, int z) {
@@ -112,6 +156,22 @@ public class LightSmoother {
 	}
 
 	private static void smooth(int margin, int[] src, int[] dest) {
+		// Note arrays are swapped for the Y pass
+		blur(margin, src, dest, 1);
+		blur(margin, dest, src, Y_INC);
+		blur(margin, src, dest, Z_INC);
+	}
+
+	/**
+	 * Three-tap blur along the axis given by inc. Opaque neighbors contribute
+	 * the center value instead of their own. Opaque positions stay opaque.
+	 *
+	 * <p>Rows are traversed along x so that arrays are read sequentially, and the loop
+	 * body has no branches other than selects, which lets the JIT unroll it and often
+	 * vectorize it. Results are identical to the prior branching form because
+	 * {@code (c * 0xFFFE + 0x7FFF) >> 16 == c} for all light values.
+	 */
+	private static void blur(int margin, int[] src, int[] dest, int inc) {
 		final int xBase = MARGIN - margin;
 		final int xLimit = POS_DIAMETER - MARGIN + margin;
 
@@ -120,103 +180,16 @@ public class LightSmoother {
 		final int zBase = xBase * Z_INC;
 		final int zLimit = xLimit * Z_INC;
 
-		// X PASS
-		for (int x = xBase; x < xLimit; x++) {
-			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
-
-					final int c = src[i];
-
-					if (c == OPAQUE) {
-						dest[i] = OPAQUE;
-						continue;
-					}
-
-					//                    int a = src[index(x + 1, y, z)];
-					//                    int b = src[index(x - 1, y, z)];
-					final int a = src[i + 1];
-					final int b = src[i - 1];
-
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							dest[i] = c;
-						} else {
-							dest[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-						}
-					} else if (b == OPAQUE) {
-						dest[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						dest[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
-					}
-				}
-			}
-		}
-
-		// Y PASS
-		for (int x = xBase; x < xLimit; x++) {
+		for (int z = zBase; z < zLimit; z += Z_INC) {
 			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
-
-					// Note arrays are swapped here
-					final int c = dest[i];
-
-					if (c == OPAQUE) {
-						src[i] = OPAQUE;
-						continue;
-					}
-
-					//                    int a = dest[index(x, y - 1, z)];
-					//                    int b = dest[index(x, y + 1, z)];
-					final int a = dest[i + Y_INC];
-					final int b = dest[i - Y_INC];
+				final int rowLimit = z + y + xLimit;
 
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							src[i] = c;
-						} else {
-							src[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-						}
-					} else if (b == OPAQUE) {
-						src[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						src[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
-					}
-				}
-			}
-		}
-
-		// Z PASS
-		for (int x = xBase; x < xLimit; x++) {
-			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
-
-					// Arrays are swapped back to original roles here
+				for (int i = z + y + xBase; i < rowLimit; i++) {
 					final int c = src[i];
-
-					if (c == OPAQUE) {
-						dest[i] = OPAQUE;
-						continue;
-					}
-
-					//                    int a = src[index(x, y, z - 1)];
-					//                    int b = src[index(x, y, z + 1)];
-					final int a = src[i + Z_INC];
-					final int b = src[i - Z_INC];
-
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							dest[i] = c;
-						} else {
-							dest[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-						}
-					} else if (b == OPAQUE) {
-						dest[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						dest[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
-					}
+					final int a = src[i + inc];
+					final int b = src[i - inc];
+					final int sum = (a == OPAQUE ? c : a) + (b == OPAQUE ? c : b);
+					dest[i] = c == OPAQUE ? OPAQUE : (sum * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
 				}
 			}
 		}
@@ -227,5 +200,6 @@ public class LightSmoother {
 		private final int[] a = new int[POS_COUNT];
 		private final int[] b = new int[POS_COUNT];
 		private final int[] c = new int[POS_COUNT];
+		private final int[] brick = new int[LightSampleCache.BRICK_SAMPLES];
 	}
 }
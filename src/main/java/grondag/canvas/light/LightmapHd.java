@@ -16,73 +16,81 @@
 
 package grondag.canvas.light;
 
-import java.util.concurrent.atomic.AtomicInteger;
-
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.client.resource.language.I18n;
-import net.minecraft.util.math.MathHelper;
 
 import grondag.canvas.CanvasMod;
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
+import grondag.canvas.light.LightmapHdRegistry.Refs;
 
+/**
+ * HD lightmap for one face, stored once for all rotations and reflections of the face data.
+ * Instances returned by {@link #find(AoFaceData, Refs)} share the canonical lightmap and apply
+ * the transform from the face to it in {@link #coord(MutableQuadViewImpl, int)}.
+ * Texture slots are assigned and reclaimed by {@link #REGISTRY}.
+ */
 class LightmapHd {
-	// MAYBE: use Fermion cache
-	static final Object2ObjectOpenHashMap<AoFaceData, LightmapHd> MAP = new Object2ObjectOpenHashMap<>(MathHelper.smallestEncompassingPowerOfTwo(LightmapSizer.maxCount), LightmapSizer.maxCount / (float) MathHelper.smallestEncompassingPowerOfTwo(LightmapSizer.maxCount));
-	private static final AtomicInteger nextIndex = new AtomicInteger();
+	static final LightmapHdRegistry<AoFaceData, LightmapHd> REGISTRY = new LightmapHdRegistry<>(LightmapSizer.maxCount, 64, LightmapHd::new, AoFaceData::clone);
+	private static final ThreadLocal<LightmapHdSymmetry> SYMMETRY = ThreadLocal.withInitial(LightmapHdSymmetry::new);
 	private static boolean errorNoticeNeeded = true;
 	public final int uMinImg;
 	public final int vMinImg;
+	/** Transform from face u, v to the canonical lightmap. */
+	public final int transform;
 	private final int[] light;
+	/** Instances for each transform, created as needed. Only on canonical instances. */
+	private final LightmapHd[] transforms;
 
-	private LightmapHd(AoFaceData faceData) {
-		final int index = nextIndex.getAndIncrement();
-		final int s = index % LightmapSizer.mapsPerAxis;
-		final int t = index / LightmapSizer.mapsPerAxis;
+	private LightmapHd(AoFaceData faceData, int slot) {
+		final int s = slot % LightmapSizer.mapsPerAxis;
+		final int t = slot / LightmapSizer.mapsPerAxis;
 		uMinImg = s * LightmapSizer.paddedSize;
 		vMinImg = t * LightmapSizer.paddedSize;
+		transform = LightmapHdSymmetry.IDENTITY;
 		light = new int[LightmapSizer.lightmapPixels];
+		transforms = new LightmapHd[LightmapHdSymmetry.TRANSFORM_COUNT];
+		transforms[LightmapHdSymmetry.IDENTITY] = this;
 
-		if (index >= LightmapSizer.maxCount) {
-			if (errorNoticeNeeded) {
-				CanvasMod.LOG.warn(I18n.translate("error.canvas.fail_create_lightmap"));
-				errorNoticeNeeded = false;
-			}
-		} else {
-			// MAYBE: pool these and the main array - not needed after upload
-
-			final int[] aoLight = new int[LightmapSizer.lightmapPixels];
-			final int[] skyLight = new int[LightmapSizer.lightmapPixels];
-			final int[] blockLight = new int[LightmapSizer.lightmapPixels];
-
-			// MAYBE: make this an option for AO debugging
-			//			Arrays.fill(skyLight, 255);
-			//			Arrays.fill(blockLight, 255);
-
-			// MAYBE: skips steps when all unit value or same  value
-			LightmapHdCalc.computeAo(aoLight, faceData);
-			LightmapHdCalc.computeLight(blockLight, faceData, false);
-			LightmapHdCalc.computeLight(skyLight, faceData, true);
-
-			for (int i = 0; i < LightmapSizer.lightmapPixels; ++i) {
-				final int ao = aoLight[i];
-				final int sky = skyLight[i]; // * ao / 255;
-				final int block = blockLight[i]; // * ao / 255;
-				light[i] = (sky << 24) | (ao << 16) | (block << 8) | ao;
-			}
+		// MAYBE: pool these and the main array - not needed after upload
+
+		final int[] aoLight = new int[LightmapSizer.lightmapPixels];
+		final int[] skyLight = new int[LightmapSizer.lightmapPixels];
+		final int[] blockLight = new int[LightmapSizer.lightmapPixels];
 
-			LightmapHdTexture.instance().enque(this);
+		// MAYBE: make this an option for AO debugging
+		//			Arrays.fill(skyLight, 255);
+		//			Arrays.fill(blockLight, 255);
+
+		// MAYBE: skips steps when all unit value or same  value
+		LightmapHdCalc.computeAo(aoLight, faceData);
+		LightmapHdCalc.computeLight(blockLight, faceData, false);
+		LightmapHdCalc.computeLight(skyLight, faceData, true);
+
+		for (int i = 0; i < LightmapSizer.lightmapPixels; ++i) {
+			final int ao = aoLight[i];
+			final int sky = skyLight[i]; // * ao / 255;
+			final int block = blockLight[i]; // * ao / 255;
+			light[i] = (sky << 24) | (ao << 16) | (block << 8) | ao;
 		}
+
+		LightmapHdTexture.instance().enque(this);
+	}
+
+	private LightmapHd(LightmapHd canonical, int transform) {
+		uMinImg = canonical.uMinImg;
+		vMinImg = canonical.vMinImg;
+		this.transform = transform;
+		light = canonical.light;
+		transforms = null;
 	}
 
 	public static String occupancyReport() {
-		final int i = nextIndex.get();
-		return String.format("%d of %d ( %d percent )", i, LightmapSizer.maxCount, i * 100 / LightmapSizer.maxCount);
+		return REGISTRY.stats().toString();
 	}
 
 	public static void reload() {
-		nextIndex.set(0);
-		MAP.clear();
+		REGISTRY.reset();
 		errorNoticeNeeded = true;
 	}
 
@@ -90,24 +98,44 @@ class LightmapHd {
 		return v * LightmapSizer.paddedSize + u;
 	}
 
-	// MAYBE: can reduce texture consumption 8X by reusing rotations/inversions
-	public static LightmapHd find(AoFaceData faceData) {
-		LightmapHd result = MAP.get(faceData);
+	/**
+	 * Finds or creates the lightmap for the face data and holds it in refs until they are released.
+	 * Returns null if every lightmap slot is in use.
+	 */
+	public static @Nullable LightmapHd find(AoFaceData faceData, Refs refs) {
+		final LightmapHdSymmetry symmetry = SYMMETRY.get();
+		final int transform = symmetry.canonicalize(faceData);
+		final LightmapHd result = REGISTRY.acquire(symmetry.canonical, refs);
 
 		if (result == null) {
-			synchronized (MAP) {
-				result = MAP.get(faceData);
-
-				if (result == null) {
-					result = new LightmapHd(faceData);
-					MAP.put(faceData.clone(), result);
-				}
+			if (errorNoticeNeeded) {
+				CanvasMod.LOG.warn(I18n.translate("error.canvas.fail_create_lightmap"));
+				errorNoticeNeeded = false;
 			}
+
+			return null;
+		}
+
+		return result.withTransform(transform);
+	}
+
+	private LightmapHd withTransform(int transform) {
+		LightmapHd result = transforms[transform];
+
+		if (result == null) {
+			// harmless if another thread creates one at the same time
+			result = new LightmapHd(this, transform);
+			transforms[transform] = result;
 		}
 
 		return result;
 	}
 
+	/** Pixels packed row by row as expected by {@link grondag.canvas.texture.SimpleImage#setPixelsRGBA}. */
+	int[] pixels() {
+		return light;
+	}
+
 	/**
 	 * Handles padding.
 	 */
@@ -118,8 +146,11 @@ class LightmapHd {
 	public int coord(MutableQuadViewImpl q, int i) {
 		final int u, v;
 
-		u = Math.round((uMinImg + 0.5f + q.u[i] * LightmapSizer.centerToCenterPixelDistance) * LightmapSizer.textureToBuffer);
-		v = Math.round((vMinImg + 0.5f + q.v[i] * LightmapSizer.centerToCenterPixelDistance) * LightmapSizer.textureToBuffer);
+		final float uFace = LightmapHdSymmetry.u(transform, q.u[i], q.v[i]);
+		final float vFace = LightmapHdSymmetry.v(transform, q.u[i], q.v[i]);
+
+		u = Math.round((uMinImg + 0.5f + uFace * LightmapSizer.centerToCenterPixelDistance) * LightmapSizer.textureToBuffer);
+		v = Math.round((vMinImg + 0.5f + vFace * LightmapSizer.centerToCenterPixelDistance) * LightmapSizer.textureToBuffer);
 
 		return u | (v << 16);
 	}
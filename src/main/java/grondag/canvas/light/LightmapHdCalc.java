@@ -20,6 +20,11 @@ import static grondag.canvas.light.LightmapHd.lightIndex;
 
 import it.unimi.dsi.fastutil.ints.Int2IntFunction;
 
+/**
+ * Computes HD lightmaps from face data. Results are exactly symmetric under rotation
+ * and reflection of the face, which {@link LightmapHdSymmetry} depends on: sides are
+ * summed together so the result doesn't depend on which one is u.
+ */
 final class LightmapHdCalc {
 	static float input(int b, boolean isSky) {
 		return b == AoFaceData.OPAQUE ? AoFaceData.OPAQUE : (isSky ? (b >> 16) & 0xFF : b & 0xFF);
@@ -90,9 +95,8 @@ final class LightmapHdCalc {
 				assert vLinear >= 0 && vLinear <= 1f;
 
 				final float linear = center * (uLinear * vLinear)
-						+ corner * (1 - uLinear) * (1 - vLinear)
-						+ uSide * ((1 - uLinear) * (vLinear))
-						+ vSide * ((uLinear) * (1 - vLinear));
+						+ corner * ((1 - uLinear) * (1 - vLinear))
+						+ (uSide * ((1 - uLinear) * vLinear) + vSide * (uLinear * (1 - vLinear)));
 
 				light[lightIndex(uFunc.applyAsInt(u), vFunc.applyAsInt(v))] = output(linear);
 			}
@@ -110,9 +114,8 @@ final class LightmapHdCalc {
 				assert vLinear >= 0 && vLinear <= 1f;
 
 				final float linear = center * (uLinear * vLinear)
-						+ corner * (1 - uLinear) * (1 - vLinear)
-						+ uSide * ((1 - uLinear) * (vLinear))
-						+ vSide * ((uLinear) * (1 - vLinear));
+						+ corner * ((1 - uLinear) * (1 - vLinear))
+						+ (uSide * ((1 - uLinear) * vLinear) + vSide * (uLinear * (1 - vLinear)));
 
 				light[lightIndex(uFunc.applyAsInt(u), vFunc.applyAsInt(v))] = output(linear);
 			}
@@ -142,9 +145,8 @@ final class LightmapHdCalc {
 				assert vLinear >= 0 && vLinear <= 1f;
 
 				final float linear = center * (uLinear * vLinear)
-						+ corner * (1 - uLinear) * (1 - vLinear)
-						+ uSide * ((1 - uLinear) * (vLinear))
-						+ vSide * ((uLinear) * (1 - vLinear));
+						+ corner * ((1 - uLinear) * (1 - vLinear))
+						+ (uSide * ((1 - uLinear) * vLinear) + vSide * (uLinear * (1 - vLinear)));
 
 				light[lightIndex(uFunc.applyAsInt(u), vFunc.applyAsInt(v))] = outputAo(Math.round(linear));
 			}
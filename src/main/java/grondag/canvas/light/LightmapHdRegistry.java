@@ -0,0 +1,425 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.light;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Assigns HD lightmap texture slots to keys and reclaims them when no region uses them.
+ *
+ * <p>Each slot has a reference count of the regions whose geometry refers to it,
+ * held through {@link Refs}. Slots with no references stay mapped so that regions
+ * loaded again find their lightmaps, until the slot is needed for a new key. Idle
+ * slots are then evicted in approximately least-recently-used order by a clock sweep.
+ * Each slot has a generation that changes when it is reassigned, so stale references
+ * are ignored instead of releasing the new owner.
+ *
+ * <p>Lookups go through a sharded map and slot state changes are compare-and-set
+ * on the packed generation and reference count, so rebuild threads don't block each other.
+ *
+ * <p>Slot state is allocated in pages as slots are first handed out, so a registry
+ * sized for the whole texture costs little until the texture fills up.
+ */
+public final class LightmapHdRegistry<K, V> {
+	public interface Factory<K, V> {
+		/** Creates the value for the key, stored in the given slot. */
+		V create(K key, int slot);
+	}
+
+	/** Capacity, slot counts and lifetime counts since the last reset. */
+	public record Stats(int capacity, int live, int idle, long created, long reused, long evicted, long failed) {
+		@Override
+		public String toString() {
+			return String.format("%d live, %d idle of %d ( %d percent ), %d created, %d reused, %d evicted, %d failed",
+					live, idle, capacity, (live + idle) * 100L / capacity, created, reused, evicted, failed);
+		}
+	}
+
+	public static final class Entry<V> {
+		private final LightmapHdRegistry<?, V> registry;
+		private final Object key;
+		public final V value;
+		public final int slot;
+		private final Page<V> page;
+		private final int generation;
+
+		private Entry(LightmapHdRegistry<?, V> registry, Object key, V value, int slot, Page<V> page, int generation) {
+			this.registry = registry;
+			this.key = key;
+			this.value = value;
+			this.slot = slot;
+			this.page = page;
+			this.generation = generation;
+		}
+	}
+
+	/** State of {@link #PAGE_SIZE} consecutive slots. */
+	private static final class Page<V> {
+		/** Generation in the high bits and reference count in the low bits of each slot. */
+		private final AtomicLongArray states = new AtomicLongArray(PAGE_SIZE);
+		private final AtomicReferenceArray<Entry<V>> owners = new AtomicReferenceArray<>(PAGE_SIZE);
+		/** Clock reference bit of each slot, set when used. */
+		private final AtomicIntegerArray recent = new AtomicIntegerArray(PAGE_SIZE);
+
+		private Page() {
+			for (int i = 0; i < PAGE_SIZE; ++i) {
+				states.set(i, pack(0, FREE));
+			}
+		}
+	}
+
+	/**
+	 * Entries used by one region build, each retained once. Released when the
+	 * geometry that refers to them is replaced or the region is closed.
+	 * Use from one thread at a time.
+	 */
+	public static final class Refs {
+		private final ReferenceOpenHashSet<Entry<?>> entries = new ReferenceOpenHashSet<>();
+
+		public int size() {
+			return entries.size();
+		}
+
+		public void release() {
+			for (final Entry<?> entry : entries) {
+				entry.registry.release(entry);
+			}
+
+			entries.clear();
+		}
+	}
+
+	/** Reference count of a slot not assigned to any key. */
+	private static final int FREE = -1;
+	/** Reference count of a slot being reassigned. */
+	private static final int CLAIMED = -2;
+	/**
+	 * Limits the second-chance search so a full texture doesn't stall builds. After this
+	 * many slots the first idle slot seen is evicted even if it was recently used.
+	 */
+	private static final int MAX_SCAN = 1024;
+	private static final int PAGE_SHIFT = 12;
+	private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private final int capacity;
+	private final Factory<K, V> factory;
+	private final UnaryOperator<K> keyCopy;
+	private final ConcurrentHashMap<K, Entry<V>>[] shards;
+	private final int shardMask;
+	/** Created as slots are first handed out and discarded on reset. */
+	private final AtomicReferenceArray<Page<V>> pages;
+	private final AtomicInteger nextUnused = new AtomicInteger();
+	private final AtomicInteger clockHand = new AtomicInteger();
+	private final AtomicInteger live = new AtomicInteger();
+	private final AtomicInteger idle = new AtomicInteger();
+	private final LongAdder created = new LongAdder();
+	private final LongAdder reused = new LongAdder();
+	private final LongAdder evicted = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+
+	/**
+	 * Creates a registry with the given number of slots and map shards.
+	 *
+	 * @param keyCopy Copies keys before they are stored, so that lookups can use mutable keys.
+	 */
+	@SuppressWarnings("unchecked")
+	public LightmapHdRegistry(int capacity, int shardCount, Factory<K, V> factory, UnaryOperator<K> keyCopy) {
+		assert Integer.bitCount(shardCount) == 1;
+
+		this.capacity = capacity;
+		this.factory = factory;
+		this.keyCopy = keyCopy;
+		shards = new ConcurrentHashMap[shardCount];
+		shardMask = shardCount - 1;
+
+		for (int i = 0; i < shardCount; ++i) {
+			shards[i] = new ConcurrentHashMap<>();
+		}
+
+		pages = new AtomicReferenceArray<>((capacity + PAGE_MASK) >> PAGE_SHIFT);
+	}
+
+	/** Page of the slot, created if needed. Pages of slots not yet handed out may not exist. */
+	private Page<V> page(int slot) {
+		final int index = slot >> PAGE_SHIFT;
+		Page<V> result = pages.get(index);
+
+		if (result == null) {
+			final Page<V> created = new Page<>();
+			result = pages.compareAndExchange(index, null, created);
+
+			if (result == null) {
+				result = created;
+			}
+		}
+
+		return result;
+	}
+
+	private static long pack(int generation, int refs) {
+		return ((long) generation << 32) | (refs & 0xFFFFFFFFL);
+	}
+
+	private static int generation(long state) {
+		return (int) (state >>> 32);
+	}
+
+	private static int refs(long state) {
+		return (int) state;
+	}
+
+	private ConcurrentHashMap<K, Entry<V>> shard(K key) {
+		final int h = key.hashCode();
+		return shards[(h ^ (h >>> 16)) & shardMask];
+	}
+
+	/**
+	 * Finds or creates the value for the key and adds it to refs if not already there.
+	 * Returns null if every slot is in use.
+	 */
+	public @Nullable V acquire(K key, Refs refs) {
+		final ConcurrentHashMap<K, Entry<V>> shard = shard(key);
+		K storedKey = null;
+
+		while (true) {
+			final Entry<V> existing = shard.get(key);
+
+			if (existing != null) {
+				if (refs.entries.contains(existing)) {
+					return existing.value;
+				}
+
+				if (retain(existing)) {
+					reused.increment();
+					refs.entries.add(existing);
+					return existing.value;
+				}
+
+				// slot is being reassigned
+				shard.remove(key, existing);
+				continue;
+			}
+
+			final int slot = claimSlot();
+
+			if (slot == -1) {
+				failed.increment();
+				return null;
+			}
+
+			if (storedKey == null) {
+				storedKey = keyCopy.apply(key);
+			}
+
+			final Page<V> page = page(slot);
+			final int index = slot & PAGE_MASK;
+			final int generation = generation(page.states.get(index));
+			final Entry<V> entry = new Entry<>(this, storedKey, factory.create(storedKey, slot), slot, page, generation);
+			page.owners.set(index, entry);
+			page.recent.set(index, 1);
+			live.incrementAndGet();
+			page.states.set(index, pack(generation, 1));
+
+			if (shard.putIfAbsent(storedKey, entry) == null) {
+				created.increment();
+				refs.entries.add(entry);
+				return entry.value;
+			}
+
+			// another thread created it first - leave ours to be evicted first
+			release(entry);
+			page.recent.set(index, 0);
+		}
+	}
+
+	private boolean retain(Entry<V> entry) {
+		final Page<V> page = entry.page;
+		final int index = entry.slot & PAGE_MASK;
+
+		if (pages.get(entry.slot >> PAGE_SHIFT) != page) {
+			return false;
+		}
+
+		while (true) {
+			final long state = page.states.get(index);
+			final int refs = refs(state);
+
+			if (generation(state) != entry.generation || refs < 0) {
+				return false;
+			}
+
+			if (page.states.compareAndSet(index, state, state + 1)) {
+				page.recent.set(index, 1);
+
+				if (refs == 0) {
+					idle.decrementAndGet();
+					live.incrementAndGet();
+				}
+
+				return true;
+			}
+		}
+	}
+
+	private void release(Entry<?> entry) {
+		final Page<?> page = entry.page;
+		final int index = entry.slot & PAGE_MASK;
+
+		// slots are only reassigned with no references, so either is from before a reset
+		if (pages.get(entry.slot >> PAGE_SHIFT) != page) {
+			return;
+		}
+
+		while (true) {
+			final long state = page.states.get(index);
+
+			if (generation(state) != entry.generation) {
+				return;
+			}
+
+			assert refs(state) > 0;
+
+			if (page.states.compareAndSet(index, state, state - 1)) {
+				page.recent.set(index, 1);
+
+				if (refs(state) == 1) {
+					live.decrementAndGet();
+					idle.incrementAndGet();
+				}
+
+				return;
+			}
+		}
+	}
+
+	/** Returns a slot in claimed state with a new generation, or -1 if none is available. */
+	private int claimSlot() {
+		if (nextUnused.get() < capacity) {
+			final int slot = nextUnused.getAndIncrement();
+
+			if (slot < capacity) {
+				final Page<V> page = page(slot);
+				final int index = slot & PAGE_MASK;
+				page.states.set(index, pack(generation(page.states.get(index)) + 1, CLAIMED));
+				return slot;
+			}
+		}
+
+		int fallback = -1;
+
+		// past the second-chance budget any idle slot is taken, so this only fails when none are idle
+		for (int i = 0; i < MAX_SCAN + capacity && idle.get() > 0; ++i) {
+			if (i == MAX_SCAN && fallback != -1 && tryEvict(fallback)) {
+				return fallback;
+			}
+
+			final int slot = Math.floorMod(clockHand.getAndIncrement(), capacity);
+			// every slot has been handed out before the clock runs, but a reset may have discarded pages since
+			final Page<V> page = pages.get(slot >> PAGE_SHIFT);
+
+			if (page == null) {
+				continue;
+			}
+
+			final int index = slot & PAGE_MASK;
+
+			if (refs(page.states.get(index)) != 0) {
+				continue;
+			}
+
+			if (i < MAX_SCAN && page.recent.get(index) != 0) {
+				// second chance
+				page.recent.set(index, 0);
+
+				if (fallback == -1) {
+					fallback = slot;
+				}
+
+				continue;
+			}
+
+			if (tryEvict(slot)) {
+				return slot;
+			}
+		}
+
+		return -1;
+	}
+
+	/** Claims the slot with a new generation if it is idle and removes its prior key. */
+	private boolean tryEvict(int slot) {
+		final Page<V> page = pages.get(slot >> PAGE_SHIFT);
+
+		if (page == null) {
+			return false;
+		}
+
+		final int index = slot & PAGE_MASK;
+		final long state = page.states.get(index);
+
+		if (refs(state) != 0 || !page.states.compareAndSet(index, state, pack(generation(state) + 1, CLAIMED))) {
+			return false;
+		}
+
+		idle.decrementAndGet();
+		evicted.increment();
+		final Entry<V> owner = page.owners.getAndSet(index, null);
+
+		if (owner != null) {
+			@SuppressWarnings("unchecked")
+			final K ownerKey = (K) owner.key;
+			shard(ownerKey).remove(ownerKey, owner);
+		}
+
+		return true;
+	}
+
+	/** Forgets all keys. References held from before are ignored when released. */
+	public void reset() {
+		for (final ConcurrentHashMap<K, Entry<V>> shard : shards) {
+			shard.clear();
+		}
+
+		// entries from before hold discarded pages and are ignored
+		for (int i = 0; i < pages.length(); ++i) {
+			pages.set(i, null);
+		}
+
+		nextUnused.set(0);
+		clockHand.set(0);
+		live.set(0);
+		idle.set(0);
+		created.reset();
+		reused.reset();
+		evicted.reset();
+		failed.reset();
+	}
+
+	public Stats stats() {
+		return new Stats(capacity, live.get(), idle.get(), created.sum(), reused.sum(), evicted.sum(), failed.sum());
+	}
+}
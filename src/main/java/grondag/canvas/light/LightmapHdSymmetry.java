@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.light;
+
+/**
+ * Maps face data to one of its eight rotations and reflections so that faces
+ * with symmetric light share a single HD lightmap.
+ *
+ * <p>Transforms act on the 3x3 grid of face samples and on lightmap u, v coordinates
+ * in the same way: transpose if {@link #TRANSPOSE} is set, then flip u and v if
+ * {@link #FLIP_U} and {@link #FLIP_V} are set. The canonical form is the transformed
+ * face data that compares lowest, sample by sample. If transform {@code t} gives
+ * the canonical form of a face, the lightmap of the face at u, v is the canonical
+ * lightmap at the u, v given by {@link #u(int, float, float)} and {@link #v(int, float, float)}.
+ *
+ * <p>Holds scratch state. Not thread-safe.
+ */
+final class LightmapHdSymmetry {
+	static final int IDENTITY = 0;
+	static final int TRANSPOSE = 1;
+	static final int FLIP_U = 2;
+	static final int FLIP_V = 4;
+	static final int TRANSFORM_COUNT = 8;
+
+	/** Sample count of the face grid, in row order from top left. */
+	private static final int GRID_SIZE = 9;
+
+	/** Grid index of the sample that each transform moves to each grid index. */
+	private static final int[][] SOURCE = new int[TRANSFORM_COUNT][GRID_SIZE];
+
+	static {
+		for (int t = 0; t < TRANSFORM_COUNT; ++t) {
+			for (int i = 0; i < GRID_SIZE; ++i) {
+				final int u = i % 3;
+				final int v = i / 3;
+				SOURCE[t][grid(t, u, v)] = i;
+			}
+		}
+	}
+
+	private final int[] light = new int[GRID_SIZE];
+	private final int[] ao = new int[GRID_SIZE];
+
+	/** Canonical form of the face data last given to {@link #canonicalize(AoFaceData)}. */
+	final AoFaceData canonical = new AoFaceData();
+
+	/**
+	 * Sets {@link #canonical} to the canonical form of the given face data
+	 * and returns the transform that produces it.
+	 */
+	int canonicalize(AoFaceData faceData) {
+		read(faceData);
+		int best = IDENTITY;
+
+		for (int t = 1; t < TRANSFORM_COUNT; ++t) {
+			if (compare(SOURCE[t], SOURCE[best]) < 0) {
+				best = t;
+			}
+		}
+
+		write(SOURCE[best], canonical);
+		return best;
+	}
+
+	/** Sets target to the given face data with the given transform applied. */
+	void transform(AoFaceData faceData, int transform, AoFaceData target) {
+		read(faceData);
+		write(SOURCE[transform], target);
+	}
+
+	private int compare(int[] a, int[] b) {
+		for (int i = 0; i < GRID_SIZE; ++i) {
+			final int result = Integer.compare(light[a[i]], light[b[i]]);
+
+			if (result != 0) {
+				return result;
+			}
+		}
+
+		for (int i = 0; i < GRID_SIZE; ++i) {
+			final int result = Integer.compare(ao[a[i]], ao[b[i]]);
+
+			if (result != 0) {
+				return result;
+			}
+		}
+
+		return 0;
+	}
+
+	private void read(AoFaceData faceData) {
+		light[0] = faceData.topLeft;
+		light[1] = faceData.top;
+		light[2] = faceData.topRight;
+		light[3] = faceData.left;
+		light[4] = faceData.center;
+		light[5] = faceData.right;
+		light[6] = faceData.bottomLeft;
+		light[7] = faceData.bottom;
+		light[8] = faceData.bottomRight;
+
+		ao[0] = faceData.aoTopLeft;
+		ao[1] = faceData.aoTop;
+		ao[2] = faceData.aoTopRight;
+		ao[3] = faceData.aoLeft;
+		ao[4] = faceData.aoCenter;
+		ao[5] = faceData.aoRight;
+		ao[6] = faceData.aoBottomLeft;
+		ao[7] = faceData.aoBottom;
+		ao[8] = faceData.aoBottomRight;
+	}
+
+	private void write(int[] source, AoFaceData target) {
+		target.topLeft = light[source[0]];
+		target.top = light[source[1]];
+		target.topRight = light[source[2]];
+		target.left = light[source[3]];
+		target.center = light[source[4]];
+		target.right = light[source[5]];
+		target.bottomLeft = light[source[6]];
+		target.bottom = light[source[7]];
+		target.bottomRight = light[source[8]];
+
+		target.aoTopLeft = ao[source[0]];
+		target.aoTop = ao[source[1]];
+		target.aoTopRight = ao[source[2]];
+		target.aoLeft = ao[source[3]];
+		target.aoCenter = ao[source[4]];
+		target.aoRight = ao[source[5]];
+		target.aoBottomLeft = ao[source[6]];
+		target.aoBottom = ao[source[7]];
+		target.aoBottomRight = ao[source[8]];
+
+		target.updateHash();
+	}
+
+	/** Grid index that the transform moves grid position u, v to. Positions are 0 to 2. */
+	private static int grid(int transform, int u, int v) {
+		if ((transform & TRANSPOSE) != 0) {
+			final int swap = u;
+			u = v;
+			v = swap;
+		}
+
+		if ((transform & FLIP_U) != 0) {
+			u = 2 - u;
+		}
+
+		if ((transform & FLIP_V) != 0) {
+			v = 2 - v;
+		}
+
+		return u + v * 3;
+	}
+
+	/** Transformed u of face coordinates u, v, each 0 to 1. */
+	static float u(int transform, float u, float v) {
+		final float result = (transform & TRANSPOSE) == 0 ? u : v;
+		return (transform & FLIP_U) == 0 ? result : 1 - result;
+	}
+
+	/** Transformed v of face coordinates u, v, each 0 to 1. */
+	static float v(int transform, float u, float v) {
+		final float result = (transform & TRANSPOSE) == 0 ? v : u;
+		return (transform & FLIP_V) == 0 ? result : 1 - result;
+	}
+}
@@ -33,10 +33,15 @@ import grondag.canvas.varia.GFX;
 @Environment(EnvType.CLIENT)
 @SuppressWarnings("unused")
 class LightmapHdTexture implements AutoCloseable {
+	/** Upper bound on bytes uploaded per frame so bursts of new lightmaps after a rebuild wave are spread out. */
+	private static final int UPLOAD_BUDGET_BYTES = 1 << 20;
+	/** Clean maps that can be re-sent to join two dirty maps in the same row into one upload. */
+	private static final int MAX_UPLOAD_GAP = 4;
 	private static final ConcurrentLinkedQueue<LightmapHd> updates = new ConcurrentLinkedQueue<>();
 	private static LightmapHdTexture instance;
 	private final SimpleTexture texture;
 	private final SimpleImage image;
+	private final LightmapHdUploadPlanner planner = new LightmapHdUploadPlanner(LightmapSizer.mapsPerAxis, LightmapSizer.paddedSize, MAX_UPLOAD_GAP);
 	private int frameCounter = 0;
 
 	private LightmapHdTexture() {
@@ -69,19 +74,11 @@ class LightmapHdTexture implements AutoCloseable {
 	private void clear() {
 		image.clear((byte) 255);
 		texture.upload();
+		planner.clear();
 	}
 
 	public void enque(LightmapHd lightmap) {
-		final SimpleImage image = this.image;
-		final int uMap = lightmap.uMinImg;
-		final int vMap = lightmap.vMinImg;
-
-		for (int u = 0; u < LightmapSizer.paddedSize; u++) {
-			for (int v = 0; v < LightmapSizer.paddedSize; v++) {
-				image.setPixelRGBA(uMap + u, vMap + v, lightmap.pixel(u, v));
-			}
-		}
-
+		image.setPixelsRGBA(lightmap.uMinImg, lightmap.vMinImg, LightmapSizer.paddedSize, LightmapSizer.paddedSize, lightmap.pixels());
 		updates.add(lightmap);
 	}
 
@@ -120,35 +117,18 @@ class LightmapHdTexture implements AutoCloseable {
 	public void onRenderTick() {
 		frameCounter++;
 
-		if (updates.isEmpty() || frameCounter < 0) { //Configurator.maxLightmapDelayFrames) {
+		if ((updates.isEmpty() && planner.pendingCount() == 0) || frameCounter < 0) { //Configurator.maxLightmapDelayFrames) {
 			return;
 		}
 
 		frameCounter = 0;
 
-		int uMin = Integer.MAX_VALUE;
-		int vMin = Integer.MAX_VALUE;
-		int uMax = Integer.MIN_VALUE;
-		int vMax = Integer.MIN_VALUE;
-
 		LightmapHd map;
 
 		while ((map = updates.poll()) != null) {
-			final int uMap = map.uMinImg;
-			final int vMap = map.vMinImg;
-			uMin = Math.min(uMin, uMap);
-			vMin = Math.min(vMin, vMap);
-			uMax = Math.max(uMax, uMap + LightmapSizer.paddedSize);
-			vMax = Math.max(vMax, vMap + LightmapSizer.paddedSize);
+			planner.add(map.uMinImg / LightmapSizer.paddedSize, map.vMinImg / LightmapSizer.paddedSize);
 		}
 
-		if (uMin == Integer.MAX_VALUE) {
-			return;
-		}
-
-		uMin = (uMin / 4) * 4;
-		final int w = ((uMax - uMin + 3) / 4) * 4;
-
-		texture.uploadPartial(uMin, vMin, w, vMax - vMin);
+		planner.plan(UPLOAD_BUDGET_BYTES, texture::uploadPartial);
 	}
 }
@@ -0,0 +1,218 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.light;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Merges dirty lightmaps into rectangles for texture upload.
+ *
+ * <p>Lightmaps are addressed by map column and row in the texture. Dirty maps in the same
+ * row become one span when separated by no more than {@code maxGap} clean maps, because
+ * re-sending a few clean pixels costs less than another upload call. Spans covering
+ * the same columns in consecutive rows are merged into one rectangle.
+ *
+ * <p>Each call to {@link #plan(int, Target)} uploads rectangles in row order until the byte
+ * budget is spent and leaves the rest pending for the next call. At least one rectangle
+ * is always uploaded so that pending maps can't starve.
+ *
+ * <p>Not thread-safe. Maps are queued from worker threads and added here on the render thread.
+ */
+final class LightmapHdUploadPlanner {
+	@FunctionalInterface
+	interface Target {
+		/** Pixel coordinates of a rectangle to upload. */
+		void upload(int x, int y, int width, int height);
+	}
+
+	private static final int BYTES_PER_PIXEL = 4;
+
+	private final int mapsPerAxis;
+	private final int mapSize;
+	private final int maxGap;
+	private final IntArrayList pending = new IntArrayList();
+
+	// rectangles in map units, four values each: column, row, width, height
+	private final IntArrayList rects = new IntArrayList();
+	// rectangles ending in the previous row and the current row, sorted by column
+	private final IntArrayList openRects = new IntArrayList();
+	private final IntArrayList rowRects = new IntArrayList();
+	private int[] keyRects = new int[64];
+
+	LightmapHdUploadPlanner(int mapsPerAxis, int mapSize, int maxGap) {
+		this.mapsPerAxis = mapsPerAxis;
+		this.mapSize = mapSize;
+		this.maxGap = maxGap;
+	}
+
+	void add(int column, int row) {
+		assert column >= 0 && column < mapsPerAxis && row >= 0 && row < mapsPerAxis;
+		pending.add(row * mapsPerAxis + column);
+	}
+
+	/** Count of maps waiting for upload. May include duplicates until the next plan. */
+	int pendingCount() {
+		return pending.size();
+	}
+
+	void clear() {
+		pending.clear();
+	}
+
+	/**
+	 * Sends rectangles covering pending maps to the target until the budget is spent.
+	 * Returns the number of rectangles uploaded.
+	 */
+	int plan(int budgetBytes, Target target) {
+		if (pending.isEmpty()) {
+			return 0;
+		}
+
+		final int[] keys = pending.elements();
+		int count = pending.size();
+		Arrays.sort(keys, 0, count);
+		count = removeDuplicates(keys, count);
+
+		final int rectCount = buildRects(keys, count, budgetBytes);
+		final int[] r = rects.elements();
+		int uploads = 0;
+		int bytes = 0;
+
+		while (uploads < rectCount) {
+			final int i = uploads * 4;
+			final int size = rectBytes(r[i + 2], r[i + 3]);
+
+			if (uploads > 0 && bytes + size > budgetBytes) {
+				break;
+			}
+
+			target.upload(r[i] * mapSize, r[i + 1] * mapSize, r[i + 2] * mapSize, r[i + 3] * mapSize);
+			bytes += size;
+			++uploads;
+		}
+
+		// rectangles don't overlap, so maps in rectangles not sent are still pending
+		int n = 0;
+
+		for (int i = 0; i < count; ++i) {
+			if (keyRects[i] >= uploads) {
+				keys[n++] = keys[i];
+			}
+		}
+
+		pending.size(n);
+		return uploads;
+	}
+
+	private int rectBytes(int columns, int rows) {
+		return columns * rows * mapSize * mapSize * BYTES_PER_PIXEL;
+	}
+
+	private static int removeDuplicates(int[] keys, int count) {
+		int n = 0;
+
+		for (int i = 0; i < count; ++i) {
+			if (n == 0 || keys[n - 1] != keys[i]) {
+				keys[n++] = keys[i];
+			}
+		}
+
+		return n;
+	}
+
+	/**
+	 * Builds rectangles from sorted keys, ordered by first row and then column,
+	 * and records the rectangle of each key.
+	 */
+	private int buildRects(int[] keys, int count, int budgetBytes) {
+		rects.clear();
+		openRects.clear();
+		rowRects.clear();
+
+		if (keyRects.length < count) {
+			keyRects = new int[Math.max(count, keyRects.length * 2)];
+		}
+
+		int currentRow = -1;
+		int open = 0;
+		int i = 0;
+
+		while (i < count) {
+			final int start = i;
+			final int row = keys[i] / mapsPerAxis;
+			final int first = keys[i] % mapsPerAxis;
+			int last = first;
+
+			while (++i < count && keys[i] / mapsPerAxis == row && keys[i] % mapsPerAxis - last - 1 <= maxGap) {
+				last = keys[i] % mapsPerAxis;
+			}
+
+			if (row != currentRow) {
+				openRects.clear();
+
+				if (row == currentRow + 1) {
+					openRects.addAll(rowRects);
+				}
+
+				rowRects.clear();
+				currentRow = row;
+				open = 0;
+			}
+
+			final int width = last - first + 1;
+			int rect = -1;
+
+			while (open < openRects.size()) {
+				final int candidate = openRects.getInt(open);
+				final int j = candidate * 4;
+				final int column = rects.getInt(j);
+
+				if (column > first) {
+					break;
+				}
+
+				++open;
+
+				if (column == first && rects.getInt(j + 2) == width) {
+					final int height = rects.getInt(j + 3) + 1;
+
+					if (rectBytes(width, height) <= budgetBytes) {
+						rects.set(j + 3, height);
+						rect = candidate;
+					}
+
+					break;
+				}
+			}
+
+			if (rect == -1) {
+				rect = rects.size() / 4;
+				rects.add(first);
+				rects.add(row);
+				rects.add(width);
+				rects.add(1);
+			}
+
+			rowRects.add(rect);
+			Arrays.fill(keyRects, start, i, rect);
+		}
+
+		return rects.size() / 4;
+	}
+}
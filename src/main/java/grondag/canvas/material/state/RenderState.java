@@ -146,7 +146,7 @@ public final class RenderState extends AbstractRenderState {
 		depthShader.setModelOrigin(x, y, z);
 		depthShader.setCascade(cascade);
 
-		GFX.enable(GFX.GL_POLYGON_OFFSET_FILL);
+		GFX.enablePolygonOffset();
 		GFX.polygonOffset(Pipeline.shadowSlopeFactor, Pipeline.shadowBiasUnits);
 		//GL46.glCullFace(GL46.GL_FRONT);
 	}
@@ -253,8 +253,8 @@ public final class RenderState extends AbstractRenderState {
 		currentMatrixState = null;
 		shadowCurrentMatrixState = null;
 
-		GFX.glDisable(GFX.GL_POLYGON_OFFSET_FILL);
-		GFX.glCullFace(GFX.GL_BACK);
+		GFX.disablePolygonOffset();
+		GFX.cullFace(GFX.GL_BACK);
 
 		GlProgram.deactivate();
 		MaterialDecal.disable();
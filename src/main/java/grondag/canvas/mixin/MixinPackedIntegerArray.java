@@ -16,7 +16,6 @@
 
 package grondag.canvas.mixin;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 
@@ -33,28 +32,30 @@ public abstract class MixinPackedIntegerArray implements PackedIntegerArrayExt {
 	@Shadow
 	private long maxValue;
 	@Shadow
-	private int size;
-	@Shadow
 	private int elementsPerLong;
 
 	@Override
-	public void canvas_fastForEach(IntArrayList list) {
-		int i = 0;
+	public void canvas_unpack(int[] target, int fromIndex, int toIndex) {
 		final long[] bits = storage;
-		final int wordLimit = bits.length;
+		final int elementBits = this.elementBits;
 		final int elementsPerWord = elementsPerLong;
+		final long mask = maxValue;
 
-		for (int wordIndex = 0; wordIndex < wordLimit; ++wordIndex) {
-			long l = bits[wordIndex];
+		int wordIndex = fromIndex / elementsPerWord;
+		int offset = fromIndex - wordIndex * elementsPerWord;
+		int i = fromIndex;
 
-			for (int j = 0; j < elementsPerWord; ++j) {
-				list.add((int) (l & maxValue));
-				l = (l >> elementBits);
+		// elements never span words, so each word is shifted out in place
+		while (i < toIndex) {
+			long word = bits[wordIndex++] >>> (offset * elementBits);
+			final int limit = Math.min(toIndex, i + elementsPerWord - offset);
 
-				if (++i >= size) {
-					return;
-				}
+			while (i < limit) {
+				target[i++] = (int) (word & mask);
+				word >>>= elementBits;
 			}
+
+			offset = 0;
 		}
 	}
 }
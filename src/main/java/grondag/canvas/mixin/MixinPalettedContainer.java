@@ -16,8 +16,14 @@
 
 package grondag.canvas.mixin;
 
+import java.lang.invoke.VarHandle;
+
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import net.minecraft.block.BlockState;
 import net.minecraft.util.collection.PackedIntegerArray;
@@ -27,6 +33,7 @@ import net.minecraft.world.chunk.PalettedContainer;
 import grondag.canvas.mixinterface.PalettedContainerExt;
 import grondag.canvas.terrain.util.ChunkPaletteCopier;
 import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
+import grondag.canvas.terrain.util.ChunkPaletteCopier.SectionReader;
 
 @Mixin(PalettedContainer.class)
 public abstract class MixinPalettedContainer<T> implements PalettedContainerExt {
@@ -37,9 +44,39 @@ public abstract class MixinPalettedContainer<T> implements PalettedContainerExt
 	@Shadow
 	private Palette<T> palette;
 
+	/**
+	 * Odd while a write is in progress. All client-side writes happen between
+	 * lock() and unlock(), including replacement of storage and palette on resize.
+	 */
+	@Unique
+	private volatile int canvas_version;
+
+	@Inject(at = @At("HEAD"), method = "lock")
+	private void onLock(CallbackInfo ci) {
+		++canvas_version;
+		// volatile store is only a release - keep data writes after this from moving before it
+		VarHandle.storeStoreFence();
+	}
+
+	@Inject(at = @At("HEAD"), method = "unlock")
+	private void onUnlock(CallbackInfo ci) {
+		++canvas_version;
+	}
+
+	@Override
+	public int canvas_version() {
+		return canvas_version;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public PaletteCopy canvas_paletteCopy() {
 		return ChunkPaletteCopier.captureCopy((Palette<BlockState>) palette, data, (BlockState) defaultValue);
 	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void canvas_read(SectionReader reader, int fromIndex, int toIndex) {
+		reader.load((Palette<BlockState>) palette, data, (BlockState) defaultValue, fromIndex, toIndex);
+	}
 }
@@ -16,8 +16,10 @@
 
 package grondag.canvas.mixinterface;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-
 public interface PackedIntegerArrayExt {
-	void canvas_fastForEach(IntArrayList list);
+	/**
+	 * Writes unpacked values for elements in the given range to the same
+	 * positions in the target array, one storage word at a time.
+	 */
+	void canvas_unpack(int[] target, int fromIndex, int toIndex);
 }
@@ -17,7 +17,17 @@
 package grondag.canvas.mixinterface;
 
 import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
+import grondag.canvas.terrain.util.ChunkPaletteCopier.SectionReader;
 
 public interface PalettedContainerExt {
 	PaletteCopy canvas_paletteCopy();
+
+	void canvas_read(SectionReader reader, int fromIndex, int toIndex);
+
+	/**
+	 * Incremented before and after each write, so the value is odd while a write is
+	 * in progress. Content read from another thread is consistent if the version
+	 * was even before the read and unchanged after.
+	 */
+	int canvas_version();
 }
@@ -16,65 +16,232 @@
 
 package grondag.canvas.perf;
 
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import grondag.canvas.CanvasMod;
 import grondag.canvas.config.Configurator;
-import grondag.fermion.sc.concurrency.ConcurrentPerformanceCounter;
 
+/**
+ * Time, runs, quads and vertices of each region rebuild phase.
+ *
+ * <p>Each thread records into its own {@link Shard} without synchronization, so
+ * counting doesn't contend between rebuild workers. Shards are merged when read.
+ * Reads may be off by the counts in flight.
+ *
+ * <p>With {@link Configurator#enablePerformanceTrace} a breakdown is logged from the
+ * render thread every 2000 regions. Phase times are also recorded in {@link MetricsRegistry}:
+ * once per run for top-level phases and as per-region totals for phases nested in build.
+ */
 public abstract class ChunkRebuildCounters {
-	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
-	private static final ConcurrentPerformanceCounter buildCounter = new ConcurrentPerformanceCounter();
-	private static final ConcurrentPerformanceCounter copyCounter = new ConcurrentPerformanceCounter();
-	private static final ConcurrentPerformanceCounter uploadCounter = new ConcurrentPerformanceCounter();
-	private static final ThreadLocal<Long> chunkStart = ThreadLocal.withInitial(() -> 0L);
-	private static final ThreadLocal<Long> copyStart = ThreadLocal.withInitial(() -> 0L);
-	private static final ThreadLocal<Long> uploadStart = ThreadLocal.withInitial(() -> 0L);
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace || MetricsRegistry.ENABLED;
+	private static final boolean LOG_ENABLED = Configurator.enablePerformanceTrace;
+	private static final int LOG_INTERVAL = 2000;
+
+	public enum Phase {
+		/** Copy of world state, on the thread that schedules the rebuild. */
+		COPY("copy", false),
+		/** Capture of block entities, before build. */
+		BLOCK_ENTITY("block_entity", false),
+		/** All of buildTerrain, including the phases below. */
+		BUILD("build", false),
+		/** Fluid models, including lighting and transcoding of their quads. */
+		FLUID("fluid", true),
+		/** Block models, including lighting and transcoding of their quads. */
+		BLOCK("block", true),
+		/** AO and flat lighting of quads. */
+		LIGHT("light", true),
+		/** Lighting, color and encoding of quads into collectors. */
+		TRANSCODE("transcode", true),
+		/** Translucent quad sort. */
+		SORT("sort", true),
+		/** Transfer to GPU buffers, on the render thread. */
+		UPLOAD("upload", false);
+
+		public final String token;
+		/** True when nested in {@link #BUILD} and recorded as a total per region. */
+		public final boolean isNested;
+		private final ConcurrentHistogram timer;
+
+		Phase(String token, boolean isNested) {
+			this.token = token;
+			this.isNested = isNested;
+			timer = MetricsRegistry.timer("rebuild." + token);
+		}
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+	private static final int PHASE_COUNT = PHASES.length;
+
+	private static final CopyOnWriteArrayList<Shard> SHARDS = new CopyOnWriteArrayList<>();
+	private static final ThreadLocal<Shard> SHARD = ThreadLocal.withInitial(() -> {
+		final Shard result = new Shard(true);
+		SHARDS.add(result);
+		return result;
+	});
+
+	/** Render thread only. */
+	private static Totals lastReport = new Totals();
 
 	private ChunkRebuildCounters() {
 	}
 
+	/**
+	 * Counters of the calling thread. Retain the result to avoid thread-local lookups
+	 * in loops, but use it only from the same thread.
+	 */
+	public static Shard shard() {
+		return SHARD.get();
+	}
+
+	/**
+	 * Counters that are not included in {@link #merge()} or recorded in metrics,
+	 * for measuring builds outside of normal rebuilds. Same threading rules as {@link #shard()}.
+	 */
+	public static Shard detachedShard() {
+		return new Shard(false);
+	}
+
+	/** Starts a new log interval. Counts already recorded are kept. */
 	public static void reset() {
-		buildCounter.clearStats();
-		copyCounter.clearStats();
-		uploadCounter.clearStats();
+		lastReport = merge();
 	}
 
-	public static void startChunk() {
-		chunkStart.set(System.nanoTime());
+	public static Totals merge() {
+		final Totals result = new Totals();
+
+		for (final Shard shard : SHARDS) {
+			for (int i = 0; i < PHASE_COUNT; ++i) {
+				result.elapsed[i] += shard.elapsed[i];
+				result.runs[i] += shard.runs[i];
+				result.quads[i] += shard.quads[i];
+				result.vertices[i] += shard.vertices[i];
+			}
+		}
+
+		return result;
 	}
 
-	public static void completeChunk() {
-		buildCounter.endRun(chunkStart.get());
-		final int chunkCount = buildCounter.addCount(1);
+	/** Call once per frame from the render thread. */
+	public static void onFrame() {
+		if (!LOG_ENABLED) {
+			return;
+		}
+
+		final Totals totals = merge();
+		final int b = Phase.BUILD.ordinal();
+		final long regionCount = totals.runs[b] - lastReport.runs[b];
 
-		if (chunkCount == 2000) {
-			CanvasMod.LOG.info(String.format("Rebuild elapsed time per region for last 2000 chunks = %,dns  total time: %fs", buildCounter.runTime() / 2000, buildCounter.runTime() / 1000000000d));
+		if (regionCount >= LOG_INTERVAL) {
+			CanvasMod.LOG.info(String.format("Rebuild phases for last %,d regions:", regionCount));
 
-			final int copyCount = copyCounter.runCount();
-			CanvasMod.LOG.info(String.format("World copy time per chunk for last %d regions = %,dns  total time: %fs", copyCount, copyCount == 0 ? 0 : copyCounter.runTime() / copyCount, copyCounter.runTime() / 1000000000d));
+			for (final Phase phase : PHASES) {
+				final int i = phase.ordinal();
+				final long runs = totals.runs[i] - lastReport.runs[i];
+				final long elapsed = totals.elapsed[i] - lastReport.elapsed[i];
 
-			final int uploadCount = uploadCounter.runCount();
-			CanvasMod.LOG.info(String.format("Upload time per region for last %d regions = %,dns  total time: %fs", uploadCount, uploadCount == 0 ? 0 : uploadCounter.runTime() / uploadCount, uploadCounter.runTime() / 1000000000d));
-			reset();
+				CanvasMod.LOG.info(String.format("  %-12s runs: %,12d  per region: %,10dns  per run: %,8dns  total: %8.3fs  quads: %,12d  vertices: %,12d",
+						phase.token, runs, elapsed / regionCount, runs == 0 ? 0 : elapsed / runs, elapsed / 1000000000d,
+						totals.quads[i] - lastReport.quads[i], totals.vertices[i] - lastReport.vertices[i]));
+			}
 
+			lastReport = totals;
 			CanvasMod.LOG.info("");
 		}
 	}
 
 	public static void startCopy() {
-		copyStart.set(System.nanoTime());
+		shard().start(Phase.COPY);
 	}
 
 	public static void completeCopy() {
-		copyCounter.endRun(copyStart.get());
-		copyCounter.addCount(1);
+		shard().complete(Phase.COPY);
 	}
 
 	public static void startUpload() {
-		uploadStart.set(System.nanoTime());
+		shard().start(Phase.UPLOAD);
 	}
 
 	public static void completeUpload() {
-		uploadCounter.endRun(uploadStart.get());
-		uploadCounter.addCount(1);
+		shard().complete(Phase.UPLOAD);
+	}
+
+	/** Sums of all shards at a point in time, indexed by phase ordinal. */
+	public static class Totals {
+		public final long[] elapsed = new long[PHASE_COUNT];
+		public final long[] runs = new long[PHASE_COUNT];
+		public final long[] quads = new long[PHASE_COUNT];
+		public final long[] vertices = new long[PHASE_COUNT];
+	}
+
+	/**
+	 * Counters written by a single thread. Phases of different kinds may nest
+	 * but a phase must not nest in itself.
+	 */
+	public static final class Shard {
+		private final long[] elapsed = new long[PHASE_COUNT];
+		private final long[] runs = new long[PHASE_COUNT];
+		private final long[] quads = new long[PHASE_COUNT];
+		private final long[] vertices = new long[PHASE_COUNT];
+		private final long[] started = new long[PHASE_COUNT];
+		private final long[] startQuads = new long[PHASE_COUNT];
+		private final long[] startVertices = new long[PHASE_COUNT];
+		private final long[] regionElapsed = new long[PHASE_COUNT];
+		private final long[] regionRuns = new long[PHASE_COUNT];
+		private final boolean recordsMetrics;
+
+		private Shard(boolean recordsMetrics) {
+			this.recordsMetrics = recordsMetrics;
+		}
+
+		public long elapsed(Phase phase) {
+			return elapsed[phase.ordinal()];
+		}
+
+		public void start(Phase phase) {
+			final int i = phase.ordinal();
+			startQuads[i] = quads[Phase.TRANSCODE.ordinal()];
+			startVertices[i] = vertices[Phase.TRANSCODE.ordinal()];
+
+			if (phase == Phase.BUILD) {
+				System.arraycopy(elapsed, 0, regionElapsed, 0, PHASE_COUNT);
+				System.arraycopy(runs, 0, regionRuns, 0, PHASE_COUNT);
+			}
+
+			started[i] = System.nanoTime();
+		}
+
+		/** Completes the phase with the quads and vertices transcoded since it started. */
+		public void complete(Phase phase) {
+			final int i = phase.ordinal();
+			final int t = Phase.TRANSCODE.ordinal();
+			complete(phase, quads[t] - startQuads[i], vertices[t] - startVertices[i]);
+		}
+
+		public void complete(Phase phase, long quadCount, long vertexCount) {
+			final int i = phase.ordinal();
+			final long e = System.nanoTime() - started[i];
+			elapsed[i] += e;
+			++runs[i];
+			quads[i] += quadCount;
+			vertices[i] += vertexCount;
+
+			if (!recordsMetrics) {
+				return;
+			}
+
+			if (!phase.isNested) {
+				phase.timer.record(e);
+			}
+
+			if (phase == Phase.BUILD) {
+				for (final Phase p : PHASES) {
+					final int j = p.ordinal();
+
+					if (p.isNested && runs[j] != regionRuns[j]) {
+						p.timer.record(elapsed[j] - regionElapsed[j]);
+					}
+				}
+			}
+		}
 	}
 }
@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values with bounded relative error, in the manner of HdrHistogram.
+ *
+ * <p>Values are counted in log-linear buckets: exact below {@code 2 * SUB_COUNT} and within
+ * {@code 1 / SUB_COUNT} of the true value above that, across the full range of long.
+ * Memory is fixed and small, so histograms can be kept for every step without tuning.
+ *
+ * <p>Recording is lock-free and may be done from any thread. Reads are not atomic with
+ * respect to recording, so a summary taken while values are recorded may be off by
+ * the values in flight.
+ */
+public class ConcurrentHistogram {
+	static final int SUB_BITS = 4;
+	static final int SUB_COUNT = 1 << SUB_BITS;
+	static final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+
+	public final String name;
+	public final String unit;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public ConcurrentHistogram(String name, String unit) {
+		this.name = name;
+		this.unit = unit;
+	}
+
+	/** Negative values are counted as zero. */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+
+		counts.incrementAndGet(bucket(value));
+		sum.add(value);
+
+		long m = max.get();
+
+		while (value > m && !max.compareAndSet(m, value)) {
+			m = max.get();
+		}
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			counts.set(i, 0);
+		}
+
+		sum.reset();
+		max.set(0);
+	}
+
+	static int bucket(long value) {
+		final int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+		return (shift << SUB_BITS) + (int) (value >>> shift);
+	}
+
+	/** Smallest value counted in the given bucket. */
+	static long lowestValue(int bucket) {
+		final int shift = Math.max(0, (bucket >> SUB_BITS) - 1);
+		return (long) (bucket - (shift << SUB_BITS)) << shift;
+	}
+
+	/** Largest value counted in the given bucket. */
+	static long highestValue(int bucket) {
+		final int shift = Math.max(0, (bucket >> SUB_BITS) - 1);
+		return lowestValue(bucket) + (1L << shift) - 1;
+	}
+
+	public Summary summarize() {
+		final long[] snapshot = new long[BUCKET_COUNT];
+		long count = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			final long c = counts.get(i);
+			snapshot[i] = c;
+			count += c;
+		}
+
+		final long maxValue = max.get();
+
+		return new Summary(name, unit, count, count == 0 ? 0 : sum.sum() / count,
+				percentile(snapshot, count, 0.5, maxValue),
+				percentile(snapshot, count, 0.99, maxValue),
+				percentile(snapshot, count, 0.999, maxValue),
+				maxValue);
+	}
+
+	/**
+	 * Highest value of the bucket that holds the given fraction of the counts,
+	 * so reported percentiles are never below the true value by more than the
+	 * bucket error. Clamped to the recorded maximum.
+	 */
+	static long percentile(long[] snapshot, long count, double fraction, long maxValue) {
+		if (count == 0) {
+			return 0;
+		}
+
+		final long target = Math.max(1, (long) Math.ceil(count * fraction));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			seen += snapshot[i];
+
+			if (seen >= target) {
+				return Math.min(highestValue(i), maxValue);
+			}
+		}
+
+		return maxValue;
+	}
+
+	public record Summary(String name, String unit, long count, long mean, long p50, long p99, long p999, long max) { }
+}
@@ -0,0 +1,184 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntSupplier;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import net.minecraft.util.Util;
+
+import net.fabricmc.loader.api.FabricLoader;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.config.Configurator;
+import grondag.canvas.perf.ConcurrentHistogram.Summary;
+import grondag.canvas.terrain.util.TerrainExecutor;
+import grondag.canvas.varia.GFX;
+
+/**
+ * Named histograms of frame step times, region rebuild phases and sampled queue depths,
+ * kept for the session so tail latency can be compared across machines.
+ *
+ * <p>Enabled by {@link Configurator#enableMetrics}. Timers are recorded by {@link Timekeeper}
+ * and {@link ChunkRebuildCounters}. Gauges, including GL calls issued and skipped by
+ * {@link GFX#STATE}, are sampled once per frame. Press the export metrics key to write
+ * all histograms to {@code canvas_metrics} in the game directory as JSON and CSV.
+ */
+public final class MetricsRegistry {
+	public static final boolean ENABLED = Configurator.enableMetrics;
+	public static final String NANOS = "ns";
+	public static final String COUNT = "count";
+
+	private static final ConcurrentHashMap<String, ConcurrentHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+	private static final CopyOnWriteArrayList<Gauge> GAUGES = new CopyOnWriteArrayList<>();
+	private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+	static {
+		if (ENABLED) {
+			gauge("terrain.queue", TerrainExecutor.INSTANCE::queueDepth);
+			gauge("gl.issued", GFX.STATE::lastFrameIssued);
+			gauge("gl.skipped", GFX.STATE::lastFrameSkipped);
+		}
+	}
+
+	private MetricsRegistry() { }
+
+	/** Histogram with the given name, created if needed. Callers should retain the result. */
+	public static ConcurrentHistogram histogram(String name, String unit) {
+		return HISTOGRAMS.computeIfAbsent(name, n -> new ConcurrentHistogram(n, unit));
+	}
+
+	public static ConcurrentHistogram timer(String name) {
+		return histogram(name, NANOS);
+	}
+
+	/** Samples the given supplier once per frame into a histogram of the same name. */
+	public static void gauge(String name, IntSupplier supplier) {
+		GAUGES.add(new Gauge(histogram(name, COUNT), supplier));
+	}
+
+	/** Call once per frame from the render thread. */
+	public static void onFrame() {
+		if (ENABLED) {
+			for (final Gauge gauge : GAUGES) {
+				gauge.histogram.record(gauge.supplier.getAsInt());
+			}
+		}
+
+		while (CanvasMod.EXPORT_METRICS.wasPressed()) {
+			if (ENABLED) {
+				export();
+			} else {
+				CanvasMod.LOG.info("Canvas metrics are not enabled. Set enableMetrics in the config file and restart to collect them.");
+			}
+		}
+	}
+
+	public static void reset() {
+		for (final ConcurrentHistogram histogram : HISTOGRAMS.values()) {
+			histogram.reset();
+		}
+	}
+
+	public static List<Summary> summarize() {
+		final ArrayList<Summary> result = new ArrayList<>();
+
+		for (final ConcurrentHistogram histogram : HISTOGRAMS.values()) {
+			result.add(histogram.summarize());
+		}
+
+		result.sort(Comparator.comparing(Summary::name));
+		return result;
+	}
+
+	/**
+	 * Summarizes on the calling thread and writes the files on the IO worker,
+	 * so the frame isn't held up by the file system.
+	 */
+	public static void export() {
+		final List<Summary> summaries = summarize();
+		final Path dir = FabricLoader.getInstance().getGameDir().resolve("canvas_metrics");
+		final String baseName = "metrics-" + LocalDateTime.now().format(FILE_TIME);
+
+		Util.getIoWorkerExecutor().execute(() -> {
+			try {
+				Files.createDirectories(dir);
+				writeJson(dir.resolve(baseName + ".json"), summaries);
+				writeCsv(dir.resolve(baseName + ".csv"), summaries);
+				CanvasMod.LOG.info("Exported Canvas metrics to " + dir.resolve(baseName) + ".json/.csv");
+			} catch (final IOException e) {
+				CanvasMod.LOG.warn("Unable to export Canvas metrics due to exception.", e);
+			}
+		});
+	}
+
+	static void writeJson(Path path, List<Summary> summaries) throws IOException {
+		final JsonObject root = new JsonObject();
+		root.addProperty("version", CanvasMod.versionString);
+		root.addProperty("os", System.getProperty("os.name"));
+		root.addProperty("processors", Runtime.getRuntime().availableProcessors());
+
+		final JsonArray metrics = new JsonArray();
+
+		for (final Summary s : summaries) {
+			final JsonObject obj = new JsonObject();
+			obj.addProperty("name", s.name());
+			obj.addProperty("unit", s.unit());
+			obj.addProperty("count", s.count());
+			obj.addProperty("mean", s.mean());
+			obj.addProperty("p50", s.p50());
+			obj.addProperty("p99", s.p99());
+			obj.addProperty("p999", s.p999());
+			obj.addProperty("max", s.max());
+			metrics.add(obj);
+		}
+
+		root.add("metrics", metrics);
+
+		try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			new GsonBuilder().setPrettyPrinting().create().toJson(root, writer);
+		}
+	}
+
+	static void writeCsv(Path path, List<Summary> summaries) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writer.write("name,unit,count,mean,p50,p99,p999,max\n");
+
+			for (final Summary s : summaries) {
+				writer.write(String.format(Locale.ROOT, "\"%s\",%s,%d,%d,%d,%d,%d,%d\n", s.name(), s.unit(), s.count(), s.mean(), s.p50(), s.p99(), s.p999(), s.max()));
+			}
+		}
+	}
+
+	private record Gauge(ConcurrentHistogram histogram, IntSupplier supplier) { }
+}
@@ -17,6 +17,7 @@
 package grondag.canvas.perf;
 
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import net.minecraft.client.font.TextRenderer;
@@ -67,6 +68,12 @@ public abstract class Timekeeper {
 		private String currentStep;
 		private Object2LongOpenHashMap<String> stepElapsed;
 		private Group[] groups;
+		private ProfilerGroup currentGroup;
+		private long frameStart;
+		// Histograms are retained across reloads so metrics cover the whole session.
+		// Keyed by group and then step because step names are reused across groups.
+		private final Object2ObjectOpenHashMap<ProfilerGroup, Object2ObjectOpenHashMap<String, ConcurrentHistogram>> stepTimers = new Object2ObjectOpenHashMap<>();
+		private final ConcurrentHistogram frameTimer = MetricsRegistry.timer("frame.total");
 
 		private int frameSinceReload;
 		// Setup is done in all steps over single frames for every reload
@@ -81,6 +88,16 @@ public abstract class Timekeeper {
 		public void startFrame(ProfilerGroup group, String token) {
 			currentStep = null;
 
+			if (MetricsRegistry.ENABLED) {
+				final long now = Util.getMeasuringTimeNano();
+
+				if (frameStart != 0) {
+					frameTimer.record(now - frameStart);
+				}
+
+				frameStart = now;
+			}
+
 			if (frameSinceReload < SETUP_FRAMES) {
 				frameSinceReload++;
 			}
@@ -106,6 +123,10 @@ public abstract class Timekeeper {
 				final long elapsed = Util.getMeasuringTimeNano() - start;
 				stepElapsed.put(currentStep, elapsed);
 
+				if (MetricsRegistry.ENABLED) {
+					stepTimer(currentGroup, currentStep).record(elapsed);
+				}
+
 				if (Configurator.logRenderLagSpikes && elapsed > threshold) {
 					CanvasMod.LOG.info(String.format("Lag spike at %s - %,dns, threshold is %,dns", currentStep, elapsed, threshold));
 				}
@@ -116,6 +137,7 @@ public abstract class Timekeeper {
 			}
 
 			currentStep = token;
+			currentGroup = group;
 
 			start = Util.getMeasuringTimeNano();
 		}
@@ -124,6 +146,18 @@ public abstract class Timekeeper {
 		public void completePass() {
 			swap(null, null);
 		}
+
+		private ConcurrentHistogram stepTimer(ProfilerGroup group, String step) {
+			final Object2ObjectOpenHashMap<String, ConcurrentHistogram> groupTimers = stepTimers.computeIfAbsent(group, g -> new Object2ObjectOpenHashMap<>());
+			ConcurrentHistogram result = groupTimers.get(step);
+
+			if (result == null) {
+				result = MetricsRegistry.timer("frame." + (group == null ? "" : group.token + ".") + step);
+				groupTimers.put(step, result);
+			}
+
+			return result;
+		}
 	}
 
 	private static class Deactivated extends Timekeeper {
@@ -139,7 +173,7 @@ public abstract class Timekeeper {
 	public static Timekeeper instance = DEACTIVATED;
 
 	public static void configOrPipelineReload() {
-		final boolean enabled = Configurator.displayRenderProfiler || Configurator.logRenderLagSpikes;
+		final boolean enabled = Configurator.displayRenderProfiler || Configurator.logRenderLagSpikes || MetricsRegistry.ENABLED;
 
 		if (!enabled) {
 			instance = DEACTIVATED;
@@ -201,6 +201,8 @@ public class PipelineManager {
 	public static void init(PrimaryFrameBuffer primary, int width, int height) {
 		Pipeline.close();
 		tearDown();
+		// programs, textures and framebuffers were deleted and may be reused by new objects
+		GFX.STATE.invalidate();
 
 		w = width;
 		h = height;
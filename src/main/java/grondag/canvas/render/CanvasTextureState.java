@@ -21,6 +21,7 @@ import grondag.canvas.varia.GFX;
 /**
  * Deals with Mojang's unfortunate assumptions regarding the existence of
  * anything that is not GL_TEXTURE_2D or more than 12 texture units.
+ * Redundant calls are skipped by {@link GFX#STATE}.
  */
 public class CanvasTextureState {
 	private static final int MAX_TEXTURES = 64;
@@ -28,10 +29,8 @@ public class CanvasTextureState {
 	private static int activeTextureUnit = 0;
 
 	public static void bindTexture(int target, int texture) {
-		if (texture != BOUND_TEXTURES[activeTextureUnit]) {
-			BOUND_TEXTURES[activeTextureUnit] = texture;
-			GFX.bindTexture(target, texture);
-		}
+		BOUND_TEXTURES[activeTextureUnit] = texture;
+		GFX.bindTexture(target, texture);
 	}
 
 	public static void bindTexture(int texture) {
@@ -53,10 +52,8 @@ public class CanvasTextureState {
 	}
 
 	public static void activeTextureUnit(int textureUnit) {
-		if (activeTextureUnit != textureUnit - GFX.GL_TEXTURE0) {
-			activeTextureUnit = textureUnit - GFX.GL_TEXTURE0;
-			GFX.activeTexture(textureUnit);
-		}
+		activeTextureUnit = textureUnit - GFX.GL_TEXTURE0;
+		GFX.activeTexture(textureUnit);
 	}
 
 	public static int activeTextureUnit() {
@@ -33,12 +33,13 @@ public abstract class AbstractDrawableRegionList implements DrawableRegionList {
 	@Override
 	public final void close() {
 		if (!isClosed) {
+			isClosed = true;
+			// before regions are released because their clusters may close with them
+			closeInner();
+
 			for (DrawableRegion region : regions) {
 				region.releaseFromDrawList();
 			}
-
-			isClosed = true;
-			closeInner();
 		}
 	}
 
@@ -49,7 +49,13 @@ public interface DrawableRegionList {
 		}
 	};
 
-	static DrawableRegionList build(
+	/**
+	 * Updates the prior list to draw the given regions, or replaces it if it can't be updated.
+	 * Lists are updated by difference so that only regions entering or leaving the visible
+	 * set do any work. The prior list must not be used after this call.
+	 */
+	static DrawableRegionList update(
+			DrawableRegionList prior,
 			final VisibleRegionList visibleRegions,
 			boolean isTranslucent,
 			boolean isShadowMap
@@ -67,12 +73,11 @@ public interface DrawableRegionList {
 
 			if (drawable != null && drawable != DrawableRegion.EMPTY_DRAWABLE) {
 				drawables.add(drawable);
-				drawable.retainFromDrawList();
 			}
 		}
 
 		final var renderState = isTranslucent ? TerrainRenderStates.TRANSLUCENT : TerrainRenderStates.SOLID;
-		return drawables.isEmpty() ? DrawableRegionList.EMPTY : RealmDrawList.build(drawables, renderState, isShadowMap);
+		return RealmDrawList.update(prior, drawables, renderState, isShadowMap);
 	}
 
 	@FunctionalInterface
@@ -16,38 +16,98 @@
 
 package grondag.canvas.render.terrain.cluster;
 
-import java.util.ArrayDeque;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
+/**
+ * Runs cluster maintenance tasks within a per-frame time and buffer copy budget.
+ * A task that doesn't complete is resumed first next frame so its work is finished
+ * before another starts. Otherwise the waiting task with the highest priority runs next.
+ */
 public class ClusterTaskManager {
-	@FunctionalInterface interface ClusterTask {
+	interface ClusterTask {
 		/** Task should return false if unable to complete and needs more time next frame. */
 		boolean run(long deadlineNanos);
+
+		/** Waiting tasks with higher priority run first. */
+		float priority();
 	}
 
-	private static final ArrayDeque<ClusterTask> TASKS = new ArrayDeque<>();
+	/** Limits GPU buffer copies queued in one frame, which the time budget doesn't reflect. */
+	private static final int MAX_COPY_BYTES_PER_FRAME = 0x400000;
+
+	private static final ObjectArrayList<ClusterTask> TASKS = new ObjectArrayList<>();
+	private static ClusterTask currentTask = null;
+	private static int copyBytesRemaining = 0;
 
 	private ClusterTaskManager() { }
 
 	public static void run(long deadlineNanos) {
+		copyBytesRemaining = MAX_COPY_BYTES_PER_FRAME;
+
 		do {
-			var task = TASKS.poll();
+			if (currentTask == null) {
+				currentTask = pollHighestPriority();
 
-			if (task == null) {
-				break;
-			} else {
-				if (!task.run(deadlineNanos)) {
-					// reschedule for next frame if not complete
-					TASKS.offerFirst(task);
+				if (currentTask == null) {
+					break;
 				}
 			}
+
+			if (currentTask.run(deadlineNanos)) {
+				currentTask = null;
+			} else {
+				// out of time or copy budget - resume next frame
+				break;
+			}
 		} while (System.nanoTime() < deadlineNanos);
 	}
 
+	private static ClusterTask pollHighestPriority() {
+		final int size = TASKS.size();
+
+		if (size == 0) {
+			return null;
+		}
+
+		int bestIndex = 0;
+		float bestPriority = TASKS.get(0).priority();
+
+		for (int i = 1; i < size; ++i) {
+			final float priority = TASKS.get(i).priority();
+
+			if (priority > bestPriority) {
+				bestPriority = priority;
+				bestIndex = i;
+			}
+		}
+
+		// order of waiting tasks doesn't matter
+		final ClusterTask result = TASKS.get(bestIndex);
+		TASKS.set(bestIndex, TASKS.get(size - 1));
+		TASKS.size(size - 1);
+		return result;
+	}
+
+	/** True if tasks may queue more buffer copies this frame. */
+	static boolean hasCopyBudget() {
+		return copyBytesRemaining > 0;
+	}
+
+	static void consumeCopyBudget(int bytes) {
+		copyBytesRemaining -= bytes;
+	}
+
 	static void schedule(ClusterTask task) {
-		TASKS.offer(task);
+		TASKS.add(task);
+	}
+
+	/** Scheduled tasks, including one in progress. */
+	static int size() {
+		return TASKS.size() + (currentTask == null ? 0 : 1);
 	}
 
 	static void clear() {
 		TASKS.clear();
+		currentTask = null;
 	}
 }
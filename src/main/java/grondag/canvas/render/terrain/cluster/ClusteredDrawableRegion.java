@@ -22,7 +22,6 @@ import grondag.canvas.buffer.input.ArrayVertexCollector;
 import grondag.canvas.buffer.input.VertexBucket;
 import grondag.canvas.buffer.input.VertexCollectorList;
 import grondag.canvas.buffer.render.TransferBuffer;
-import grondag.canvas.buffer.render.TransferBuffers;
 import grondag.canvas.material.state.TerrainRenderStates;
 import grondag.canvas.render.terrain.base.AbstractDrawableRegion;
 import grondag.canvas.render.terrain.base.DrawableRegion;
@@ -50,15 +49,18 @@ public class ClusteredDrawableRegion extends AbstractDrawableRegion<ClusteredDra
 		assert drawList.size() == 1;
 		assert collector.renderState.sorted == translucent;
 
-		final TransferBuffer transferBuffer = TransferBuffers.claim(byteCount);
 		final VertexBucket[] buckets = translucent ? null : collector.sortVertexBuckets();
-		collector.toBuffer(0, transferBuffer, 0);
+		final int vertexCount = collector.quadCount() * 4;
+		assert byteCount == collector.byteSize();
+
+		// Collector may be empty after this if it hands off off-heap storage
+		final TransferBuffer transferBuffer = collector.toTransferBuffer();
 		ClusteredDrawableStorage storage = new ClusteredDrawableStorage(
 				realm,
-				transferBuffer, byteCount, packedOriginBlockPos, collector.quadCount() * 4,
+				transferBuffer, byteCount, packedOriginBlockPos, vertexCount,
 				buckets);
 
-		return new ClusteredDrawableRegion(packedOriginBlockPos, collector.quadCount() * 4, storage);
+		return new ClusteredDrawableRegion(packedOriginBlockPos, vertexCount, storage);
 	}
 
 	@Override
@@ -96,7 +96,8 @@ public class Slab extends AbstractGlBuffer implements SynchronizedBuffer {
 
 	@Override
 	public void onBufferSync() {
-		shutdown();
+		// GPU is done with prior content so buffer can be reused
+		SlabAllocator.recycle(this);
 	}
 
 	/** Returns the number of vertices allocated. */
@@ -140,7 +141,6 @@ public class Slab extends AbstractGlBuffer implements SynchronizedBuffer {
 	protected void onShutdown() {
 		assert RenderSystem.isOnRenderThread();
 		assert usedVertexCount == 0;
-		SlabAllocator.notifyShutdown(this);
 	}
 
 	private class TransferSlab implements TransferBuffer {
@@ -18,21 +18,37 @@ package grondag.canvas.render.terrain.cluster;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 
+import grondag.canvas.buffer.util.BufferPool;
+import grondag.canvas.buffer.util.PooledBufferBackend;
+import grondag.canvas.buffer.util.SizeClassBufferPool;
 import grondag.canvas.render.terrain.TerrainFormat;
 
 public class SlabAllocator {
 	private static int slabCount = 0;
 	private static long usedBytes = 0;
 	private static long capacityBytes = 0;
+	private static long compactedBytes = 0;
+	private static int compactionCount = 0;
 
 	static void addToVertexCount(int vertexCount) {
 		usedBytes += vertexCount * BYTES_PER_SLAB_VERTEX;
 	}
 
-	static void notifyShutdown(Slab slab) {
+	/** Accepts a released slab once the GPU is done with it. */
+	static void recycle(Slab slab) {
+		assert RenderSystem.isOnRenderThread();
 		assert slab.usedVertexCount() == 0;
 		--slabCount;
 		capacityBytes -= slab.capacityBytes();
+		POOL.recycle(slab);
+	}
+
+	static void notifyCompactionTransfer(int bytes) {
+		compactedBytes += bytes;
+	}
+
+	static void notifyCompactionComplete() {
+		++compactionCount;
 	}
 
 	public static final int SLAB_QUAD_VERTEX_COUNT_INCREMENT = 0x1000;
@@ -44,18 +60,61 @@ public class SlabAllocator {
 		assert BYTES_PER_SLAB_VERTEX == TerrainFormat.TERRAIN_MATERIAL.vertexStrideBytes : "Slab vertex size doesn't match vertex format";
 	}
 
+	/** Pooled bytes beyond this are destroyed, least recently used first. */
+	private static final long MAX_POOLED_BYTES = 0x4000000L;
+	/** Pooled slabs not reused within this many frames are destroyed. */
+	private static final int MAX_IDLE_FRAMES = 600;
+
+	private static final BufferPool<Slab> POOL = new SizeClassBufferPool<>(new PooledBufferBackend<>() {
+		@Override
+		public Slab create(int capacityBytes) {
+			return new Slab(capacityBytes);
+		}
+
+		@Override
+		public void destroy(Slab slab) {
+			slab.shutdown();
+		}
+
+		@Override
+		public int capacityBytes(Slab slab) {
+			return slab.capacityBytes();
+		}
+	}, SLAB_BYTES_INCREMENT, MAX_POOLED_BYTES, MAX_IDLE_FRAMES);
+
 	static Slab claim(int minCapacityBytes) {
 		assert RenderSystem.isOnRenderThread();
 		++slabCount;
-		final var result = new Slab((minCapacityBytes + SLAB_BYTES_INCREMENT - 1) / SLAB_BYTES_INCREMENT * SLAB_BYTES_INCREMENT);
+		final var result = POOL.claim(minCapacityBytes);
+		assert result.isEmpty();
 		capacityBytes += result.capacityBytes();
 		return result;
 	}
 
+	/** Call once per frame. */
+	public static void update() {
+		assert RenderSystem.isOnRenderThread();
+		POOL.trim();
+	}
+
+	/** Destroys pooled slabs. Slabs still in use are recycled as usual when released. */
+	public static void forceReload() {
+		assert RenderSystem.isOnRenderThread();
+		POOL.clear();
+	}
+
+	/**
+	 * Slab count, capacity and occupancy, then compaction queue depth, completed compactions
+	 * and total bytes moved, then pool summary.
+	 */
 	public static String debugSummary() {
-		return String.format("%d slabs %dMb occ:%d",
+		return String.format("%d slabs %dMb occ:%d cmp q:%d n:%d %dMb %s",
 				slabCount,
 				capacityBytes / 0x100000L,
-				capacityBytes > 0 ? usedBytes * 100L / capacityBytes : 0);
+				capacityBytes > 0 ? usedBytes * 100L / capacityBytes : 0,
+				ClusterTaskManager.size(),
+				compactionCount,
+				compactedBytes / 0x100000L,
+				POOL.debugSummary());
 	}
 }
@@ -126,18 +126,41 @@ public class VertexCluster implements ClusterTask {
 
 	@Override
 	public boolean run(long deadlineNanos) {
-		if (isScheduled) {
+		if (isScheduled && compact(deadlineNanos)) {
 			isScheduled = false;
-			compact();
 		}
 
-		return true;
+		return !isScheduled;
 	}
 
-	private void compact() {
+	/**
+	 * Slab capacity that compaction would free per byte copied. Clusters that free the most
+	 * memory for the least copying are compacted first.
+	 */
+	@Override
+	public float priority() {
+		long freedBytes = 0;
+		long copyBytes = 0;
+
+		for (final var slab : slabs) {
+			if (slab != hungrySlab) {
+				freedBytes += slab.capacityBytes();
+				copyBytes += slab.usedBytes();
+			}
+		}
+
+		return copyBytes == 0 ? Float.MAX_VALUE : (float) freedBytes / copyBytes;
+	}
+
+	/**
+	 * Moves allocations to the hungry slab until all are moved or time or copy budget runs out.
+	 * Moves at least one allocation unless copy budget is exhausted so that progress is made
+	 * every frame. Returns true when done.
+	 */
+	private boolean compact(long deadlineNanos) {
 		if (slabs.size() < 2) {
 			// nothing to do
-			return;
+			return true;
 		}
 
 		// NB: hungry slab can't be null here because we have at least two slabs. But
@@ -151,25 +174,53 @@ public class VertexCluster implements ClusterTask {
 		}
 
 		final Slab hungrySlab = this.hungrySlab;
+		boolean didMove = false;
+		boolean isDone = true;
 
 		for (final var region : allocatedRegions.values()) {
 			final var oldAllocation = region.getAllocation();
 
 			if (oldAllocation.slab != hungrySlab) {
+				if (!ClusterTaskManager.hasCopyBudget() || (didMove && System.nanoTime() >= deadlineNanos)) {
+					isDone = false;
+					break;
+				}
+
 				var newAllocation = hungrySlab.transferFromSlabAllocation(region.factory, oldAllocation);
 				region.setAllocation(newAllocation);
 				oldAllocation.release();
+
+				final int bytes = oldAllocation.quadVertexCount * SlabAllocator.BYTES_PER_SLAB_VERTEX;
+				ClusterTaskManager.consumeCopyBudget(bytes);
+				SlabAllocator.notifyCompactionTransfer(bytes);
+				didMove = true;
 			}
 		}
 
-		assert slabs.size() == 1;
-		assert slabs.get(0) == hungrySlab;
-
-		if (!holdingLists.isEmpty()) {
+		// Lists must rebuild after every move because old slabs are released as they empty.
+		if (didMove && !holdingLists.isEmpty()) {
 			for (var list : holdingLists) {
 				list.invalidate();
 			}
 		}
+
+		if (isDone) {
+			// A prior hungry slab can be left empty if all its allocations were released while it was hungry.
+			for (int i = slabs.size() - 1; i >= 0; --i) {
+				final Slab slab = slabs.get(i);
+
+				if (slab != hungrySlab && slab.isEmpty()) {
+					slabs.remove(i);
+					slab.release();
+				}
+			}
+
+			assert slabs.size() == 1;
+			assert slabs.get(0) == hungrySlab;
+			SlabAllocator.notifyCompactionComplete();
+		}
+
+		return isDone;
 	}
 
 	void addListListener(ClusterDrawList listener) {
@@ -16,9 +16,10 @@
 
 package grondag.canvas.render.terrain.drawlist;
 
-import java.util.IdentityHashMap;
-
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
 
 import grondag.canvas.render.terrain.cluster.ClusteredDrawableStorage;
 import grondag.canvas.render.terrain.cluster.Slab;
@@ -26,21 +27,116 @@ import grondag.canvas.render.terrain.cluster.VertexCluster;
 import grondag.canvas.render.terrain.cluster.VertexCluster.RegionAllocation.SlabAllocation;
 import grondag.canvas.varia.GFX;
 
+/**
+ * Draw specs for the regions of one cluster in a realm draw list. Persists across
+ * updates of the owning list and only rebuilds when regions, their allocations
+ * or (for solid lists) their cull flags change. Specs are patched in place when
+ * their slab is unchanged.
+ */
 public class ClusterDrawList {
+	/** Regions of current draw specs, with the allocations and cull flags used to build them. */
 	final ObjectArrayList<ClusteredDrawableStorage> regions = new ObjectArrayList<>();
+	private final ObjectArrayList<SlabAllocation> allocations = new ObjectArrayList<>();
+	private final IntArrayList cullFlags = new IntArrayList();
+	/** Index of each region in {@link #regions}. Solid only, where region order doesn't matter. */
+	private final Reference2IntOpenHashMap<ClusteredDrawableStorage> regionIndex = new Reference2IntOpenHashMap<>();
+	/** Regions added since last update. */
+	private final ObjectArrayList<ClusteredDrawableStorage> nextRegions = new ObjectArrayList<>();
 	final VertexCluster cluster;
 	final RealmDrawList owner;
-	private final ObjectArrayList<DrawSpec> drawSpecs = new ObjectArrayList<>();
+	private final boolean isTranslucent;
+	private ObjectArrayList<DrawSpec> drawSpecs = new ObjectArrayList<>();
+	private ObjectArrayList<DrawSpec> swapSpecs = new ObjectArrayList<>();
+	private boolean isInvalid = false;
+	/** Last update of owner that added regions to this list. */
+	int updateStamp;
+
+	// render thread only
+	private static final ObjectArrayList<SlabAllocation> specAllocations = new ObjectArrayList<>();
+	private static final Reference2ObjectOpenHashMap<Slab, ObjectArrayList<SlabAllocation>> slabAllocations = new Reference2ObjectOpenHashMap<>();
 
 	ClusterDrawList(VertexCluster cluster, RealmDrawList owner) {
 		this.cluster = cluster;
 		this.owner = owner;
+		isTranslucent = cluster.realm.isTranslucent;
+		regionIndex.defaultReturnValue(-1);
+		cluster.addListListener(this);
+	}
+
+	/**
+	 * Rebuilds draw specs if regions added since the last update differ from current
+	 * regions or if anything they depend on changed. Regions must be added in draw order.
+	 */
+	void update() {
+		if (isInvalid || !isCurrent()) {
+			isInvalid = false;
+			regions.clear();
+			regions.addAll(nextRegions);
+			captureRegionState();
+			build();
+		}
+
+		nextRegions.clear();
+	}
+
+	void rebuildIfInvalid() {
+		if (isInvalid) {
+			isInvalid = false;
+			captureRegionState();
+			build();
+		}
+	}
+
+	private int cullFlags(ClusteredDrawableStorage region) {
+		return owner.isShadowMap ? region.shadowCullFlags() : region.cullFlags();
 	}
 
-	void build() {
-		assert drawSpecs.isEmpty();
+	private boolean isCurrent() {
+		final int limit = nextRegions.size();
+
+		if (limit != regions.size()) {
+			return false;
+		}
 
-		if (cluster.realm.isTranslucent) {
+		for (int i = 0; i < limit; ++i) {
+			final var region = nextRegions.get(i);
+
+			if (isTranslucent) {
+				// translucent order matters
+				if (region != regions.get(i) || region.allocation().getAllocation() != allocations.get(i)) {
+					return false;
+				}
+			} else {
+				final int index = regionIndex.getInt(region);
+
+				if (index == -1 || region.allocation().getAllocation() != allocations.get(index) || cullFlags(region) != cullFlags.getInt(index)) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private void captureRegionState() {
+		final int limit = regions.size();
+		allocations.clear();
+		cullFlags.clear();
+		regionIndex.clear();
+
+		for (int i = 0; i < limit; ++i) {
+			final var region = regions.get(i);
+			allocations.add(region.allocation().getAllocation());
+
+			if (!isTranslucent) {
+				cullFlags.add(cullFlags(region));
+				regionIndex.put(region, i);
+			}
+		}
+	}
+
+	private void build() {
+		if (isTranslucent) {
 			buildTranslucent();
 		} else {
 			buildSolid();
@@ -49,32 +145,50 @@ public class ClusterDrawList {
 
 	/** Maintains region sort order at the cost of extra binds/calls if needed. */
 	private void buildTranslucent() {
+		final var specAllocations = ClusterDrawList.specAllocations;
+		final int limit = allocations.size();
+		int specCount = 0;
 		Slab lastSlab = null;
-		final ObjectArrayList<SlabAllocation> specAllocations = new ObjectArrayList<>();
 
-		for (var region : regions) {
-			var alloc = region.allocation().getAllocation();
+		for (int i = 0; i < limit; ++i) {
+			final var alloc = allocations.get(i);
 
 			if (alloc.slab != lastSlab) {
-				// NB: builder checks for empty region list (will be true for first region)
-				// and also clears the list when done.
-				DrawSpecBuilder.TRANSLUCENT.build(specAllocations, drawSpecs, false);
+				if (!specAllocations.isEmpty()) {
+					buildTranslucentSpec(specCount++);
+				}
+
 				lastSlab = alloc.slab;
 			}
 
 			specAllocations.add(alloc);
 		}
 
-		DrawSpecBuilder.TRANSLUCENT.build(specAllocations, drawSpecs, false);
+		if (!specAllocations.isEmpty()) {
+			buildTranslucentSpec(specCount++);
+		}
+
+		for (int i = drawSpecs.size() - 1; i >= specCount; --i) {
+			drawSpecs.remove(i).release();
+		}
+	}
+
+	private void buildTranslucentSpec(int index) {
+		if (index < drawSpecs.size()) {
+			drawSpecs.set(index, DrawSpecBuilder.TRANSLUCENT.build(specAllocations, drawSpecs.get(index), false));
+		} else {
+			drawSpecs.add(DrawSpecBuilder.TRANSLUCENT.build(specAllocations, null, false));
+		}
 	}
 
 	/** Minimizes binds/calls. */
 	private void buildSolid() {
-		final IdentityHashMap<Slab, ObjectArrayList<SlabAllocation>> map = new IdentityHashMap<>();
+		final var map = slabAllocations;
+		final int limit = allocations.size();
 
 		// first group regions by slab
-		for (var region : regions) {
-			var alloc = region.allocation().getAllocation();
+		for (int i = 0; i < limit; ++i) {
+			final var alloc = allocations.get(i);
 			var list = map.get(alloc.slab);
 
 			if (list == null) {
@@ -85,9 +199,26 @@ public class ClusterDrawList {
 			list.add(alloc);
 		}
 
-		for (var list: map.values()) {
-			DrawSpecBuilder.SOLID.build(list, drawSpecs, owner.isShadowMap);
+		// patch specs for slabs still in use and release the rest
+		for (final var spec : drawSpecs) {
+			final var list = map.remove(spec.slab);
+
+			if (list == null) {
+				spec.release();
+			} else {
+				swapSpecs.add(DrawSpecBuilder.SOLID.build(list, spec, owner.isShadowMap));
+			}
+		}
+
+		for (final var list : map.values()) {
+			swapSpecs.add(DrawSpecBuilder.SOLID.build(list, null, owner.isShadowMap));
 		}
+
+		map.clear();
+		drawSpecs.clear();
+		final var swap = drawSpecs;
+		drawSpecs = swapSpecs;
+		swapSpecs = swap;
 	}
 
 	public void draw() {
@@ -102,14 +233,18 @@ public class ClusterDrawList {
 
 	public void add(ClusteredDrawableStorage region) {
 		assert region.allocation().cluster() == cluster;
-		regions.add(region);
+		nextRegions.add(region);
 	}
 
+	/** Called by cluster when allocations have moved. */
 	public void invalidate() {
+		isInvalid = true;
 		owner.invalidate();
 	}
 
 	public void release() {
+		cluster.removeListListener(this);
 		drawSpecs.forEach(DrawSpec::release);
+		drawSpecs.clear();
 	}
 }
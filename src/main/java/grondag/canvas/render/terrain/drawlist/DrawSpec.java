@@ -24,30 +24,56 @@ import org.lwjgl.system.MemoryUtil;
 import grondag.canvas.render.terrain.cluster.Slab;
 
 class DrawSpec {
+	private static final int MIN_CAPACITY = 16;
+
+	final Slab slab;
 	private IntBuffer triVertexCount;
 	private IntBuffer baseQuadVertexOffset;
 	private PointerBuffer triIndexOffset;
-	private final int size;
+	private int size;
+	private int capacity = 0;
 	private final TerrainVAO vao;
 	private boolean isClosed = false;
 
 	DrawSpec (Slab slab, int size, int[] triVertexCount, int[] baseQuadVertexOffset) {
-		this.size = size;
-		this.triVertexCount = MemoryUtil.memAllocInt(size);
-		this.triVertexCount.put(0, triVertexCount, 0, size);
+		this.slab = slab;
+		vao = new TerrainVAO(() -> slab.glBufferId(), () -> SlabIndex.get().glBufferId(), 0);
+		set(size, triVertexCount, baseQuadVertexOffset);
+	}
 
-		this.baseQuadVertexOffset = MemoryUtil.memAllocInt(size);
-		this.baseQuadVertexOffset.put(0, baseQuadVertexOffset, 0, size);
+	/**
+	 * Replaces content in place. Buffers are only reallocated when they need to grow,
+	 * and then with headroom because draw lists change size a little at a time.
+	 */
+	void set(int size, int[] triVertexCount, int[] baseQuadVertexOffset) {
+		assert !isClosed;
 
-		triIndexOffset = MemoryUtil.memAllocPointer(size);
+		if (size > capacity || this.triVertexCount == null) {
+			capacity = Math.max(Math.max(size, MIN_CAPACITY), capacity + (capacity >> 1));
 
-		for (int i = 0; i < size; ++i) {
-			triIndexOffset.put(i, 0L);
-		}
+			MemoryUtil.memFree(this.triVertexCount);
+			this.triVertexCount = MemoryUtil.memAllocInt(capacity);
 
-		triIndexOffset.position(0);
+			MemoryUtil.memFree(this.baseQuadVertexOffset);
+			this.baseQuadVertexOffset = MemoryUtil.memAllocInt(capacity);
 
-		vao = new TerrainVAO(() -> slab.glBufferId(), () -> SlabIndex.get().glBufferId(), 0);
+			MemoryUtil.memFree(triIndexOffset);
+			triIndexOffset = MemoryUtil.memAllocPointer(capacity);
+
+			for (int i = 0; i < capacity; ++i) {
+				triIndexOffset.put(i, 0L);
+			}
+
+			triIndexOffset.position(0);
+		}
+
+		// absolute bulk puts are bounded by limit, so set it first
+		this.size = size;
+		this.triVertexCount.limit(size);
+		this.triVertexCount.put(0, triVertexCount, 0, size);
+		this.baseQuadVertexOffset.limit(size);
+		this.baseQuadVertexOffset.put(0, baseQuadVertexOffset, 0, size);
+		triIndexOffset.limit(size);
 	}
 
 	IntBuffer baseQuadVertexOffset() {
@@ -19,6 +19,7 @@ package grondag.canvas.render.terrain.drawlist;
 import com.mojang.blaze3d.systems.RenderSystem;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.Nullable;
 
 import grondag.canvas.render.terrain.cluster.VertexCluster.RegionAllocation.SlabAllocation;
 
@@ -26,12 +27,14 @@ abstract class DrawSpecBuilder {
 	protected abstract void acceptAlloc(SlabAllocation alloc);
 	protected boolean isShadowMap = false;
 
-	final void build(ObjectArrayList<SlabAllocation> inputs, ObjectArrayList<DrawSpec> output, boolean isShadowMap) {
+	/**
+	 * Builds a draw spec for the given allocations, which must all be on the same slab.
+	 * The prior spec is updated in place if it is for the same slab. Otherwise it is
+	 * released and a new spec is returned.
+	 */
+	final DrawSpec build(ObjectArrayList<SlabAllocation> inputs, @Nullable DrawSpec prior, boolean isShadowMap) {
 		assert RenderSystem.isOnRenderThread();
-
-		if (inputs.isEmpty()) {
-			return;
-		}
+		assert !inputs.isEmpty();
 
 		this.isShadowMap = isShadowMap;
 
@@ -46,8 +49,18 @@ abstract class DrawSpecBuilder {
 			acceptAlloc(alloc);
 		}
 
-		output.add(new DrawSpec(slab, triVertexCount.size(), triVertexCount.elements(), baseQuadVertexOffset.elements()));
 		inputs.clear();
+
+		if (prior != null) {
+			if (prior.slab == slab) {
+				prior.set(triVertexCount.size(), triVertexCount.elements(), baseQuadVertexOffset.elements());
+				return prior;
+			}
+
+			prior.release();
+		}
+
+		return new DrawSpec(slab, triVertexCount.size(), triVertexCount.elements(), baseQuadVertexOffset.elements());
 	}
 
 	static final IntArrayList triVertexCount = new IntArrayList();
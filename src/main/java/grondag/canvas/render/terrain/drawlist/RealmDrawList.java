@@ -18,6 +18,8 @@ package grondag.canvas.render.terrain.drawlist;
 
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 
 import grondag.canvas.material.state.RenderState;
 import grondag.canvas.render.terrain.base.AbstractDrawableRegionList;
@@ -28,52 +30,136 @@ import grondag.canvas.render.terrain.cluster.ClusteredDrawableStorage;
 import grondag.canvas.render.world.WorldRenderState;
 import grondag.canvas.varia.GFX;
 
+/**
+ * Draw list for all regions of a realm. Lists are kept and updated with each new visible set
+ * instead of being rebuilt: only regions that entered or left are retained or released, and
+ * cluster lists are kept by cluster position and only rebuild draw specs when their content changed.
+ */
 public class RealmDrawList extends AbstractDrawableRegionList {
 	final ObjectArrayList<ClusterDrawList> clusterLists = new ObjectArrayList<>();
+	private final Long2ObjectOpenHashMap<ClusterDrawList> clusterMap = new Long2ObjectOpenHashMap<>();
+	private ReferenceOpenHashSet<DrawableRegion> regionSet = new ReferenceOpenHashSet<>();
+	private ReferenceOpenHashSet<DrawableRegion> swapSet = new ReferenceOpenHashSet<>();
+	private final ObjectArrayList<DrawableRegion> removed = new ObjectArrayList<>();
 	final boolean isShadowMap;
+	private int updateStamp = 0;
 
 	boolean isInvalid = false;
 
-	private RealmDrawList(final ObjectArrayList<DrawableRegion> regions, RenderState renderState, boolean isShadowMap) {
-		super(regions, renderState);
+	private RealmDrawList(RenderState renderState, boolean isShadowMap) {
+		super(new ObjectArrayList<>(), renderState);
 		this.isShadowMap = isShadowMap;
-		build();
 	}
 
-	private void build() {
-		final Long2ObjectOpenHashMap<ClusterDrawList> map = new Long2ObjectOpenHashMap<>();
+	/**
+	 * Makes the given regions, in draw order, the content of this list.
+	 * Regions should not be retained by the caller.
+	 */
+	private void update(final ObjectArrayList<DrawableRegion> newRegions) {
+		final ReferenceOpenHashSet<DrawableRegion> newSet = swapSet;
+		final int limit = newRegions.size();
+
+		for (int regionIndex = 0; regionIndex < limit; ++regionIndex) {
+			final DrawableRegion region = newRegions.get(regionIndex);
+			newSet.add(region);
+
+			if (!regionSet.contains(region)) {
+				region.retainFromDrawList();
+			}
+		}
+
+		for (final DrawableRegion region : regions) {
+			if (!newSet.contains(region)) {
+				removed.add(region);
+			}
+		}
+
+		regionSet.clear();
+		swapSet = regionSet;
+		regionSet = newSet;
+		regions.clear();
+		regions.addAll(newRegions);
+
+		updateClusterLists();
+
+		// after cluster lists are done with them
+		for (final DrawableRegion region : removed) {
+			region.releaseFromDrawList();
+		}
+
+		removed.clear();
+	}
+
+	private void updateClusterLists() {
+		final int stamp = ++updateStamp;
 		final int limit = regions.size();
+		clusterLists.clear();
 
 		for (int regionIndex = 0; regionIndex < limit; ++regionIndex) {
 			final ClusteredDrawableStorage storage = ((ClusteredDrawableRegion) regions.get(regionIndex)).storage();
 
-			ClusterDrawList clusterList = map.get(storage.clusterPos);
+			ClusterDrawList clusterList = clusterMap.get(storage.clusterPos);
 
 			if (clusterList == null) {
 				clusterList = new ClusterDrawList(storage.allocation().cluster(), this);
+				clusterMap.put(storage.clusterPos, clusterList);
+			}
+
+			if (clusterList.updateStamp != stamp) {
+				clusterList.updateStamp = stamp;
 				clusterLists.add(clusterList);
-				map.put(storage.clusterPos, clusterList);
 			}
 
 			clusterList.add(storage);
 		}
 
-		clusterLists.forEach(cl -> cl.build());
+		final ObjectIterator<ClusterDrawList> it = clusterMap.values().iterator();
+
+		while (it.hasNext()) {
+			final ClusterDrawList clusterList = it.next();
+
+			if (clusterList.updateStamp == stamp) {
+				clusterList.update();
+			} else {
+				clusterList.release();
+				it.remove();
+			}
+		}
+
+		isInvalid = false;
 	}
 
 	private void rebuildIfInvalid() {
 		if (isInvalid) {
 			// Rarely happens because slab reallocation typically happen
 			// in response to player movement, which will naturally force
-			// a new draw list to be created.
+			// the draw list to be updated.
 			isInvalid = false;
-			closeInner();
-			build();
+			clusterLists.forEach(ClusterDrawList::rebuildIfInvalid);
 		}
 	}
 
-	public static DrawableRegionList build(final ObjectArrayList<DrawableRegion> regions, RenderState renderState, boolean isShadowMap) {
-		return regions.isEmpty() ? DrawableRegionList.EMPTY : new RealmDrawList(regions, renderState, isShadowMap);
+	/**
+	 * Updates the prior list with the given regions if it is a realm list that is still open.
+	 * Otherwise closes it and returns a new list. Regions should not be retained by the caller.
+	 */
+	public static DrawableRegionList update(DrawableRegionList prior, final ObjectArrayList<DrawableRegion> regions, RenderState renderState, boolean isShadowMap) {
+		if (regions.isEmpty()) {
+			prior.close();
+			return DrawableRegionList.EMPTY;
+		}
+
+		RealmDrawList result;
+
+		if (prior instanceof RealmDrawList && !prior.isClosed()) {
+			result = (RealmDrawList) prior;
+		} else {
+			prior.close();
+			result = new RealmDrawList(renderState, isShadowMap);
+		}
+
+		result.update(regions);
+		return result;
 	}
 
 	@Override
@@ -95,8 +181,10 @@ public class RealmDrawList extends AbstractDrawableRegionList {
 
 	@Override
 	protected void closeInner() {
-		clusterLists.forEach(ClusterDrawList::release);
+		clusterMap.values().forEach(ClusterDrawList::release);
+		clusterMap.clear();
 		clusterLists.clear();
+		regionSet.clear();
 	}
 
 	void invalidate() {
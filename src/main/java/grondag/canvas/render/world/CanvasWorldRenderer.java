@@ -82,17 +82,21 @@ import grondag.canvas.buffer.util.DirectBufferAllocator;
 import grondag.canvas.buffer.util.DrawableStream;
 import grondag.canvas.compat.FirstPersonModelHolder;
 import grondag.canvas.config.Configurator;
+import grondag.canvas.light.LightSampleCache;
 import grondag.canvas.material.property.MaterialTarget;
 import grondag.canvas.material.state.RenderContextState;
 import grondag.canvas.material.state.RenderState;
 import grondag.canvas.mixinterface.BufferBuilderStorageExt;
 import grondag.canvas.mixinterface.WorldRendererExt;
+import grondag.canvas.perf.ChunkRebuildCounters;
+import grondag.canvas.perf.MetricsRegistry;
 import grondag.canvas.perf.Timekeeper;
 import grondag.canvas.perf.Timekeeper.ProfilerGroup;
 import grondag.canvas.pipeline.Pipeline;
 import grondag.canvas.pipeline.PipelineManager;
 import grondag.canvas.render.frustum.RegionCullingFrustum;
 import grondag.canvas.render.terrain.cluster.ClusterTaskManager;
+import grondag.canvas.render.terrain.cluster.SlabAllocator;
 import grondag.canvas.shader.GlProgram;
 import grondag.canvas.shader.GlProgramManager;
 import grondag.canvas.shader.data.MatrixData;
@@ -101,6 +105,7 @@ import grondag.canvas.shader.data.ScreenRenderState;
 import grondag.canvas.shader.data.ShaderDataManager;
 import grondag.canvas.terrain.occlusion.SortableVisibleRegionList;
 import grondag.canvas.terrain.occlusion.TerrainIterator;
+import grondag.canvas.terrain.region.RegionBuildHarness;
 import grondag.canvas.terrain.region.RegionRebuildManager;
 import grondag.canvas.terrain.region.RenderRegionStorage;
 import grondag.canvas.terrain.util.TerrainExecutor;
@@ -148,6 +153,11 @@ public class CanvasWorldRenderer extends WorldRenderer {
 	public void setWorld(@Nullable ClientWorld clientWorld) {
 		worldRenderState.setWorld(clientWorld);
 
+		if (clientWorld == null) {
+			// nothing will claim pooled slabs until the next world loads
+			SlabAllocator.forceReload();
+		}
+
 		// we don't want to use our collector unless we are in a world
 		((BufferBuilderStorageExt) vanillaWorldRenderer.canvas_bufferBuilders()).canvas_setEntityConsumers(clientWorld == null ? null : worldRenderImmediate);
 		// Mixins mostly disable what this does
@@ -282,6 +292,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 			renderSky(viewMatrixStack, projectionMatrix, tickDelta, () -> {
 				BackgroundRenderer.applyFog(camera, BackgroundRenderer.FogType.FOG_SKY, viewDistance, thickFog);
 			});
+			GFX.STATE.invalidate();
 		}
 
 		WorldRenderDraws.profileSwap(profiler, ProfilerGroup.StartWorld, "fog");
@@ -294,6 +305,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 		WorldRenderDraws.profileSwap(profiler, ProfilerGroup.StartWorld, "after_setup_event");
 		WorldRenderEvents.AFTER_SETUP.invoker().afterSetup(eventContext);
+		GFX.STATE.invalidate();
 
 		WorldRenderDraws.profileSwap(profiler, ProfilerGroup.StartWorld, "updatechunks");
 		final int maxFps = mc.options.maxFps;
@@ -332,6 +344,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 		WorldRenderDraws.profileSwap(profiler, ProfilerGroup.StartWorld, "before_entities_event");
 		WorldRenderEvents.BEFORE_ENTITIES.invoker().beforeEntities(eventContext);
+		GFX.STATE.invalidate();
 
 		WorldRenderDraws.profileSwap(profiler, ProfilerGroup.StartWorld, "entities");
 		int entityCount = 0;
@@ -486,6 +499,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		}
 
 		contextState.setCurrentBlockEntity(null);
+		GFX.STATE.invalidate();
 
 		RenderState.disable();
 
@@ -511,12 +525,14 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		eventContext.matrixStack().loadIdentity();
 		WorldRenderEvents.AFTER_ENTITIES.invoker().afterEntities(eventContext);
 		eventContext.matrixStack().pop();
+		GFX.STATE.invalidate();
 
 		bufferBuilders.getOutlineVertexConsumers().draw();
 
 		if (didRenderOutlines) {
 			entityOutlineShader.render(tickDelta);
 			Pipeline.defaultFbo.bind();
+			GFX.STATE.invalidate();
 		}
 
 		WorldRenderDraws.profileSwap(profiler, ProfilerGroup.EndWorld, "destroyProgress");
@@ -571,6 +587,8 @@ public class CanvasWorldRenderer extends WorldRenderer {
 			}
 		}
 
+		GFX.STATE.invalidate();
+
 		RenderState.disable();
 
 		// NB: view matrix is already applied to GL state before renderWorld is called
@@ -578,6 +596,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		WorldRenderEvents.BEFORE_DEBUG_RENDER.invoker().beforeDebugRender(eventContext);
 		// We still pass in the transformed stack because that is what debug renderer normally gets
 		mc.debugRenderer.render(viewMatrixStack, immediate, frameCameraX, frameCameraY, frameCameraZ);
+		GFX.STATE.invalidate();
 
 		WorldRenderDraws.profileSwap(profiler, ProfilerGroup.EndWorld, "draw_solid");
 
@@ -653,6 +672,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 		// Stuff here would usually want the render system matrix stack to have the view matrix applied.
 		WorldRenderEvents.AFTER_TRANSLUCENT.invoker().afterTranslucent(eventContext);
+		GFX.STATE.invalidate();
 
 		// Move these up if otherwise.
 		renderSystemModelViewStack.pop();
@@ -669,6 +689,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		GlProgram.deactivate();
 
 		renderClouds(mc, profiler, viewMatrixStack, projectionMatrix, tickDelta, frameCameraX, frameCameraY, frameCameraZ);
+		GFX.STATE.invalidate();
 
 		// WIP: need to properly target the designated buffer here in both clouds and weather
 		// also need to ensure works with non-fabulous pipelines
@@ -684,6 +705,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 			wr.canvas_renderWeather(lightmapTextureManager, tickDelta, frameCameraX, frameCameraY, frameCameraZ);
 			wr.canvas_renderWorldBorder(camera);
 			RenderPhase.WEATHER_TARGET.endDrawing();
+			GFX.STATE.invalidate();
 			PipelineManager.beFabulous();
 
 			Pipeline.defaultFbo.bind();
@@ -691,6 +713,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 			GFX.depthMask(false);
 			wr.canvas_renderWeather(lightmapTextureManager, tickDelta, frameCameraX, frameCameraY, frameCameraZ);
 			wr.canvas_renderWorldBorder(camera);
+			GFX.STATE.invalidate();
 			GFX.depthMask(true);
 		}
 
@@ -700,6 +723,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 		// Stuff here would usually want the render system matrix stack to have the view matrix applied.
 		WorldRenderEvents.LAST.invoker().onLast(eventContext);
+		GFX.STATE.invalidate();
 
 		// Move these up if otherwise.
 		renderSystemModelViewStack.pop();
@@ -740,6 +764,8 @@ public class CanvasWorldRenderer extends WorldRenderer {
 	}
 
 	public void scheduleRegionRender(int x, int y, int z, boolean urgent) {
+		// vanilla schedules sections for all block and light changes
+		LightSampleCache.invalidateSection(x, y, z);
 		worldRenderState.renderRegionStorage.scheduleRebuild(x << 4, y << 4, z << 4, urgent);
 	}
 
@@ -748,9 +774,16 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		final MinecraftClient mc = MinecraftClient.getInstance();
 		final boolean wasFabulous = Pipeline.isFabulous();
 
+		// anything outside GFX may have changed GL state since the last frame
+		GFX.STATE.invalidate();
 		BufferSynchronizer.checkPoint();
 		DirectBufferAllocator.update();
 		TransferBuffers.update();
+		SlabAllocator.update();
+		GFX.STATE.endFrame();
+		MetricsRegistry.onFrame();
+		ChunkRebuildCounters.onFrame();
+		RegionBuildHarness.onFrame();
 		PipelineManager.reloadIfNeeded();
 
 		if (wasFabulous != Pipeline.isFabulous()) {
@@ -780,9 +813,11 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		eventContext.prepare(this, viewMatrixStack, tickDelta, frameStartNanos, renderBlockOutline, camera, gameRenderer, lightmapTextureManager, projectionMatrix, worldRenderImmediate, mc.getProfiler(), MinecraftClient.isFabulousGraphicsOrBetter(), worldRenderState.getWorld());
 
 		WorldRenderEvents.START.invoker().onStart(eventContext);
+		GFX.STATE.invalidate();
 		PipelineManager.beforeWorldRender();
 		renderWorld(viewMatrixStack, tickDelta, frameStartNanos, renderBlockOutline, camera, gameRenderer, lightmapTextureManager, projectionMatrix);
 		WorldRenderEvents.END.invoker().onEnd(eventContext);
+		GFX.STATE.invalidate();
 
 		RenderSystem.applyModelViewMatrix();
 		MatrixState.set(MatrixState.SCREEN);
@@ -807,6 +842,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		worldRenderState.clear();
 		TransferBuffers.forceReload();
 		StreamBufferAllocator.forceReload();
+		SlabAllocator.forceReload();
 		//ClassInspector.inspect();
 	}
 
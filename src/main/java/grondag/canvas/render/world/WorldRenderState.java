@@ -22,6 +22,7 @@ import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.util.profiler.Profiler;
 
+import grondag.canvas.light.LightSampleCache;
 import grondag.canvas.pipeline.Pipeline;
 import grondag.canvas.render.frustum.TerrainFrustum;
 import grondag.canvas.render.terrain.TerrainSectorMap;
@@ -33,6 +34,7 @@ import grondag.canvas.shader.data.ShadowMatrixData;
 import grondag.canvas.terrain.occlusion.SortableVisibleRegionList;
 import grondag.canvas.terrain.occlusion.TerrainIterator;
 import grondag.canvas.terrain.occlusion.VisibleRegionList;
+import grondag.canvas.terrain.occlusion.geometry.OcclusionCache;
 import grondag.canvas.terrain.region.RegionRebuildManager;
 import grondag.canvas.terrain.region.RenderRegionBuilder;
 import grondag.canvas.terrain.region.RenderRegionStorage;
@@ -116,6 +118,8 @@ public class WorldRenderState {
 		hasSkylight = world != null && world.getDimension().hasSkyLight();
 		solidClusterRealm.clear();
 		translucentClusterRealm.clear();
+		OcclusionCache.onWorldChange(clientWorld);
+		LightSampleCache.clear();
 	}
 
 	public ClientWorld getWorld() {
@@ -170,15 +174,12 @@ public class WorldRenderState {
 
 		areDrawListsValid = true;
 
-		solidDrawList.close();
-		solidDrawList = DrawableRegionList.build(cameraVisibleRegions, false, false);
-		translucentDrawList.close();
-		translucentDrawList = DrawableRegionList.build(cameraVisibleRegions, true, false);
+		solidDrawList = DrawableRegionList.update(solidDrawList, cameraVisibleRegions, false, false);
+		translucentDrawList = DrawableRegionList.update(translucentDrawList, cameraVisibleRegions, true, false);
 
 		if (shadowsEnabled()) {
 			for (int i = 0; i < 4; ++i) {
-				shadowDrawLists[i].close();
-				shadowDrawLists[i] = DrawableRegionList.build(shadowVisibleRegions[i], false, true);
+				shadowDrawLists[i] = DrawableRegionList.update(shadowDrawLists[i], shadowVisibleRegions[i], false, true);
 			}
 		}
 	}
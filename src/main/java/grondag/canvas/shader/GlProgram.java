@@ -76,6 +76,8 @@ public class GlProgram {
 	protected boolean hasDirty = false;
 	private int progID = -1;
 	private boolean isErrored = false;
+	/** True once the program has been activated without error since it was last loaded. */
+	private boolean isValidated = false;
 	private boolean needsLoad = true;
 
 	GlProgram(Shader vertexShader, Shader fragmentShader, CanvasVertexFormat format, ProgramType programType) {
@@ -196,12 +198,20 @@ public class GlProgram {
 			return;
 		}
 
-		GFX.useProgram(progID);
+		if (isValidated) {
+			GFX.useProgram(progID);
+		} else {
+			// clear errors from prior calls so that only a failure to activate is reported
+			GFX.getError();
+			GFX.useProgram(progID);
 
-		if (!GFX.checkError()) {
-			isErrored = true;
-			CanvasMod.LOG.warn(String.format("Unable to activate program with shaders %s and %s.  Program was disabled.", vertexShader.getShaderSourceId(), fragmentShader.getShaderSourceId()));
-			return;
+			if (!GFX.checkError()) {
+				isErrored = true;
+				CanvasMod.LOG.warn(String.format("Unable to activate program with shaders %s and %s.  Program was disabled.", vertexShader.getShaderSourceId(), fragmentShader.getShaderSourceId()));
+				return;
+			}
+
+			isValidated = true;
 		}
 
 		if (hasDirty) {
@@ -255,6 +265,7 @@ public class GlProgram {
 
 	public void load() {
 		isErrored = true;
+		isValidated = false;
 
 		// prevent accumulation of uniforms in programs that aren't activated after
 		// multiple reloads
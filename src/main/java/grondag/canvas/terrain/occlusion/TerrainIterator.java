@@ -16,6 +16,8 @@
 
 package grondag.canvas.terrain.occlusion;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.minecraft.client.MinecraftClient;
@@ -40,6 +42,7 @@ import grondag.canvas.terrain.region.RegionBuildState;
 import grondag.canvas.terrain.region.RenderRegion;
 import grondag.canvas.terrain.region.RenderRegionIndexer;
 import grondag.canvas.terrain.region.RenderRegionStorage;
+import grondag.canvas.terrain.util.TerrainExecutor;
 import grondag.canvas.terrain.util.TerrainExecutorTask;
 import grondag.fermion.sc.unordered.SimpleUnorderedArrayList;
 import grondag.fermion.varia.Useful;
@@ -56,6 +59,13 @@ public class TerrainIterator implements TerrainExecutorTask {
 	public final SimpleUnorderedArrayList<RenderRegion> updateRegions = new SimpleUnorderedArrayList<>();
 	public final VisibleRegionList visibleRegions = new VisibleRegionList();
 	public final VisibleRegionList[] shadowVisibleRegions = new VisibleRegionList[ShadowMatrixData.CASCADE_COUNT];
+
+	/** Used only by concurrent shadow iteration. Merged into {@link #updateRegions} after the walks join. */
+	private final SimpleUnorderedArrayList<RenderRegion> shadowUpdateRegions = new SimpleUnorderedArrayList<>();
+
+	/** Used only by concurrent shadow iteration. Camera-visible regions from the prior pass, used to seed the target occluder. */
+	private final VisibleRegionList priorVisibleRegions = new VisibleRegionList();
+
 	private final AtomicInteger state = new AtomicInteger(IDLE);
 	private final WorldRenderState worldRenderState;
 
@@ -70,12 +80,15 @@ public class TerrainIterator implements TerrainExecutorTask {
 	private boolean chunkCullingEnabled = true;
 	private volatile boolean cancelled = false;
 	private boolean resetCameraOccluder;
+	private boolean rewindCameraOccluder;
 	private boolean resetShadowOccluder;
+	private boolean seedShadowTarget;
+	private boolean lateShadowTargets;
 
 	public TerrainIterator(WorldRenderState worldRenderState) {
 		this.worldRenderState = worldRenderState;
 		shadowVisibility = new ShadowVisibility(worldRenderState);
-		cameraVisibility = new CameraVisibility(worldRenderState, shadowVisibility.targetOccluder);
+		cameraVisibility = new CameraVisibility(worldRenderState, shadowVisibility);
 
 		for (int i = 0; i < ShadowMatrixData.CASCADE_COUNT; ++i) {
 			shadowVisibleRegions[i] = new VisibleRegionList();
@@ -83,7 +96,7 @@ public class TerrainIterator implements TerrainExecutorTask {
 	}
 
 	public boolean hasWork() {
-		return cameraVisibility.isInvalid() || (worldRenderState.shadowsEnabled() && shadowVisibility.isInvalid());
+		return cameraVisibility.isInvalid() || cameraVisibility.isRewindPending() || (worldRenderState.shadowsEnabled() && shadowVisibility.isInvalid());
 	}
 
 	public long cameraRegionOrigin() {
@@ -123,6 +136,12 @@ public class TerrainIterator implements TerrainExecutorTask {
 		this.chunkCullingEnabled = chunkCullingEnabled;
 		cancelled = false;
 		resetCameraOccluder = cameraVisibility.prepareForIteration();
+		rewindCameraOccluder = cameraVisibility.rewindSquaredDistance() != CameraVisibility.NO_REWIND;
+
+		if (rewindCameraOccluder) {
+			// Only results beyond a changed region were discarded
+			cameraVisibility.rewind(visibleRegions);
+		}
 
 		if (worldRenderState.shadowsEnabled()) {
 			if (resetCameraOccluder) {
@@ -132,6 +151,7 @@ public class TerrainIterator implements TerrainExecutorTask {
 				// But not necessrily if shadow occluder resets.
 				// It's content isn't driven by the shadow occluder.
 				shadowVisibility.targetOccluder.invalidate();
+				shadowVisibility.clearPendingTargetRegions();
 			}
 
 			if (shadowVisibility.targetOccluder.prepareScene() && !resetCameraOccluder) {
@@ -141,16 +161,7 @@ public class TerrainIterator implements TerrainExecutorTask {
 				final int limit = visibleRegions.size();
 
 				for (int i = 0; i < limit; ++i) {
-					final RenderRegion r = visibleRegions.get(i);
-
-					if (r.isClosed()) continue;
-
-					final RegionBuildState buildState = r.getBuildState();
-
-					if (buildState.canOcclude()) {
-						shadowVisibility.targetOccluder.prepareRegion(r.origin);
-						shadowVisibility.targetOccluder.occludeBox(buildState.getOcclusionData()[RegionOcclusionCalculator.OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX]);
-					}
+					shadowVisibility.drawTargetRegion(visibleRegions.get(i));
 				}
 			}
 
@@ -162,7 +173,7 @@ public class TerrainIterator implements TerrainExecutorTask {
 			resetShadowOccluder = false;
 		}
 
-		final boolean result = resetCameraOccluder || resetShadowOccluder;
+		final boolean result = resetCameraOccluder || rewindCameraOccluder || resetShadowOccluder;
 
 		if (result) {
 			state.set(READY);
@@ -182,6 +193,7 @@ public class TerrainIterator implements TerrainExecutorTask {
 		shadowVisibility.invalidate();
 		visibleRegions.clear();
 		clearShadowRegions();
+		shadowVisibility.clearPendingTargetRegions();
 	}
 
 	public void idle() {
@@ -199,22 +211,40 @@ public class TerrainIterator implements TerrainExecutorTask {
 		worldRenderState.renderRegionStorage.updateRegionPositionAndVisibility();
 		worldRenderState.drawListCullingHlper.update();
 
+		final boolean concurrentShadows = worldRenderState.shadowsEnabled() && Configurator.concurrentShadowIteration;
+		cameraVisibility.deferTargetOcclusion(concurrentShadows);
+
 		if (resetCameraOccluder) {
+			if (concurrentShadows) {
+				// The target occluder was reset in prepare and will be filled as the camera walk
+				// progresses. Seed it with last pass's results so the shadow walk isn't starved.
+				priorVisibleRegions.copyFrom(visibleRegions);
+				seedShadowTarget = true;
+			}
+
 			visibleRegions.clear();
 			primeCameraRegions();
+		} else if (rewindCameraOccluder) {
+			// Regions already present are ignored. Needed in case
+			// the rewind discarded regions that are only reached by priming.
+			primeCameraRegions();
 		}
 
 		updateRegions.clear();
 
-		iterateTerrain();
+		if (concurrentShadows) {
+			iterateConcurrently();
+		} else {
+			iterateTerrain();
 
-		if (worldRenderState.shadowsEnabled()) {
-			if (resetShadowOccluder) {
-				clearShadowRegions();
-				primeShadowRegions();
-			}
+			if (worldRenderState.shadowsEnabled()) {
+				if (resetShadowOccluder) {
+					clearShadowRegions();
+					primeShadowRegions();
+				}
 
-			iterateShadows();
+				iterateShadows(updateRegions, false);
+			}
 		}
 
 		if (cancelled) {
@@ -274,7 +304,7 @@ public class TerrainIterator implements TerrainExecutorTask {
 			// Use build data for visibility - render data lags in availability and should only be used for rendering
 			final RegionBuildState buildState = region.getBuildState();
 
-			// If never built then don't do anything with it
+			// If never built and no cached occlusion then don't do anything with it
 			if (buildState == RegionBuildState.UNBUILT) {
 				updateRegions.add(region);
 				continue;
@@ -346,6 +376,55 @@ public class TerrainIterator implements TerrainExecutorTask {
 		}
 	}
 
+	/**
+	 * Runs the shadow walk on another terrain worker while this thread runs the camera walk.
+	 * The shadow walk owns the target occluder for the duration. Camera-visible regions
+	 * reach it through {@link ShadowVisibility#enqueueTargetRegion(RenderRegion)}.
+	 *
+	 * <p>Regions that reach the target occluder after shadow testing has started may have
+	 * been culled as casters when they should not have been. When that happens shadow
+	 * iteration is invalidated so the next pass corrects it.
+	 */
+	private void iterateConcurrently() {
+		if (resetShadowOccluder) {
+			clearShadowRegions();
+			primeShadowRegions();
+		}
+
+		lateShadowTargets = false;
+		shadowUpdateRegions.clear();
+
+		final ShadowPass shadowPass = new ShadowPass();
+		TerrainExecutor.INSTANCE.execute(shadowPass);
+		iterateTerrain();
+		shadowPass.join();
+
+		// Shadow walk is done so the target occluder is safe to touch from here.
+		// Anything still pending was found by the camera after the shadow walk finished.
+		if (shadowVisibility.drawPendingTargetRegions() || lateShadowTargets) {
+			shadowVisibility.invalidate();
+		}
+
+		final int limit = shadowUpdateRegions.size();
+
+		for (int i = 0; i < limit; ++i) {
+			updateRegions.add(shadowUpdateRegions.get(i));
+		}
+	}
+
+	private void seedShadowTargetIfNeeded() {
+		if (seedShadowTarget) {
+			seedShadowTarget = false;
+			final int limit = priorVisibleRegions.size();
+
+			for (int i = 0; i < limit; ++i) {
+				shadowVisibility.drawTargetRegion(priorVisibleRegions.get(i));
+			}
+
+			priorVisibleRegions.clear();
+		}
+	}
+
 	private void primeShadowRegions() {
 		final RenderRegionStorage regionStorage = worldRenderState.renderRegionStorage;
 		final int y = BlockPos.unpackLongY(cameraChunkOrigin);
@@ -376,8 +455,18 @@ public class TerrainIterator implements TerrainExecutorTask {
 		}
 	}
 
-	private void iterateShadows() {
+	/**
+	 * @param updateRegions receives regions that need to be built
+	 * @param concurrent true when the camera walk is running at the same time and handing off target regions
+	 */
+	private void iterateShadows(SimpleUnorderedArrayList<RenderRegion> updateRegions, boolean concurrent) {
+		boolean hasTested = false;
+
 		while (!cancelled) {
+			if (concurrent && shadowVisibility.drawPendingTargetRegions() && hasTested) {
+				lateShadowTargets = true;
+			}
+
 			final ShadowRegionVisibility state = shadowVisibility.next();
 
 			if (state == null) {
@@ -392,7 +481,7 @@ public class TerrainIterator implements TerrainExecutorTask {
 			// Use build data for visibility - render data lags in availability and should only be used for rendering
 			final RegionBuildState buildState = region.getBuildState();
 
-			// If never built then don't do anything with it
+			// If never built and no cached occlusion then don't do anything with it
 			if (buildState == RegionBuildState.UNBUILT) {
 				updateRegions.add(region);
 				continue;
@@ -437,6 +526,7 @@ public class TerrainIterator implements TerrainExecutorTask {
 
 			// If we get to here, region is not empty
 
+			hasTested = true;
 			shadowVisibility.prepareRegion(region.origin);
 			final int[] occlusionData = buildState.getOcclusionData();
 
@@ -495,4 +585,44 @@ public class TerrainIterator implements TerrainExecutorTask {
 	public int priority() {
 		return -1;
 	}
+
+	/**
+	 * Shadow walk for a single concurrent pass. Runs on whichever thread claims it
+	 * first: a terrain worker, or the iterator itself if it finishes the camera walk
+	 * before any worker is free. This means a busy or single-threaded executor
+	 * can never deadlock the iterator.
+	 */
+	private class ShadowPass implements TerrainExecutorTask {
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		@Override
+		public void run(TerrainRenderContext ignored) {
+			if (claimed.compareAndSet(false, true)) {
+				try {
+					seedShadowTargetIfNeeded();
+					iterateShadows(shadowUpdateRegions, true);
+				} finally {
+					done.countDown();
+				}
+			}
+		}
+
+		private void join() {
+			run(null);
+
+			while (done.getCount() > 0) {
+				try {
+					done.await();
+				} catch (final InterruptedException e) {
+					// NOOP
+				}
+			}
+		}
+
+		@Override
+		public int priority() {
+			return -1;
+		}
+	}
 }
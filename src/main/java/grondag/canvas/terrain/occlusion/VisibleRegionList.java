@@ -43,6 +43,27 @@ public class VisibleRegionList {
 		visibleRegions[index] = builtRegion;
 	}
 
+	/**
+	 * Removes regions at or beyond the given squared camera chunk distance.
+	 * Order of the remaining regions is preserved.
+	 */
+	public final void removeFromDistance(int squaredChunkDistance) {
+		final RenderRegion[] visibleRegions = this.visibleRegions;
+		final int count = visibleRegionCount;
+		int retained = 0;
+
+		for (int i = 0; i < count; ++i) {
+			final RenderRegion region = visibleRegions[i];
+
+			if (region.origin.squaredCameraChunkDistance() < squaredChunkDistance) {
+				visibleRegions[retained++] = region;
+			}
+		}
+
+		Arrays.fill(visibleRegions, retained, count, null);
+		visibleRegionCount = retained;
+	}
+
 	public final void copyFrom(VisibleRegionList source) {
 		final int count = source.visibleRegionCount;
 		visibleRegionCount = count;
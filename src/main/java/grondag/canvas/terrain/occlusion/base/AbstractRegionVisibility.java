@@ -61,6 +61,16 @@ public abstract class AbstractRegionVisibility<T extends AbstractVisbility<T, U,
 		}
 	}
 
+	/**
+	 * Reverts this region to {@link OcclusionResult#UNDETERMINED} in the current
+	 * version so it can be added again. For use when a set discards a portion
+	 * of its content without a version change.
+	 */
+	public void clearResult() {
+		visibilityVersion = visibility.version() - 1;
+		result = OcclusionResult.UNDETERMINED;
+	}
+
 	/** Used for entity culling so needs to error on the side of caution. */
 	public boolean isPotentiallyVisible() {
 		return visibility.version() != visibilityVersion || result != OcclusionResult.REGION_NOT_VISIBLE;
@@ -78,9 +88,10 @@ public abstract class AbstractRegionVisibility<T extends AbstractVisbility<T, U,
 	 * <p>Not thread-safe, but can be called from threads in a pool so long as none of
 	 * them try to call for the same region.
 	 */
+	@SuppressWarnings("unchecked")
 	public void notifyOfOcclusionChange() {
 		if (getResult() != OcclusionResult.UNDETERMINED) {
-			visibility.invalidate();
+			visibility.invalidateFrom((U) this);
 		}
 	}
 
@@ -73,6 +73,17 @@ public abstract class AbstractVisbility<T extends AbstractVisbility<T, U, V, W>,
 		shouldInvalidateNextPass = true;
 	}
 
+	/**
+	 * Called when the occlusion data of a region that was part of the
+	 * current version has changed. Has the same effect as {@link #invalidate()}
+	 * unless the sub-type can retain results not affected by the change.
+	 *
+	 * <p>Same threading constraints as {@link #invalidate()}.
+	 */
+	public void invalidateFrom(U regionState) {
+		invalidate();
+	}
+
 	/**
 	 * If true, will start a new version on next iteration.
 	 * Becomes true mostly due to occlusion data changes in
@@ -108,6 +119,16 @@ public abstract class AbstractVisbility<T extends AbstractVisbility<T, U, V, W>,
 		return occluder.prepareScene();
 	}
 
+	/**
+	 * Called by {@link #prepareForIteration()} after it is known if
+	 * the version will advance, but before iteration is set to beginning.
+	 * Sub-types that retain results across passes can discard a subset
+	 * of them here when isReset is false.
+	 */
+	protected void prepareRetainedResults(boolean isReset) {
+		// NOOP by default
+	}
+
 	/**
 	 * Call before iteration. If true, all prior
 	 * results are invalid and visible regions should be cleared.
@@ -132,7 +153,9 @@ public abstract class AbstractVisbility<T extends AbstractVisbility<T, U, V, W>,
 		if (result) {
 			++version;
 			pvrs.clear();
+			prepareRetainedResults(true);
 		} else {
+			prepareRetainedResults(false);
 			pvrs.returnToStart();
 		}
 
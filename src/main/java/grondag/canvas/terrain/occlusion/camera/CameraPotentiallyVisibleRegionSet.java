@@ -132,10 +132,51 @@ public class CameraPotentiallyVisibleRegionSet implements PotentiallyVisibleRegi
 		iterationIndex = 0;
 	}
 
+	/**
+	 * Removes all regions at or beyond the given squared chunk distance and
+	 * clears their results so they can be added again in the same version.
+	 * Nearer regions and their order are retained. Iteration is set to beginning.
+	 */
+	public void truncate(int squaredChunkDistance) {
+		if (squaredChunkDistance <= MAX_SQ_DIST) {
+			final int dist = Math.max(0, squaredChunkDistance);
+			int start = SQ_DIST_TO_RING_MAP[dist];
+
+			// input may be a distance that doesn't occur - find the next ring that does
+			for (int d = dist + 1; start == Integer.MAX_VALUE && d <= MAX_SQ_DIST; ++d) {
+				start = SQ_DIST_TO_RING_MAP[d];
+			}
+
+			for (int i = start; i <= maxIndex; ++i) {
+				final CameraRegionVisibility state = states[i];
+
+				if (state != null) {
+					state.clearResult();
+					states[i] = null;
+				}
+			}
+
+			System.arraycopy(SQ_DIST_TO_RING_MAP, dist, ringMap, dist, RING_MAP_LENGTH - dist);
+
+			if (maxIndex >= start) {
+				maxIndex = start - 1;
+			}
+		}
+
+		returnToStart();
+	}
+
 	@Override
 	public void add(CameraRegionVisibility state) {
+		add(state, state.region.origin.squaredCameraChunkDistance());
+	}
+
+	/**
+	 * Adds the given region at the given squared chunk distance from the camera.
+	 * Separate so that benchmarks can add regions without a world.
+	 */
+	void add(CameraRegionVisibility state, int dist) {
 		final RenderRegion region = state.region;
-		final int dist = region.origin.squaredCameraChunkDistance();
 
 		if (dist >= 0 && dist <= MAX_SQ_DIST) {
 			final int index = ringMap[dist];
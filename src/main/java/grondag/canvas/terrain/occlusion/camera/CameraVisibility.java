@@ -16,26 +16,51 @@
 
 package grondag.canvas.terrain.occlusion.camera;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.minecraft.util.math.Vec3d;
 
 import grondag.canvas.config.Configurator;
 import grondag.canvas.render.frustum.TerrainFrustum;
 import grondag.canvas.render.world.WorldRenderState;
+import grondag.canvas.terrain.occlusion.VisibleRegionList;
 import grondag.canvas.terrain.occlusion.base.AbstractVisbility;
 import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
 import grondag.canvas.terrain.occlusion.shadow.ShadowOccluder;
+import grondag.canvas.terrain.occlusion.shadow.ShadowVisibility;
+import grondag.canvas.terrain.region.RegionBuildState;
 import grondag.canvas.terrain.region.RegionPosition;
 import grondag.canvas.terrain.region.RenderRegion;
 
 public class CameraVisibility extends AbstractVisbility<CameraVisibility, CameraRegionVisibility, CameraPotentiallyVisibleRegionSet, CameraOccluder> {
+	private final ShadowVisibility shadowVisibility;
 	private final ShadowOccluder targetOccluder;
 
 	/** Stashed during prepare in case we need it to draw to target occluder. */
 	private RegionPosition lastOrigin;
 
-	public CameraVisibility(WorldRenderState worldRenderState, ShadowOccluder targetOccluder) {
+	/**
+	 * When true, visible regions are handed to the shadow visibility instead
+	 * of being drawn to the target occluder directly, because the shadow walk
+	 * is running concurrently and owns the target occluder.
+	 */
+	private boolean deferTargetOcclusion;
+
+	/** Value of {@link #rewindSquaredDistance()} when no results were discarded. */
+	public static final int NO_REWIND = Integer.MAX_VALUE;
+
+	/**
+	 * Nearest squared chunk distance of regions with changed occlusion data
+	 * since the last call to {@link #prepareForIteration()}. Updated from
+	 * worker threads.
+	 */
+	private final AtomicInteger rewindRequest = new AtomicInteger(NO_REWIND);
+	private int rewindSquaredDistance = NO_REWIND;
+
+	public CameraVisibility(WorldRenderState worldRenderState, ShadowVisibility shadowVisibility) {
 		super(worldRenderState, new CameraPotentiallyVisibleRegionSet(), new CameraOccluder());
-		this.targetOccluder = targetOccluder;
+		this.shadowVisibility = shadowVisibility;
+		targetOccluder = shadowVisibility.targetOccluder;
 	}
 
 	@Override
@@ -63,6 +88,82 @@ public class CameraVisibility extends AbstractVisbility<CameraVisibility, Camera
 		return occluder.hasNearOccluders();
 	}
 
+	/**
+	 * Call before iteration starts. See {@link ShadowVisibility#enqueueTargetRegion(RenderRegion)}.
+	 */
+	public void deferTargetOcclusion(boolean deferTargetOcclusion) {
+		this.deferTargetOcclusion = deferTargetOcclusion;
+	}
+
+	/**
+	 * Camera iteration proceeds near-to-far and each region is tested against
+	 * a raster containing only nearer regions. When incremental occlusion is
+	 * enabled, a change in one region therefore only invalidates results at
+	 * or beyond its distance, and nearer results are retained.
+	 */
+	@Override
+	public void invalidateFrom(CameraRegionVisibility regionState) {
+		if (Configurator.incrementalOcclusion) {
+			rewindRequest.accumulateAndGet(regionState.region.origin.squaredCameraChunkDistance(), Math::min);
+		} else {
+			invalidate();
+		}
+	}
+
+	/**
+	 * True if the next call to {@link #prepareForIteration()} will discard
+	 * some results even if a new version is not started.
+	 */
+	public boolean isRewindPending() {
+		return rewindRequest.get() != NO_REWIND;
+	}
+
+	@Override
+	protected void prepareRetainedResults(boolean isReset) {
+		final int dist = rewindRequest.getAndSet(NO_REWIND);
+		rewindSquaredDistance = isReset ? NO_REWIND : dist;
+
+		if (rewindSquaredDistance != NO_REWIND) {
+			pvrs.truncate(rewindSquaredDistance);
+		}
+	}
+
+	/**
+	 * Squared chunk distance at and beyond which results were discarded
+	 * in the most recent call to {@link #prepareForIteration()}, or
+	 * {@link #NO_REWIND} if all results were retained or the version changed.
+	 */
+	public int rewindSquaredDistance() {
+		return rewindSquaredDistance;
+	}
+
+	/**
+	 * Call after {@link #prepareForIteration()} when {@link #rewindSquaredDistance()}
+	 * is not {@link #NO_REWIND}. Removes discarded regions from the visible list
+	 * and redraws the raster from the regions that remain, without testing them again.
+	 *
+	 * <p>Target occluder is not changed. Regions no longer visible may still be present
+	 * there, which can only make shadow culling more conservative.
+	 */
+	public void rewind(VisibleRegionList visibleRegions) {
+		visibleRegions.removeFromDistance(rewindSquaredDistance);
+
+		occluder.invalidate();
+		occluder.prepareScene();
+
+		final int limit = visibleRegions.size();
+
+		for (int i = 0; i < limit; ++i) {
+			final RenderRegion region = visibleRegions.get(i);
+			final RegionBuildState buildState = region.getBuildState();
+
+			if (!region.isClosed() && buildState.canOcclude()) {
+				occluder.prepareRegion(region.origin);
+				occluder.occlude(buildState.getOcclusionData());
+			}
+		}
+	}
+
 	@Override
 	public void updateView(TerrainFrustum frustum, long cameraRegionOrigin) {
 		occluder.copyFrustum(frustum);
@@ -98,8 +199,12 @@ public class CameraVisibility extends AbstractVisbility<CameraVisibility, Camera
 		occluder.occlude(occlusionData);
 
 		if (worldRenderState.shadowsEnabled()) {
-			targetOccluder.prepareRegion(lastOrigin);
-			targetOccluder.occludeBox(occlusionData[RegionOcclusionCalculator.OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX]);
+			if (deferTargetOcclusion) {
+				shadowVisibility.enqueueTargetRegion(lastOrigin.region());
+			} else {
+				targetOccluder.prepareRegion(lastOrigin);
+				targetOccluder.occludeBox(occlusionData[RegionOcclusionCalculator.OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX]);
+			}
 		}
 	}
 }
@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_CACHE_WORDS;
+
+/**
+ * Flood fill of open space in the 16x16x16 region interior that works on whole
+ * words instead of single voxels. Uses the bit layout of region interior indexes:
+ * each word holds four 16-bit x rows for consecutive y values, and four consecutive
+ * words make a z slice.
+ *
+ * <p>Reach spreads to all six neighbors at once with shifts and masks. Words are
+ * updated in place during alternating forward and backward sweeps, so openness
+ * moves across many words per sweep. Sweeps repeat until nothing changes.
+ *
+ * <p>NOT THREAD SAFE. Retains a scratch array.
+ */
+public class BitFloodFill {
+	/** Bits at x = 0 in each row. Shifting left must not carry into these from the prior row. */
+	private static final long X_LOW_MASK = 0x0001000100010001L;
+	/** Bits at x = 15 in each row. Shifting right must not carry into these from the next row. */
+	private static final long X_HIGH_MASK = 0x8000800080008000L;
+	private static final int LAST_WORD = INTERIOR_CACHE_WORDS - 1;
+
+	private final long[] reach = new long[INTERIOR_CACHE_WORDS];
+
+	/**
+	 * Marks positions visible from the given seed positions.
+	 *
+	 * <p>A position is visible if it is a seed, or if it is reachable from an open seed
+	 * through open positions, or if it is adjacent to such a reachable position.
+	 * This means closed surfaces that face reachable space are visible.
+	 *
+	 * @param closed interior closed bits
+	 * @param closedIndex index of first interior word in closed
+	 * @param visited seed bits on input, visible bits on output
+	 * @param visitedIndex index of first interior word in visited
+	 */
+	public void fill(long[] closed, int closedIndex, long[] visited, int visitedIndex) {
+		final long[] reach = this.reach;
+
+		for (int w = 0; w < INTERIOR_CACHE_WORDS; ++w) {
+			reach[w] = visited[visitedIndex + w] & ~closed[closedIndex + w];
+		}
+
+		boolean changed = true;
+
+		while (changed) {
+			changed = false;
+
+			for (int w = 0; w < INTERIOR_CACHE_WORDS; ++w) {
+				changed |= spread(reach, w, ~closed[closedIndex + w]);
+			}
+
+			for (int w = LAST_WORD; w >= 0; --w) {
+				changed |= spread(reach, w, ~closed[closedIndex + w]);
+			}
+		}
+
+		for (int w = 0; w < INTERIOR_CACHE_WORDS; ++w) {
+			visited[visitedIndex + w] |= dilate(reach, w);
+		}
+	}
+
+	/**
+	 * Updates reach for a single word from itself and its neighbors,
+	 * saturating along x and y within the word. Returns true if reach changed.
+	 */
+	private static boolean spread(long[] reach, int w, long open) {
+		final long r = reach[w];
+		long n = dilate(reach, w) & open;
+
+		if (n == 0) {
+			return false;
+		}
+
+		long prior;
+
+		// x and y spread within the word is cheap - finish it here
+		do {
+			prior = n;
+			n = (n | ((n << 1) & ~X_LOW_MASK) | ((n >>> 1) & ~X_HIGH_MASK) | (n << 16) | (n >>> 16)) & open;
+		} while (n != prior);
+
+		if (n == r) {
+			return false;
+		}
+
+		reach[w] = n;
+		return true;
+	}
+
+	/** Reach of the given word combined with reach of all six neighbors. */
+	private static long dilate(long[] reach, int w) {
+		final long r = reach[w];
+		long n = r | ((r << 1) & ~X_LOW_MASK) | ((r >>> 1) & ~X_HIGH_MASK) | (r << 16) | (r >>> 16);
+
+		// y neighbors in adjacent words of the same z slice
+		if ((w & 3) != 0) {
+			n |= reach[w - 1] >>> 48;
+		}
+
+		if ((w & 3) != 3) {
+			n |= reach[w + 1] << 48;
+		}
+
+		// z neighbors
+		if (w >= 4) {
+			n |= reach[w - 4];
+		}
+
+		if (w < INTERIOR_CACHE_WORDS - 4) {
+			n |= reach[w + 4];
+		}
+
+		return n;
+	}
+}
@@ -0,0 +1,431 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_CACHE_WORDS;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ServerInfo;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.server.integrated.IntegratedServer;
+import net.minecraft.util.Util;
+
+import net.fabricmc.loader.api.FabricLoader;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.config.Configurator;
+
+/**
+ * Persistent cache of region occlusion, in a memory-mapped file per world and dimension.
+ *
+ * <p>Holds two kinds of entries in the same table:
+ * <ul>
+ * <li>Box finder output, keyed by a 128-bit hash of the interior closed bits given to
+ * {@link BoxFinder#findBoxes(long[], int)}. Boxes depend only on those bits, so these entries
+ * are exact and regions with the same content share them. Used during builds to skip box finding.</li>
+ * <li>Whole occlusion results of far regions, keyed by region origin and a hash of section content.
+ * Used before the first build so that regions seen in a prior session can occlude right away.
+ * Results also depend on neighboring sections, so these are replaced when the region is built.</li>
+ * </ul>
+ *
+ * <p>The file is a four-way set-associative table of fixed-size slots. Results with too many
+ * boxes to fit in a slot are not cached. New and incompatible files are sized without writing
+ * slots, so slot content may be unspecified. Each slot has a checksum and slots that don't
+ * match are ignored, which also covers slots partly written before a crash.
+ *
+ * <p>Files are opened and closed on the IO worker. Files not opened for {@link #MAX_FILE_AGE_DAYS}
+ * days are deleted, and only the {@link #MAX_FILE_COUNT} most recently opened are kept.
+ *
+ * <p>Thread-safe. Slots are accessed under striped locks.
+ */
+public class OcclusionCache {
+	private static final int MAGIC = 0x434F4356;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_BYTES = 64;
+
+	private static final int SLOT_INTS = 32;
+	private static final int SLOT_BYTES = SLOT_INTS * 4;
+	private static final int KEY0_OFFSET = 0;
+	private static final int KEY1_OFFSET = 8;
+	private static final int LENGTH_OFFSET = 16;
+	private static final int CHECKSUM_OFFSET = 20;
+	private static final int DATA_OFFSET = 24;
+	/** Box count limit for cached results. Most regions have far fewer. */
+	private static final int MAX_BOXES = (SLOT_BYTES - DATA_OFFSET) / 4;
+
+	private static final int WAYS = 4;
+	private static final int BUCKET_COUNT = 1 << 15;
+	private static final int BUCKET_MASK = BUCKET_COUNT - 1;
+	private static final int SLOT_COUNT = BUCKET_COUNT * WAYS;
+	private static final long FILE_BYTES = HEADER_BYTES + (long) SLOT_COUNT * SLOT_BYTES;
+
+	private static final int STRIPE_COUNT = 256;
+	private static final int STRIPE_MASK = STRIPE_COUNT - 1;
+
+	private static final long REGION_KEY_SALT = 0x510E527FADE682D1L;
+	private static final int MAX_FILE_AGE_DAYS = 30;
+	private static final int MAX_FILE_COUNT = 16;
+
+	private static volatile OcclusionCache current;
+	/** Guards {@link #generation} and assignment of {@link #current}. */
+	private static final Object STATE_LOCK = new Object();
+	/** Incremented on each world change so that files opened for a prior world are discarded. */
+	private static int generation;
+	/** Serializes file operations on the IO worker. */
+	private static final Object FILE_LOCK = new Object();
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final Object[] locks = new Object[STRIPE_COUNT];
+
+	private OcclusionCache(FileChannel channel, MappedByteBuffer buffer) {
+		this.channel = channel;
+		this.buffer = buffer;
+
+		for (int i = 0; i < STRIPE_COUNT; ++i) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Closes the cache for the prior world, if any, and opens the cache for the given world
+	 * if enabled. Call from render thread when world changes. Files are closed and opened
+	 * on the IO worker, so the cache for the new world becomes available shortly after.
+	 */
+	public static void onWorldChange(@Nullable ClientWorld world) {
+		final OcclusionCache prior;
+		final int openGeneration;
+
+		synchronized (STATE_LOCK) {
+			prior = current;
+			current = null;
+			openGeneration = ++generation;
+		}
+
+		final Path path = world != null && Configurator.persistentOcclusionCache ? cachePath(world) : null;
+
+		if (prior == null && path == null) {
+			return;
+		}
+
+		Util.getIoWorkerExecutor().execute(() -> {
+			synchronized (FILE_LOCK) {
+				if (prior != null) {
+					prior.close();
+				}
+
+				if (path != null) {
+					OcclusionCache cache = open(path);
+
+					synchronized (STATE_LOCK) {
+						if (cache != null && generation == openGeneration) {
+							current = cache;
+							cache = null;
+						}
+					}
+
+					if (cache != null) {
+						// world changed while opening
+						cache.close();
+					}
+
+					deleteOldFiles(path);
+				}
+			}
+		});
+	}
+
+	/** Currently open cache, or null if disabled or no world is loaded. */
+	public static @Nullable OcclusionCache current() {
+		return current;
+	}
+
+	private static Path cachePath(ClientWorld world) {
+		final MinecraftClient mc = MinecraftClient.getInstance();
+		final IntegratedServer server = mc.getServer();
+		final ServerInfo serverInfo = mc.getCurrentServerEntry();
+		final String worldName;
+
+		if (server != null) {
+			worldName = "local_" + server.getSaveProperties().getLevelName();
+		} else if (serverInfo != null) {
+			worldName = "server_" + serverInfo.address;
+		} else {
+			worldName = "unknown";
+		}
+
+		final String fileName = (worldName + "_" + world.getRegistryKey().getValue().toString()).replaceAll("[^a-zA-Z0-9_.-]", "_") + ".bin";
+		return FabricLoader.getInstance().getGameDir().resolve("canvas_cache").resolve("occlusion").resolve(fileName);
+	}
+
+	private static @Nullable OcclusionCache open(Path path) {
+		try {
+			Files.createDirectories(path.getParent());
+			final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+			try {
+				if (!hasCurrentHeader(channel)) {
+					// new or incompatible - mapping extends the file without writing slots
+					channel.truncate(0);
+				}
+
+				final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+				buffer.putInt(0, MAGIC);
+				buffer.putInt(4, FORMAT_VERSION);
+				buffer.putInt(8, SLOT_COUNT);
+				buffer.putInt(12, SLOT_BYTES);
+
+				// age for cleanup is time since last opened
+				Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+				return new OcclusionCache(channel, buffer);
+			} catch (final IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		} catch (final IOException | RuntimeException e) {
+			CanvasMod.LOG.warn("Unable to open occlusion cache " + path + " due to exception. Occlusion will not be cached.", e);
+			return null;
+		}
+	}
+
+	private static boolean hasCurrentHeader(FileChannel channel) throws IOException {
+		if (channel.size() != FILE_BYTES) {
+			return false;
+		}
+
+		final ByteBuffer header = ByteBuffer.allocate(16);
+
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0) {
+				return false;
+			}
+		}
+
+		return header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION && header.getInt(8) == SLOT_COUNT && header.getInt(12) == SLOT_BYTES;
+	}
+
+	/**
+	 * Deletes cache files other than the given one that haven't been opened in
+	 * {@link #MAX_FILE_AGE_DAYS} days or are beyond the {@link #MAX_FILE_COUNT} most recent.
+	 */
+	private static void deleteOldFiles(Path keep) {
+		final ArrayList<Path> files = new ArrayList<>();
+
+		try (Stream<Path> list = Files.list(keep.getParent())) {
+			list.filter(p -> !p.equals(keep) && p.getFileName().toString().endsWith(".bin")).forEach(files::add);
+		} catch (final IOException e) {
+			CanvasMod.LOG.warn("Unable to list occlusion cache files due to exception.", e);
+			return;
+		}
+
+		// most recently opened first
+		files.sort(Comparator.comparingLong(OcclusionCache::lastModified).reversed());
+		final long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_FILE_AGE_DAYS);
+
+		for (int i = 0; i < files.size(); ++i) {
+			final Path file = files.get(i);
+
+			// the file being kept counts toward the limit
+			if (i >= MAX_FILE_COUNT - 1 || lastModified(file) < cutoff) {
+				try {
+					Files.deleteIfExists(file);
+				} catch (final IOException e) {
+					CanvasMod.LOG.warn("Unable to delete old occlusion cache " + file + " due to exception.", e);
+				}
+			}
+		}
+	}
+
+	private static long lastModified(Path path) {
+		try {
+			return Files.getLastModifiedTime(path).toMillis();
+		} catch (final IOException e) {
+			return 0;
+		}
+	}
+
+	private void close() {
+		try {
+			buffer.force();
+			channel.close();
+		} catch (final IOException | RuntimeException e) {
+			CanvasMod.LOG.warn("Exception while closing occlusion cache.", e);
+		}
+	}
+
+	/** First half of key for the given interior closed bits. */
+	public static long hash0(long[] bits, int index) {
+		long h = 0x6A09E667F3BCC908L;
+
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+			h = Long.rotateLeft(h ^ mix(bits[index + i]), 27) * 0x9E3779B97F4A7C15L;
+		}
+
+		return mix(h);
+	}
+
+	/** Second half of key for the given interior closed bits. Independent of {@link #hash0(long[], int)}. */
+	public static long hash1(long[] bits, int index) {
+		long h = 0xBB67AE8584CAA73BL;
+
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+			h = Long.rotateLeft(h + mix(bits[index + i] ^ 0x3C6EF372FE94F82BL), 31) * 0xC2B2AE3D27D4EB4FL;
+		}
+
+		return mix(h);
+	}
+
+	/** Finalizer from MurmurHash3. */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Occlusion result saved for a region with the given origin and content by
+	 * {@link #putRegion(long, long, int[])}, or null if not cached.
+	 *
+	 * @param contentHash from {@code PackedInputRegion.contentHash()}
+	 */
+	public @Nullable int[] getRegion(long packedOrigin, long contentHash) {
+		return get(regionKey0(packedOrigin), regionKey1(contentHash));
+	}
+
+	/**
+	 * Saves the occlusion result of a region for use before the region is built in later sessions.
+	 * Does nothing if there are too many boxes.
+	 */
+	public void putRegion(long packedOrigin, long contentHash, int[] occlusionData) {
+		put(regionKey0(packedOrigin), regionKey1(contentHash), occlusionData, occlusionData.length);
+	}
+
+	private static long regionKey0(long packedOrigin) {
+		return mix(packedOrigin ^ REGION_KEY_SALT);
+	}
+
+	private static long regionKey1(long contentHash) {
+		// white glass changes closed positions without changing content
+		return Configurator.renderWhiteGlassAsOccluder ? mix(~contentHash) : contentHash;
+	}
+
+	private static int checksum(long key0, long key1, int[] boxes, int boxCount) {
+		long h = mix(key0 ^ mix(key1 + boxCount));
+
+		for (int i = 0; i < boxCount; ++i) {
+			h = mix(h + boxes[i]);
+		}
+
+		return (int) h;
+	}
+
+	private static int slotOffset(int bucket, int way) {
+		return HEADER_BYTES + (bucket * WAYS + way) * SLOT_BYTES;
+	}
+
+	/**
+	 * Packed boxes for the given key, or null if not cached or the slot fails validation.
+	 */
+	public @Nullable int[] get(long key0, long key1) {
+		final MappedByteBuffer buffer = this.buffer;
+		final int bucket = (int) key0 & BUCKET_MASK;
+
+		synchronized (locks[bucket & STRIPE_MASK]) {
+			for (int way = 0; way < WAYS; ++way) {
+				final int offset = slotOffset(bucket, way);
+				final int length = buffer.getInt(offset + LENGTH_OFFSET);
+
+				if (length > 0 && buffer.getLong(offset + KEY0_OFFSET) == key0 && buffer.getLong(offset + KEY1_OFFSET) == key1) {
+					// length is stored + 1 so that empty results are distinct from empty slots
+					final int boxCount = length - 1;
+
+					if (boxCount > MAX_BOXES) {
+						return null;
+					}
+
+					final int[] result = new int[boxCount];
+
+					for (int i = 0; i < boxCount; ++i) {
+						result[i] = buffer.getInt(offset + DATA_OFFSET + i * 4);
+					}
+
+					return checksum(key0, key1, result, boxCount) == buffer.getInt(offset + CHECKSUM_OFFSET) ? result : null;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Saves packed boxes for the given key. Does nothing if there are too many boxes.
+	 * Slots with unspecified content are replaced like any other.
+	 */
+	public void put(long key0, long key1, int[] boxes, int boxCount) {
+		if (boxCount > MAX_BOXES) {
+			return;
+		}
+
+		final MappedByteBuffer buffer = this.buffer;
+		final int bucket = (int) key0 & BUCKET_MASK;
+
+		synchronized (locks[bucket & STRIPE_MASK]) {
+			// replace an existing entry for the key or an empty slot, otherwise evict by key bits
+			int target = (int) (key1 >>> 62);
+
+			for (int way = 0; way < WAYS; ++way) {
+				final int offset = slotOffset(bucket, way);
+
+				if (buffer.getInt(offset + LENGTH_OFFSET) == 0 || (buffer.getLong(offset + KEY0_OFFSET) == key0 && buffer.getLong(offset + KEY1_OFFSET) == key1)) {
+					target = way;
+					break;
+				}
+			}
+
+			final int offset = slotOffset(bucket, target);
+			// mark empty while writing
+			buffer.putInt(offset + LENGTH_OFFSET, 0);
+			buffer.putLong(offset + KEY0_OFFSET, key0);
+			buffer.putLong(offset + KEY1_OFFSET, key1);
+
+			for (int i = 0; i < boxCount; ++i) {
+				buffer.putInt(offset + DATA_OFFSET + i * 4, boxes[i]);
+			}
+
+			buffer.putInt(offset + CHECKSUM_OFFSET, checksum(key0, key1, boxes, boxCount));
+			buffer.putInt(offset + LENGTH_OFFSET, boxCount + 1);
+		}
+	}
+}
@@ -22,7 +22,6 @@ import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_CACHE_W
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.interiorIndex;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndex;
 
-import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import net.minecraft.block.BlockRenderType;
@@ -56,7 +55,7 @@ public abstract class RegionOcclusionCalculator {
 	}
 
 	public final BoxFinder boxFinder = new BoxFinder(new AreaFinder());
-	private final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+	private final BitFloodFill floodFill = new BitFloodFill();
 	private final long[] bits = new long[WORD_COUNT];
 	private int openCount;
 	private int minRenderableX;
@@ -238,37 +237,6 @@ public abstract class RegionOcclusionCalculator {
 		}
 	}
 
-	/**
-	 * Checks if the position is interior and not already visited.
-	 * If the position is interior and not already visited, marks it visited
-	 * and returns a boolean indicating opacity.
-	 *
-	 * @param index
-	 * @return True if position met the conditions for visiting AND was not opaque.
-	 */
-	private boolean setVisited(int index) {
-		// interior only
-		if (index >= INTERIOR_STATE_COUNT) {
-			return false;
-		}
-
-		final int wordIndex = index >> 6;
-		final long mask = 1L << (index & 63);
-
-		if ((bits[wordIndex + EXTERIOR_VISIBLE_OFFSET] & mask) == 0) {
-			// not already visited
-
-			// mark visited
-			bits[wordIndex + EXTERIOR_VISIBLE_OFFSET] |= mask;
-
-			// return opacity result
-			return (bits[wordIndex] & mask) == 0;
-		} else {
-			// already visited
-			return false;
-		}
-	}
-
 	private void clearInteriorRenderable(int interiorIndex) {
 		bits[(interiorIndex >> 6) + RENDERABLE_OFFSET] &= ~(1L << (interiorIndex & 63));
 	}
@@ -446,18 +414,13 @@ public abstract class RegionOcclusionCalculator {
 	 * Should not be called if camera may be inside the chunk!
 	 */
 	private void hideInteriorClosedPositions() {
-		for (int i = 0; i < INTERIOR_STATE_COUNT; i++) {
-			final long mask = (1L << (i & 63));
-			final int wordIndex = (i >> 6);
-			final int x = i & 0xF;
-			final int y = (i >> 4) & 0xF;
-			final int z = (i >> 8) & 0xF;
-
-			if ((bits[wordIndex + EXTERIOR_VISIBLE_OFFSET] & mask) == 0 && x != 0 && y != 0 && z != 0 && x != 15 && y != 15 && z != 15) {
-				bits[wordIndex + RENDERABLE_OFFSET] &= ~mask;
-				// mark it opaque
-				bits[wordIndex] |= mask;
-			}
+		final long[] bits = this.bits;
+
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; i++) {
+			final long hidden = ~bits[i + EXTERIOR_VISIBLE_OFFSET] & ~EXTERIOR_MASK[i];
+			bits[i + RENDERABLE_OFFSET] &= ~hidden;
+			// mark it opaque
+			bits[i] |= hidden;
 		}
 	}
 
@@ -531,49 +494,20 @@ public abstract class RegionOcclusionCalculator {
 		maxRenderableZ = maxZ < minZ ? minZ : maxZ;
 	}
 
-	private void visitSurfaceIfPossible(int index) {
-		if (setVisited(index)) {
-			fill(index);
-		}
-	}
-
 	private int[] computeOcclusion(boolean isNear) {
 		// Determine which blocks are visible by visiting exterior blocks
 		// that aren't occluded by neighboring regions and doing a fill from there.
 
+		final long[] bits = this.bits;
+
 		for (int i = 0; i < COVERING_INDEX_COUNT; ++i) {
 			if (!isClosed(COVERING_INDEXES[i])) {
-				visitSurfaceIfPossible(COVERED_INDEXES[i]);
+				final int index = COVERED_INDEXES[i];
+				bits[(index >> 6) + EXTERIOR_VISIBLE_OFFSET] |= (1L << (index & 63));
 			}
 		}
 
-		//		for (int i = 0; i < 16; i++) {
-		//			for (int j = 0; j < 16; j++) {
-		//				if (!isClosed(regionIndex(-1, i, j))) {
-		//					visitSurfaceIfPossible(0, i, j);
-		//				}
-		//
-		//				if (!isClosed(regionIndex(16, i, j))) {
-		//					visitSurfaceIfPossible(15, i, j);
-		//				}
-		//
-		//				if (!isClosed(regionIndex(i, j, -1))) {
-		//					visitSurfaceIfPossible(i, j, 0);
-		//				}
-		//
-		//				if (!isClosed(regionIndex(i, j, 16))) {
-		//					visitSurfaceIfPossible(i, j, 15);
-		//				}
-		//
-		//				if (!isClosed(regionIndex(i, -1, j))) {
-		//					visitSurfaceIfPossible(i, 0, j);
-		//				}
-		//
-		//				if (!isClosed(regionIndex(i, 16, j))) {
-		//					visitSurfaceIfPossible(i, 15, j);
-		//				}
-		//			}
-		//		}
+		floodFill.fill(bits, 0, bits, EXTERIOR_VISIBLE_OFFSET);
 
 		// don't hide inside position if we may be inside the chunk!
 		if (!isNear) {
@@ -582,6 +516,43 @@ public abstract class RegionOcclusionCalculator {
 
 		computeRenderableBounds();
 
+		final int[] result = findBoxes();
+
+		if (minRenderableX == Integer.MAX_VALUE) {
+			result[OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX] = PackedBox.EMPTY_BOX;
+		} else {
+			if ((minRenderableX | minRenderableY | minRenderableZ) == 0 && (maxRenderableX & maxRenderableY & maxRenderableZ) == 15) {
+				result[OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX] = PackedBox.FULL_BOX;
+			} else {
+				result[OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX] = PackedBox.pack(minRenderableX, minRenderableY, minRenderableZ,
+						maxRenderableX + 1, maxRenderableY + 1, maxRenderableZ + 1, PackedBox.RANGE_EXTREME);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Finds boxes for interior closed bits, or retrieves them from the occlusion cache if enabled.
+	 * Result has an empty slot at {@link #OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX} to be filled by caller.
+	 */
+	private int[] findBoxes() {
+		final OcclusionCache cache = OcclusionCache.current();
+		long key0 = 0;
+		long key1 = 0;
+
+		if (cache != null) {
+			key0 = OcclusionCache.hash0(bits, 0);
+			key1 = OcclusionCache.hash1(bits, 0);
+			final int[] cached = cache.get(key0, key1);
+
+			if (cached != null) {
+				final int[] result = new int[cached.length + 1];
+				System.arraycopy(cached, 0, result, OCCLUSION_RESULT_FIRST_BOX_INDEX, cached.length);
+				return result;
+			}
+		}
+
 		final BoxFinder boxFinder = this.boxFinder;
 		final IntArrayList boxes = boxFinder.boxes;
 
@@ -599,15 +570,8 @@ public abstract class RegionOcclusionCalculator {
 			}
 		}
 
-		if (minRenderableX == Integer.MAX_VALUE) {
-			result[OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX] = PackedBox.EMPTY_BOX;
-		} else {
-			if ((minRenderableX | minRenderableY | minRenderableZ) == 0 && (maxRenderableX & maxRenderableY & maxRenderableZ) == 15) {
-				result[OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX] = PackedBox.FULL_BOX;
-			} else {
-				result[OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX] = PackedBox.pack(minRenderableX, minRenderableY, minRenderableZ,
-						maxRenderableX + 1, maxRenderableY + 1, maxRenderableZ + 1, PackedBox.RANGE_EXTREME);
-			}
+		if (cache != null) {
+			cache.put(key0, key1, boxes.elements(), boxCount);
 		}
 
 		return result;
@@ -634,55 +598,4 @@ public abstract class RegionOcclusionCalculator {
 			return computeOcclusion(isNear);
 		}
 	}
-
-	private void fill(int xyz4) {
-		final int faceBits = 0;
-		visit(xyz4, faceBits);
-
-		while (!queue.isEmpty()) {
-			final int nextXyz4 = queue.dequeueInt();
-			visit(nextXyz4, faceBits);
-		}
-	}
-
-	private void visit(int xyz4, int faceBits) {
-		final int x = xyz4 & 0xF;
-
-		if (x == 0) {
-			enqueIfUnvisited(xyz4 + 1);
-		} else if (x == 15) {
-			enqueIfUnvisited(xyz4 - 1);
-		} else {
-			enqueIfUnvisited(xyz4 - 1);
-			enqueIfUnvisited(xyz4 + 1);
-		}
-
-		final int y = xyz4 & 0xF0;
-
-		if (y == 0) {
-			enqueIfUnvisited(xyz4 + 0x10);
-		} else if (y == 0xF0) {
-			enqueIfUnvisited(xyz4 - 0x10);
-		} else {
-			enqueIfUnvisited(xyz4 - 0x10);
-			enqueIfUnvisited(xyz4 + 0x10);
-		}
-
-		final int z = xyz4 & 0xF00;
-
-		if (z == 0) {
-			enqueIfUnvisited(xyz4 + 0x100);
-		} else if (z == 0xF00) {
-			enqueIfUnvisited(xyz4 - 0x100);
-		} else {
-			enqueIfUnvisited(xyz4 - 0x100);
-			enqueIfUnvisited(xyz4 + 0x100);
-		}
-	}
-
-	private void enqueIfUnvisited(int xyz4) {
-		if (setVisited(xyz4)) {
-			queue.enqueue(xyz4);
-		}
-	}
 }
@@ -16,18 +16,29 @@
 
 package grondag.canvas.terrain.occlusion.shadow;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 import net.minecraft.util.math.BlockPos;
 
 import grondag.canvas.render.frustum.TerrainFrustum;
 import grondag.canvas.render.world.WorldRenderState;
 import grondag.canvas.shader.data.ShaderDataManager;
 import grondag.canvas.terrain.occlusion.base.AbstractVisbility;
+import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
+import grondag.canvas.terrain.region.RegionBuildState;
 import grondag.canvas.terrain.region.RegionPosition;
 import grondag.canvas.terrain.region.RenderRegion;
 
 public class ShadowVisibility extends AbstractVisbility<ShadowVisibility, ShadowRegionVisibility, ShadowPotentiallyVisibleRegionSet, ShadowOccluder> {
 	public final ShadowOccluder targetOccluder = new ShadowOccluder("canvas_shadow_target_occlusion_raster.png");
 
+	/**
+	 * Camera-visible regions not yet drawn to {@link #targetOccluder}.
+	 * Used when the shadow walk runs concurrently with the camera walk so
+	 * that only the shadow thread ever touches the target occluder.
+	 */
+	private final ConcurrentLinkedQueue<RenderRegion> pendingTargetRegions = new ConcurrentLinkedQueue<>();
+
 	public ShadowVisibility(WorldRenderState worldRenderState) {
 		super(worldRenderState, new ShadowPotentiallyVisibleRegionSet(), new ShadowOccluder("canvas_shadow_occlusion_raster.png"));
 	}
@@ -61,6 +72,60 @@ public class ShadowVisibility extends AbstractVisbility<ShadowVisibility, Shadow
 		super.updateView(frustum, cameraRegionOrigin);
 	}
 
+	/**
+	 * Draws the renderable bounds of a camera-visible region to the target occluder.
+	 * Regions that are closed or cannot occlude are ignored.
+	 */
+	public void drawTargetRegion(RenderRegion region) {
+		if (region.isClosed()) {
+			return;
+		}
+
+		final RegionBuildState buildState = region.getBuildState();
+
+		if (buildState.canOcclude()) {
+			targetOccluder.prepareRegion(region.origin);
+			targetOccluder.occludeBox(buildState.getOcclusionData()[RegionOcclusionCalculator.OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX]);
+		}
+	}
+
+	/**
+	 * Hands a camera-visible region to the thread running shadow iteration.
+	 * Safe to call from a different thread than {@link #drawPendingTargetRegions()}.
+	 */
+	public void enqueueTargetRegion(RenderRegion region) {
+		pendingTargetRegions.offer(region);
+	}
+
+	/**
+	 * Draws regions handed off by the camera walk to the target occluder.
+	 * Call only from the thread that owns the target occluder.
+	 *
+	 * @return true if any regions were drawn
+	 */
+	public boolean drawPendingTargetRegions() {
+		RenderRegion region = pendingTargetRegions.poll();
+
+		if (region == null) {
+			return false;
+		}
+
+		while (region != null) {
+			drawTargetRegion(region);
+			region = pendingTargetRegions.poll();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Discards handed-off regions. Call when the target occluder is
+	 * reset and iteration is not running.
+	 */
+	public void clearPendingTargetRegions() {
+		pendingTargetRegions.clear();
+	}
+
 	@Override
 	public void outputRaster() {
 		super.outputRaster();
@@ -0,0 +1,341 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.region;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_STATE_COUNT;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.world.World;
+
+import net.fabricmc.loader.api.FabricLoader;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
+import grondag.canvas.buffer.input.ArrayVertexCollector;
+import grondag.canvas.buffer.input.VertexCollectorList;
+import grondag.canvas.perf.ChunkRebuildCounters;
+import grondag.canvas.perf.ChunkRebuildCounters.Phase;
+import grondag.canvas.perf.ChunkRebuildCounters.Shard;
+import grondag.canvas.render.terrain.TerrainFormat;
+import grondag.canvas.terrain.region.input.RegionCapture;
+
+/**
+ * Rebuilds captured regions through the same path as region rebuilds and logs the time
+ * spent in each phase, so build throughput can be compared between versions on the same input.
+ *
+ * <p>Regions are read from {@link RegionCapture#CAPTURE_DIR}, or generated when there are no
+ * captures, and built by {@link TerrainRenderContext} with actual block states, models, materials
+ * and {@link TerrainFormat#TERRAIN_TRANSCODER}. Collectors are sorted as they are for upload and
+ * then cleared, so nothing is sent to the GPU. Models and materials need a loaded game, so the
+ * harness runs in the client on its own thread when {@link CanvasMod#BENCHMARK_REGION_BUILDS}
+ * is pressed in a world.
+ *
+ * <p>This is not a headless benchmark and can't run on CI. Resource loading, model baking and
+ * material setup all assume a client with a window. Parts of the build that need none of that
+ * have headless JMH benchmarks instead: occlusion, light smoothing and quad sorting. Results from this
+ * harness are only comparable between runs on the same machine with the same resource packs.
+ *
+ * <p>Phases are:
+ * <ul>
+ * <li>copy - capture to input region, as {@code InputRegion.prepare()}</li>
+ * <li>occlusion - visibility, flood fill and box finding</li>
+ * <li>models - block and fluid model output, face culling and materials</li>
+ * <li>ao - smooth and flat lighting of quads</li>
+ * <li>encode - color, lighting and vertex encoding to collectors</li>
+ * <li>sort - vertex buckets for solid and distance sort for translucent</li>
+ * </ul>
+ */
+public class RegionBuildHarness {
+	private static final int PASSES = 50;
+	private static final AtomicBoolean RUNNING = new AtomicBoolean();
+
+	private final TerrainRenderContext context = new TerrainRenderContext();
+	private Shard counters = ChunkRebuildCounters.detachedShard();
+	private long copyNanos;
+	private long occlusionNanos;
+	private long sortNanos;
+	private int buildCount;
+	private long quadCount;
+
+	/**
+	 * Builds the given region and adds the time of each phase to the totals.
+	 * Returns the number of quads, which callers should consume.
+	 */
+	public int build(RegionCapture capture, World world) {
+		final TerrainRenderContext context = this.context;
+		long start = System.nanoTime();
+		context.prepareForCapture(capture, world);
+		long end = System.nanoTime();
+		copyNanos += end - start;
+
+		start = end;
+		final int[] occlusionResult = context.region.occlusion.build(false);
+		end = System.nanoTime();
+		occlusionNanos += end - start;
+
+		// region at the origin of sector zero
+		context.sectorId = 0;
+		context.sectorRelativeRegionOrigin = 0;
+		context.counters = counters;
+		counters.start(Phase.BUILD);
+		RenderRegion.renderBlocks(context, capture.originX, capture.originY, capture.originZ);
+		counters.complete(Phase.BUILD);
+		context.counters = null;
+
+		start = System.nanoTime();
+		final VertexCollectorList collectors = context.collectors;
+		final int limit = collectors.size();
+		int quads = 0;
+
+		for (int i = 0; i < limit; ++i) {
+			final ArrayVertexCollector collector = collectors.get(i);
+
+			if (!collector.isEmpty()) {
+				quads += collector.quadCount();
+
+				if (collector.renderState.sorted) {
+					// camera above the region, as when looking down on water
+					collector.sortQuads(8f, 24f, 8f);
+				} else {
+					collector.sortVertexBuckets();
+				}
+			}
+		}
+
+		sortNanos += System.nanoTime() - start;
+		collectors.clear();
+		quadCount += quads;
+		++buildCount;
+		return quads + occlusionResult.length;
+	}
+
+	public void reset() {
+		counters = ChunkRebuildCounters.detachedShard();
+		copyNanos = 0;
+		occlusionNanos = 0;
+		sortNanos = 0;
+		buildCount = 0;
+		quadCount = 0;
+	}
+
+	public void close() {
+		context.close();
+	}
+
+	public void logReport() {
+		final long ao = counters.elapsed(Phase.LIGHT);
+		final long encode = counters.elapsed(Phase.TRANSCODE);
+		final long models = counters.elapsed(Phase.BUILD) - ao - encode;
+		final String[] names = {"copy", "occlusion", "models", "ao", "encode", "sort"};
+		final long[] nanos = {copyNanos, occlusionNanos, models, ao, encode, sortNanos};
+		final int builds = Math.max(1, buildCount);
+		long total = 0;
+
+		for (final long n : nanos) {
+			total += n;
+		}
+
+		CanvasMod.LOG.info(String.format("Region build harness: %,d builds, %,d quads, %.1fus per region", buildCount, quadCount, total / 1000.0 / builds));
+
+		for (int i = 0; i < names.length; ++i) {
+			CanvasMod.LOG.info(String.format("  %-10s %10.1fus per region %5.1f%%", names[i], nanos[i] / 1000.0 / builds, 100.0 * nanos[i] / Math.max(1, total)));
+		}
+	}
+
+	/** Call once per frame from the render thread. */
+	public static void onFrame() {
+		while (CanvasMod.BENCHMARK_REGION_BUILDS.wasPressed()) {
+			final World world = MinecraftClient.getInstance().world;
+
+			if (world == null) {
+				CanvasMod.LOG.info("Region build harness needs a loaded world.");
+			} else if (RUNNING.compareAndSet(false, true)) {
+				final Thread thread = new Thread(() -> run(world), "Canvas Region Build Harness");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+	}
+
+	private static void run(World world) {
+		final RegionBuildHarness harness = new RegionBuildHarness();
+
+		try {
+			ObjectArrayList<RegionCapture> captures = readCaptures(FabricLoader.getInstance().getGameDir().resolve(RegionCapture.CAPTURE_DIR));
+
+			if (captures.isEmpty()) {
+				CanvasMod.LOG.info("No region captures found. Building generated regions. Enable captureRegionsForBenchmark in the config file to capture regions.");
+				captures = new ObjectArrayList<>();
+				final int y = world.getBottomY() + 64;
+
+				for (int i = 0; i < 16; ++i) {
+					captures.add(generate("surface", i, y));
+					captures.add(generate("caves", i, y));
+					captures.add(generate("sparse", i, y));
+				}
+			}
+
+			int check = 0;
+
+			// warm up with the same number of passes so that reported builds are compiled
+			for (int pass = 0; pass < PASSES; ++pass) {
+				for (final RegionCapture capture : captures) {
+					check += harness.build(capture, world);
+				}
+			}
+
+			harness.reset();
+
+			for (int pass = 0; pass < PASSES; ++pass) {
+				for (final RegionCapture capture : captures) {
+					check += harness.build(capture, world);
+				}
+			}
+
+			harness.logReport();
+			CanvasMod.LOG.debug("Region build harness check value " + check);
+		} catch (final Exception e) {
+			CanvasMod.LOG.warn("Region build harness failed due to exception.", e);
+		} finally {
+			harness.close();
+			RUNNING.set(false);
+		}
+	}
+
+	public static ObjectArrayList<RegionCapture> readCaptures(Path dir) throws IOException {
+		final ObjectArrayList<RegionCapture> result = new ObjectArrayList<>();
+
+		if (!Files.isDirectory(dir)) {
+			return result;
+		}
+
+		try (Stream<Path> files = Files.list(dir)) {
+			for (final Path path : (Iterable<Path>) files.sorted()::iterator) {
+				if (path.getFileName().toString().endsWith(".bin")) {
+					result.add(RegionCapture.read(path));
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Region resembling a common case, for use without captures: {@code surface} is ground
+	 * with a pond and air above, {@code caves} is solid with winding tunnels, and {@code sparse}
+	 * is mostly air with scattered leaves.
+	 */
+	public static RegionCapture generate(String scene, long seed, int originY) {
+		final Random rand = new Random(seed);
+		final BlockState[] palette = {Blocks.AIR.getDefaultState(), Blocks.STONE.getDefaultState(), Blocks.WATER.getDefaultState(), Blocks.OAK_LEAVES.getDefaultState()};
+		final short[] states = new short[TOTAL_STATE_COUNT];
+		final int[] light = new int[TOTAL_STATE_COUNT];
+		final byte[] ao = new byte[TOTAL_STATE_COUNT];
+
+		// positions -2 to 17 on each axis
+		final short[] grid = new short[20 * 20 * 20];
+
+		switch (scene) {
+			case "surface": {
+				for (int x = 0; x < 20; ++x) {
+					for (int z = 0; z < 20; ++z) {
+						final int height = 8 + rand.nextInt(3);
+
+						for (int y = 0; y < height; ++y) {
+							grid[x + y * 20 + z * 400] = 1;
+						}
+
+						if (height == 8 && x > 4 && x < 14 && z > 4 && z < 14) {
+							grid[x + 8 * 20 + z * 400] = 2;
+						}
+					}
+				}
+
+				break;
+			}
+
+			case "caves": {
+				Arrays.fill(grid, (short) 1);
+				int x = 10;
+				int y = 10;
+				int z = 0;
+
+				for (int i = 0; i < 800; ++i) {
+					grid[x + y * 20 + z * 400] = 0;
+					final int axis = rand.nextInt(3);
+					final int step = rand.nextBoolean() ? 1 : -1;
+
+					if (axis == 0) {
+						x = Math.max(0, Math.min(19, x + step));
+					} else if (axis == 1) {
+						y = Math.max(0, Math.min(19, y + step));
+					} else {
+						z = Math.max(0, Math.min(19, z + step));
+					}
+				}
+
+				break;
+			}
+
+			case "sparse":
+			default: {
+				for (int i = 0; i < grid.length; ++i) {
+					if (rand.nextInt(20) == 0) {
+						grid[i] = 3;
+					}
+				}
+
+				break;
+			}
+		}
+
+		final boolean sky = !scene.equals("caves");
+
+		for (int x = 0; x < 20; ++x) {
+			for (int y = 0; y < 20; ++y) {
+				for (int z = 0; z < 20; ++z) {
+					final int i = regionIndex(x - 2, y - 2, z - 2);
+					final short state = grid[x + y * 20 + z * 400];
+					states[i] = state;
+
+					if (state == 1) {
+						// full cubes have an AO level of 0.2
+						ao[i] = (byte) 51;
+					} else {
+						ao[i] = (byte) 255;
+						light[i] = sky ? 240 << 16 : rand.nextInt(16) << 4;
+					}
+				}
+			}
+		}
+
+		return new RegionCapture(0, originY, 0, palette, states, light, ao);
+	}
+}
@@ -51,14 +51,18 @@ public class RegionBuildState {
 	/**
 	 * Persists data for translucency resort if needed, also performing initial sort.
 	 * Should be called after vertex collection is complete.
+	 * Returns the number of translucent quads sorted, zero if none.
 	 */
-	public void prepareTranslucentIfNeeded(Vec3d sortPos, RegionRenderSector sector, VertexCollectorList collectors) {
+	public int prepareTranslucentIfNeeded(Vec3d sortPos, RegionRenderSector sector, VertexCollectorList collectors) {
 		final ArrayVertexCollector buffer = collectors.getIfExists(RenderLayerHelper.TRANSLUCENT_TERRAIN);
 
 		if (buffer != null && !buffer.isEmpty()) {
 			buffer.sortTerrainQuads(sortPos, sector);
 			translucentState = buffer.saveState(translucentState);
+			return buffer.quadCount();
 		}
+
+		return 0;
 	}
 
 	public int[] getOcclusionData() {
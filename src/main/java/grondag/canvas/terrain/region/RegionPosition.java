@@ -82,6 +82,10 @@ public class RegionPosition extends BlockPos {
 		chunkY = getY() >> 4;
 	}
 
+	public RenderRegion region() {
+		return owner;
+	}
+
 	public void update() {
 		computeRegionDependentValues();
 		computeViewDependentValues();
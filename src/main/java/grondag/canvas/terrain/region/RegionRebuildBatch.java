@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.region;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
+import grondag.canvas.terrain.region.input.ChunkColumnCapture;
+import grondag.canvas.terrain.util.TerrainExecutor;
+import grondag.canvas.terrain.util.TerrainExecutorTask;
+
+/**
+ * Off-thread rebuild of regions in one chunk column, run by a worker as a single task.
+ *
+ * <p>Regions are claimed through a shared {@link ChunkColumnCapture}, so neighbor chunks
+ * and block entities of the column are looked up once, and sections read by vertically
+ * adjacent regions are unpacked once instead of by each claim. The worker builds the regions
+ * nearest first with one context and schedules a single upload for all of them.
+ *
+ * <p>Each region is still its own unit of work: a region already submitted only has its
+ * input updated, and a region cancelled after submission is skipped when the batch runs.
+ */
+class RegionRebuildBatch implements TerrainExecutorTask {
+	/** Keeps batches small enough that work still spreads across workers. */
+	static final int MAX_SIZE = 8;
+
+	final ChunkColumnCapture column = new ChunkColumnCapture();
+	private final ObjectArrayList<RenderRegion> regions = new ObjectArrayList<>(MAX_SIZE);
+	private int priority = Integer.MAX_VALUE;
+
+	/** Claims input for the region and adds it unless it was already submitted. */
+	void prepareAndAdd(RenderRegion region) {
+		if (region.prepareRebuildTask(column)) {
+			regions.add(region);
+			priority = Math.min(priority, region.priority());
+		}
+	}
+
+	boolean isFull() {
+		return regions.size() >= MAX_SIZE;
+	}
+
+	/** Submits the batch, or the region alone if only one. Call once claims are done. */
+	void submit() {
+		column.clear();
+
+		if (regions.size() == 1) {
+			TerrainExecutor.INSTANCE.execute(regions.get(0));
+		} else if (!regions.isEmpty()) {
+			regions.sort((a, b) -> Integer.compare(a.priority(), b.priority()));
+			TerrainExecutor.INSTANCE.execute(this);
+		}
+	}
+
+	@Override
+	public void run(TerrainRenderContext context) {
+		final ObjectArrayList<Runnable> uploads = new ObjectArrayList<>(regions.size());
+
+		for (final RenderRegion region : regions) {
+			region.run(context, uploads);
+		}
+
+		if (!uploads.isEmpty()) {
+			regions.get(0).renderRegionBuilder.scheduleUpload(() -> {
+				for (final Runnable upload : uploads) {
+					upload.run();
+				}
+			});
+		}
+	}
+
+	@Override
+	public int priority() {
+		return priority;
+	}
+}
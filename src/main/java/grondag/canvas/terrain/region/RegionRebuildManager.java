@@ -20,10 +20,13 @@ import java.util.Iterator;
 import java.util.Set;
 
 import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 import net.minecraft.util.Util;
+import net.minecraft.util.math.ChunkPos;
 
+import grondag.canvas.config.Configurator;
 import grondag.fermion.sc.unordered.SimpleUnorderedArrayList;
 
 /**
@@ -44,6 +47,9 @@ public class RegionRebuildManager {
 	 */
 	private final Set<RenderRegion> externalBuildRequests = new ObjectOpenHashSet<>();
 
+	/** Batches being filled by {@link #processScheduledRegions(long)}, by chunk column. */
+	private final Long2ObjectOpenHashMap<RegionRebuildBatch> batches = new Long2ObjectOpenHashMap<>();
+
 	public void acceptExternalBuildRequest(RenderRegion region) {
 		externalBuildRequests.add(region);
 	}
@@ -126,7 +132,11 @@ public class RegionRebuildManager {
 	 * Iterates regions awaiting rebuild and rebuilds them on the calling
 	 * thread if they are urgent/near.  For non-urgent regions, necessary
 	 * world data are captured on the calling thread and packaged into a
-	 * rebuild task that runs off thread.
+	 * rebuild task that runs off thread. With off-thread world capture,
+	 * only chunk references and block entities are captured here.
+	 *
+	 * <p>With batched rebuilds, regions in the same chunk column are
+	 * submitted together as a {@link RegionRebuildBatch}.
 	 *
 	 * <p>Not thread-safe and meant to be called from the main render thread.
 	 *
@@ -140,6 +150,7 @@ public class RegionRebuildManager {
 		//int builtCount = 0;
 
 		if (!regionsToRebuild.isEmpty()) {
+			final boolean batch = Configurator.batchRegionRebuilds;
 			final Iterator<RenderRegion> iterator = regionsToRebuild.iterator();
 
 			while (iterator.hasNext()) {
@@ -151,7 +162,12 @@ public class RegionRebuildManager {
 					region.rebuildOnMainThread();
 					iterator.remove();
 				} else if (region.renderChunk.areCornersLoaded()) {
-					region.prepareAndExecuteRebuildTask();
+					if (batch) {
+						addToBatch(region);
+					} else {
+						region.prepareAndExecuteRebuildTask();
+					}
+
 					iterator.remove();
 				}
 
@@ -171,6 +187,31 @@ public class RegionRebuildManager {
 					break;
 				}
 			}
+
+			if (!batches.isEmpty()) {
+				for (final RegionRebuildBatch b : batches.values()) {
+					b.submit();
+				}
+
+				batches.clear();
+			}
+		}
+	}
+
+	private void addToBatch(RenderRegion region) {
+		final long key = ChunkPos.toLong(region.origin.getX() >> 4, region.origin.getZ() >> 4);
+		RegionRebuildBatch batch = batches.get(key);
+
+		if (batch == null) {
+			batch = new RegionRebuildBatch();
+			batches.put(key, batch);
+		}
+
+		batch.prepareAndAdd(region);
+
+		if (batch.isFull()) {
+			batch.submit();
+			batches.remove(key);
 		}
 	}
 
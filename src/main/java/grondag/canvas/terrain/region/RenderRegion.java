@@ -25,6 +25,7 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockRenderType;
@@ -48,15 +49,21 @@ import net.fabricmc.fabric.api.renderer.v1.model.FabricBakedModel;
 import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
 import grondag.canvas.buffer.input.ArrayVertexCollector;
 import grondag.canvas.buffer.input.VertexCollectorList;
+import grondag.canvas.config.Configurator;
+import grondag.canvas.light.LightmapHdRegistry.Refs;
 import grondag.canvas.material.state.RenderLayerHelper;
 import grondag.canvas.perf.ChunkRebuildCounters;
+import grondag.canvas.perf.ChunkRebuildCounters.Phase;
+import grondag.canvas.perf.ChunkRebuildCounters.Shard;
 import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
 import grondag.canvas.render.terrain.base.DrawableRegion;
 import grondag.canvas.render.terrain.base.UploadableRegion;
 import grondag.canvas.render.world.WorldRenderState;
 import grondag.canvas.terrain.occlusion.camera.CameraRegionVisibility;
+import grondag.canvas.terrain.occlusion.geometry.OcclusionCache;
 import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
 import grondag.canvas.terrain.occlusion.shadow.ShadowRegionVisibility;
+import grondag.canvas.terrain.region.input.ChunkColumnCapture;
 import grondag.canvas.terrain.region.input.InputRegion;
 import grondag.canvas.terrain.region.input.PackedInputRegion;
 import grondag.canvas.terrain.region.input.SignalInputRegion;
@@ -67,7 +74,7 @@ import grondag.frex.api.fluid.FluidQuadSupplier;
 
 @Environment(EnvType.CLIENT)
 public class RenderRegion implements TerrainExecutorTask {
-	private final RenderRegionBuilder renderRegionBuilder;
+	final RenderRegionBuilder renderRegionBuilder;
 
 	final WorldRenderState worldRenderState;
 	final RenderRegionStorage storage;
@@ -79,6 +86,8 @@ public class RenderRegion implements TerrainExecutorTask {
 	public final NeighborRegions neighbors;
 
 	private RegionRenderSector renderSector = null;
+	/** HD lightmaps used by the current drawables, released with them. */
+	private @Nullable Refs lightmapRefs = null;
 
 	/**
 	 * Set by main thread during schedule. Retrieved and set to null by worker
@@ -172,6 +181,11 @@ public class RenderRegion implements TerrainExecutorTask {
 
 		translucentDrawable.releaseFromRegion();
 		translucentDrawable = DrawableRegion.EMPTY_DRAWABLE;
+
+		if (lightmapRefs != null) {
+			lightmapRefs.release();
+			lightmapRefs = null;
+		}
 	}
 
 	public void markForBuild(boolean isImportant) {
@@ -197,16 +211,55 @@ public class RenderRegion implements TerrainExecutorTask {
 	}
 
 	public void prepareAndExecuteRebuildTask() {
-		final PackedInputRegion region = PackedInputRegion.claim(worldRenderState.getWorld(), origin);
+		if (prepareRebuildTask(null)) {
+			TerrainExecutor.INSTANCE.execute(this);
+		}
+	}
+
+	/**
+	 * Captures world state for an off-thread rebuild and returns true if this
+	 * region must be submitted for execution to run it.
+	 *
+	 * @param column Shares chunk lookups with other regions in the same column, or null.
+	 */
+	boolean prepareRebuildTask(@Nullable ChunkColumnCapture column) {
+		final PackedInputRegion region = PackedInputRegion.claim(worldRenderState.getWorld(), origin, Configurator.offThreadWorldCapture, column);
+
+		if (buildState.get() == RegionBuildState.UNBUILT) {
+			// only unbuilt regions need the hash before the build
+			useCachedOcclusion(region.hashContent());
+		}
 
 		// Idle region is signal to reschedule
 		// If region is something other than idle, we are already in the queue
 		// and we only need to update the input protoRegion (which we do here.)
-		if (inputState.getAndSet(region) == SignalInputRegion.IDLE) {
-			TerrainExecutor.INSTANCE.execute(this);
+		final boolean result = inputState.getAndSet(region) == SignalInputRegion.IDLE;
+		markBuilt();
+		return result;
+	}
+
+	/**
+	 * Gives a region that has never been built the occlusion saved for the same content
+	 * in a prior build, so that it can occlude before it is built. The result also depends
+	 * on neighbors, so it is replaced when the region is built.
+	 */
+	private void useCachedOcclusion(long contentHash) {
+		final OcclusionCache cache = OcclusionCache.current();
+
+		if (cache == null || contentHash == 0 || origin.isNear()) {
+			return;
 		}
 
-		markBuilt();
+		final int[] occlusionData = cache.getRegion(origin.asLong(), contentHash);
+
+		if (occlusionData != null) {
+			final RegionBuildState cachedState = new RegionBuildState();
+			cachedState.setOcclusionData(occlusionData);
+
+			if (buildState.compareAndSet(RegionBuildState.UNBUILT, cachedState)) {
+				notifyOcclusionChange();
+			}
+		}
 	}
 
 	/**
@@ -255,13 +308,31 @@ public class RenderRegion implements TerrainExecutorTask {
 
 	@Override
 	public void run(TerrainRenderContext context) {
+		run(context, null);
+	}
+
+	/**
+	 * Runs the rebuild or resort.
+	 *
+	 * @param uploads Receives upload tasks when run in a batch. When null, uploads are scheduled directly.
+	 */
+	void run(TerrainRenderContext context, @Nullable List<Runnable> uploads) {
 		final AtomicReference<PackedInputRegion> runningState = inputState;
-		final PackedInputRegion protoRegion = runningState.getAndSet(SignalInputRegion.IDLE);
+		PackedInputRegion protoRegion = runningState.getAndSet(SignalInputRegion.IDLE);
 
 		if (protoRegion == null || protoRegion == SignalInputRegion.INVALID) {
 			return;
 		}
 
+		protoRegion = protoRegion.captureDeferred();
+
+		if (protoRegion == null) {
+			// Sections changed during every capture attempt. The changes will
+			// also have marked us for rebuild, but don't depend on it.
+			markForBuild(false);
+			return;
+		}
+
 		if (protoRegion == SignalInputRegion.EMPTY) {
 			final RegionBuildState chunkData = new RegionBuildState();
 			chunkData.setOcclusionData(RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT);
@@ -313,7 +384,7 @@ public class RenderRegion implements TerrainExecutorTask {
 						final UploadableRegion upload = collectors.toUploadableChunk(true, origin.asLong(), worldRenderState);
 
 						if (upload != UploadableRegion.EMPTY_UPLOADABLE) {
-							renderRegionBuilder.scheduleUpload(() -> {
+							scheduleUpload(uploads, () -> {
 								if (ChunkRebuildCounters.ENABLED) {
 									ChunkRebuildCounters.startUpload();
 								}
@@ -334,7 +405,7 @@ public class RenderRegion implements TerrainExecutorTask {
 			}
 		} else {
 			context.prepareForRegion(protoRegion);
-			final RegionBuildState newBuildState = captureAndSetBuildState(context, origin.isNear());
+			final RegionBuildState newBuildState = captureAndSetBuildState(context, origin.isNear(), protoRegion.contentHash());
 			context.sectorId = renderSector.sectorId();
 			context.sectorRelativeRegionOrigin = renderSector.sectorRelativeRegionOrigin(origin);
 			final VertexCollectorList collectors = context.collectors;
@@ -346,13 +417,18 @@ public class RenderRegion implements TerrainExecutorTask {
 			}
 
 			buildTerrain(context, newBuildState);
+			final Refs lightmaps = context.lightmapRefs;
+			context.lightmapRefs = null;
+			boolean didScheduleUpload = false;
 
 			if (runningState.get() != SignalInputRegion.INVALID) {
 				final UploadableRegion solidUpload = collectors.toUploadableChunk(false, origin.asLong(), worldRenderState);
 				final UploadableRegion translucentUpload = collectors.toUploadableChunk(true, origin.asLong(), worldRenderState);
 
 				if (solidUpload != UploadableRegion.EMPTY_UPLOADABLE || translucentUpload != UploadableRegion.EMPTY_UPLOADABLE) {
-					renderRegionBuilder.scheduleUpload(() -> {
+					didScheduleUpload = true;
+
+					scheduleUpload(uploads, () -> {
 						if (ChunkRebuildCounters.ENABLED) {
 							ChunkRebuildCounters.startUpload();
 						}
@@ -362,6 +438,15 @@ public class RenderRegion implements TerrainExecutorTask {
 						translucentDrawable = translucentUpload.produceDrawable();
 						worldRenderState.invalidateDrawLists();
 
+						if (isClosed) {
+							// region closed while build was in progress
+							if (lightmaps != null) {
+								lightmaps.release();
+							}
+						} else {
+							lightmapRefs = lightmaps;
+						}
+
 						if (ChunkRebuildCounters.ENABLED) {
 							ChunkRebuildCounters.completeUpload();
 						}
@@ -369,17 +454,49 @@ public class RenderRegion implements TerrainExecutorTask {
 				}
 			}
 
+			if (!didScheduleUpload && lightmaps != null) {
+				lightmaps.release();
+			}
+
 			collectors.clear();
 			protoRegion.release();
 		}
 	}
 
-	private RegionBuildState captureAndSetBuildState(TerrainRenderContext context, boolean isNear) {
+	private void scheduleUpload(@Nullable List<Runnable> uploads, Runnable upload) {
+		if (uploads == null) {
+			renderRegionBuilder.scheduleUpload(upload);
+		} else {
+			uploads.add(upload);
+		}
+	}
+
+	/**
+	 * @param contentHash From the input region, for saving occlusion to {@link OcclusionCache}. Zero if not saved.
+	 */
+	private RegionBuildState captureAndSetBuildState(TerrainRenderContext context, boolean isNear, long contentHash) {
 		final RegionBuildState newBuildState = new RegionBuildState();
-		newBuildState.setOcclusionData(context.region.occlusion.build(isNear));
-		handleBlockEntities(newBuildState, context);
+		final int[] occlusionData = context.region.occlusion.build(isNear);
+		newBuildState.setOcclusionData(occlusionData);
 
-		// don't rebuild occlusion if occlusion did not change
+		if (!isNear && contentHash != 0) {
+			final OcclusionCache cache = OcclusionCache.current();
+
+			if (cache != null) {
+				cache.putRegion(origin.asLong(), contentHash, occlusionData);
+			}
+		}
+
+		if (ChunkRebuildCounters.ENABLED) {
+			final Shard counters = ChunkRebuildCounters.shard();
+			counters.start(Phase.BLOCK_ENTITY);
+			handleBlockEntities(newBuildState, context);
+			counters.complete(Phase.BLOCK_ENTITY, 0, 0);
+		} else {
+			handleBlockEntities(newBuildState, context);
+		}
+
+		// don't rebuild occlusion if occlusion did not change, including occlusion from the cache
 		final RegionBuildState oldBuildState = buildState.getAndSet(newBuildState);
 
 		assert renderSector == null || oldBuildState != RegionBuildState.UNBUILT;
@@ -396,16 +513,37 @@ public class RenderRegion implements TerrainExecutorTask {
 	}
 
 	private void buildTerrain(TerrainRenderContext context, RegionBuildState buildState) {
-		if (ChunkRebuildCounters.ENABLED) {
-			ChunkRebuildCounters.startChunk();
+		final Shard counters = ChunkRebuildCounters.ENABLED ? ChunkRebuildCounters.shard() : null;
+		context.counters = counters;
+		context.lightmapRefs = Configurator.hdLightmaps() ? new Refs() : null;
+
+		if (counters != null) {
+			counters.start(Phase.BUILD);
 		}
 
 		final VertexCollectorList collectors = context.collectors;
+		renderBlocks(context, origin.getX(), origin.getY(), origin.getZ());
 
+		if (counters == null) {
+			buildState.prepareTranslucentIfNeeded(worldRenderState.sectorManager.cameraPos(), renderSector, collectors);
+		} else {
+			counters.start(Phase.SORT);
+			final int sortedQuads = buildState.prepareTranslucentIfNeeded(worldRenderState.sectorManager.cameraPos(), renderSector, collectors);
+
+			if (sortedQuads > 0) {
+				counters.complete(Phase.SORT, sortedQuads, sortedQuads * 4L);
+			}
+
+			counters.complete(Phase.BUILD);
+		}
+	}
+
+	/**
+	 * Renders block and fluid models of the prepared input region to the collectors of the context.
+	 * Also used by {@link RegionBuildHarness}.
+	 */
+	static void renderBlocks(TerrainRenderContext context, int xOrigin, int yOrigin, int zOrigin) {
 		final BlockPos.Mutable searchPos = context.searchPos;
-		final int xOrigin = origin.getX();
-		final int yOrigin = origin.getY();
-		final int zOrigin = origin.getZ();
 
 		final InputRegion region = context.region;
 		final MatrixStack matrixStack = new MatrixStack();
@@ -454,12 +592,6 @@ public class RenderRegion implements TerrainExecutorTask {
 				}
 			}
 		}
-
-		buildState.prepareTranslucentIfNeeded(worldRenderState.sectorManager.cameraPos(), renderSector, collectors);
-
-		if (ChunkRebuildCounters.ENABLED) {
-			ChunkRebuildCounters.completeChunk();
-		}
 	}
 
 	private void handleBlockEntities(RegionBuildState regionData, TerrainRenderContext context) {
@@ -505,7 +637,7 @@ public class RenderRegion implements TerrainExecutorTask {
 	}
 
 	public void rebuildOnMainThread() {
-		final PackedInputRegion inputRegion = PackedInputRegion.claim(worldRenderState.getWorld(), origin);
+		final PackedInputRegion inputRegion = PackedInputRegion.claim(worldRenderState.getWorld(), origin, false);
 
 		if (inputRegion == SignalInputRegion.EMPTY) {
 			final RegionBuildState newBuildState = new RegionBuildState();
@@ -520,7 +652,7 @@ public class RenderRegion implements TerrainExecutorTask {
 			}
 		} else {
 			final TerrainRenderContext context = renderRegionBuilder.mainThreadContext.prepareForRegion(inputRegion);
-			final RegionBuildState newBuildState = captureAndSetBuildState(context, origin.isNear());
+			final RegionBuildState newBuildState = captureAndSetBuildState(context, origin.isNear(), inputRegion.contentHash());
 			context.sectorId = renderSector.sectorId();
 			context.sectorRelativeRegionOrigin = renderSector.sectorRelativeRegionOrigin(origin);
 
@@ -537,6 +669,8 @@ public class RenderRegion implements TerrainExecutorTask {
 			releaseDrawables();
 			solidDrawable = solidUpload.produceDrawable();
 			translucentDrawable = translucentUpload.produceDrawable();
+			lightmapRefs = context.lightmapRefs;
+			context.lightmapRefs = null;
 			worldRenderState.invalidateDrawLists();
 
 			if (ChunkRebuildCounters.ENABLED) {
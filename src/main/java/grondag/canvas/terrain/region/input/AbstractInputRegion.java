@@ -23,6 +23,8 @@ import net.minecraft.world.World;
 import net.minecraft.world.chunk.ChunkSection;
 import net.minecraft.world.chunk.WorldChunk;
 
+import grondag.canvas.light.LightSampleCache;
+
 /**
  * Tries to prevent InputRegion from being unreadably big. Fails.
  */
@@ -37,6 +39,8 @@ abstract class AbstractInputRegion {
 	protected int baseSectionIndex;
 	protected int chunkBaseZ;
 	protected World world;
+	/** {@link LightSampleCache#stamp()} from before block states were captured. */
+	protected long lightSampleStamp;
 
 	final boolean isInMainChunk(int x, int y, int z) {
 		return originX == (x & 0xFFFFFFF0) && originY == (y & 0xFFFFFFF0) && originZ == (z & 0xFFFFFFF0);
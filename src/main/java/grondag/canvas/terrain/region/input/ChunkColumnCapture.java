@@ -0,0 +1,183 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.region.input;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import grondag.canvas.terrain.util.ChunkPaletteCopier;
+import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
+
+/**
+ * Chunk references around one chunk column and the block entities of the column
+ * by section, looked up once and shared by claims of every region in the column.
+ *
+ * <p>Claims that capture block states on the main thread also share section copies.
+ * A region reads the sections at its own height in all nine chunks almost entirely and
+ * the sections above and below only at the boundary. Those sections are the same ones
+ * that vertically adjacent regions read, so each is unpacked once and read by every
+ * claim that needs it. The copy of a region's own section is retained by its input
+ * until the build consumes it.
+ *
+ * <p>Holds world chunks and section copies, so {@link #clear()} as soon as claims for the
+ * column are done. Main thread only, except that retained copies are released by workers.
+ */
+public class ChunkColumnCapture {
+	private static final ObjectArrayList<BlockEntity> NO_BLOCK_ENTITIES = new ObjectArrayList<>();
+
+	final WorldChunk[] chunks = new WorldChunk[16];
+	private ClientWorld world;
+	private int chunkBaseX;
+	private int chunkBaseZ;
+	private boolean hasChunks;
+	private final Int2ObjectOpenHashMap<ObjectArrayList<BlockEntity>> blockEntities = new Int2ObjectOpenHashMap<>();
+	private boolean hasBlockEntities;
+	/** Keyed by section index and then chunk index. */
+	private final Int2ObjectOpenHashMap<PaletteCopy> sectionCopies = new Int2ObjectOpenHashMap<>();
+
+	public void clear() {
+		Arrays.fill(chunks, null);
+		world = null;
+		hasChunks = false;
+		blockEntities.clear();
+		hasBlockEntities = false;
+
+		for (final PaletteCopy copy : sectionCopies.values()) {
+			copy.release();
+		}
+
+		sectionCopies.clear();
+	}
+
+	/** Main chunk of the column, looked up if not already. */
+	WorldChunk mainChunk(ClientWorld world, int chunkBaseX, int chunkBaseZ) {
+		if (!hasChunks || this.world != world || this.chunkBaseX != chunkBaseX || this.chunkBaseZ != chunkBaseZ) {
+			clear();
+			this.world = world;
+			this.chunkBaseX = chunkBaseX;
+			this.chunkBaseZ = chunkBaseZ;
+			chunks[1 | (1 << 2)] = world.getChunk(chunkBaseX + 1, chunkBaseZ + 1);
+			hasChunks = true;
+		}
+
+		return chunks[1 | (1 << 2)];
+	}
+
+	/** Copies all neighbor chunks to target. Call after {@link #mainChunk}. */
+	void copyChunks(WorldChunk[] target) {
+		if (chunks[0] == null) {
+			for (int x = 0; x < 3; ++x) {
+				for (int z = 0; z < 3; ++z) {
+					if (x != 1 || z != 1) {
+						chunks[x | (z << 2)] = world.getChunk(chunkBaseX + x, chunkBaseZ + z);
+					}
+				}
+			}
+		}
+
+		System.arraycopy(chunks, 0, target, 0, 16);
+	}
+
+	/**
+	 * Shared copy of the given section, valid until {@link #clear()}. Null if not copied
+	 * by an earlier read and {@code create} is false. Call after {@link #mainChunk}.
+	 *
+	 * @param chunkIndex Index of the chunk in {@link #chunks}.
+	 * @param sectionIndex Index of the section in the chunk section array.
+	 * @param section The section, or null if it doesn't exist.
+	 */
+	@Nullable PaletteCopy sectionCopy(int chunkIndex, int sectionIndex, @Nullable ChunkSection section, boolean create) {
+		final int key = (sectionIndex << 4) | chunkIndex;
+		PaletteCopy result = sectionCopies.get(key);
+
+		if (result == null && create) {
+			final PaletteCopy copy = ChunkPaletteCopier.captureCopy(section);
+			// only copies with storage to release need sharing
+			result = copy == ChunkPaletteCopier.AIR_COPY ? copy : new SharedCopy(copy);
+			sectionCopies.put(key, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * As {@link #sectionCopy} but always creates the copy and retains it.
+	 * Release of the result releases the reference of the caller.
+	 */
+	PaletteCopy retainSectionCopy(int chunkIndex, int sectionIndex, @Nullable ChunkSection section) {
+		final PaletteCopy result = sectionCopy(chunkIndex, sectionIndex, section, true);
+
+		if (result instanceof SharedCopy) {
+			((SharedCopy) result).refs.incrementAndGet();
+		}
+
+		return result;
+	}
+
+	/** Block entities of the main chunk in the given section. Call after {@link #mainChunk}. */
+	ObjectArrayList<BlockEntity> blockEntities(int sectionY) {
+		if (!hasBlockEntities) {
+			for (final BlockEntity be : chunks[1 | (1 << 2)].getBlockEntities().values()) {
+				blockEntities.computeIfAbsent(be.getPos().getY() >> 4, y -> new ObjectArrayList<>()).add(be);
+			}
+
+			hasBlockEntities = true;
+		}
+
+		return blockEntities.getOrDefault(sectionY, NO_BLOCK_ENTITIES);
+	}
+
+	/** Releases the wrapped copy when the column and every region that retained it have released it. */
+	private static class SharedCopy implements PaletteCopy {
+		private final PaletteCopy copy;
+		private final AtomicInteger refs = new AtomicInteger(1);
+
+		private SharedCopy(PaletteCopy copy) {
+			this.copy = copy;
+		}
+
+		@Override
+		public BlockState apply(int index) {
+			return copy.apply(index);
+		}
+
+		@Override
+		public void release() {
+			final int remaining = refs.decrementAndGet();
+			assert remaining >= 0;
+
+			if (remaining == 0) {
+				copy.release();
+			}
+		}
+
+		@Override
+		public long contentHash() {
+			return copy.contentHash();
+		}
+	}
+}
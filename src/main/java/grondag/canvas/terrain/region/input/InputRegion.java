@@ -36,6 +36,7 @@ import net.minecraft.fluid.FluidState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.world.LightType;
+import net.minecraft.world.World;
 import net.minecraft.world.chunk.light.LightingProvider;
 import net.minecraft.world.level.ColorResolver;
 
@@ -96,6 +97,7 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 		System.arraycopy(EMPTY_LIGHT_CACHE, 0, lightCache, 0, TOTAL_STATE_COUNT);
 
 		world = packedRegion.world;
+		lightSampleStamp = packedRegion.lightSampleStamp;
 
 		originX = packedRegion.originX;
 		originY = packedRegion.originY;
@@ -124,6 +126,46 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 		occlusion.prepare();
 	}
 
+	/**
+	 * Prepares the region from a capture instead of the world. Light and AO are as captured
+	 * and there are no block entities. Positions outside the capture, biome colors and
+	 * directional brightness come from the given world.
+	 */
+	public void prepare(RegionCapture capture, World world) {
+		System.arraycopy(EMPTY_BLOCK_ENTITIES, 0, blockEntities, 0, INTERIOR_STATE_COUNT);
+		System.arraycopy(EMPTY_RENDER_DATA, 0, renderData, 0, INTERIOR_STATE_COUNT);
+
+		this.world = world;
+		lightSampleStamp = 0;
+
+		originX = capture.originX;
+		originY = capture.originY;
+		originZ = capture.originZ;
+
+		chunkBaseX = (originX >> 4) - 1;
+		baseSectionIndex = ((originY - world.getBottomY()) >> 4) - 1;
+		chunkBaseZ = (originZ >> 4) - 1;
+
+		for (int x = 0; x < 3; x++) {
+			for (int z = 0; z < 3; z++) {
+				chunks[x | (z << 2)] = world.getChunk(chunkBaseX + x, chunkBaseZ + z);
+			}
+		}
+
+		final BlockState[] palette = capture.palette;
+		final short[] captureStates = capture.states;
+		final byte[] captureAo = capture.ao;
+
+		for (int i = 0; i < TOTAL_STATE_COUNT; i++) {
+			states[i] = palette[captureStates[i]];
+			aoCache[i] = captureAo[i] & 0xFF;
+		}
+
+		System.arraycopy(capture.light, 0, lightCache, 0, TOTAL_STATE_COUNT);
+
+		occlusion.prepare();
+	}
+
 	private void copyBeData(PackedInputRegion protoRegion) {
 		final ShortArrayList blockEntityPos = protoRegion.blockEntityPos;
 
@@ -291,6 +333,10 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 		return originZ;
 	}
 
+	public long lightSampleStamp() {
+		return lightSampleStamp;
+	}
+
 	@Override
 	public int getHeight() {
 		return world.getHeight();
@@ -61,14 +61,16 @@ import static grondag.canvas.terrain.util.RenderRegionStateIndexer.SIDE_INDEX_Z0
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.SIDE_INDEX_Z2;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.interiorIndex;
 
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.block.BlockState;
-import net.minecraft.block.Blocks;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.util.math.BlockPos;
@@ -77,20 +79,32 @@ import net.minecraft.world.chunk.WorldChunk;
 
 import net.fabricmc.fabric.api.rendering.data.v1.RenderAttachmentBlockEntity;
 
+import grondag.canvas.light.LightSampleCache;
+import grondag.canvas.mixinterface.PalettedContainerExt;
 import grondag.canvas.perf.ChunkRebuildCounters;
+import grondag.canvas.terrain.occlusion.geometry.OcclusionCache;
 import grondag.canvas.terrain.util.ChunkPaletteCopier;
 import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
+import grondag.canvas.terrain.util.ChunkPaletteCopier.SectionReader;
 
 /**
  * Serves as a container to capture world state data on the main thread as quickly as possible
  * for later consumption on possibly non-render threads for terrain render region rebuild.
  *
+ * <p>When capture is deferred, block states are instead captured by the thread that runs the
+ * rebuild, using section version stamps to detect concurrent changes.
+ *
  * <p>Also serves as a state indicator for rebuild activity.
  */
 public class PackedInputRegion extends AbstractInputRegion {
-	private static final BlockState AIR = Blocks.AIR.getDefaultState();
 	private static final ArrayBlockingQueue<PackedInputRegion> POOL = new ArrayBlockingQueue<>(256);
 
+	/**
+	 * Deferred capture gives up after this many attempts and the region is marked for rebuild.
+	 * Sections only change during main-thread block updates so this is rarely reached.
+	 */
+	private static final int MAX_CAPTURE_ATTEMPTS = 4;
+
 	public final ObjectArrayList<BlockEntity> blockEntities = new ObjectArrayList<>();
 
 	final BlockState[] states = new BlockState[EXTERIOR_STATE_COUNT];
@@ -98,10 +112,35 @@ public class PackedInputRegion extends AbstractInputRegion {
 	final ObjectArrayList<Object> renderData = new ObjectArrayList<>();
 	final ShortArrayList blockEntityPos = new ShortArrayList();
 	PaletteCopy mainSectionCopy;
+	private final SectionReader sectionReader = new SectionReader();
+	private boolean isHashEnabled;
+	/** Column sharing section copies while block states are captured on claim, otherwise null. */
+	private @Nullable ChunkColumnCapture column;
+	private long contentHash;
+
+	/** True when block states have not been captured yet. See {@link #captureDeferred()}. */
+	private boolean isDeferred;
+	private final ChunkSection[] capturedSections = new ChunkSection[27];
+	private final int[] capturedVersions = new int[27];
+
+	/**
+	 * Claims a region for the given origin with world state captured.
+	 *
+	 * @param deferCapture When true, only chunk references and block entities are captured
+	 * on the calling thread. Block states are captured by {@link #captureDeferred()}, usually
+	 * on a worker thread. Deferred regions are never {@link SignalInputRegion#EMPTY}.
+	 */
+	public static PackedInputRegion claim(ClientWorld world, BlockPos origin, boolean deferCapture) {
+		return claim(world, origin, deferCapture, null);
+	}
 
-	public static PackedInputRegion claim(ClientWorld world, BlockPos origin) {
+	/**
+	 * As {@link #claim(ClientWorld, BlockPos, boolean)} but chunk lookups and block entities
+	 * are shared through the given column capture when claiming several regions in a column.
+	 */
+	public static PackedInputRegion claim(ClientWorld world, BlockPos origin, boolean deferCapture, @Nullable ChunkColumnCapture column) {
 		final PackedInputRegion result = POOL.poll();
-		return (result == null ? new PackedInputRegion() : result).prepare(world, origin);
+		return (result == null ? new PackedInputRegion() : result).prepare(world, origin, deferCapture, column);
 	}
 
 	private static void release(PackedInputRegion region) {
@@ -113,12 +152,13 @@ public class PackedInputRegion extends AbstractInputRegion {
 		POOL.clear();
 	}
 
-	private PackedInputRegion prepare(ClientWorld world, BlockPos origin) {
+	private PackedInputRegion prepare(ClientWorld world, BlockPos origin, boolean deferCapture, @Nullable ChunkColumnCapture column) {
 		if (ChunkRebuildCounters.ENABLED) {
 			ChunkRebuildCounters.startCopy();
 		}
 
 		this.world = world;
+		lightSampleStamp = LightSampleCache.stamp();
 
 		final int originX = origin.getX();
 		final int originY = origin.getY();
@@ -135,31 +175,50 @@ public class PackedInputRegion extends AbstractInputRegion {
 		baseSectionIndex = ((originY - world.getBottomY()) >> 4) - 1;
 		this.chunkBaseZ = chunkBaseZ;
 
-		final WorldChunk mainChunk = world.getChunk(chunkBaseX + 1, chunkBaseZ + 1);
-		mainSectionCopy = ChunkPaletteCopier.captureCopy(mainChunk, originY);
-
+		final WorldChunk mainChunk = column == null ? world.getChunk(chunkBaseX + 1, chunkBaseZ + 1) : column.mainChunk(world, chunkBaseX, chunkBaseZ);
 		final PackedInputRegion result;
-
-		if (mainSectionCopy == ChunkPaletteCopier.AIR_COPY) {
-			release();
-			result = SignalInputRegion.EMPTY;
+		isHashEnabled = OcclusionCache.current() != null;
+		contentHash = 0;
+
+		if (deferCapture) {
+			isDeferred = true;
+			// block entity render data must be retrieved on the main thread
+			captureBlockEntities(mainChunk, column);
+			captureChunks(mainChunk, column);
+			result = this;
 		} else {
-			captureBlockEntities(mainChunk);
-			chunks[1 | (1 << 2)] = mainChunk;
-			chunks[0 | (0 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 0);
-			chunks[0 | (1 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 1);
-			chunks[0 | (2 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 2);
-			chunks[1 | (0 << 2)] = world.getChunk(chunkBaseX + 1, chunkBaseZ + 0);
-			chunks[1 | (2 << 2)] = world.getChunk(chunkBaseX + 1, chunkBaseZ + 2);
-			chunks[2 | (0 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 0);
-			chunks[2 | (1 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 1);
-			chunks[2 | (2 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 2);
-
-			captureCorners();
-			captureEdges();
-			captureFaces();
+			isDeferred = false;
+
+			if (column == null) {
+				mainSectionCopy = ChunkPaletteCopier.captureCopy(mainChunk, originY);
+			} else {
+				// chunk references come from the column, so capture them first to find the main section
+				captureChunks(mainChunk, column);
+				mainSectionCopy = column.retainSectionCopy(1 | (1 << 2), baseSectionIndex + 1, getSection(1, 1, 1));
+			}
 
-			result = this;
+			if (mainSectionCopy == ChunkPaletteCopier.AIR_COPY) {
+				release();
+				result = SignalInputRegion.EMPTY;
+			} else {
+				captureBlockEntities(mainChunk, column);
+
+				if (column == null) {
+					captureChunks(mainChunk, null);
+				}
+
+				this.column = column;
+
+				try {
+					captureCorners();
+					captureEdges();
+					captureFaces();
+				} finally {
+					this.column = null;
+				}
+
+				result = this;
+			}
 		}
 
 		if (ChunkRebuildCounters.ENABLED) {
@@ -169,151 +228,353 @@ public class PackedInputRegion extends AbstractInputRegion {
 		return result;
 	}
 
-	PaletteCopy takePaletteCopy() {
-		final PaletteCopy result = mainSectionCopy;
-		mainSectionCopy = null;
-		return result;
+	private void captureChunks(WorldChunk mainChunk, @Nullable ChunkColumnCapture column) {
+		if (column != null) {
+			column.copyChunks(chunks);
+			return;
+		}
+
+		final ClientWorld world = this.world;
+		final int chunkBaseX = this.chunkBaseX;
+		final int chunkBaseZ = this.chunkBaseZ;
+
+		chunks[1 | (1 << 2)] = mainChunk;
+		chunks[0 | (0 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 0);
+		chunks[0 | (1 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 1);
+		chunks[0 | (2 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 2);
+		chunks[1 | (0 << 2)] = world.getChunk(chunkBaseX + 1, chunkBaseZ + 0);
+		chunks[1 | (2 << 2)] = world.getChunk(chunkBaseX + 1, chunkBaseZ + 2);
+		chunks[2 | (0 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 0);
+		chunks[2 | (1 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 1);
+		chunks[2 | (2 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 2);
 	}
 
-	private void captureBlockEntities(WorldChunk mainChunk) {
-		renderDataPos.clear();
-		renderData.clear();
-		blockEntityPos.clear();
-		blockEntities.clear();
-		final int yCheck = (originY >> 4);
+	/**
+	 * Hash of main section content for {@link OcclusionCache} region entries,
+	 * or zero if the cache is not open, the section is empty or it hasn't been computed.
+	 * Computed by {@link #hashContent()}, which happens when an input region is prepared from this one.
+	 */
+	public long contentHash() {
+		return contentHash;
+	}
 
-		for (final Map.Entry<BlockPos, BlockEntity> entry : mainChunk.getBlockEntities().entrySet()) {
-			final BlockPos pos = entry.getKey();
+	/**
+	 * Computes {@link #contentHash()} on the calling thread if not already known.
+	 * Before deferred capture, call only from the main thread. Builds compute the hash on
+	 * the worker, so call this only when the hash is needed before the build.
+	 */
+	public long hashContent() {
+		if (contentHash == 0 && isHashEnabled) {
+			if (mainSectionCopy != null) {
+				contentHash = mainSectionCopy.contentHash();
+			} else if (isDeferred) {
+				final PaletteCopy copy = ChunkPaletteCopier.captureCopy(chunks[1 | (1 << 2)], originY);
+				contentHash = copy.contentHash();
+				copy.release();
+			}
+		}
 
-			// only those in this chunk
-			if (pos.getY() >> 4 != yCheck) {
+		return contentHash;
+	}
+
+	/**
+	 * Captures block states for a region claimed with deferred capture. Safe to call
+	 * from any thread while the main thread changes the world. Sections are read
+	 * optimistically and the capture is retried if any section version changed
+	 * while it was being read.
+	 *
+	 * <p>Does nothing and returns this region if capture was not deferred.
+	 *
+	 * @return This region if capture succeeded, {@link SignalInputRegion#EMPTY} if the region has
+	 * no blocks, or null if sections kept changing. This region is released unless it is returned.
+	 */
+	public @Nullable PackedInputRegion captureDeferred() {
+		if (!isDeferred) {
+			return this;
+		}
+
+		if (ChunkRebuildCounters.ENABLED) {
+			ChunkRebuildCounters.startCopy();
+		}
+
+		PackedInputRegion result = null;
+
+		for (int attempt = 0; attempt < MAX_CAPTURE_ATTEMPTS; ++attempt) {
+			if (mainSectionCopy != null) {
+				mainSectionCopy.release();
+				mainSectionCopy = null;
+			}
+
+			if (!stampSections()) {
+				Thread.onSpinWait();
 				continue;
 			}
 
-			final short key = (short) interiorIndex(pos);
-			final BlockEntity be = entry.getValue();
+			lightSampleStamp = LightSampleCache.stamp();
+			RuntimeException error = null;
+
+			try {
+				mainSectionCopy = ChunkPaletteCopier.captureCopy(chunks[1 | (1 << 2)], originY);
+
+				if (mainSectionCopy != ChunkPaletteCopier.AIR_COPY) {
+					captureCorners();
+					captureEdges();
+					captureFaces();
+				}
+			} catch (final RuntimeException e) {
+				// storage and palette can be torn if resized during the read
+				error = e;
+			}
 
-			blockEntityPos.add(key);
-			blockEntities.add(be);
+			// keep section reads from moving after the version check
+			VarHandle.acquireFence();
 
-			final Object rd = ((RenderAttachmentBlockEntity) be).getRenderAttachmentData();
+			if (areStampsCurrent()) {
+				if (error != null) {
+					throw error;
+				}
 
-			if (rd != null) {
-				renderDataPos.add(key);
-				renderData.add(rd);
+				isDeferred = false;
+				// hash again from what was captured, which may have changed since claimed
+				contentHash = 0;
+				result = mainSectionCopy == ChunkPaletteCopier.AIR_COPY ? SignalInputRegion.EMPTY : this;
+				break;
 			}
 		}
+
+		if (ChunkRebuildCounters.ENABLED) {
+			ChunkRebuildCounters.completeCopy();
+		}
+
+		if (result != this) {
+			release();
+		}
+
+		return result;
 	}
 
-	private interface BlockStateFunction {
-		BlockState apply (int i, int j, int k);
+	/**
+	 * Records identity and version of all sections in the region.
+	 * Returns false if any section is being written.
+	 */
+	private boolean stampSections() {
+		final ChunkSection[] sections = capturedSections;
+		final int[] versions = capturedVersions;
+
+		for (int i = 0; i < 27; ++i) {
+			final ChunkSection section = getSection(i % 3, (i / 3) % 3, i / 9);
+			sections[i] = section;
+
+			if (section != null) {
+				final int version = ((PalettedContainerExt) section.getContainer()).canvas_version();
+
+				if ((version & 1) != 0) {
+					return false;
+				}
+
+				versions[i] = version;
+			}
+		}
+
+		return true;
 	}
 
-	private static BlockStateFunction AIR_FUNCTION = (i, j, k) -> AIR;
+	private boolean areStampsCurrent() {
+		final ChunkSection[] sections = capturedSections;
+		final int[] versions = capturedVersions;
 
-	//NB: the addressing math here must match what is in RenderRegionAddressHelper
-	private void captureFace(int baseIndex, BlockStateFunction func) {
-		for (int n = 0; n < FACE_STATE_COUNT; ++n) {
-			states[baseIndex + n] = func.apply(n & FACE_I_MASK, (n >> FACE_J_SHIFT) & FACE_J_MASK, n >> FACE_K_SHIFT);
+		for (int i = 0; i < 27; ++i) {
+			final ChunkSection section = getSection(i % 3, (i / 3) % 3, i / 9);
+
+			if (section != sections[i] || (section != null && ((PalettedContainerExt) section.getContainer()).canvas_version() != versions[i])) {
+				return false;
+			}
 		}
+
+		return true;
 	}
 
-	private void captureFaces() {
-		final ChunkSection lowX = getSection(0, 1, 1);
-		captureFace(SIDE_INDEX_X0 - INTERIOR_STATE_COUNT, lowX == null ? AIR_FUNCTION : (i, j, k) -> lowX.getBlockState(14 + k, i, j));
+	PaletteCopy takePaletteCopy() {
+		hashContent();
+		final PaletteCopy result = mainSectionCopy;
+		mainSectionCopy = null;
+		return result;
+	}
 
-		final ChunkSection highX = getSection(2, 1, 1);
-		captureFace(SIDE_INDEX_X2 - INTERIOR_STATE_COUNT, highX == null ? AIR_FUNCTION : (i, j, k) -> highX.getBlockState(k, i, j));
+	private void captureBlockEntities(WorldChunk mainChunk, @Nullable ChunkColumnCapture column) {
+		renderDataPos.clear();
+		renderData.clear();
+		blockEntityPos.clear();
+		blockEntities.clear();
+		final int yCheck = (originY >> 4);
 
-		final ChunkSection lowZ = getSection(1, 1, 0);
-		captureFace(SIDE_INDEX_Z0 - INTERIOR_STATE_COUNT, lowZ == null ? AIR_FUNCTION : (i, j, k) -> lowZ.getBlockState(i, j, 14 + k));
+		if (column != null) {
+			for (final BlockEntity be : column.blockEntities(yCheck)) {
+				captureBlockEntity(be.getPos(), be);
+			}
 
-		final ChunkSection highZ = getSection(1, 1, 2);
-		captureFace(SIDE_INDEX_Z2 - INTERIOR_STATE_COUNT, highZ == null ? AIR_FUNCTION : (i, j, k) -> highZ.getBlockState(i, j, k));
+			return;
+		}
 
-		final ChunkSection lowY = getSection(1, 0, 1);
-		captureFace(SIDE_INDEX_Y0 - INTERIOR_STATE_COUNT, lowY == null ? AIR_FUNCTION : (i, j, k) -> lowY.getBlockState(i, 14 + k, j));
+		for (final Map.Entry<BlockPos, BlockEntity> entry : mainChunk.getBlockEntities().entrySet()) {
+			final BlockPos pos = entry.getKey();
 
-		final ChunkSection highY = getSection(1, 2, 1);
-		captureFace(SIDE_INDEX_Y2 - INTERIOR_STATE_COUNT, highY == null ? AIR_FUNCTION : (i, j, k) -> highY.getBlockState(i, k, j));
-	}
+			// only those in this chunk
+			if (pos.getY() >> 4 != yCheck) {
+				continue;
+			}
 
-	//NB: the addressing math here must match what is in RenderRegionAddressHelper
-	private void captureEdge(int baseIndex, BlockStateFunction func) {
-		for (int n = 0; n < EDGE_STATE_COUNT; ++n) {
-			states[baseIndex + n] = func.apply(n & EDGE_I_MASK, (n >> EDGE_J_SHIFT) & EDGE_J_MASK, n >> EDGE_K_SHIFT);
+			captureBlockEntity(pos, entry.getValue());
 		}
 	}
 
-	private void captureEdges() {
-		final ChunkSection aaZ = getSection(0, 0, 1);
-		captureEdge(EDGE_INDEX_Y0X0 - INTERIOR_STATE_COUNT, aaZ == null ? AIR_FUNCTION : (i, j, k) -> aaZ.getBlockState(14 + i, 14 + j, k));
+	private void captureBlockEntity(BlockPos pos, BlockEntity be) {
+		final short key = (short) interiorIndex(pos);
 
-		final ChunkSection abZ = getSection(0, 2, 1);
-		captureEdge(EDGE_INDEX_Y2X0 - INTERIOR_STATE_COUNT, abZ == null ? AIR_FUNCTION : (i, j, k) -> abZ.getBlockState(14 + i, j, k));
+		blockEntityPos.add(key);
+		blockEntities.add(be);
 
-		final ChunkSection baZ = getSection(2, 0, 1);
-		captureEdge(EDGE_INDEX_Y0X2 - INTERIOR_STATE_COUNT, baZ == null ? AIR_FUNCTION : (i, j, k) -> baZ.getBlockState(i, 14 + j, k));
+		final Object rd = ((RenderAttachmentBlockEntity) be).getRenderAttachmentData();
 
-		final ChunkSection bbZ = getSection(2, 2, 1);
-		captureEdge(EDGE_INDEX_Y2X2 - INTERIOR_STATE_COUNT, bbZ == null ? AIR_FUNCTION : (i, j, k) -> bbZ.getBlockState(i, j, k));
+		if (rd != null) {
+			renderDataPos.add(key);
+			renderData.add(rd);
+		}
+	}
 
-		final ChunkSection aYa = getSection(0, 1, 0);
-		captureEdge(EDGE_INDEX_Z0X0 - INTERIOR_STATE_COUNT, aYa == null ? AIR_FUNCTION : (i, j, k) -> aYa.getBlockState(14 + i, k, 14 + j));
+	// strides of section storage index: y << 8 | z << 4 | x
+	private static final int X = 1;
+	private static final int Y = 16 * 16;
+	private static final int Z = 16;
+
+	/** Reads of neighbor sections covering at least this much storage copy the section for sharing. */
+	private static final int MIN_SHARED_READ = 2048;
+
+	/**
+	 * Copies states for a box of positions in a neighbor section. The section index of each
+	 * position is {@code origin + i * iStride + j * jStride + k * kStride}. Positions are
+	 * visited in the order of our state indexing, with i varying fastest.
+	 *
+	 * <p>Storage for the range covered by the box is unpacked once and decoded in a tight loop.
+	 * When claimed through a column, reads from a section copy shared with other claims instead
+	 * if one exists or if the range covers most of the section.
+	 */
+	private void capture(int baseIndex, int sectionX, int sectionY, int sectionZ, int origin, int iStride, int iCount, int jStride, int jCount, int kStride, int kCount) {
+		final ChunkSection section = getSection(sectionX, sectionY, sectionZ);
+		final int toIndex = origin + (iCount - 1) * iStride + (jCount - 1) * jStride + (kCount - 1) * kStride + 1;
+		final ChunkColumnCapture column = this.column;
+
+		if (column != null) {
+			final PaletteCopy copy = column.sectionCopy(sectionX | (sectionZ << 2), baseSectionIndex + sectionY, section, toIndex - origin >= MIN_SHARED_READ);
+
+			if (copy != null) {
+				capture(baseIndex, copy, origin, iStride, iCount, jStride, jCount, kStride, kCount);
+				return;
+			}
+		}
 
-		final ChunkSection aYb = getSection(0, 1, 2);
-		captureEdge(EDGE_INDEX_Z2X0 - INTERIOR_STATE_COUNT, aYb == null ? AIR_FUNCTION : (i, j, k) -> aYb.getBlockState(14 + i, k, j));
+		final SectionReader reader = sectionReader;
+		reader.read(section, origin, toIndex);
+		final BlockState uniformState = reader.uniformState();
 
-		final ChunkSection bYa = getSection(2, 1, 0);
-		captureEdge(EDGE_INDEX_Z0X2 - INTERIOR_STATE_COUNT, bYa == null ? AIR_FUNCTION : (i, j, k) -> bYa.getBlockState(i, k, 14 + j));
+		if (uniformState != null) {
+			Arrays.fill(states, baseIndex, baseIndex + iCount * jCount * kCount, uniformState);
+			return;
+		}
 
-		final ChunkSection bYb = getSection(2, 1, 2);
-		captureEdge(EDGE_INDEX_Z2X2 - INTERIOR_STATE_COUNT, bYb == null ? AIR_FUNCTION : (i, j, k) -> bYb.getBlockState(i, k, j));
+		final BlockState[] states = this.states;
+		int n = baseIndex;
 
-		final ChunkSection Xaa = getSection(1, 0, 0);
-		captureEdge(EDGE_INDEX_Z0Y0 - INTERIOR_STATE_COUNT, Xaa == null ? AIR_FUNCTION : (i, j, k) -> Xaa.getBlockState(k, 14 + i, 14 + j));
+		for (int k = 0; k < kCount; ++k) {
+			for (int j = 0; j < jCount; ++j) {
+				int index = origin + j * jStride + k * kStride;
 
-		final ChunkSection Xab = getSection(1, 0, 2);
-		captureEdge(EDGE_INDEX_Z2Y0 - INTERIOR_STATE_COUNT, Xab == null ? AIR_FUNCTION : (i, j, k) -> Xab.getBlockState(k, 14 + i, j));
+				for (int i = 0; i < iCount; ++i) {
+					states[n++] = reader.get(index);
+					index += iStride;
+				}
+			}
+		}
+	}
 
-		final ChunkSection Xba = getSection(1, 2, 0);
-		captureEdge(EDGE_INDEX_Z0Y2 - INTERIOR_STATE_COUNT, Xba == null ? AIR_FUNCTION : (i, j, k) -> Xba.getBlockState(k, i, 14 + j));
+	private void capture(int baseIndex, PaletteCopy copy, int origin, int iStride, int iCount, int jStride, int jCount, int kStride, int kCount) {
+		final BlockState[] states = this.states;
+		int n = baseIndex;
 
-		final ChunkSection Xbb = getSection(1, 2, 2);
-		captureEdge(EDGE_INDEX_Z2Y2 - INTERIOR_STATE_COUNT, Xbb == null ? AIR_FUNCTION : (i, j, k) -> Xbb.getBlockState(k, i, j));
-	}
+		for (int k = 0; k < kCount; ++k) {
+			for (int j = 0; j < jCount; ++j) {
+				int index = origin + j * jStride + k * kStride;
 
-	//NB: the addressing math here must match what is in RenderRegionAddressHelper
-	private void captureCorner(int baseIndex, BlockStateFunction func) {
-		for (int n = 0; n < CORNER_STATE_COUNT; ++n) {
-			states[baseIndex + n] = func.apply(n & CORNER_I_MASK, (n >> CORNER_J_SHIFT) & CORNER_J_MASK, n >> CORNER_K_SHIFT);
+				for (int i = 0; i < iCount; ++i) {
+					states[n++] = copy.apply(index);
+					index += iStride;
+				}
+			}
 		}
 	}
 
-	private void captureCorners() {
-		final ChunkSection xyz = getSection(0, 0, 0);
-		captureCorner(CORNER_INDEX_000 - INTERIOR_STATE_COUNT, xyz == null ? AIR_FUNCTION : (i, j, k) -> xyz.getBlockState(14 + i, 14 + j, 14 + k));
+	//NB: the addressing math here must match what is in RenderRegionAddressHelper
+	private void captureFace(int baseIndex, int sectionX, int sectionY, int sectionZ, int origin, int iStride, int jStride, int kStride) {
+		assert FACE_I_MASK == 15 && FACE_J_SHIFT == 4 && FACE_J_MASK == 15 && FACE_K_SHIFT == 8 && FACE_STATE_COUNT == 512;
+		capture(baseIndex, sectionX, sectionY, sectionZ, origin, iStride, 16, jStride, 16, kStride, 2);
+	}
 
-		final ChunkSection xyZ = getSection(0, 0, 2);
-		captureCorner(CORNER_INDEX_200 - INTERIOR_STATE_COUNT, xyZ == null ? AIR_FUNCTION : (i, j, k) -> xyZ.getBlockState(14 + i, 14 + j, k));
+	private void captureFaces() {
+		// i -> y, j -> z, k -> x
+		captureFace(SIDE_INDEX_X0 - INTERIOR_STATE_COUNT, 0, 1, 1, 14 * X, Y, Z, X);
+		captureFace(SIDE_INDEX_X2 - INTERIOR_STATE_COUNT, 2, 1, 1, 0, Y, Z, X);
 
-		final ChunkSection xYz = getSection(0, 2, 0);
-		captureCorner(CORNER_INDEX_020 - INTERIOR_STATE_COUNT, xYz == null ? AIR_FUNCTION : (i, j, k) -> xYz.getBlockState(14 + i, j, 14 + k));
+		// i -> x, j -> y, k -> z
+		captureFace(SIDE_INDEX_Z0 - INTERIOR_STATE_COUNT, 1, 1, 0, 14 * Z, X, Y, Z);
+		captureFace(SIDE_INDEX_Z2 - INTERIOR_STATE_COUNT, 1, 1, 2, 0, X, Y, Z);
 
-		final ChunkSection xYZ = getSection(0, 2, 2);
-		captureCorner(CORNER_INDEX_220 - INTERIOR_STATE_COUNT, xYZ == null ? AIR_FUNCTION : (i, j, k) -> xYZ.getBlockState(14 + i, j, k));
+		// i -> x, j -> z, k -> y
+		captureFace(SIDE_INDEX_Y0 - INTERIOR_STATE_COUNT, 1, 0, 1, 14 * Y, X, Z, Y);
+		captureFace(SIDE_INDEX_Y2 - INTERIOR_STATE_COUNT, 1, 2, 1, 0, X, Z, Y);
+	}
 
-		final ChunkSection Xyz = getSection(2, 0, 0);
-		captureCorner(CORNER_INDEX_002 - INTERIOR_STATE_COUNT, Xyz == null ? AIR_FUNCTION : (i, j, k) -> Xyz.getBlockState(i, 14 + j, 14 + k));
+	//NB: the addressing math here must match what is in RenderRegionAddressHelper
+	private void captureEdge(int baseIndex, int sectionX, int sectionY, int sectionZ, int origin, int iStride, int jStride, int kStride) {
+		assert EDGE_I_MASK == 1 && EDGE_J_SHIFT == 1 && EDGE_J_MASK == 1 && EDGE_K_SHIFT == 2 && EDGE_STATE_COUNT == 64;
+		capture(baseIndex, sectionX, sectionY, sectionZ, origin, iStride, 2, jStride, 2, kStride, 16);
+	}
 
-		final ChunkSection XyZ = getSection(2, 0, 2);
-		captureCorner(CORNER_INDEX_202 - INTERIOR_STATE_COUNT, XyZ == null ? AIR_FUNCTION : (i, j, k) -> XyZ.getBlockState(i, 14 + j, k));
+	private void captureEdges() {
+		// i -> x, j -> y, k -> z
+		captureEdge(EDGE_INDEX_Y0X0 - INTERIOR_STATE_COUNT, 0, 0, 1, 14 * X + 14 * Y, X, Y, Z);
+		captureEdge(EDGE_INDEX_Y2X0 - INTERIOR_STATE_COUNT, 0, 2, 1, 14 * X, X, Y, Z);
+		captureEdge(EDGE_INDEX_Y0X2 - INTERIOR_STATE_COUNT, 2, 0, 1, 14 * Y, X, Y, Z);
+		captureEdge(EDGE_INDEX_Y2X2 - INTERIOR_STATE_COUNT, 2, 2, 1, 0, X, Y, Z);
+
+		// i -> x, j -> z, k -> y
+		captureEdge(EDGE_INDEX_Z0X0 - INTERIOR_STATE_COUNT, 0, 1, 0, 14 * X + 14 * Z, X, Z, Y);
+		captureEdge(EDGE_INDEX_Z2X0 - INTERIOR_STATE_COUNT, 0, 1, 2, 14 * X, X, Z, Y);
+		captureEdge(EDGE_INDEX_Z0X2 - INTERIOR_STATE_COUNT, 2, 1, 0, 14 * Z, X, Z, Y);
+		captureEdge(EDGE_INDEX_Z2X2 - INTERIOR_STATE_COUNT, 2, 1, 2, 0, X, Z, Y);
+
+		// i -> y, j -> z, k -> x
+		captureEdge(EDGE_INDEX_Z0Y0 - INTERIOR_STATE_COUNT, 1, 0, 0, 14 * Y + 14 * Z, Y, Z, X);
+		captureEdge(EDGE_INDEX_Z2Y0 - INTERIOR_STATE_COUNT, 1, 0, 2, 14 * Y, Y, Z, X);
+		captureEdge(EDGE_INDEX_Z0Y2 - INTERIOR_STATE_COUNT, 1, 2, 0, 14 * Z, Y, Z, X);
+		captureEdge(EDGE_INDEX_Z2Y2 - INTERIOR_STATE_COUNT, 1, 2, 2, 0, Y, Z, X);
+	}
 
-		final ChunkSection XYz = getSection(2, 2, 0);
-		captureCorner(CORNER_INDEX_022 - INTERIOR_STATE_COUNT, XYz == null ? AIR_FUNCTION : (i, j, k) -> XYz.getBlockState(i, j, 14 + k));
+	//NB: the addressing math here must match what is in RenderRegionAddressHelper
+	private void captureCorner(int baseIndex, int sectionX, int sectionY, int sectionZ, int origin) {
+		assert CORNER_I_MASK == 1 && CORNER_J_SHIFT == 1 && CORNER_J_MASK == 1 && CORNER_K_SHIFT == 2 && CORNER_STATE_COUNT == 8;
+		// i -> x, j -> y, k -> z
+		capture(baseIndex, sectionX, sectionY, sectionZ, origin, X, 2, Y, 2, Z, 2);
+	}
 
-		final ChunkSection XYZ = getSection(2, 2, 2);
-		captureCorner(CORNER_INDEX_222 - INTERIOR_STATE_COUNT, XYZ == null ? AIR_FUNCTION : (i, j, k) -> XYZ.getBlockState(i, j, k));
+	private void captureCorners() {
+		captureCorner(CORNER_INDEX_000 - INTERIOR_STATE_COUNT, 0, 0, 0, 14 * X + 14 * Y + 14 * Z);
+		captureCorner(CORNER_INDEX_200 - INTERIOR_STATE_COUNT, 0, 0, 2, 14 * X + 14 * Y);
+		captureCorner(CORNER_INDEX_020 - INTERIOR_STATE_COUNT, 0, 2, 0, 14 * X + 14 * Z);
+		captureCorner(CORNER_INDEX_220 - INTERIOR_STATE_COUNT, 0, 2, 2, 14 * X);
+		captureCorner(CORNER_INDEX_002 - INTERIOR_STATE_COUNT, 2, 0, 0, 14 * Y + 14 * Z);
+		captureCorner(CORNER_INDEX_202 - INTERIOR_STATE_COUNT, 2, 0, 2, 14 * Y);
+		captureCorner(CORNER_INDEX_022 - INTERIOR_STATE_COUNT, 2, 2, 0, 14 * Z);
+		captureCorner(CORNER_INDEX_222 - INTERIOR_STATE_COUNT, 2, 2, 2, 0);
 	}
 
 	public void release() {
@@ -328,6 +589,9 @@ public class PackedInputRegion extends AbstractInputRegion {
 			}
 		}
 
+		Arrays.fill(capturedSections, null);
+		isDeferred = false;
+
 		blockEntities.clear();
 		renderData.clear();
 
@@ -0,0 +1,216 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.region.input;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_STATE_COUNT;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndexToXyz5;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.util.math.BlockPos;
+
+import net.fabricmc.loader.api.FabricLoader;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.config.Configurator;
+
+/**
+ * Block states, light and AO of an input region as seen by a rebuild, saved so that
+ * region builds can be repeated and timed by {@code RegionBuildHarness}.
+ *
+ * <p>Block states are saved in NBT form and restored from the block registry when read,
+ * so captures can only be read in a game with the same blocks. Arrays are in region
+ * index order, as in {@link InputRegion}, and include exterior positions.
+ *
+ * <p>Captures are written when {@link Configurator#captureRegionsForBenchmark} is enabled,
+ * up to {@link #MAX_CAPTURES} per session, to {@link #CAPTURE_DIR} in the game directory.
+ */
+public class RegionCapture {
+	public static final int MAX_CAPTURES = 256;
+	public static final String CAPTURE_DIR = "canvas_cache/captures";
+
+	private static final int MAGIC = 0x43524341;
+	private static final int FORMAT_VERSION = 2;
+	private static final AtomicInteger CAPTURE_COUNT = new AtomicInteger();
+
+	public final int originX;
+	public final int originY;
+	public final int originZ;
+	public final BlockState[] palette;
+	/** Palette index of each position. */
+	public final short[] states;
+	/** Packed light of each position, as from {@link InputRegion#directBrightness(BlockPos)}. */
+	public final int[] light;
+	/** AO level of each position, 0 to 255. */
+	public final byte[] ao;
+
+	public RegionCapture(int originX, int originY, int originZ, BlockState[] palette, short[] states, int[] light, byte[] ao) {
+		assert states.length == TOTAL_STATE_COUNT && light.length == TOTAL_STATE_COUNT && ao.length == TOTAL_STATE_COUNT;
+
+		this.originX = originX;
+		this.originY = originY;
+		this.originZ = originZ;
+		this.palette = palette;
+		this.states = states;
+		this.light = light;
+		this.ao = ao;
+	}
+
+	public BlockState blockState(int regionIndex) {
+		return palette[states[regionIndex]];
+	}
+
+	/**
+	 * Captures the given region if enabled and the limit isn't reached.
+	 * Call after the region is prepared and before light is smoothed.
+	 */
+	public static void captureIfEnabled(InputRegion region) {
+		if (!Configurator.captureRegionsForBenchmark || CAPTURE_COUNT.get() >= MAX_CAPTURES) {
+			return;
+		}
+
+		if (CAPTURE_COUNT.getAndIncrement() >= MAX_CAPTURES) {
+			return;
+		}
+
+		final RegionCapture capture = capture(region);
+		final Path path = FabricLoader.getInstance().getGameDir().resolve(CAPTURE_DIR)
+				.resolve("region_" + capture.originX + "_" + capture.originY + "_" + capture.originZ + ".bin");
+
+		try {
+			Files.createDirectories(path.getParent());
+			capture.write(path);
+		} catch (final IOException e) {
+			CanvasMod.LOG.warn("Unable to write region capture " + path + " due to exception.", e);
+		}
+	}
+
+	private static RegionCapture capture(InputRegion region) {
+		final Reference2IntOpenHashMap<BlockState> map = new Reference2IntOpenHashMap<>();
+		final ObjectArrayList<BlockState> palette = new ObjectArrayList<>();
+		final short[] states = new short[TOTAL_STATE_COUNT];
+		final int[] light = new int[TOTAL_STATE_COUNT];
+		final byte[] ao = new byte[TOTAL_STATE_COUNT];
+		final BlockPos.Mutable searchPos = new BlockPos.Mutable();
+		map.defaultReturnValue(-1);
+
+		for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+			final int packedXyz5 = regionIndexToXyz5(i);
+			final int x = (packedXyz5 & 31) - 2 + region.originX();
+			final int y = ((packedXyz5 >> 5) & 31) - 2 + region.originY();
+			final int z = (packedXyz5 >> 10) - 2 + region.originZ();
+			searchPos.set(x, y, z);
+
+			final BlockState state = region.getBlockState(x, y, z);
+			int paletteIndex = map.getInt(state);
+
+			if (paletteIndex == -1) {
+				paletteIndex = palette.size();
+				map.put(state, paletteIndex);
+				palette.add(state);
+			}
+
+			states[i] = (short) paletteIndex;
+			light[i] = region.directBrightness(searchPos);
+			ao[i] = (byte) region.cachedAoLevel(i);
+		}
+
+		return new RegionCapture(region.originX(), region.originY(), region.originZ(), palette.toArray(new BlockState[palette.size()]), states, light, ao);
+	}
+
+	public void write(Path path) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(originX);
+			out.writeInt(originY);
+			out.writeInt(originZ);
+			out.writeInt(palette.length);
+
+			for (final BlockState state : palette) {
+				NbtIo.write(NbtHelper.fromBlockState(state), out);
+			}
+
+			for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+				out.writeShort(states[i]);
+			}
+
+			for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+				out.writeInt(light[i]);
+			}
+
+			out.write(ao);
+		}
+	}
+
+	/**
+	 * Reads a capture written by {@link #write(Path)}. Blocks that are no longer
+	 * registered are read as air, as for chunks saved with removed blocks.
+	 */
+	public static RegionCapture read(Path path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				throw new IOException("Not a region capture or unsupported version: " + path);
+			}
+
+			final int originX = in.readInt();
+			final int originY = in.readInt();
+			final int originZ = in.readInt();
+			final int paletteSize = in.readInt();
+			final BlockState[] palette = new BlockState[paletteSize];
+
+			for (int i = 0; i < paletteSize; ++i) {
+				palette[i] = NbtHelper.toBlockState(NbtIo.read(in));
+			}
+
+			final short[] states = new short[TOTAL_STATE_COUNT];
+			final int[] light = new int[TOTAL_STATE_COUNT];
+			final byte[] ao = new byte[TOTAL_STATE_COUNT];
+
+			for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+				states[i] = in.readShort();
+
+				if (states[i] < 0 || states[i] >= paletteSize) {
+					throw new IOException("Invalid palette index in region capture: " + path);
+				}
+			}
+
+			for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+				light[i] = in.readInt();
+			}
+
+			in.readFully(ao);
+
+			return new RegionCapture(originX, originY, originZ, palette, states, light, ao);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.util;
+
+/**
+ * Blends biome colors for a whole chunk in one pass with a separable box filter.
+ *
+ * <p>Input is a grid of base colors padded by the blend radius on every side,
+ * indexed by {@code x + z * paddedSize(radius)}.  Output is indexed by
+ * {@code x | (z << 4)}.  Each channel is averaged over the same square of
+ * samples as the per-column blend in vanilla and gives identical results.
+ */
+final class BiomeColorBlender {
+	private BiomeColorBlender() { }
+
+	static int paddedSize(int radius) {
+		return 16 + radius * 2;
+	}
+
+	/** Size of the work array needed by {@link #blend(int[], int, int[], int[])}. */
+	static int workSize(int radius) {
+		return 3 * 16 * paddedSize(radius);
+	}
+
+	static void blend(int[] base, int radius, int[] blended, int[] work) {
+		if (radius == 0) {
+			System.arraycopy(base, 0, blended, 0, 256);
+			return;
+		}
+
+		final int padded = paddedSize(radius);
+		final int diameter = radius * 2 + 1;
+		final int sampleCount = diameter * diameter;
+
+		// horizontal sums of each padded row, three channels per output column
+		for (int z = 0; z < padded; ++z) {
+			final int rowStart = z * padded;
+			int r = 0;
+			int g = 0;
+			int b = 0;
+
+			for (int x = 0; x < diameter - 1; ++x) {
+				final int color = base[rowStart + x];
+				r += (color >> 16) & 255;
+				g += (color >> 8) & 255;
+				b += color & 255;
+			}
+
+			for (int x = 0; x < 16; ++x) {
+				final int enter = base[rowStart + x + diameter - 1];
+				r += (enter >> 16) & 255;
+				g += (enter >> 8) & 255;
+				b += enter & 255;
+
+				final int w = (z * 16 + x) * 3;
+				work[w] = r;
+				work[w + 1] = g;
+				work[w + 2] = b;
+
+				final int exit = base[rowStart + x];
+				r -= (exit >> 16) & 255;
+				g -= (exit >> 8) & 255;
+				b -= exit & 255;
+			}
+		}
+
+		// vertical sums of the row sums
+		for (int x = 0; x < 16; ++x) {
+			int r = 0;
+			int g = 0;
+			int b = 0;
+
+			for (int z = 0; z < diameter - 1; ++z) {
+				final int w = (z * 16 + x) * 3;
+				r += work[w];
+				g += work[w + 1];
+				b += work[w + 2];
+			}
+
+			for (int z = 0; z < 16; ++z) {
+				final int enter = ((z + diameter - 1) * 16 + x) * 3;
+				r += work[enter];
+				g += work[enter + 1];
+				b += work[enter + 2];
+
+				blended[x | (z << 4)] = (r / sampleCount & 255) << 16 | (g / sampleCount & 255) << 8 | b / sampleCount & 255;
+
+				final int exit = (z * 16 + x) * 3;
+				r -= work[exit];
+				g -= work[exit + 1];
+				b -= work[exit + 2];
+			}
+		}
+	}
+}
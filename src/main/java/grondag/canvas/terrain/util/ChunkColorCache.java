@@ -16,6 +16,7 @@
 
 package grondag.canvas.terrain.util;
 
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import net.minecraft.client.MinecraftClient;
@@ -112,11 +113,11 @@ public class ChunkColorCache implements BiomeAccess.Storage {
 	private class BiomeColorCache {
 		private static final int BASE_INDEX = 0;
 		private static final int BASE_CONTROL = BASE_INDEX + 256;
-		private static final int BLENDED_INDEX = BASE_CONTROL + 8;
-		private static final int BLENDED_CONTROL = BLENDED_INDEX + 256;
 		private final ColorResolver colorResolver;
 		private final Function<ChunkColorCache, BiomeColorCache> cacheFunc;
-		private final int[] data = new int[512 + 16];
+		private final int[] data = new int[256 + 8];
+		/** Blended colors for the whole chunk, published once complete. */
+		private final AtomicReference<int[]> blended = new AtomicReference<>();
 
 		private BiomeColorCache(ColorResolver colorResolver, Function<ChunkColorCache, BiomeColorCache> cacheFunc) {
 			this.colorResolver = colorResolver;
@@ -165,45 +166,40 @@ public class ChunkColorCache implements BiomeAccess.Storage {
 		}
 
 		private int getLocalBlendedColor(int x, int y, int z) {
-			final int index = (x & 0xF) | ((z & 0xF) << 4);
-			final int controlIndex = BLENDED_CONTROL + (index >> 5);
-			final int controlMask = 1 << (index & 31);
+			int[] result = blended.get();
 
-			if ((data[controlIndex] & controlMask) == 0) {
-				final int result = computeLocalBlendedColor(x, y, z);
-				data[controlIndex] |= controlMask;
-				data[index + BLENDED_INDEX] = result;
-				return result;
-			} else {
-				return data[index + BLENDED_INDEX];
+			if (result == null) {
+				result = computeBlended(y);
+
+				// another worker may have finished first - keep the published copy so all regions share it
+				if (!blended.compareAndSet(null, result)) {
+					result = blended.get();
+				}
 			}
+
+			return result[(x & 0xF) | ((z & 0xF) << 4)];
 		}
 
-		private int computeLocalBlendedColor(int xIn, int yIn, int zIn) {
+		/**
+		 * Blends every column of the chunk in one pass.  Biomes are sampled at
+		 * the height of the first request and the result is used for all heights.
+		 */
+		private int[] computeBlended(int y) {
 			final int radius = mc.options.biomeBlendRadius;
-
-			if (radius == 0) {
-				return getLocalBaseColor(xIn, yIn, zIn);
-			} else {
-				final int sampleCount = (radius * 2 + 1) * (radius * 2 + 1);
-				int r = 0;
-				int g = 0;
-				int b = 0;
-
-				final int xMax = xIn + radius;
-				final int zMax = zIn + radius;
-
-				for (int x = xIn - radius; x <= xMax; x++) {
-					for (int z = zIn - radius; z <= zMax; z++) {
-						final int color = getBaseColor(x, yIn, z);
-						g += (color >> 8) & 255;
-						r += (color >> 16) & 255;
-						b += color & 255;
-					}
+			final int padded = BiomeColorBlender.paddedSize(radius);
+			final int[] base = new int[padded * padded];
+			final int xMin = (chunkX << 4) - radius;
+			final int zMin = (chunkZ << 4) - radius;
+
+			for (int z = 0; z < padded; z++) {
+				for (int x = 0; x < padded; x++) {
+					base[x + z * padded] = getBaseColor(xMin + x, y, zMin + z);
 				}
-
-				return (r / sampleCount & 255) << 16 | (g / sampleCount & 255) << 8 | b / sampleCount & 255;
 			}
+
+			final int[] result = new int[256];
+			BiomeColorBlender.blend(base, radius, result, new int[BiomeColorBlender.workSize(radius)]);
+			return result;
 		}
 	}
 }
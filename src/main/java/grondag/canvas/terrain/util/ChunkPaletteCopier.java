@@ -16,9 +16,11 @@
 
 package grondag.canvas.terrain.util;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.HashCommon;
 import org.apache.commons.lang3.ObjectUtils;
+import org.jetbrains.annotations.Nullable;
 
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.util.collection.PackedIntegerArray;
@@ -26,10 +28,18 @@ import net.minecraft.world.chunk.ChunkSection;
 import net.minecraft.world.chunk.Palette;
 import net.minecraft.world.chunk.WorldChunk;
 
+import grondag.canvas.mixinterface.PackedIntegerArrayExt;
 import grondag.canvas.mixinterface.PalettedContainerExt;
 
 public class ChunkPaletteCopier {
 	private static final BlockState AIR = Blocks.AIR.getDefaultState();
+
+	/**
+	 * Palettes with more bits than this are the global palette, which is
+	 * already a direct array lookup and too large to copy.
+	 */
+	private static final int MAX_LOCAL_PALETTE_BITS = 8;
+	private static final int SECTION_SIZE = 4096;
 	public static final PaletteCopy AIR_COPY = i -> AIR;
 
 	public static PaletteCopy captureCopy(WorldChunk chunk, int y) {
@@ -49,8 +59,10 @@ public class ChunkPaletteCopier {
 			return AIR_COPY;
 		}
 
-		final ChunkSection sec = sections[sectionIndex];
+		return captureCopy(sections[sectionIndex]);
+	}
 
+	public static PaletteCopy captureCopy(@Nullable ChunkSection sec) {
 		if (sec == null) {
 			return AIR_COPY;
 		}
@@ -80,12 +92,48 @@ public class ChunkPaletteCopier {
 
 		default void release() {
 		}
+
+		/**
+		 * Hash of the copied block states. Uses raw state ids, so hashes are comparable
+		 * between sessions with the same registries. Zero for air, never zero otherwise.
+		 */
+		default long contentHash() {
+			final BlockState state = apply(0);
+			return state == AIR ? 0 : nonZero(HashCommon.mix(Block.getRawIdFromState(state) + 1L));
+		}
+	}
+
+	private static long nonZero(long hash) {
+		return hash == 0 ? 1 : hash;
+	}
+
+	/**
+	 * Copies palette entries that can be referenced by storage with the given element bits.
+	 * Returns null for the global palette. Empty entries get the empty value.
+	 */
+	private static BlockState[] copyPalette(Palette<BlockState> palette, int elementBits, BlockState emptyVal, @Nullable BlockState[] target) {
+		if (elementBits > MAX_LOCAL_PALETTE_BITS) {
+			return null;
+		}
+
+		final int limit = 1 << elementBits;
+
+		if (target == null || target.length < limit) {
+			target = new BlockState[limit];
+		}
+
+		for (int i = 0; i < limit; ++i) {
+			target[i] = ObjectUtils.defaultIfNull(palette.getByIndex(i), emptyVal);
+		}
+
+		return target;
 	}
 
 	private static class PaletteCopyImpl implements PaletteCopy {
 		public final BlockState emptyVal;
-		private final IntArrayList data;
+		private final int[] data;
 		private final Palette<BlockState> palette;
+		private final BlockState[] paletteStates;
 
 		private PaletteCopyImpl(Palette<BlockState> palette, PackedIntegerArray data, BlockState emptyVal) {
 			assert data != null;
@@ -93,16 +141,112 @@ public class ChunkPaletteCopier {
 			this.palette = palette;
 			this.data = PackedIntegerStorageHelper.claim(data);
 			this.emptyVal = emptyVal;
+			paletteStates = copyPalette(palette, data.getElementBits(), emptyVal, null);
 		}
 
 		@Override
 		public BlockState apply(int index) {
-			return ObjectUtils.defaultIfNull(palette.getByIndex(data.getInt(index)), emptyVal);
+			final BlockState[] paletteStates = this.paletteStates;
+			return paletteStates == null ? ObjectUtils.defaultIfNull(palette.getByIndex(data[index]), emptyVal) : paletteStates[data[index]];
 		}
 
 		@Override
 		public void release() {
 			PackedIntegerStorageHelper.release(data);
 		}
+
+		@Override
+		public long contentHash() {
+			final BlockState[] paletteStates = this.paletteStates;
+			final int[] data = this.data;
+			long hash = 0;
+
+			// global palette indices are already raw ids
+			if (paletteStates != null) {
+				hash = paletteStates.length;
+
+				for (final BlockState state : paletteStates) {
+					hash = HashCommon.mix(hash + Block.getRawIdFromState(state));
+				}
+			}
+
+			for (int i = 0; i < SECTION_SIZE; i += 2) {
+				hash = HashCommon.mix(hash ^ ((long) data[i] << 32 | data[i + 1] & 0xFFFFFFFFL));
+			}
+
+			return nonZero(hash);
+		}
+	}
+
+	/**
+	 * Reads block states from a range of section storage in bulk. Packed palette
+	 * indices for the range are unpacked once and the palette is copied once, so
+	 * the per-position cost is two array reads.
+	 *
+	 * <p>Positions use the index order of section storage: {@code y << 8 | z << 4 | x}.
+	 *
+	 * <p>NOT THREAD SAFE. Meant to be retained and reused by one caller.
+	 */
+	public static class SectionReader {
+		private final int[] indices = new int[4096];
+		private BlockState[] paletteStates = new BlockState[1 << MAX_LOCAL_PALETTE_BITS];
+		private Palette<BlockState> palette;
+		private BlockState emptyVal;
+		private boolean isGlobal;
+		private BlockState uniformState;
+
+		/**
+		 * Prepares the reader for positions from {@code fromIndex} (inclusive) to
+		 * {@code toIndex} (exclusive). Null sections read as air.
+		 */
+		public void read(@Nullable ChunkSection section, int fromIndex, int toIndex) {
+			palette = null;
+
+			if (section == null) {
+				uniformState = AIR;
+			} else {
+				((PalettedContainerExt) section.getContainer()).canvas_read(this, fromIndex, toIndex);
+			}
+		}
+
+		/**
+		 * Callback from canvas_read().
+		 */
+		public void load(Palette<BlockState> palette, PackedIntegerArray data, BlockState emptyVal, int fromIndex, int toIndex) {
+			if (palette == null || data == null) {
+				uniformState = emptyVal == null ? AIR : emptyVal;
+				return;
+			}
+
+			((PackedIntegerArrayExt) data).canvas_unpack(indices, fromIndex, toIndex);
+			final BlockState[] copy = copyPalette(palette, data.getElementBits(), emptyVal, paletteStates);
+
+			if (copy == null) {
+				isGlobal = true;
+			} else {
+				isGlobal = false;
+				paletteStates = copy;
+			}
+
+			this.palette = palette;
+			this.emptyVal = emptyVal;
+			uniformState = null;
+		}
+
+		/**
+		 * Non-null when every position in the section has the same state.
+		 * Callers should check this before calling {@link #get(int)}.
+		 */
+		public @Nullable BlockState uniformState() {
+			return uniformState;
+		}
+
+		/**
+		 * State at the given storage index, which must be within the range last read.
+		 * Not valid when {@link #uniformState()} is non-null.
+		 */
+		public BlockState get(int index) {
+			return isGlobal ? ObjectUtils.defaultIfNull(palette.getByIndex(indices[index]), emptyVal) : paletteStates[indices[index]];
+		}
 	}
 }
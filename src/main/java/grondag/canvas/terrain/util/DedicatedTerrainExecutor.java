@@ -20,6 +20,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import com.google.common.collect.ImmutableList;
 
@@ -42,6 +43,7 @@ public class DedicatedTerrainExecutor implements TerrainExecutor {
 
 	private final int poolSize = threadCount();
 
+	private final Supplier<TerrainRenderContext> contextFactory;
 	private final ImmutableList<Worker> workers;
 
 	private final AtomicInteger renderTaskCount = new AtomicInteger();
@@ -50,6 +52,11 @@ public class DedicatedTerrainExecutor implements TerrainExecutor {
 	private String report = "";
 
 	DedicatedTerrainExecutor() {
+		this(TerrainRenderContext::new);
+	}
+
+	DedicatedTerrainExecutor(Supplier<TerrainRenderContext> contextFactory) {
+		this.contextFactory = contextFactory;
 		final ImmutableList.Builder<Worker> builder = ImmutableList.builder();
 
 		for (int i = 0; i < poolSize; i++) {
@@ -82,7 +89,7 @@ public class DedicatedTerrainExecutor implements TerrainExecutor {
 
 		for (final Worker w : workers) {
 			w.context.close();
-			w.context = new TerrainRenderContext();
+			w.context = contextFactory.get();
 		}
 	}
 
@@ -91,8 +98,13 @@ public class DedicatedTerrainExecutor implements TerrainExecutor {
 		return queue.isEmpty();
 	}
 
+	@Override
+	public int queueDepth() {
+		return queue.size();
+	}
+
 	private class Worker implements Runnable {
-		private TerrainRenderContext context = new TerrainRenderContext();
+		private TerrainRenderContext context = contextFactory.get();
 
 		@Override
 		public void run() {
@@ -18,8 +18,6 @@ package grondag.canvas.terrain.util;
 
 import java.util.concurrent.ArrayBlockingQueue;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-
 import net.minecraft.util.collection.PackedIntegerArray;
 
 import grondag.canvas.mixinterface.PackedIntegerArrayExt;
@@ -28,21 +26,21 @@ import grondag.canvas.mixinterface.PackedIntegerArrayExt;
  * Minimize new allocation for chunk storage copies by recycling the arrays.
  */
 public class PackedIntegerStorageHelper {
-	private static final ArrayBlockingQueue<IntArrayList> POOL = new ArrayBlockingQueue<>(1024);
+	private static final ArrayBlockingQueue<int[]> POOL = new ArrayBlockingQueue<>(1024);
 
-	private static IntArrayList claimList() {
-		final IntArrayList list = POOL.poll();
-		return list == null ? new IntArrayList(512) : list;
+	private static int[] claimArray(int size) {
+		final int[] array = POOL.poll();
+		return array == null || array.length < size ? new int[size] : array;
 	}
 
-	public static void release(IntArrayList list) {
-		list.clear();
-		POOL.offer(list);
+	public static void release(int[] array) {
+		POOL.offer(array);
 	}
 
-	public static IntArrayList claim(PackedIntegerArray array) {
-		final IntArrayList list = claimList();
-		((PackedIntegerArrayExt) array).canvas_fastForEach(list);
-		return list;
+	public static int[] claim(PackedIntegerArray array) {
+		final int size = array.getSize();
+		final int[] result = claimArray(size);
+		((PackedIntegerArrayExt) array).canvas_unpack(result, 0, size);
+		return result;
 	}
 }
@@ -22,6 +22,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import com.google.common.collect.ImmutableList;
 
@@ -48,6 +49,7 @@ public class SharedTerrainExecutor implements TerrainExecutor {
 	private final int poolSize = threadCount();
 	private final Semaphore mixedSignal = new Semaphore(poolSize - 2);
 
+	private final Supplier<TerrainRenderContext> contextFactory;
 	private final ImmutableList<Worker> workers;
 
 	private final AtomicInteger renderTaskCount = new AtomicInteger();
@@ -59,6 +61,11 @@ public class SharedTerrainExecutor implements TerrainExecutor {
 	private String report0 = "", report1 = "";
 
 	SharedTerrainExecutor() {
+		this(TerrainRenderContext::new);
+	}
+
+	SharedTerrainExecutor(Supplier<TerrainRenderContext> contextFactory) {
+		this.contextFactory = contextFactory;
 		final ImmutableList.Builder<Worker> builder = ImmutableList.builder();
 
 		if (poolSize == 1) {
@@ -129,12 +136,17 @@ public class SharedTerrainExecutor implements TerrainExecutor {
 		return renderQueue.isEmpty();
 	}
 
+	@Override
+	public int queueDepth() {
+		return renderQueue.size();
+	}
+
 	private interface Worker extends Runnable {
 		void close();
 	}
 
 	private class RenderWorker implements Worker {
-		protected TerrainRenderContext context = new TerrainRenderContext();
+		protected TerrainRenderContext context = contextFactory.get();
 
 		@Override
 		public void run() {
@@ -22,7 +22,8 @@ import java.util.concurrent.Executor;
 import grondag.canvas.config.Configurator;
 
 public interface TerrainExecutor extends Executor {
-	TerrainExecutor INSTANCE = Configurator.useCombinedThreadPool ? new SharedTerrainExecutor() : new DedicatedTerrainExecutor();
+	TerrainExecutor INSTANCE = Configurator.useWorkStealingExecutor ? new WorkStealingTerrainExecutor()
+			: Configurator.useCombinedThreadPool ? new SharedTerrainExecutor() : new DedicatedTerrainExecutor();
 
 	void execute(TerrainExecutorTask task);
 
@@ -30,5 +31,8 @@ public interface TerrainExecutor extends Executor {
 
 	boolean isEmpty();
 
+	/** Render tasks waiting to run. Approximate and not constant time; sample at most once per frame. */
+	int queueDepth();
+
 	void debugReport(List<String> target);
 }
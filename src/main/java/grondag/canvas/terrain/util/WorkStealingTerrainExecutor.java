@@ -0,0 +1,455 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.util;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
+
+/**
+ * Executor with a task deque per worker and work stealing, so that
+ * submission and retrieval of region rebuilds do not contend on a single lock.
+ *
+ * <p>Each worker deque is split into buckets keyed on linear chunk distance,
+ * derived from {@link TerrainExecutorTask#priority()}.  A worker runs from its own
+ * nearest bucket unless another worker holds a strictly nearer task, in which case
+ * it steals from the tail of that bucket.  Ordering is therefore approximately global
+ * without a global queue.
+ *
+ * <p>Privileged tasks (priority -1) go to a shared queue that every worker checks first
+ * and run in order of submission.  Tasks submitted via {@link #execute(Runnable)} when
+ * the combined thread pool is enabled also go to a shared queue.
+ */
+public class WorkStealingTerrainExecutor implements TerrainExecutor {
+	/** Must be no more than 64 so bucket occupancy fits in a single long. */
+	static final int BUCKET_COUNT = 64;
+
+	/** Result of {@link Long#numberOfTrailingZeros(long)} for an empty occupancy mask. */
+	private static final int NO_BUCKET = 64;
+
+	/** Number of empty polls before a worker parks. */
+	private static final int SPIN_LIMIT = 64;
+
+	private final ConcurrentLinkedQueue<TerrainExecutorTask> privilegedQueue = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<Runnable> serverQueue = new ConcurrentLinkedQueue<>();
+	private final Supplier<TerrainRenderContext> contextFactory;
+	private final Worker[] workers;
+
+	private final AtomicInteger nextWorker = new AtomicInteger();
+	private final AtomicInteger renderTaskCount = new AtomicInteger();
+	private final AtomicInteger serverTaskCount = new AtomicInteger();
+	private final AtomicInteger stealCount = new AtomicInteger();
+
+	private int lastRenderTaskCount;
+	private int lastServerTaskCount;
+	private int lastStealCount;
+	private long nextTime;
+	private String report0 = "", report1 = "";
+
+	WorkStealingTerrainExecutor() {
+		this(threadCount(), TerrainRenderContext::new);
+	}
+
+	WorkStealingTerrainExecutor(int poolSize, Supplier<TerrainRenderContext> contextFactory) {
+		this.contextFactory = contextFactory;
+		workers = new Worker[poolSize];
+
+		for (int i = 0; i < poolSize; i++) {
+			workers[i] = new Worker(i);
+		}
+
+		// start only after all workers exist because workers inspect each other
+		for (final Worker w : workers) {
+			w.thread.setDaemon(true);
+			w.thread.start();
+		}
+	}
+
+	private static int threadCount() {
+		final int threadCount = Runtime.getRuntime().availableProcessors() - 1;
+		return threadCount > 1 ? threadCount : 1;
+	}
+
+	/**
+	 * Buckets are linear in chunk distance. This keeps near regions well ordered
+	 * without the cost of a full sort. Distant regions share the last bucket.
+	 */
+	static int bucket(int priority) {
+		final int distance = (int) Math.sqrt(priority);
+		return distance < BUCKET_COUNT ? distance : BUCKET_COUNT - 1;
+	}
+
+	@Override
+	public void execute(TerrainExecutorTask task) {
+		renderTaskCount.incrementAndGet();
+
+		if (task.priority() < 0) {
+			privilegedQueue.offer(task);
+			signal(null);
+			return;
+		}
+
+		final Thread thread = Thread.currentThread();
+		final Worker target;
+
+		// Tasks submitted by our own workers stay local; others are spread round-robin
+		if (thread instanceof WorkerThread && ((WorkerThread) thread).owner() == this) {
+			target = ((WorkerThread) thread).worker;
+		} else {
+			target = workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+		}
+
+		target.push(task);
+		signal(target);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		serverQueue.offer(command);
+		serverTaskCount.incrementAndGet();
+		signal(null);
+	}
+
+	/**
+	 * Wakes the target worker if it is parked. If the target is busy (or there
+	 * is no particular target) wakes any parked worker so it can steal.
+	 */
+	private void signal(Worker target) {
+		if (target != null && target.parked) {
+			LockSupport.unpark(target.thread);
+			return;
+		}
+
+		for (final Worker w : workers) {
+			if (w.parked) {
+				LockSupport.unpark(w.thread);
+				return;
+			}
+		}
+	}
+
+	private boolean hasWork() {
+		if (!privilegedQueue.isEmpty() || !serverQueue.isEmpty()) {
+			return true;
+		}
+
+		for (final Worker w : workers) {
+			if (w.occupancy.get() != 0) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		privilegedQueue.clear();
+
+		for (final Worker w : workers) {
+			w.clear();
+			w.context.close();
+			w.context = contextFactory.get();
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		if (!privilegedQueue.isEmpty()) {
+			return false;
+		}
+
+		for (final Worker w : workers) {
+			if (!w.isEmpty()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public int queueDepth() {
+		int result = privilegedQueue.size();
+
+		for (final Worker w : workers) {
+			result += w.size();
+		}
+
+		return result;
+	}
+
+	private class WorkerThread extends Thread {
+		private final Worker worker;
+
+		WorkerThread(Worker worker, String name) {
+			super(worker, name);
+			this.worker = worker;
+		}
+
+		WorkStealingTerrainExecutor owner() {
+			return WorkStealingTerrainExecutor.this;
+		}
+	}
+
+	private class Worker implements Runnable {
+		private final int index;
+		private final WorkerThread thread;
+
+		@SuppressWarnings("unchecked")
+		private final ConcurrentLinkedDeque<TerrainExecutorTask>[] buckets = new ConcurrentLinkedDeque[BUCKET_COUNT];
+
+		/**
+		 * One bit per bucket that may be non-empty. Bits can be briefly set for
+		 * empty buckets but are never clear for a bucket with a completed push.
+		 */
+		private final AtomicLong occupancy = new AtomicLong();
+
+		private volatile boolean parked;
+		private TerrainRenderContext context = contextFactory.get();
+
+		Worker(int index) {
+			this.index = index;
+			thread = new WorkerThread(this, "Canvas Render Thread - " + index);
+
+			for (int i = 0; i < BUCKET_COUNT; ++i) {
+				buckets[i] = new ConcurrentLinkedDeque<>();
+			}
+		}
+
+		private void push(TerrainExecutorTask task) {
+			final int b = bucket(task.priority());
+			buckets[b].addLast(task);
+			setOccupied(1L << b);
+		}
+
+		private void setOccupied(long mask) {
+			long current;
+
+			do {
+				current = occupancy.get();
+
+				if ((current & mask) != 0) {
+					return;
+				}
+			} while (!occupancy.compareAndSet(current, current | mask));
+		}
+
+		private void clearOccupied(long mask) {
+			long current;
+
+			do {
+				current = occupancy.get();
+
+				if ((current & mask) == 0) {
+					return;
+				}
+			} while (!occupancy.compareAndSet(current, current & ~mask));
+		}
+
+		private int nearestBucket() {
+			return Long.numberOfTrailingZeros(occupancy.get());
+		}
+
+		/**
+		 * Owner polls from the head of a bucket, thieves from the tail.
+		 */
+		private TerrainExecutorTask poll(int bucket, boolean steal) {
+			final ConcurrentLinkedDeque<TerrainExecutorTask> deque = buckets[bucket];
+			final TerrainExecutorTask result = steal ? deque.pollLast() : deque.pollFirst();
+
+			if (deque.isEmpty()) {
+				final long mask = 1L << bucket;
+				clearOccupied(mask);
+
+				// a push may have landed after the empty check
+				if (!deque.isEmpty()) {
+					setOccupied(mask);
+				}
+			}
+
+			return result;
+		}
+
+		private boolean isEmpty() {
+			long bits = occupancy.get();
+
+			while (bits != 0) {
+				if (!buckets[Long.numberOfTrailingZeros(bits)].isEmpty()) {
+					return false;
+				}
+
+				bits &= bits - 1;
+			}
+
+			return true;
+		}
+
+		private int size() {
+			int result = 0;
+
+			for (final ConcurrentLinkedDeque<TerrainExecutorTask> deque : buckets) {
+				result += deque.size();
+			}
+
+			return result;
+		}
+
+		private void clear() {
+			for (final ConcurrentLinkedDeque<TerrainExecutorTask> deque : buckets) {
+				deque.clear();
+			}
+
+			occupancy.set(0);
+		}
+
+		private TerrainExecutorTask nextRenderTask() {
+			final Worker[] workers = WorkStealingTerrainExecutor.this.workers;
+			final int workerCount = workers.length;
+			Worker victim = this;
+			int bestBucket = nearestBucket();
+
+			// start after our own index so thieves don't all converge on the same victim
+			for (int i = 1; i < workerCount && bestBucket > 0; ++i) {
+				final Worker w = workers[(index + i) % workerCount];
+				final int b = w.nearestBucket();
+
+				if (b < bestBucket) {
+					bestBucket = b;
+					victim = w;
+				}
+			}
+
+			if (bestBucket == NO_BUCKET) {
+				return null;
+			}
+
+			if (victim == this) {
+				return poll(bestBucket, false);
+			}
+
+			final TerrainExecutorTask result = victim.poll(bestBucket, true);
+
+			if (result != null) {
+				stealCount.incrementAndGet();
+			}
+
+			return result;
+		}
+
+		private boolean runServerTask() {
+			final Runnable task = serverQueue.poll();
+
+			if (task == null) {
+				return false;
+			}
+
+			task.run();
+			return true;
+		}
+
+		private boolean runOne() {
+			TerrainExecutorTask task = privilegedQueue.poll();
+
+			if (task != null) {
+				task.run(context);
+				return true;
+			}
+
+			// first worker favors server tasks so they aren't starved during heavy rebuilds
+			final boolean serverFirst = index == 0;
+
+			if (serverFirst && runServerTask()) {
+				return true;
+			}
+
+			task = nextRenderTask();
+
+			if (task != null) {
+				task.run(context);
+				return true;
+			}
+
+			return !serverFirst && runServerTask();
+		}
+
+		private void park() {
+			parked = true;
+
+			// recheck after publishing parked state so a concurrent signal is never lost
+			if (!hasWork()) {
+				LockSupport.park(this);
+			}
+
+			parked = false;
+		}
+
+		@Override
+		public void run() {
+			int idleCount = 0;
+
+			while (true) {
+				try {
+					if (runOne()) {
+						idleCount = 0;
+					} else if (++idleCount > SPIN_LIMIT) {
+						idleCount = 0;
+						park();
+					} else {
+						Thread.onSpinWait();
+					}
+				} catch (final Exception e) {
+					CanvasMod.LOG.error("Unhandled error during rendering. Impact unknown.", e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void debugReport(List<String> target) {
+		long newTime = System.currentTimeMillis();
+
+		if (newTime > nextTime) {
+			nextTime = newTime + 1000;
+
+			final int queued = queueDepth();
+			final int newRenderCount = renderTaskCount.get();
+			final int newServerCount = serverTaskCount.get();
+			final int newStealCount = stealCount.get();
+
+			report0 = String.format("Render tasks: %d rate: %d steals: %d",
+					queued, newRenderCount - lastRenderTaskCount, newStealCount - lastStealCount);
+
+			report1 = String.format("Server tasks: %d rate: %d",
+					serverQueue.size(), newServerCount - lastServerTaskCount);
+
+			lastRenderTaskCount = newRenderCount;
+			lastServerTaskCount = newServerCount;
+			lastStealCount = newStealCount;
+		}
+
+		target.add(report0);
+		target.add(report1);
+	}
+}
@@ -101,6 +101,21 @@ public final class SimpleImage implements AutoCloseable {
 		intBuffer.put(x + y * width, rgba);
 	}
 
+	/**
+	 * Copies a block of pixels with one bulk put per row.
+	 * Source pixels are packed row by row, {@code width} pixels per row.
+	 */
+	public void setPixelsRGBA(int x, int y, int width, int height, int[] rgba) {
+		assert bytesPerPixel == 4;
+		assert x + width <= this.width && y + height <= this.height;
+		assert rgba.length >= width * height;
+		assert pointer != 0L : "Image not allocated.";
+
+		for (int row = 0; row < height; ++row) {
+			intBuffer.put(x + (y + row) * this.width, rgba, row * width, width);
+		}
+	}
+
 	public void setLuminance(int u, int v, byte value) {
 		assert bytesPerPixel == 1;
 		assert u <= width && v <= height;
@@ -33,6 +33,13 @@ import grondag.canvas.config.Configurator;
 import grondag.canvas.pipeline.GlSymbolLookup;
 
 public class GFX extends GL46C {
+	/**
+	 * Shadows state changed through this class so that redundant calls are skipped.
+	 * Invalidated at the start of each frame, after vanilla or event callbacks
+	 * that may draw directly, and on pipeline or shader reload.
+	 */
+	public static final GlStateTracker STATE = new GlStateTracker(new GlBackend());
+
 	public static boolean checkError() {
 		return glGetError() == 0;
 	}
@@ -134,8 +141,7 @@ public class GFX extends GL46C {
 	}
 
 	public static void cullFace(int mode) {
-		glCullFace(mode);
-		assert logError(String.format("glCullFace(%s)", GlSymbolLookup.reverseLookup(mode)));
+		STATE.cullFace(mode);
 	}
 
 	public static void polygonOffset(float factor, float units) {
@@ -144,18 +150,15 @@ public class GFX extends GL46C {
 	}
 
 	public static void disable(int target) {
-		glDisable(target);
-		assert logError(String.format("glDisable(%s)", GlSymbolLookup.reverseLookup(target)));
+		STATE.disable(target);
 	}
 
 	public static void enable(int target) {
-		glEnable(target);
-		assert logError(String.format("glEnable(%s)", GlSymbolLookup.reverseLookup(target)));
+		STATE.enable(target);
 	}
 
 	public static void bindBuffer(int target, int buffer) {
-		glBindBuffer(target, buffer);
-		assert logError(String.format("glBindBuffer(%s, %d)", GlSymbolLookup.reverseLookup(target), buffer));
+		STATE.bindBuffer(target, buffer);
 	}
 
 	public static int genFramebuffer() {
@@ -236,11 +239,13 @@ public class GFX extends GL46C {
 	public static void deleteVertexArray(int array) {
 		glDeleteVertexArrays(array);
 		assert logError(String.format("glDeleteVertexArrays(%d)", array));
+		STATE.onVertexArrayDeleted(array);
 	}
 
 	public static void deleteBuffers(int buffer) {
 		glDeleteBuffers(buffer);
 		assert logError(String.format("glDeleteBuffers(%d)", buffer));
+		STATE.onBufferDeleted(buffer);
 	}
 
 	public static void bufferData(int target, ByteBuffer buffer, int usage) {
@@ -254,23 +259,21 @@ public class GFX extends GL46C {
 	}
 
 	public static void bindVertexArray(int array) {
-		glBindVertexArray(array);
-		assert logError(String.format("glBindVertexArray(%d)", array));
+		STATE.bindVertexArray(array);
 	}
 
 	public static void bindTexture(int target, int texture) {
-		glBindTexture(target, texture);
-		assert logError(String.format("glBindTexture(%s, %d)", GlSymbolLookup.reverseLookup(target), texture));
+		STATE.bindTexture(target, texture);
 	}
 
 	public static void deleteTexture(int texture) {
 		glDeleteTextures(texture);
 		assert logError(String.format("glDeleteTextures(%d)", texture));
+		STATE.onTextureDeleted(texture);
 	}
 
 	public static void activeTexture(int texture) {
-		glActiveTexture(texture);
-		assert logError(String.format("glActiveTexture(%d)", texture));
+		STATE.activeTexture(texture);
 	}
 
 	public static void texParameter(int target, int pname, int param) {
@@ -348,100 +351,49 @@ public class GFX extends GL46C {
 		}
 	}
 
-	private static boolean depthTest;
-
 	public static void disableDepthTest() {
-		if (depthTest) {
-			disable(GL_DEPTH_TEST);
-			depthTest = false;
-		}
+		STATE.disable(GL_DEPTH_TEST);
 	}
 
 	public static void enableDepthTest() {
-		if (!depthTest) {
-			enable(GL_DEPTH_TEST);
-			depthTest = true;
-		}
+		STATE.enable(GL_DEPTH_TEST);
 	}
 
-	private static int depthFunc = GL_LESS;
-
 	public static void depthFunc(int func) {
-		if (func != depthFunc) {
-			depthFunc = func;
-			glDepthFunc(func);
-			assert logError("glDepthFunc");
-		}
+		STATE.depthFunc(func);
 	}
 
-	private static boolean depthMask = true;
-
 	public static void depthMask(boolean mask) {
-		if (mask != depthMask) {
-			depthMask = mask;
-			glDepthMask(mask);
-			assert logError("glDepthMask");
-		}
+		STATE.depthMask(mask);
 	}
 
-	private static boolean blend = false;
-
 	public static void enableBlend() {
-		if (!blend) {
-			enable(GL_BLEND);
-			blend = true;
-		}
+		STATE.enable(GL_BLEND);
 	}
 
 	public static void disableBlend() {
-		if (blend) {
-			disable(GL_BLEND);
-			blend = false;
-		}
+		STATE.disable(GL_BLEND);
 	}
 
 	public static void defaultBlendFunc() {
 		blendFuncSeparate(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA, GL_ONE, GL_ZERO);
 	}
 
-	private static int _srcFactorRGB, _dstFactorRGB, _srcFactorAlpha, _dstFactorAlpha;
-
 	public static void blendFuncSeparate(int srcFactorRGB, int dstFactorRGB, int srcFactorAlpha, int dstFactorAlpha) {
-		if (srcFactorRGB != _srcFactorRGB || dstFactorRGB != _dstFactorRGB || srcFactorAlpha != _srcFactorAlpha || dstFactorAlpha != _dstFactorAlpha) {
-			_srcFactorRGB = srcFactorRGB;
-			_dstFactorRGB = dstFactorRGB;
-			_srcFactorAlpha = srcFactorAlpha;
-			_dstFactorAlpha = dstFactorAlpha;
-			glBlendFuncSeparate(srcFactorRGB, dstFactorRGB, srcFactorAlpha, dstFactorAlpha);
-		}
-
-		assert logError("glBlendFuncSeparate");
+		STATE.blendFuncSeparate(srcFactorRGB, dstFactorRGB, srcFactorAlpha, dstFactorAlpha);
 	}
 
+	/** Same as {@link #blendFuncSeparate(int, int, int, int)} with the same factors for alpha. */
 	public static void blendFunc(int srcFactor, int dstFactor) {
-		if (srcFactor != _srcFactorRGB || dstFactor != _dstFactorRGB) {
-			_srcFactorRGB = srcFactor;
-			_dstFactorRGB = dstFactor;
-			glBlendFunc(srcFactor, dstFactor);
-		}
-
-		assert logError("glBlendFunc");
+		STATE.blendFuncSeparate(srcFactor, dstFactor, srcFactor, dstFactor);
 	}
 
-	private static boolean cull = false;
-
 	public static void enableCull() {
-		if (!cull) {
-			enable(GL_CULL_FACE);
-			cull = true;
-		}
+		STATE.enable(GL_CULL_FACE);
 	}
 
 	public static void disableCull() {
-		if (cull) {
-			disable(GL_CULL_FACE);
-			cull = false;
-		}
+		STATE.disable(GL_CULL_FACE);
 	}
 
 	public static void backupProjectionMatrix() {
@@ -460,6 +412,7 @@ public class GFX extends GL46C {
 	public static void deleteProgram(int program) {
 		glDeleteProgram(program);
 		assert logError(String.format("glDeleteProgram(%d)", program));
+		STATE.onProgramDeleted(program);
 	}
 
 	public static int createProgram() {
@@ -468,12 +421,8 @@ public class GFX extends GL46C {
 		return result;
 	}
 
-	/**
-	 * Clears error state prior to run and does not clear it after.
-	 */
 	public static void useProgram(int program) {
-		glGetError();
-		glUseProgram(program);
+		STATE.useProgram(program);
 	}
 
 	public static void linkProgram(int program) {
@@ -578,24 +527,16 @@ public class GFX extends GL46C {
 				GlSymbolLookup.reverseLookup(mode), count, GlSymbolLookup.reverseLookup(type), indices, baseVertex));
 	}
 
-	private static boolean scissorTest = false;
 	public static void disableScissorTest() {
-		if (scissorTest) {
-			disable(GL_SCISSOR_TEST);
-			scissorTest = false;
-		}
+		STATE.disable(GL_SCISSOR_TEST);
 	}
 
 	public static void enableScissorTest() {
-		if (!scissorTest) {
-			enable(GL_SCISSOR_TEST);
-			scissorTest = true;
-		}
+		STATE.enable(GL_SCISSOR_TEST);
 	}
 
 	public static void scissor(int x, int y, int width, int height) {
-		glScissor(x, y, width, height);
-		assert logError("glScissor");
+		STATE.scissor(x, y, width, height);
 	}
 
 	public static void blendEquation(int mode) {
@@ -706,36 +647,20 @@ public class GFX extends GL46C {
 		assert logError("glPolygonMode");
 	}
 
-	private static boolean polygonOffset = false;
-
 	public static void enablePolygonOffset() {
-		if (!polygonOffset) {
-			enable(GL_POLYGON_OFFSET_FILL);
-			polygonOffset = true;
-		}
+		STATE.enable(GL_POLYGON_OFFSET_FILL);
 	}
 
 	public static void disablePolygonOffset() {
-		if (polygonOffset) {
-			disable(GL_POLYGON_OFFSET_FILL);
-			polygonOffset = false;
-		}
+		STATE.disable(GL_POLYGON_OFFSET_FILL);
 	}
 
-	private static boolean colorLogic = false;
-
 	public static void enableColorLogicOp() {
-		if (!colorLogic) {
-			enable(GL_COLOR_LOGIC_OP);
-			colorLogic = true;
-		}
+		STATE.enable(GL_COLOR_LOGIC_OP);
 	}
 
 	public static void disableColorLogicOp() {
-		if (colorLogic) {
-			disable(GL_COLOR_LOGIC_OP);
-			colorLogic = false;
-		}
+		STATE.disable(GL_COLOR_LOGIC_OP);
 	}
 
 	private static int logicOp = GL_COPY;
@@ -885,4 +810,78 @@ public class GFX extends GL46C {
 		glBufferStorage(target, size, flags);
 		assert logError("glBufferStorage");
 	}
+
+	private static class GlBackend implements GlStateTracker.Backend {
+		@Override
+		public void bindBuffer(int target, int buffer) {
+			glBindBuffer(target, buffer);
+			assert logError(String.format("glBindBuffer(%s, %d)", GlSymbolLookup.reverseLookup(target), buffer));
+		}
+
+		@Override
+		public void bindVertexArray(int array) {
+			glBindVertexArray(array);
+			assert logError(String.format("glBindVertexArray(%d)", array));
+		}
+
+		@Override
+		public void useProgram(int program) {
+			// errors are left for GlProgram to check on first use
+			glUseProgram(program);
+		}
+
+		@Override
+		public void activeTexture(int unit) {
+			glActiveTexture(unit);
+			assert logError(String.format("glActiveTexture(%d)", unit));
+		}
+
+		@Override
+		public void bindTexture(int target, int texture) {
+			glBindTexture(target, texture);
+			assert logError(String.format("glBindTexture(%s, %d)", GlSymbolLookup.reverseLookup(target), texture));
+		}
+
+		@Override
+		public void enable(int cap) {
+			glEnable(cap);
+			assert logError(String.format("glEnable(%s)", GlSymbolLookup.reverseLookup(cap)));
+		}
+
+		@Override
+		public void disable(int cap) {
+			glDisable(cap);
+			assert logError(String.format("glDisable(%s)", GlSymbolLookup.reverseLookup(cap)));
+		}
+
+		@Override
+		public void blendFuncSeparate(int srcFactorRGB, int dstFactorRGB, int srcFactorAlpha, int dstFactorAlpha) {
+			glBlendFuncSeparate(srcFactorRGB, dstFactorRGB, srcFactorAlpha, dstFactorAlpha);
+			assert logError("glBlendFuncSeparate");
+		}
+
+		@Override
+		public void depthFunc(int func) {
+			glDepthFunc(func);
+			assert logError("glDepthFunc");
+		}
+
+		@Override
+		public void depthMask(boolean mask) {
+			glDepthMask(mask);
+			assert logError("glDepthMask");
+		}
+
+		@Override
+		public void cullFace(int mode) {
+			glCullFace(mode);
+			assert logError(String.format("glCullFace(%s)", GlSymbolLookup.reverseLookup(mode)));
+		}
+
+		@Override
+		public void scissor(int x, int y, int width, int height) {
+			glScissor(x, y, width, height);
+			assert logError("glScissor");
+		}
+	}
 }
@@ -0,0 +1,402 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.varia;
+
+import static org.lwjgl.opengl.GL46C.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL46C.GL_BLEND;
+import static org.lwjgl.opengl.GL46C.GL_COLOR_LOGIC_OP;
+import static org.lwjgl.opengl.GL46C.GL_COPY_READ_BUFFER;
+import static org.lwjgl.opengl.GL46C.GL_COPY_WRITE_BUFFER;
+import static org.lwjgl.opengl.GL46C.GL_CULL_FACE;
+import static org.lwjgl.opengl.GL46C.GL_DEPTH_TEST;
+import static org.lwjgl.opengl.GL46C.GL_DRAW_INDIRECT_BUFFER;
+import static org.lwjgl.opengl.GL46C.GL_ELEMENT_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL46C.GL_PIXEL_PACK_BUFFER;
+import static org.lwjgl.opengl.GL46C.GL_PIXEL_UNPACK_BUFFER;
+import static org.lwjgl.opengl.GL46C.GL_POLYGON_OFFSET_FILL;
+import static org.lwjgl.opengl.GL46C.GL_SCISSOR_TEST;
+import static org.lwjgl.opengl.GL46C.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL46C.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL46C.GL_TEXTURE_2D_ARRAY;
+import static org.lwjgl.opengl.GL46C.GL_TEXTURE_3D;
+import static org.lwjgl.opengl.GL46C.GL_TEXTURE_BUFFER;
+import static org.lwjgl.opengl.GL46C.GL_TEXTURE_CUBE_MAP;
+import static org.lwjgl.opengl.GL46C.GL_UNIFORM_BUFFER;
+
+import java.util.Arrays;
+
+/**
+ * Shadow copy of the GL state that is changed most often, used by {@link GFX} to skip
+ * calls that wouldn't change anything. Covers buffer bindings for common targets, the
+ * vertex array, program, texture bindings per unit, the active texture unit, common
+ * capabilities, blend function, depth function and mask, cull face and scissor box.
+ *
+ * <p>State starts out unknown, so the first call for each item always goes through.
+ * Calls for targets, capabilities or units that aren't tracked also always go through.
+ * Call {@link #invalidate()} if GL state may have changed without going through this tracker.
+ *
+ * <p>The element array buffer binding belongs to the vertex array, so it becomes unknown
+ * when the vertex array changes. Deleting a buffer, vertex array or texture resets
+ * shadowed bindings of it to zero, as GL does.
+ *
+ * <p>Counts calls issued to the backend and calls skipped as redundant. Counts are
+ * rolled over by {@link #endFrame()}. Not thread-safe; GL calls are all on the render thread.
+ */
+public final class GlStateTracker {
+	/** Receives calls that change state. */
+	public interface Backend {
+		void bindBuffer(int target, int buffer);
+
+		void bindVertexArray(int array);
+
+		void useProgram(int program);
+
+		void activeTexture(int unit);
+
+		void bindTexture(int target, int texture);
+
+		void enable(int cap);
+
+		void disable(int cap);
+
+		void blendFuncSeparate(int srcFactorRGB, int dstFactorRGB, int srcFactorAlpha, int dstFactorAlpha);
+
+		void depthFunc(int func);
+
+		void depthMask(boolean mask);
+
+		void cullFace(int mode);
+
+		void scissor(int x, int y, int width, int height);
+	}
+
+	public static final int TEXTURE_UNIT_COUNT = 64;
+
+	private static final int UNKNOWN = -1;
+	private static final int ELEMENT_SLOT = 1;
+	private static final int BUFFER_SLOT_COUNT = 9;
+	private static final int TEXTURE_SLOT_COUNT = 5;
+	private static final int CAP_COUNT = 6;
+
+	private final Backend backend;
+
+	private final int[] buffers = new int[BUFFER_SLOT_COUNT];
+	private final int[] textures = new int[TEXTURE_UNIT_COUNT * TEXTURE_SLOT_COUNT];
+	/** 1 if enabled, 0 if disabled. */
+	private final int[] caps = new int[CAP_COUNT];
+	private final int[] blendFunc = new int[4];
+	private final int[] scissor = new int[4];
+	private int vertexArray;
+	private int program;
+	private int activeUnit;
+	private int depthFunc;
+	/** 1 if writes are enabled, 0 if not. */
+	private int depthMask;
+	private int cullFace;
+
+	private int issued;
+	private int skipped;
+	private int lastIssued;
+	private int lastSkipped;
+
+	public GlStateTracker(Backend backend) {
+		this.backend = backend;
+		invalidate();
+	}
+
+	/**
+	 * Forgets all shadowed state so the next call for each item goes through.
+	 * Call whenever GL state may have been changed by calls that don't go through
+	 * the tracker, such as vanilla or other mods drawing directly.
+	 */
+	public void invalidate() {
+		Arrays.fill(buffers, UNKNOWN);
+		Arrays.fill(textures, UNKNOWN);
+		Arrays.fill(caps, UNKNOWN);
+		Arrays.fill(blendFunc, UNKNOWN);
+		Arrays.fill(scissor, UNKNOWN);
+		vertexArray = UNKNOWN;
+		program = UNKNOWN;
+		activeUnit = UNKNOWN;
+		depthFunc = UNKNOWN;
+		depthMask = UNKNOWN;
+		cullFace = UNKNOWN;
+	}
+
+	/** Saves counts of the frame just ended, for {@link #lastFrameIssued()} and {@link #lastFrameSkipped()}, and starts new ones. */
+	public void endFrame() {
+		lastIssued = issued;
+		lastSkipped = skipped;
+		issued = 0;
+		skipped = 0;
+	}
+
+	/** Calls issued to the backend in the last complete frame. */
+	public int lastFrameIssued() {
+		return lastIssued;
+	}
+
+	/** Calls skipped as redundant in the last complete frame. */
+	public int lastFrameSkipped() {
+		return lastSkipped;
+	}
+
+	/** Calls issued to the backend so far in the current frame. */
+	public int issued() {
+		return issued;
+	}
+
+	/** Calls skipped as redundant so far in the current frame. */
+	public int skipped() {
+		return skipped;
+	}
+
+	private boolean update(int[] state, int index, int value) {
+		if (index >= 0 && state[index] == value) {
+			++skipped;
+			return false;
+		}
+
+		if (index >= 0) {
+			state[index] = value;
+		}
+
+		++issued;
+		return true;
+	}
+
+	public void bindBuffer(int target, int buffer) {
+		if (update(buffers, bufferSlot(target), buffer)) {
+			backend.bindBuffer(target, buffer);
+		}
+	}
+
+	/** Shadowed buffer binding for the given target, or -1 if unknown or not tracked. */
+	public int boundBuffer(int target) {
+		final int slot = bufferSlot(target);
+		return slot < 0 ? UNKNOWN : buffers[slot];
+	}
+
+	public void bindVertexArray(int array) {
+		if (array == vertexArray) {
+			++skipped;
+		} else {
+			vertexArray = array;
+			buffers[ELEMENT_SLOT] = UNKNOWN;
+			++issued;
+			backend.bindVertexArray(array);
+		}
+	}
+
+	public void useProgram(int program) {
+		if (program == this.program) {
+			++skipped;
+		} else {
+			this.program = program;
+			++issued;
+			backend.useProgram(program);
+		}
+	}
+
+	/** Unit is given as {@code GL_TEXTURE0 + n}. */
+	public void activeTexture(int unit) {
+		if (unit == activeUnit) {
+			++skipped;
+		} else {
+			activeUnit = unit;
+			++issued;
+			backend.activeTexture(unit);
+		}
+	}
+
+	public void bindTexture(int target, int texture) {
+		final int unit = activeUnit - GL_TEXTURE0;
+		final int slot = textureSlot(target);
+		final int index = slot < 0 || unit < 0 || unit >= TEXTURE_UNIT_COUNT ? UNKNOWN : unit * TEXTURE_SLOT_COUNT + slot;
+
+		if (update(textures, index, texture)) {
+			backend.bindTexture(target, texture);
+		}
+	}
+
+	public void enable(int cap) {
+		if (update(caps, capSlot(cap), 1)) {
+			backend.enable(cap);
+		}
+	}
+
+	public void disable(int cap) {
+		if (update(caps, capSlot(cap), 0)) {
+			backend.disable(cap);
+		}
+	}
+
+	public void blendFuncSeparate(int srcFactorRGB, int dstFactorRGB, int srcFactorAlpha, int dstFactorAlpha) {
+		if (srcFactorRGB == blendFunc[0] && dstFactorRGB == blendFunc[1] && srcFactorAlpha == blendFunc[2] && dstFactorAlpha == blendFunc[3]) {
+			++skipped;
+		} else {
+			blendFunc[0] = srcFactorRGB;
+			blendFunc[1] = dstFactorRGB;
+			blendFunc[2] = srcFactorAlpha;
+			blendFunc[3] = dstFactorAlpha;
+			++issued;
+			backend.blendFuncSeparate(srcFactorRGB, dstFactorRGB, srcFactorAlpha, dstFactorAlpha);
+		}
+	}
+
+	public void depthFunc(int func) {
+		if (func == depthFunc) {
+			++skipped;
+		} else {
+			depthFunc = func;
+			++issued;
+			backend.depthFunc(func);
+		}
+	}
+
+	public void depthMask(boolean mask) {
+		final int value = mask ? 1 : 0;
+
+		if (value == depthMask) {
+			++skipped;
+		} else {
+			depthMask = value;
+			++issued;
+			backend.depthMask(mask);
+		}
+	}
+
+	public void cullFace(int mode) {
+		if (mode == cullFace) {
+			++skipped;
+		} else {
+			cullFace = mode;
+			++issued;
+			backend.cullFace(mode);
+		}
+	}
+
+	public void scissor(int x, int y, int width, int height) {
+		if (x == scissor[0] && y == scissor[1] && width == scissor[2] && height == scissor[3]) {
+			++skipped;
+		} else {
+			scissor[0] = x;
+			scissor[1] = y;
+			scissor[2] = width;
+			scissor[3] = height;
+			++issued;
+			backend.scissor(x, y, width, height);
+		}
+	}
+
+	/** Call after the buffer is deleted. */
+	public void onBufferDeleted(int buffer) {
+		for (int i = 0; i < BUFFER_SLOT_COUNT; ++i) {
+			if (buffers[i] == buffer) {
+				buffers[i] = 0;
+			}
+		}
+	}
+
+	/** Call after the vertex array is deleted. */
+	public void onVertexArrayDeleted(int array) {
+		if (vertexArray == array) {
+			vertexArray = 0;
+			buffers[ELEMENT_SLOT] = UNKNOWN;
+		}
+	}
+
+	/** Call after the texture is deleted. */
+	public void onTextureDeleted(int texture) {
+		for (int i = 0; i < textures.length; ++i) {
+			if (textures[i] == texture) {
+				textures[i] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Call after the program is deleted. A program in use stays in use after
+	 * it is deleted, but is forgotten so that using it again isn't skipped.
+	 */
+	public void onProgramDeleted(int program) {
+		if (this.program == program) {
+			this.program = UNKNOWN;
+		}
+	}
+
+	private static int bufferSlot(int target) {
+		switch (target) {
+			case GL_ARRAY_BUFFER:
+				return 0;
+			case GL_ELEMENT_ARRAY_BUFFER:
+				return ELEMENT_SLOT;
+			case GL_COPY_READ_BUFFER:
+				return 2;
+			case GL_COPY_WRITE_BUFFER:
+				return 3;
+			case GL_PIXEL_PACK_BUFFER:
+				return 4;
+			case GL_PIXEL_UNPACK_BUFFER:
+				return 5;
+			case GL_UNIFORM_BUFFER:
+				return 6;
+			case GL_TEXTURE_BUFFER:
+				return 7;
+			case GL_DRAW_INDIRECT_BUFFER:
+				return 8;
+			default:
+				return UNKNOWN;
+		}
+	}
+
+	private static int textureSlot(int target) {
+		switch (target) {
+			case GL_TEXTURE_2D:
+				return 0;
+			case GL_TEXTURE_2D_ARRAY:
+				return 1;
+			case GL_TEXTURE_3D:
+				return 2;
+			case GL_TEXTURE_CUBE_MAP:
+				return 3;
+			case GL_TEXTURE_BUFFER:
+				return 4;
+			default:
+				return UNKNOWN;
+		}
+	}
+
+	private static int capSlot(int cap) {
+		switch (cap) {
+			case GL_BLEND:
+				return 0;
+			case GL_CULL_FACE:
+				return 1;
+			case GL_DEPTH_TEST:
+				return 2;
+			case GL_SCISSOR_TEST:
+				return 3;
+			case GL_POLYGON_OFFSET_FILL:
+				return 4;
+			case GL_COLOR_LOGIC_OP:
+				return 5;
+			default:
+				return UNKNOWN;
+		}
+	}
+}
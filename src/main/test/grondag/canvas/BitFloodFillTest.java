@@ -0,0 +1,91 @@
+package grondag.canvas;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.terrain.occlusion.geometry.BitFloodFill;
+
+class BitFloodFillTest {
+	final long[] closed = new long[64];
+	final long[] seeds = new long[64];
+	final long[] expected = new long[64];
+	final long[] actual = new long[64];
+	final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+	final BitFloodFill fill = new BitFloodFill();
+
+	@Test
+	void test() {
+		final Random r = new Random(42);
+
+		for (int n = 0; n < 2000; n++) {
+			// vary density so both sparse and cave-like volumes are covered
+			final float closedChance = r.nextFloat();
+			final float seedChance = r.nextFloat() * 0.1f;
+
+			Arrays.fill(closed, 0);
+			Arrays.fill(seeds, 0);
+
+			for (int i = 0; i < 4096; i++) {
+				if (r.nextFloat() < closedChance) {
+					set(closed, i);
+				}
+
+				if (r.nextFloat() < seedChance) {
+					set(seeds, i);
+				}
+			}
+
+			System.arraycopy(seeds, 0, expected, 0, 64);
+			referenceFill();
+
+			System.arraycopy(seeds, 0, actual, 0, 64);
+			fill.fill(closed, 0, actual, 0);
+
+			assert Arrays.equals(expected, actual) : "Flood fill result differs from reference";
+		}
+	}
+
+	/** Voxel-at-a-time fill as previously done in RegionOcclusionCalculator. */
+	void referenceFill() {
+		for (int i = 0; i < 4096; i++) {
+			if (isSet(seeds, i) && !isSet(closed, i)) {
+				queue.enqueue(i);
+			}
+		}
+
+		while (!queue.isEmpty()) {
+			final int i = queue.dequeueInt();
+			final int x = i & 0xF;
+			final int y = (i >> 4) & 0xF;
+			final int z = (i >> 8) & 0xF;
+
+			if (x > 0) visit(i - 1);
+			if (x < 15) visit(i + 1);
+			if (y > 0) visit(i - 0x10);
+			if (y < 15) visit(i + 0x10);
+			if (z > 0) visit(i - 0x100);
+			if (z < 15) visit(i + 0x100);
+		}
+	}
+
+	void visit(int i) {
+		if (!isSet(expected, i)) {
+			set(expected, i);
+
+			if (!isSet(closed, i)) {
+				queue.enqueue(i);
+			}
+		}
+	}
+
+	static boolean isSet(long[] bits, int i) {
+		return (bits[i >> 6] & (1L << (i & 63))) != 0;
+	}
+
+	static void set(long[] bits, int i) {
+		bits[i >> 6] |= (1L << (i & 63));
+	}
+}
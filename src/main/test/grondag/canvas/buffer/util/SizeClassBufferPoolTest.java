@@ -0,0 +1,160 @@
+package grondag.canvas.buffer.util;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+class SizeClassBufferPoolTest {
+	static final int UNIT = 1000;
+
+	static class FakeBuffer {
+		final int capacityBytes;
+		boolean isDestroyed = false;
+
+		FakeBuffer(int capacityBytes) {
+			this.capacityBytes = capacityBytes;
+		}
+	}
+
+	static class FakeBackend implements PooledBufferBackend<FakeBuffer> {
+		final ArrayList<FakeBuffer> created = new ArrayList<>();
+		int destroyCount = 0;
+
+		@Override
+		public FakeBuffer create(int capacityBytes) {
+			final var result = new FakeBuffer(capacityBytes);
+			created.add(result);
+			return result;
+		}
+
+		@Override
+		public void destroy(FakeBuffer buffer) {
+			assert !buffer.isDestroyed;
+			buffer.isDestroyed = true;
+			++destroyCount;
+		}
+
+		@Override
+		public int capacityBytes(FakeBuffer buffer) {
+			return buffer.capacityBytes;
+		}
+	}
+
+	@Test
+	void sizeClasses() {
+		int last = 0;
+
+		for (int units = 1; units < 100000; ++units) {
+			final int c = SizeClassBufferPool.classUnits(units);
+			assert c >= units;
+			assert c >= last;
+			assert (c - units) * 4 <= units;
+			assert SizeClassBufferPool.classUnits(c) == c;
+			last = c;
+		}
+	}
+
+	@Test
+	void reuse() {
+		final var backend = new FakeBackend();
+		final var pool = new SizeClassBufferPool<>(backend, UNIT, 100 * UNIT, 10);
+
+		final var a = pool.claim(2500);
+		assert a.capacityBytes == 3 * UNIT;
+		pool.recycle(a);
+		assert pool.pooledCount() == 1 && pool.pooledBytes() == 3 * UNIT;
+
+		// same class is reused
+		assert pool.claim(2001) == a;
+		assert pool.pooledCount() == 0 && pool.pooledBytes() == 0;
+
+		// other classes are not
+		pool.recycle(a);
+		final var b = pool.claim(4000);
+		assert b != a && b.capacityBytes == 4 * UNIT;
+		assert backend.created.size() == 2;
+
+		// most recently recycled first
+		assert pool.claim(3000) == a;
+		final var c = pool.claim(3000);
+		pool.recycle(a);
+		pool.recycle(c);
+		assert pool.claim(3000) == c;
+		assert pool.claim(3000) == a;
+		assert backend.destroyCount == 0;
+	}
+
+	@Test
+	void highWaterMark() {
+		final var backend = new FakeBackend();
+		final var pool = new SizeClassBufferPool<>(backend, UNIT, 10 * UNIT, 1000);
+		final var buffers = new ArrayList<FakeBuffer>();
+
+		for (int i = 0; i < 8; ++i) {
+			buffers.add(pool.claim((i & 1) == 0 ? UNIT : 2 * UNIT));
+		}
+
+		for (final var b : buffers) {
+			pool.recycle(b);
+			pool.trim();
+			assert pool.pooledBytes() <= 10 * UNIT;
+		}
+
+		// least recently used are gone first
+		assert buffers.get(0).isDestroyed;
+		assert buffers.get(1).isDestroyed;
+		assert !buffers.get(7).isDestroyed;
+
+		long destroyedBytes = 0;
+
+		for (final var b : buffers) {
+			if (b.isDestroyed) {
+				destroyedBytes += b.capacityBytes;
+			}
+		}
+
+		assert pool.pooledBytes() + destroyedBytes == 12 * UNIT;
+
+		// buffer too big for pool or not of a size class are destroyed
+		final var big = new FakeBuffer(11 * UNIT);
+		pool.recycle(big);
+		assert big.isDestroyed;
+		final var odd = new FakeBuffer(UNIT + 1);
+		pool.recycle(odd);
+		assert odd.isDestroyed;
+	}
+
+	@Test
+	void idleTrim() {
+		final var backend = new FakeBackend();
+		final var pool = new SizeClassBufferPool<>(backend, UNIT, 100 * UNIT, 3);
+		final var a = pool.claim(UNIT);
+		final var b = pool.claim(5 * UNIT);
+		pool.recycle(a);
+		pool.trim();
+		pool.recycle(b);
+
+		pool.trim();
+		pool.trim();
+		assert !a.isDestroyed;
+		pool.trim();
+		assert a.isDestroyed && !b.isDestroyed;
+		pool.trim();
+		assert b.isDestroyed;
+		assert pool.pooledCount() == 0 && pool.pooledBytes() == 0;
+	}
+
+	@Test
+	void clear() {
+		final var backend = new FakeBackend();
+		final var pool = new SizeClassBufferPool<>(backend, UNIT, 100 * UNIT, 3);
+
+		for (int i = 1; i < 10; ++i) {
+			pool.recycle(pool.claim(i * UNIT));
+		}
+
+		pool.clear();
+		assert backend.destroyCount == 9;
+		assert pool.pooledCount() == 0 && pool.pooledBytes() == 0;
+	}
+}
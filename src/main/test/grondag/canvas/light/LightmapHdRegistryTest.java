@@ -0,0 +1,245 @@
+package grondag.canvas.light;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.light.LightmapHdRegistry.Refs;
+import grondag.canvas.light.LightmapHdRegistry.Stats;
+
+class LightmapHdRegistryTest {
+	private record Value(int key, int slot) { }
+
+	private static LightmapHdRegistry<Integer, Value> registry(int capacity) {
+		return new LightmapHdRegistry<>(capacity, 4, Value::new, UnaryOperator.identity());
+	}
+
+	@Test
+	void sharedAcrossRegions() {
+		final LightmapHdRegistry<Integer, Value> registry = registry(16);
+		final Refs a = new Refs();
+		final Refs b = new Refs();
+
+		for (int i = 0; i < 10; ++i) {
+			assert registry.acquire(i, a).key() == i;
+		}
+
+		for (int i = 5; i < 15; ++i) {
+			assert registry.acquire(i, b).key() == i;
+		}
+
+		// same key twice in one region holds one reference
+		final Value first = registry.acquire(0, a);
+		assert registry.acquire(0, a) == first;
+		assert a.size() == 10;
+
+		Stats stats = registry.stats();
+		assert stats.live() == 15 && stats.idle() == 0;
+		assert stats.created() == 15 && stats.reused() == 5;
+
+		a.release();
+		stats = registry.stats();
+		assert stats.live() == 10 && stats.idle() == 5;
+
+		b.release();
+		stats = registry.stats();
+		assert stats.live() == 0 && stats.idle() == 15;
+
+		// reloaded region finds its idle lightmaps
+		final Refs c = new Refs();
+		assert registry.acquire(0, c) == first;
+		assert registry.stats().created() == 15;
+	}
+
+	@Test
+	void evictsIdleBeforeLive() {
+		final LightmapHdRegistry<Integer, Value> registry = registry(8);
+		final Refs held = new Refs();
+		final Refs closed = new Refs();
+		final Value[] heldValues = new Value[4];
+
+		for (int i = 0; i < 4; ++i) {
+			heldValues[i] = registry.acquire(i, held);
+		}
+
+		for (int i = 4; i < 8; ++i) {
+			registry.acquire(i, closed);
+		}
+
+		closed.release();
+
+		final Refs loaded = new Refs();
+
+		for (int i = 8; i < 12; ++i) {
+			final Value value = registry.acquire(i, loaded);
+			assert value != null;
+			assert value.slot() >= 0 && value.slot() < 8;
+		}
+
+		Stats stats = registry.stats();
+		assert stats.evicted() == 4;
+		assert stats.live() == 8 && stats.idle() == 0;
+
+		// held lightmaps are never evicted
+		for (int i = 0; i < 4; ++i) {
+			assert registry.acquire(i, held) == heldValues[i];
+		}
+
+		// all slots are live
+		assert registry.acquire(12, new Refs()) == null;
+		assert registry.stats().failed() == 1;
+
+		// evicted keys are created again in reclaimed slots
+		loaded.release();
+		final Value recreated = registry.acquire(5, new Refs());
+		assert recreated != null && recreated.key() == 5;
+		stats = registry.stats();
+		assert stats.evicted() == 5 && stats.created() == 13;
+	}
+
+	@Test
+	void staleRefsIgnoredAfterReset() {
+		final LightmapHdRegistry<Integer, Value> registry = registry(4);
+		final Refs before = new Refs();
+		registry.acquire(1, before);
+
+		registry.reset();
+
+		final Refs after = new Refs();
+		registry.acquire(1, after);
+		before.release();
+
+		final Stats stats = registry.stats();
+		assert stats.live() == 1 && stats.idle() == 0 && stats.created() == 1;
+	}
+
+	@Test
+	void spansPages() {
+		// slot state is allocated in pages of 4096
+		final int capacity = 3 * 4096 + 5;
+		final LightmapHdRegistry<Integer, Value> registry = registry(capacity);
+		final Refs first = new Refs();
+
+		for (int i = 0; i < capacity; ++i) {
+			assert registry.acquire(i, first).slot() == i;
+		}
+
+		assert registry.acquire(capacity, new Refs()) == null;
+		first.release();
+
+		final Refs second = new Refs();
+		final int evictCount = 2 * 4096;
+		final long failedBefore = registry.stats().failed();
+
+		// every slot was just released, so each acquire must evict past the second-chance budget
+		for (int i = capacity; i < capacity + evictCount; ++i) {
+			final Value value = registry.acquire(i, second);
+			assert value != null && value.slot() < capacity;
+		}
+
+		assert registry.stats().failed() == failedBefore;
+
+		Stats stats = registry.stats();
+		assert stats.live() == evictCount && stats.live() + stats.idle() == capacity;
+		assert stats.evicted() == evictCount;
+
+		registry.reset();
+		second.release();
+		assert registry.acquire(0, new Refs()).slot() == 0;
+		stats = registry.stats();
+		assert stats.live() == 1 && stats.idle() == 0;
+	}
+
+	/**
+	 * Worker threads load regions that use overlapping sets of lightmaps and unload
+	 * them later, with more distinct lightmaps than slots.
+	 */
+	@Test
+	void concurrentLoadAndUnload() throws InterruptedException {
+		final int capacity = 256;
+		final int threadCount = 8;
+		final LightmapHdRegistry<Integer, Value> registry = registry(capacity);
+		final List<List<Value>> finalValues = new ArrayList<>();
+		final List<Thread> threads = new ArrayList<>();
+		final boolean[] failed = new boolean[threadCount];
+
+		for (int t = 0; t < threadCount; ++t) {
+			final int threadIndex = t;
+			final List<Value> values = new ArrayList<>();
+			finalValues.add(values);
+
+			threads.add(new Thread(() -> {
+				final Random rand = new Random(threadIndex);
+				final List<Refs> loaded = new ArrayList<>();
+				final List<Value> current = new ArrayList<>();
+
+				for (int n = 0; n < 2000; ++n) {
+					final Refs refs = new Refs();
+					current.clear();
+					// regions in the same area use similar lightmaps
+					final int base = rand.nextInt(600);
+
+					for (int i = 0; i < 24; ++i) {
+						final int key = base + rand.nextInt(40);
+						final Value value = registry.acquire(key, refs);
+
+						if (value != null) {
+							current.add(value);
+
+							if (value.key() != key) {
+								failed[threadIndex] = true;
+							}
+						}
+					}
+
+					loaded.add(refs);
+
+					if (loaded.size() > 2) {
+						loaded.remove(0).release();
+					}
+				}
+
+				// last region stays loaded
+				for (int i = 0; i < loaded.size() - 1; ++i) {
+					loaded.get(i).release();
+				}
+
+				values.addAll(current);
+			}));
+		}
+
+		for (final Thread thread : threads) {
+			thread.start();
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		for (final boolean f : failed) {
+			assert !f;
+		}
+
+		// lightmaps still in use have their own slots
+		final Map<Integer, Integer> slotKeys = new HashMap<>();
+
+		for (final List<Value> values : finalValues) {
+			for (final Value value : values) {
+				final Integer prior = slotKeys.put(value.slot(), value.key());
+				assert prior == null || prior == value.key();
+			}
+		}
+
+		final Stats stats = registry.stats();
+		assert stats.live() == slotKeys.size();
+		assert stats.live() + stats.idle() <= capacity;
+		assert stats.evicted() > 0;
+
+		System.out.println("concurrent load and unload: " + stats);
+	}
+}
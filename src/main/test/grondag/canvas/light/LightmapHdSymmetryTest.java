@@ -0,0 +1,306 @@
+package grondag.canvas.light;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class LightmapHdSymmetryTest {
+	private static final int SIZE = 32;
+	private static final int OPEN_AO = 255;
+	private static final int CLOSED_AO = 51;
+
+	@Test
+	void lightmapsMatchUnderTransform() {
+		final Random rand = new Random(42);
+		final LightmapHdSymmetry symmetry = new LightmapHdSymmetry();
+		final AoFaceData face = new AoFaceData();
+		final AoFaceData transformed = new AoFaceData();
+
+		for (int n = 0; n < 2000; ++n) {
+			randomFace(rand, face);
+			final int[] expected = lightmap(face);
+
+			for (int t = 0; t < LightmapHdSymmetry.TRANSFORM_COUNT; ++t) {
+				symmetry.transform(face, t, transformed);
+				final int[] actual = lightmap(transformed);
+
+				for (int u = 0; u < LightmapSizer.paddedSize; ++u) {
+					for (int v = 0; v < LightmapSizer.paddedSize; ++v) {
+						final float d = LightmapSizer.centerToCenterPixelDistance;
+						final int tu = Math.round(LightmapHdSymmetry.u(t, u / d, v / d) * d);
+						final int tv = Math.round(LightmapHdSymmetry.v(t, u / d, v / d) * d);
+						assert actual[LightmapHd.lightIndex(tu, tv)] == expected[LightmapHd.lightIndex(u, v)];
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void canonicalFormIsShared() {
+		final Random rand = new Random(42);
+		final LightmapHdSymmetry symmetry = new LightmapHdSymmetry();
+		final AoFaceData face = new AoFaceData();
+		final AoFaceData transformed = new AoFaceData();
+		final AoFaceData check = new AoFaceData();
+
+		for (int n = 0; n < 2000; ++n) {
+			randomFace(rand, face);
+			symmetry.canonicalize(face);
+			final AoFaceData expected = symmetry.canonical.clone();
+
+			for (int t = 0; t < LightmapHdSymmetry.TRANSFORM_COUNT; ++t) {
+				symmetry.transform(face, t, transformed);
+				final int transform = symmetry.canonicalize(transformed);
+				assert symmetry.canonical.equals(expected);
+				assert symmetry.canonical.hashCode() == expected.hashCode();
+
+				// the returned transform maps the face to its canonical form
+				symmetry.transform(transformed, transform, check);
+				assert check.equals(expected);
+			}
+		}
+	}
+
+	@Test
+	void reductionRatio() {
+		for (final String scene : new String[] {"surface", "caves"}) {
+			final Set<AoFaceData> faces = new HashSet<>();
+			final Set<AoFaceData> canonical = new HashSet<>();
+			final LightmapHdSymmetry symmetry = new LightmapHdSymmetry();
+			final int count = gatherFaces(scene, faces);
+
+			for (final AoFaceData face : faces) {
+				symmetry.canonicalize(face);
+				canonical.add(symmetry.canonical.clone());
+			}
+
+			assert canonical.size() <= faces.size();
+			assert faces.size() <= canonical.size() * LightmapHdSymmetry.TRANSFORM_COUNT;
+			assert canonical.size() < faces.size();
+
+			System.out.println(String.format("%s: %d faces, %d unique lightmaps, %d canonical lightmaps, reduction %.2fx",
+					scene, count, faces.size(), canonical.size(), (float) faces.size() / canonical.size()));
+		}
+	}
+
+	private static int[] lightmap(AoFaceData face) {
+		final int[] ao = new int[LightmapSizer.lightmapPixels];
+		final int[] block = new int[LightmapSizer.lightmapPixels];
+		final int[] sky = new int[LightmapSizer.lightmapPixels];
+		LightmapHdCalc.computeAo(ao, face);
+		LightmapHdCalc.computeLight(block, face, false);
+		LightmapHdCalc.computeLight(sky, face, true);
+
+		for (int i = 0; i < LightmapSizer.lightmapPixels; ++i) {
+			block[i] = (sky[i] << 24) | (ao[i] << 16) | (block[i] << 8) | ao[i];
+		}
+
+		return block;
+	}
+
+	private static void randomFace(Random rand, AoFaceData face) {
+		face.center = randomLight(rand, false);
+		face.top = randomLight(rand, true);
+		face.bottom = randomLight(rand, true);
+		face.left = randomLight(rand, true);
+		face.right = randomLight(rand, true);
+		face.topLeft = randomLight(rand, true);
+		face.topRight = randomLight(rand, true);
+		face.bottomLeft = randomLight(rand, true);
+		face.bottomRight = randomLight(rand, true);
+
+		face.aoCenter = randomAo(rand);
+		face.aoTop = randomAo(rand);
+		face.aoBottom = randomAo(rand);
+		face.aoLeft = randomAo(rand);
+		face.aoRight = randomAo(rand);
+		face.aoTopLeft = randomAo(rand);
+		face.aoTopRight = randomAo(rand);
+		face.aoBottomLeft = randomAo(rand);
+		face.aoBottomRight = randomAo(rand);
+		face.updateHash();
+	}
+
+	private static int randomLight(Random rand, boolean allowOpaque) {
+		if (allowOpaque && rand.nextInt(4) == 0) {
+			return AoFaceData.OPAQUE;
+		}
+
+		return (rand.nextInt(16) << 4) | (rand.nextInt(16) << 20);
+	}
+
+	private static int randomAo(Random rand) {
+		return rand.nextBoolean() ? OPEN_AO : rand.nextInt(256);
+	}
+
+	/**
+	 * Adds face data for every exposed face in a generated scene, gathered as
+	 * {@code AoCalculator} does for HD lightmaps, and returns the face count.
+	 * Scenes are the same as in {@code LightSmootherBenchmark}.
+	 */
+	private static int gatherFaces(String scene, Set<AoFaceData> faces) {
+		final Random rand = new Random(42);
+		final boolean caves = scene.equals("caves");
+		final boolean[] opaque = new boolean[SIZE * SIZE * SIZE];
+		final int[] light = new int[SIZE * SIZE * SIZE];
+
+		if (caves) {
+			for (int i = 0; i < opaque.length; ++i) {
+				opaque[i] = true;
+			}
+
+			int x = SIZE / 2;
+			int y = SIZE / 2;
+			int z = SIZE / 2;
+
+			for (int i = 0; i < 3000; ++i) {
+				opaque[index(x, y, z)] = false;
+				final int axis = rand.nextInt(3);
+				final int step = rand.nextBoolean() ? 1 : -1;
+
+				if (axis == 0) {
+					x = Math.max(1, Math.min(SIZE - 2, x + step));
+				} else if (axis == 1) {
+					y = Math.max(1, Math.min(SIZE - 2, y + step));
+				} else {
+					z = Math.max(1, Math.min(SIZE - 2, z + step));
+				}
+			}
+		} else {
+			for (int x = 0; x < SIZE; ++x) {
+				for (int z = 0; z < SIZE; ++z) {
+					final int height = SIZE / 2 + rand.nextInt(3);
+
+					for (int y = 0; y < height; ++y) {
+						opaque[index(x, y, z)] = true;
+					}
+				}
+			}
+		}
+
+		final int[] torches = new int[24];
+
+		for (int i = 0; i < torches.length; ++i) {
+			int pos;
+
+			do {
+				pos = rand.nextInt(opaque.length);
+			} while (opaque[pos]);
+
+			torches[i] = pos;
+		}
+
+		for (int x = 0; x < SIZE; ++x) {
+			for (int z = 0; z < SIZE; ++z) {
+				boolean skyVisible = !caves;
+
+				for (int y = SIZE - 1; y >= 0; --y) {
+					final int i = index(x, y, z);
+
+					if (opaque[i]) {
+						skyVisible = false;
+						continue;
+					}
+
+					int block = 0;
+
+					for (final int t : torches) {
+						final int d = Math.abs(x - t % SIZE) + Math.abs(y - (t / SIZE) % SIZE) + Math.abs(z - t / (SIZE * SIZE));
+						block = Math.max(block, 14 - d);
+					}
+
+					light[i] = (block << 4) | ((skyVisible ? 15 : 0) << 20);
+				}
+			}
+		}
+
+		int count = 0;
+
+		for (int x = 1; x < SIZE - 1; ++x) {
+			for (int y = 1; y < SIZE - 1; ++y) {
+				for (int z = 1; z < SIZE - 1; ++z) {
+					if (!opaque[index(x, y, z)]) {
+						continue;
+					}
+
+					// faces along each axis, with the two axes in the plane of the face
+					count += gatherFace(x, y + 1, z, 1, 0, 0, 0, 0, 1, opaque, light, faces);
+					count += gatherFace(x, y - 1, z, 1, 0, 0, 0, 0, -1, opaque, light, faces);
+					count += gatherFace(x + 1, y, z, 0, 0, -1, 0, -1, 0, opaque, light, faces);
+					count += gatherFace(x - 1, y, z, 0, 0, 1, 0, -1, 0, opaque, light, faces);
+					count += gatherFace(x, y, z + 1, 1, 0, 0, 0, -1, 0, opaque, light, faces);
+					count += gatherFace(x, y, z - 1, -1, 0, 0, 0, -1, 0, opaque, light, faces);
+				}
+			}
+		}
+
+		return count;
+	}
+
+	private static int gatherFace(int x, int y, int z, int ux, int uy, int uz, int vx, int vy, int vz, boolean[] opaque, int[] light, Set<AoFaceData> faces) {
+		if (!inside(x, y, z) || opaque[index(x, y, z)]) {
+			return 0;
+		}
+
+		final int[] l = new int[9];
+		final int[] a = new int[9];
+
+		for (int v = -1; v <= 1; ++v) {
+			for (int u = -1; u <= 1; ++u) {
+				final int px = x + u * ux + v * vx;
+				final int py = y + u * uy + v * vy;
+				final int pz = z + u * uz + v * vz;
+				final int g = (u + 1) + (v + 1) * 3;
+
+				if (!inside(px, py, pz) || opaque[index(px, py, pz)]) {
+					l[g] = AoFaceData.OPAQUE;
+					a[g] = CLOSED_AO;
+				} else {
+					l[g] = light[index(px, py, pz)];
+					a[g] = OPEN_AO;
+				}
+			}
+		}
+
+		final AoFaceData face = new AoFaceData();
+		face.center = l[4];
+		face.aoCenter = a[4];
+		face.top = l[1];
+		face.aoTop = a[1];
+		face.left = l[3];
+		face.aoLeft = a[3];
+		face.right = l[5];
+		face.aoRight = a[5];
+		face.bottom = l[7];
+		face.aoBottom = a[7];
+
+		// corners behind two opaque sides aren't sampled
+		face.topLeft = corner(l, 0, 1, 3);
+		face.aoTopLeft = l[1] == AoFaceData.OPAQUE && l[3] == AoFaceData.OPAQUE ? Math.min(a[1], a[3]) : a[0];
+		face.topRight = corner(l, 2, 1, 5);
+		face.aoTopRight = l[1] == AoFaceData.OPAQUE && l[5] == AoFaceData.OPAQUE ? Math.min(a[1], a[5]) : a[2];
+		face.bottomLeft = corner(l, 6, 7, 3);
+		face.aoBottomLeft = l[7] == AoFaceData.OPAQUE && l[3] == AoFaceData.OPAQUE ? Math.min(a[7], a[3]) : a[6];
+		face.bottomRight = corner(l, 8, 7, 5);
+		face.aoBottomRight = l[7] == AoFaceData.OPAQUE && l[5] == AoFaceData.OPAQUE ? Math.min(a[7], a[5]) : a[8];
+		face.updateHash();
+
+		faces.add(face);
+		return 1;
+	}
+
+	private static int corner(int[] l, int corner, int side0, int side1) {
+		return l[side0] == AoFaceData.OPAQUE && l[side1] == AoFaceData.OPAQUE ? AoFaceData.OPAQUE : l[corner];
+	}
+
+	private static boolean inside(int x, int y, int z) {
+		return x >= 0 && x < SIZE && y >= 0 && y < SIZE && z >= 0 && z < SIZE;
+	}
+
+	private static int index(int x, int y, int z) {
+		return x + (y + z * SIZE) * SIZE;
+	}
+}
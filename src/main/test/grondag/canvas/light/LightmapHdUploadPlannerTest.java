@@ -0,0 +1,178 @@
+package grondag.canvas.light;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LightmapHdUploadPlannerTest {
+	private static final int MAPS_PER_AXIS = 64;
+	private static final int MAP_SIZE = 6;
+	private static final int MAP_BYTES = MAP_SIZE * MAP_SIZE * 4;
+
+	private final List<int[]> uploads = new ArrayList<>();
+	private final LightmapHdUploadPlanner.Target target = (x, y, width, height) -> uploads.add(new int[] {x, y, width, height});
+
+	@Test
+	void rowRunIsOneUpload() {
+		final LightmapHdUploadPlanner planner = new LightmapHdUploadPlanner(MAPS_PER_AXIS, MAP_SIZE, 2);
+
+		// slots are assigned in row order, so a rebuild wave fills a row
+		for (int column = 10; column < 40; ++column) {
+			planner.add(column, 3);
+		}
+
+		// small gaps are bridged, large ones aren't
+		planner.add(42, 3);
+		planner.add(50, 3);
+		planner.add(12, 3);
+
+		assert planner.plan(Integer.MAX_VALUE, target) == 2;
+		assertUpload(0, 10 * MAP_SIZE, 3 * MAP_SIZE, 33 * MAP_SIZE, MAP_SIZE);
+		assertUpload(1, 50 * MAP_SIZE, 3 * MAP_SIZE, MAP_SIZE, MAP_SIZE);
+		assert planner.pendingCount() == 0;
+	}
+
+	@Test
+	void blockIsOneUpload() {
+		final LightmapHdUploadPlanner planner = new LightmapHdUploadPlanner(MAPS_PER_AXIS, MAP_SIZE, 0);
+
+		for (int row = 5; row < 9; ++row) {
+			for (int column = 20; column < 30; ++column) {
+				planner.add(column, row);
+			}
+		}
+
+		assert planner.plan(Integer.MAX_VALUE, target) == 1;
+		assertUpload(0, 20 * MAP_SIZE, 5 * MAP_SIZE, 10 * MAP_SIZE, 4 * MAP_SIZE);
+	}
+
+	@Test
+	void budgetDefersUploads() {
+		final LightmapHdUploadPlanner planner = new LightmapHdUploadPlanner(MAPS_PER_AXIS, MAP_SIZE, 0);
+
+		for (int row = 0; row < 8; ++row) {
+			for (int column = 0; column < 16; ++column) {
+				planner.add(column, row);
+			}
+		}
+
+		// room for two rows per frame
+		final int budget = 32 * MAP_BYTES;
+		int frames = 0;
+
+		while (planner.pendingCount() > 0) {
+			final int before = uploads.size();
+			assert planner.plan(budget, target) > 0;
+			assert bytes(before) <= budget;
+			++frames;
+		}
+
+		assert frames == 4;
+		assert uploads.size() == 4;
+		assertCoverage(everyMap(0, 0, 16, 8));
+
+		// a single map larger than the budget is still uploaded
+		planner.add(3, 3);
+		assert planner.plan(1, target) == 1;
+		assert planner.pendingCount() == 0;
+	}
+
+	@Test
+	void randomUpdates() {
+		final Random rand = new Random(42);
+
+		for (int n = 0; n < 500; ++n) {
+			final int maxGap = rand.nextInt(4);
+			final LightmapHdUploadPlanner planner = new LightmapHdUploadPlanner(MAPS_PER_AXIS, MAP_SIZE, maxGap);
+			final boolean[] dirty = new boolean[MAPS_PER_AXIS * MAPS_PER_AXIS];
+			final int count = 1 + rand.nextInt(400);
+			int distinct = 0;
+
+			for (int i = 0; i < count; ++i) {
+				final int column;
+				final int row;
+
+				if (rand.nextBoolean()) {
+					// runs of consecutive slots, as from new allocations
+					final int slot = Math.min(dirty.length - 1, rand.nextInt(dirty.length / 8) + i);
+					column = slot % MAPS_PER_AXIS;
+					row = slot / MAPS_PER_AXIS;
+				} else {
+					// scattered slots, as from reuse of evicted lightmaps
+					column = rand.nextInt(MAPS_PER_AXIS);
+					row = rand.nextInt(MAPS_PER_AXIS);
+				}
+
+				planner.add(column, row);
+
+				if (!dirty[row * MAPS_PER_AXIS + column]) {
+					dirty[row * MAPS_PER_AXIS + column] = true;
+					++distinct;
+				}
+			}
+
+			uploads.clear();
+			final int budget = (1 + rand.nextInt(64)) * MAP_BYTES;
+			int frames = 0;
+
+			while (planner.pendingCount() > 0) {
+				final int before = uploads.size();
+				planner.plan(budget, target);
+				assert uploads.size() == before + 1 || bytes(before) <= budget;
+				assert ++frames <= distinct;
+			}
+
+			assertCoverage(dirty);
+			assert uploads.size() <= distinct;
+		}
+	}
+
+	private int bytes(int fromUpload) {
+		int result = 0;
+
+		for (int i = fromUpload; i < uploads.size(); ++i) {
+			result += uploads.get(i)[2] * uploads.get(i)[3] * 4;
+		}
+
+		return result;
+	}
+
+	private void assertUpload(int index, int x, int y, int width, int height) {
+		final int[] upload = uploads.get(index);
+		assert upload[0] == x && upload[1] == y && upload[2] == width && upload[3] == height;
+	}
+
+	private static boolean[] everyMap(int column, int row, int width, int height) {
+		final boolean[] result = new boolean[MAPS_PER_AXIS * MAPS_PER_AXIS];
+
+		for (int r = row; r < row + height; ++r) {
+			for (int c = column; c < column + width; ++c) {
+				result[r * MAPS_PER_AXIS + c] = true;
+			}
+		}
+
+		return result;
+	}
+
+	/** Every dirty map is uploaded and uploads are aligned to maps. */
+	private void assertCoverage(boolean[] dirty) {
+		final int[] uploaded = new int[dirty.length];
+
+		for (final int[] upload : uploads) {
+			assert upload[0] % MAP_SIZE == 0 && upload[1] % MAP_SIZE == 0;
+			assert upload[2] % MAP_SIZE == 0 && upload[3] % MAP_SIZE == 0;
+
+			for (int r = upload[1] / MAP_SIZE; r < (upload[1] + upload[3]) / MAP_SIZE; ++r) {
+				for (int c = upload[0] / MAP_SIZE; c < (upload[0] + upload[2]) / MAP_SIZE; ++c) {
+					++uploaded[r * MAPS_PER_AXIS + c];
+				}
+			}
+		}
+
+		for (int i = 0; i < dirty.length; ++i) {
+			assert !dirty[i] || uploaded[i] > 0;
+		}
+	}
+}
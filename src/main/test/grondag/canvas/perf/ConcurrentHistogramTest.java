@@ -0,0 +1,85 @@
+package grondag.canvas.perf;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrentHistogramTest {
+	@Test
+	void bucketBounds() {
+		for (int b = 0; b < ConcurrentHistogram.BUCKET_COUNT; ++b) {
+			final long low = ConcurrentHistogram.lowestValue(b);
+			final long high = ConcurrentHistogram.highestValue(b);
+			assert ConcurrentHistogram.bucket(low) == b;
+			assert ConcurrentHistogram.bucket(high) == b;
+
+			if (b > 0) {
+				assert ConcurrentHistogram.highestValue(b - 1) + 1 == low;
+			}
+		}
+
+		assert ConcurrentHistogram.highestValue(ConcurrentHistogram.BUCKET_COUNT - 1) == Long.MAX_VALUE;
+	}
+
+	@Test
+	void relativeError() {
+		final Random rand = new Random(42);
+
+		for (int i = 0; i < 100000; ++i) {
+			final long v = rand.nextLong() >>> (1 + rand.nextInt(63));
+			final int b = ConcurrentHistogram.bucket(v);
+			final long high = ConcurrentHistogram.highestValue(b);
+			assert high >= v;
+			assert v < 2 * ConcurrentHistogram.SUB_COUNT ? high == v : (high - v) <= v / ConcurrentHistogram.SUB_COUNT;
+		}
+	}
+
+	@Test
+	void percentiles() {
+		final ConcurrentHistogram h = new ConcurrentHistogram("test", MetricsRegistry.NANOS);
+
+		for (int i = 1; i <= 10000; ++i) {
+			h.record(i * 1000L);
+		}
+
+		final ConcurrentHistogram.Summary s = h.summarize();
+		assert s.count() == 10000;
+		assert s.max() == 10000000L;
+		assert s.mean() == 5000500L;
+		assert within(s.p50(), 5000000L);
+		assert within(s.p99(), 9900000L);
+		assert within(s.p999(), 9990000L);
+
+		h.reset();
+		assert h.summarize().count() == 0;
+		assert h.summarize().p99() == 0;
+	}
+
+	@Test
+	void concurrentRecording() throws InterruptedException {
+		final ConcurrentHistogram h = new ConcurrentHistogram("test", MetricsRegistry.NANOS);
+		final Thread[] threads = new Thread[4];
+
+		for (int t = 0; t < threads.length; ++t) {
+			final int offset = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 100000; ++i) {
+					h.record(i + offset);
+				}
+			});
+			threads[t].start();
+		}
+
+		for (final Thread t : threads) {
+			t.join();
+		}
+
+		final ConcurrentHistogram.Summary s = h.summarize();
+		assert s.count() == 400000;
+		assert s.max() == 99999 + threads.length - 1;
+	}
+
+	private static boolean within(long actual, long expected) {
+		return actual >= expected && actual - expected <= expected / ConcurrentHistogram.SUB_COUNT;
+	}
+}
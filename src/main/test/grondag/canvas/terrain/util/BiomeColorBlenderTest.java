@@ -0,0 +1,83 @@
+package grondag.canvas.terrain.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BiomeColorBlenderTest {
+	@Test
+	void matchesPerColumnBlend() {
+		final Random rand = new Random(42);
+
+		for (int radius = 0; radius <= 7; ++radius) {
+			final int padded = BiomeColorBlender.paddedSize(radius);
+			final int[] base = new int[padded * padded];
+			final int[] blended = new int[256];
+			final int[] work = new int[BiomeColorBlender.workSize(radius)];
+
+			for (int n = 0; n < 50; ++n) {
+				randomBiomes(rand, base, padded);
+				BiomeColorBlender.blend(base, radius, blended, work);
+
+				for (int x = 0; x < 16; ++x) {
+					for (int z = 0; z < 16; ++z) {
+						assert blended[x | (z << 4)] == blendColumn(base, padded, radius, x, z);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void uniformBiomeIsUnchanged() {
+		final int radius = 5;
+		final int padded = BiomeColorBlender.paddedSize(radius);
+		final int[] base = new int[padded * padded];
+		final int[] blended = new int[256];
+		Arrays.fill(base, 0x91BD59);
+		BiomeColorBlender.blend(base, radius, blended, new int[BiomeColorBlender.workSize(radius)]);
+
+		for (final int color : blended) {
+			assert color == 0x91BD59;
+		}
+	}
+
+	/** Patches of biome colors with full-range channels. */
+	private static void randomBiomes(Random rand, int[] base, int padded) {
+		final int[] palette = new int[6];
+
+		for (int i = 0; i < palette.length; ++i) {
+			palette[i] = rand.nextInt(0x1000000);
+		}
+
+		for (int z = 0; z < padded; ++z) {
+			for (int x = 0; x < padded; ++x) {
+				base[x + z * padded] = rand.nextInt(8) == 0 ? rand.nextInt(0x1000000) : palette[((x / 5) + (z / 3)) % palette.length];
+			}
+		}
+	}
+
+	/** Same as the blend in ChunkColorCache before it blended whole chunks. */
+	private static int blendColumn(int[] base, int padded, int radius, int xIn, int zIn) {
+		if (radius == 0) {
+			return base[xIn + zIn * padded];
+		}
+
+		final int sampleCount = (radius * 2 + 1) * (radius * 2 + 1);
+		int r = 0;
+		int g = 0;
+		int b = 0;
+
+		for (int x = xIn; x <= xIn + radius * 2; x++) {
+			for (int z = zIn; z <= zIn + radius * 2; z++) {
+				final int color = base[x + z * padded];
+				g += (color >> 8) & 255;
+				r += (color >> 16) & 255;
+				b += color & 255;
+			}
+		}
+
+		return (r / sampleCount & 255) << 16 | (g / sampleCount & 255) << 8 | b / sampleCount & 255;
+	}
+}
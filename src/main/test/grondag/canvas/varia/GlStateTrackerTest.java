@@ -0,0 +1,208 @@
+package grondag.canvas.varia;
+
+import static org.lwjgl.opengl.GL46C.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL46C.GL_BACK;
+import static org.lwjgl.opengl.GL46C.GL_BLEND;
+import static org.lwjgl.opengl.GL46C.GL_DEPTH_TEST;
+import static org.lwjgl.opengl.GL46C.GL_ELEMENT_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL46C.GL_LEQUAL;
+import static org.lwjgl.opengl.GL46C.GL_ONE;
+import static org.lwjgl.opengl.GL46C.GL_ONE_MINUS_SRC_ALPHA;
+import static org.lwjgl.opengl.GL46C.GL_SRC_ALPHA;
+import static org.lwjgl.opengl.GL46C.GL_STENCIL_TEST;
+import static org.lwjgl.opengl.GL46C.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL46C.GL_TEXTURE1;
+import static org.lwjgl.opengl.GL46C.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL46C.GL_TEXTURE_2D_ARRAY;
+import static org.lwjgl.opengl.GL46C.GL_ZERO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class GlStateTrackerTest {
+	private static class RecordingBackend implements GlStateTracker.Backend {
+		final List<String> calls = new ArrayList<>();
+
+		@Override
+		public void bindBuffer(int target, int buffer) {
+			calls.add("bindBuffer " + target + " " + buffer);
+		}
+
+		@Override
+		public void bindVertexArray(int array) {
+			calls.add("bindVertexArray " + array);
+		}
+
+		@Override
+		public void useProgram(int program) {
+			calls.add("useProgram " + program);
+		}
+
+		@Override
+		public void activeTexture(int unit) {
+			calls.add("activeTexture " + unit);
+		}
+
+		@Override
+		public void bindTexture(int target, int texture) {
+			calls.add("bindTexture " + target + " " + texture);
+		}
+
+		@Override
+		public void enable(int cap) {
+			calls.add("enable " + cap);
+		}
+
+		@Override
+		public void disable(int cap) {
+			calls.add("disable " + cap);
+		}
+
+		@Override
+		public void blendFuncSeparate(int srcFactorRGB, int dstFactorRGB, int srcFactorAlpha, int dstFactorAlpha) {
+			calls.add("blendFuncSeparate " + srcFactorRGB + " " + dstFactorRGB + " " + srcFactorAlpha + " " + dstFactorAlpha);
+		}
+
+		@Override
+		public void depthFunc(int func) {
+			calls.add("depthFunc " + func);
+		}
+
+		@Override
+		public void depthMask(boolean mask) {
+			calls.add("depthMask " + mask);
+		}
+
+		@Override
+		public void cullFace(int mode) {
+			calls.add("cullFace " + mode);
+		}
+
+		@Override
+		public void scissor(int x, int y, int width, int height) {
+			calls.add("scissor " + x + " " + y + " " + width + " " + height);
+		}
+	}
+
+	private final RecordingBackend backend = new RecordingBackend();
+	private final GlStateTracker tracker = new GlStateTracker(backend);
+
+	@Test
+	void redundantCallsSkipped() {
+		tracker.bindBuffer(GL_ARRAY_BUFFER, 3);
+		tracker.bindBuffer(GL_ARRAY_BUFFER, 3);
+		tracker.useProgram(7);
+		tracker.useProgram(7);
+		tracker.enable(GL_BLEND);
+		tracker.enable(GL_BLEND);
+		tracker.blendFuncSeparate(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA, GL_ONE, GL_ZERO);
+		tracker.blendFuncSeparate(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA, GL_ONE, GL_ZERO);
+		tracker.depthFunc(GL_LEQUAL);
+		tracker.depthFunc(GL_LEQUAL);
+		tracker.depthMask(false);
+		tracker.depthMask(false);
+		tracker.cullFace(GL_BACK);
+		tracker.cullFace(GL_BACK);
+		tracker.scissor(0, 0, 16, 16);
+		tracker.scissor(0, 0, 16, 16);
+
+		assert backend.calls.size() == 8;
+		assert tracker.issued() == 8;
+		assert tracker.skipped() == 8;
+
+		tracker.bindBuffer(GL_ARRAY_BUFFER, 4);
+		tracker.disable(GL_BLEND);
+		tracker.scissor(0, 0, 16, 32);
+		assert backend.calls.size() == 11;
+		assert backend.calls.get(10).equals("scissor 0 0 16 32");
+	}
+
+	@Test
+	void unknownStateIsIssued() {
+		// zero matches GL defaults but the tracker can't assume them
+		tracker.bindVertexArray(0);
+		tracker.disable(GL_DEPTH_TEST);
+		assert backend.calls.size() == 2;
+
+		tracker.invalidate();
+		tracker.bindVertexArray(0);
+		tracker.disable(GL_DEPTH_TEST);
+		assert backend.calls.size() == 4;
+
+		// untracked capabilities always go through
+		tracker.enable(GL_STENCIL_TEST);
+		tracker.enable(GL_STENCIL_TEST);
+		assert backend.calls.size() == 6;
+	}
+
+	@Test
+	void textureUnits() {
+		tracker.activeTexture(GL_TEXTURE0);
+		tracker.bindTexture(GL_TEXTURE_2D, 5);
+		tracker.activeTexture(GL_TEXTURE1);
+		tracker.bindTexture(GL_TEXTURE_2D, 5);
+		tracker.bindTexture(GL_TEXTURE_2D_ARRAY, 6);
+		assert backend.calls.size() == 5;
+
+		tracker.bindTexture(GL_TEXTURE_2D, 5);
+		tracker.activeTexture(GL_TEXTURE0);
+		tracker.bindTexture(GL_TEXTURE_2D, 5);
+		assert backend.calls.size() == 6;
+
+		tracker.onTextureDeleted(5);
+		tracker.bindTexture(GL_TEXTURE_2D, 0);
+		assert backend.calls.size() == 6;
+		tracker.bindTexture(GL_TEXTURE_2D, 5);
+		assert backend.calls.size() == 7;
+	}
+
+	@Test
+	void elementBufferFollowsVertexArray() {
+		tracker.bindVertexArray(1);
+		tracker.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, 9);
+		tracker.bindBuffer(GL_ARRAY_BUFFER, 8);
+		tracker.bindVertexArray(2);
+		tracker.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, 9);
+		tracker.bindBuffer(GL_ARRAY_BUFFER, 8);
+		assert backend.calls.size() == 5;
+		assert backend.calls.get(4).equals("bindBuffer " + GL_ELEMENT_ARRAY_BUFFER + " 9");
+
+		tracker.onVertexArrayDeleted(2);
+		tracker.bindVertexArray(0);
+		assert backend.calls.size() == 5;
+		assert tracker.boundBuffer(GL_ELEMENT_ARRAY_BUFFER) == -1;
+	}
+
+	@Test
+	void deletes() {
+		tracker.bindBuffer(GL_ARRAY_BUFFER, 3);
+		tracker.onBufferDeleted(3);
+		assert tracker.boundBuffer(GL_ARRAY_BUFFER) == 0;
+		tracker.bindBuffer(GL_ARRAY_BUFFER, 3);
+		assert backend.calls.size() == 2;
+
+		tracker.useProgram(7);
+		tracker.onProgramDeleted(7);
+		tracker.useProgram(7);
+		assert backend.calls.size() == 4;
+	}
+
+	@Test
+	void frameCounts() {
+		tracker.useProgram(1);
+		tracker.useProgram(1);
+		tracker.useProgram(1);
+		tracker.endFrame();
+		assert tracker.lastFrameIssued() == 1;
+		assert tracker.lastFrameSkipped() == 2;
+		assert tracker.issued() == 0;
+		assert tracker.skipped() == 0;
+
+		tracker.useProgram(2);
+		tracker.endFrame();
+		assert tracker.lastFrameIssued() == 1;
+		assert tracker.lastFrameSkipped() == 0;
+	}
+}